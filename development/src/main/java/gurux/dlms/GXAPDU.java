@@ -274,8 +274,8 @@ final class GXAPDU {
                 getInitiateRequest(settings, cipher, tmp);
                 AesGcmParameter p = new AesGcmParameter(
                         Command.GLO_INITIATE_REQUEST, cipher.getSecurity(),
-                        cipher.getInvocationCounter(), cipher.getSystemTitle(),
-                        cipher.getBlockCipherKey(),
+                        GXDLMS.nextInvocationCounter(cipher),
+                        cipher.getSystemTitle(), cipher.getBlockCipherKey(),
                         cipher.getAuthenticationKey());
                 byte[] crypted = GXCiphering.encrypt(p, tmp.array());
                 // Length for AARQ user field
@@ -985,6 +985,8 @@ final class GXAPDU {
                 tmp = new byte[len];
                 buff.get(tmp);
                 settings.setSourceSystemTitle(tmp);
+                // Use keys of the client if they are registered.
+                GXDLMS.selectKeys(settings, tmp);
                 appendClientSystemTitleToXml(settings, xml);
                 break;
             // Server system title.
@@ -1358,8 +1360,9 @@ final class GXAPDU {
         if (cipher != null && cipher.isCiphered()) {
             AesGcmParameter p = new AesGcmParameter(
                     Command.GLO_INITIATE_RESPONSE, cipher.getSecurity(),
-                    cipher.getInvocationCounter(), cipher.getSystemTitle(),
-                    cipher.getBlockCipherKey(), cipher.getAuthenticationKey());
+                    GXDLMS.nextInvocationCounter(cipher),
+                    cipher.getSystemTitle(), cipher.getBlockCipherKey(),
+                    cipher.getAuthenticationKey());
             return GXCiphering.encrypt(p, data.array());
         }
         return data.array();
@@ -38,6 +38,7 @@ package gurux.dlms;
 
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 import gurux.dlms.internal.GXCommon;
 
@@ -135,6 +136,25 @@ public class GXByteBuffer {
         }
     }
 
+    /**
+     * Make sure that buffer can hold the given amount of bytes. Capacity is
+     * grown geometrically so appending frames and blocks one by one is not
+     * copying already received data again on every append.
+     * 
+     * @param required
+     *            Required capacity.
+     */
+    private void grow(final int required) {
+        int current = capacity();
+        if (required > current) {
+            int value = current + (current >> 1) + ARRAY_CAPACITY;
+            if (value < required) {
+                value = required;
+            }
+            capacity(value);
+        }
+    }
+
     /**
      * Buffer capacity.
      * 
@@ -269,9 +289,7 @@ public class GXByteBuffer {
 
     public final void setUInt8(final int index, final int item) {
 
-        if (index >= capacity()) {
-            capacity(index + ARRAY_CAPACITY);
-        }
+        grow(index + 1);
         data[index] = (byte) item;
     }
 
@@ -282,9 +300,7 @@ public class GXByteBuffer {
 
     public final void setUInt16(final int index, final int item) {
 
-        if (index + 2 >= capacity()) {
-            capacity(index + ARRAY_CAPACITY);
-        }
+        grow(index + 2);
         data[index] = (byte) ((item >> 8) & 0xFF);
         data[index + 1] = (byte) (item & 0xFF);
     }
@@ -297,9 +313,7 @@ public class GXByteBuffer {
 
     public final void setUInt32(final int index, final long item) {
 
-        if (index + 4 >= capacity()) {
-            capacity(index + ARRAY_CAPACITY);
-        }
+        grow(index + 4);
         data[index] = (byte) ((item >> 24) & 0xFF);
         data[index + 1] = (byte) ((item >> 16) & 0xFF);
         data[index + 2] = (byte) ((item >> 8) & 0xFF);
@@ -314,9 +328,7 @@ public class GXByteBuffer {
 
     public final void setUInt64(final int index, final long item) {
 
-        if (index + 8 >= capacity()) {
-            capacity(index + ARRAY_CAPACITY);
-        }
+        grow(index + 8);
         data[size] = (byte) ((item >> 56) & 0xFF);
         data[size + 1] = (byte) ((item >> 48) & 0xFF);
         data[size + 2] = (byte) ((item >> 40) & 0xFF);
@@ -540,9 +552,7 @@ public class GXByteBuffer {
     public final void set(final byte[] value, final int index,
             final int count) {
         if (value != null && count != 0) {
-            if (size + count > capacity()) {
-                capacity(size + count + ARRAY_CAPACITY);
-            }
+            grow(size + count);
             System.arraycopy(value, index, data, size, count);
             size += count;
         }
@@ -563,9 +573,7 @@ public class GXByteBuffer {
      *            Byte count.
      */
     public final void set(final GXByteBuffer value, final int count) {
-        if (size + count > capacity()) {
-            capacity(size + count + ARRAY_CAPACITY);
-        }
+        grow(size + count);
         if (count != 0) {
             System.arraycopy(value.data, value.position, data, size, count);
             size += count;
@@ -573,6 +581,25 @@ public class GXByteBuffer {
         }
     }
 
+    /**
+     * Append remaining bytes of the given buffer into this buffer. Position of
+     * the given buffer is moved to the limit.
+     * 
+     * @param value
+     *            Data to append. Direct buffers are copied without temporary
+     *            byte array.
+     */
+    public final void set(final ByteBuffer value) {
+        if (value != null) {
+            int count = value.remaining();
+            if (count != 0) {
+                grow(size + count);
+                value.get(data, size, count);
+                size += count;
+            }
+        }
+    }
+
     /**
      * Add new object to the byte buffer.
      * 
@@ -118,6 +118,21 @@ abstract class GXDLMS {
 
     }
 
+    /**
+     * Get invocation counter for the next ciphered message. Counter of the
+     * invocation counter store is used if ciphering has it.
+     * 
+     * @param cipher
+     *            Cipher settings.
+     * @return Invocation counter.
+     */
+    static long nextInvocationCounter(final GXICipher cipher) {
+        if (cipher instanceof GXCiphering) {
+            return ((GXCiphering) cipher).nextInvocationCounter();
+        }
+        return cipher.getInvocationCounter();
+    }
+
     static byte getInvokeIDPriority(final GXDLMSSettings settings) {
         byte value = 0;
         if (settings.getPriority() == Priority.HIGH) {
@@ -772,15 +787,14 @@ abstract class GXDLMS {
                         if (ciphering
                                 && p.command != Command.GENERAL_BLOCK_TRANSFER) {
                             reply.set(p.getData());
-                            byte[] tmp;
                             if (p.getSettings().getCipher()
                                     .getSecuritySuite() == SecuritySuite.AES_GCM_128) {
-                                tmp = cipher0(p, reply.array());
+                                cipher0(p, reply);
                             } else {
-                                tmp = cipher1(p, reply.array());
+                                cipher1(p, reply);
                             }
                             p.getData().size(0);
-                            p.getData().set(tmp);
+                            p.getData().set(reply);
                             reply.size(0);
                             len = p.getData().size();
                             if (7 + len > p.getSettings().getMaxPduSize()) {
@@ -822,15 +836,12 @@ abstract class GXDLMS {
                             .contains(Conformance.GENERAL_BLOCK_TRANSFER)
                     && p.getCommand() != Command.RELEASE_REQUEST) {
                 // GBT ciphering is done for all the data, not just block.
-                byte[] tmp;
                 if (p.getSettings().getCipher()
                         .getSecuritySuite() == SecuritySuite.AES_GCM_128) {
-                    tmp = cipher0(p, reply.array());
+                    cipher0(p, reply);
                 } else {
-                    tmp = cipher1(p, reply.array());
+                    cipher1(p, reply);
                 }
-                reply.size(0);
-                reply.set(tmp);
             }
         }
         if (p.getCommand() == Command.GENERAL_BLOCK_TRANSFER
@@ -900,11 +911,11 @@ abstract class GXDLMS {
      * 
      * @param p
      *            LN settings.
-     * @param reply
-     *            Data to encrypt.
+     * @param data
+     *            Data to encrypt. Data is ciphered in place.
      */
-    private static byte[] cipher1(final GXDLMSLNParameters p,
-            final byte[] data) {
+    private static void cipher1(final GXDLMSLNParameters p,
+            final GXByteBuffer data) {
         byte keyid = 0;
         if (p.getSettings().getTargetEphemeralKey() != null) {
             keyid = 1;
@@ -914,7 +925,7 @@ abstract class GXDLMS {
         }
         // If connection is not establish yet.
         if (keyid == 0) {
-            return data;
+            return;
         }
         byte sc = 0;
         GXICipher c = p.getSettings().getCipher();
@@ -960,10 +971,13 @@ abstract class GXDLMS {
         default:
             throw new IllegalArgumentException("Invalid security suite.");
         }
+        long ic = nextInvocationCounter(c);
         GXByteBuffer tmp2 = new GXByteBuffer();
         GXByteBuffer transactionId = new GXByteBuffer();
-        transactionId.setUInt64(c.getInvocationCounter());
+        transactionId.setUInt64(ic);
         byte[] z = p.getSettings().getCipher().getSharedSecret();
+        // KDF output of the transaction ID is used only once.
+        boolean cache = true;
         if (z == null) {
             if (keyid == 1) {
                 z = GXCommon.getSharedSecret(c,
@@ -972,15 +986,16 @@ abstract class GXDLMS {
                 z = GXCommon.getSharedSecret(c, CertificateType.KEY_AGREEMENT);
                 tmp2.setUInt8(0x8);
                 tmp2.set(transactionId.getData(), 0, 8);
+                cache = false;
             }
         }
         tmp2.set(c.getRecipientSystemTitle());
         byte[] kdf = GXASymmetric.generateKDF(alg, z, keyDataLen,
                 GXCommon.hexToBytes(algID), c.getSystemTitle(), tmp2.array(),
-                null, null, c.getSecuritySuite());
+                null, null, c.getSecuritySuite(), cache);
         System.out.println("kdf: " + GXCommon.toHex(kdf));
         AesGcmParameter s = new AesGcmParameter(0xDD, security,
-                c.getSecuritySuite(), c.getInvocationCounter(),
+                c.getSecuritySuite(), ic,
                 // KDF
                 kdf,
                 // Authentication key.
@@ -994,6 +1009,7 @@ abstract class GXDLMS {
                 // Other information.
                 null);
 
+        int count = data.size();
         GXByteBuffer reply = new GXByteBuffer();
         reply.setUInt8(Command.GENERAL_CIPHERING);
         GXCommon.setObjectCount(transactionId.size(), reply);
@@ -1033,15 +1049,25 @@ abstract class GXDLMS {
         }
         // ciphered-content
         s.setType(CountType.DATA | CountType.TAG);
-        byte[] tmp = GXCiphering.encrypt(s, data);
+        int len = count;
+        if (security != Security.ENCRYPTION) {
+            len += 12;
+        }
         // Len
-        GXCommon.setObjectCount(5 + tmp.length, reply);
+        GXCommon.setObjectCount(5 + len, reply);
         // Add SC
         reply.setUInt8(sc);
         // Add IC.
         reply.setUInt32(0);
-        reply.set(tmp);
-        return reply.array();
+        // Header is copied in front of the data and data is ciphered in
+        // place.
+        int offset = reply.size();
+        if (data.capacity() < offset + len) {
+            data.capacity(offset + len);
+        }
+        data.move(0, offset, count);
+        System.arraycopy(reply.getData(), 0, data.getData(), 0, offset);
+        GXCiphering.encrypt(s, data, offset, count);
     }
 
     /**
@@ -1049,11 +1075,11 @@ abstract class GXDLMS {
      * 
      * @param p
      *            LN settings.
-     * @param reply
-     *            Data to encrypt.
+     * @param data
+     *            Data to encrypt. Data is ciphered in place.
      */
-    private static byte[] cipher0(final GXDLMSLNParameters p,
-            final byte[] data) {
+    private static void cipher0(final GXDLMSLNParameters p,
+            final GXByteBuffer data) {
         int cmd;
         byte[] key;
         GXICipher cipher = p.getSettings().getCipher();
@@ -1077,24 +1103,30 @@ abstract class GXDLMS {
             }
         }
         AesGcmParameter s = new AesGcmParameter(cmd, cipher.getSecurity(),
-                cipher.getInvocationCounter(), cipher.getSystemTitle(), key,
+                nextInvocationCounter(cipher), cipher.getSystemTitle(), key,
                 cipher.getAuthenticationKey());
-        byte[] tmp = GXCiphering.encrypt(s, data);
+        int count = data.size();
+        byte[] title = null;
+        int offset = GXCiphering.getHeaderSize(s, count);
         if (p.getCommand() == Command.DATA_NOTIFICATION
                 || p.getCommand() == Command.GENERAL_GLO_CIPHERING
                 || p.getCommand() == Command.GENERAL_DED_CIPHERING) {
-            GXByteBuffer reply = new GXByteBuffer();
-            // Add command.
-            reply.setUInt8(tmp[0]);
-            // Add system title.
-            GXCommon.setObjectCount(
-                    p.getSettings().getCipher().getSystemTitle().length, reply);
-            reply.set(p.getSettings().getCipher().getSystemTitle());
-            // Add data.
-            reply.set(tmp, 1, tmp.length - 1);
-            return reply.array();
+            title = p.getSettings().getCipher().getSystemTitle();
+            offset += GXCommon.getObjectCountSizeInBytes(title.length)
+                    + title.length;
+        }
+        // Reserve headroom so data is moved only once.
+        if (data.capacity() < offset + count + 12) {
+            data.capacity(offset + count + 12);
+        }
+        data.move(0, offset, count);
+        int start = GXCiphering.encrypt(s, data, offset, count);
+        if (title != null) {
+            // Add system title after the command.
+            data.setUInt8(0, data.getUInt8(start));
+            int pos = 1 + GXCommon.setObjectCount(1, title.length, data);
+            System.arraycopy(title, 0, data.getData(), pos, title.length);
         }
-        return tmp;
     }
 
     /**
@@ -1347,7 +1379,7 @@ abstract class GXDLMS {
             GXICipher cipher = p.getSettings().getCipher();
             AesGcmParameter s = new AesGcmParameter(
                     getGloMessage(p.getCommand()), cipher.getSecurity(),
-                    cipher.getInvocationCounter(), cipher.getSystemTitle(),
+                    nextInvocationCounter(cipher), cipher.getSystemTitle(),
                     cipher.getBlockCipherKey(), cipher.getAuthenticationKey());
             byte[] tmp = GXCiphering.encrypt(s, reply.array());
             assert !(p.getSettings().getMaxPduSize() < tmp.length);
@@ -1552,95 +1584,87 @@ abstract class GXDLMS {
     static short getHdlcData(final boolean server,
             final GXDLMSSettings settings, final GXByteBuffer reply,
             final GXReplyData data) {
-        short ch;
-        int pos, packetStartID = reply.position(), frameLen = 0;
+        int pos, packetStartID, frameLen;
         int crc, crcRead;
-        // If whole frame is not received yet.
-        if (reply.size() - reply.position() < 9) {
-            data.setComplete(false);
-            return 0;
-        }
-        data.setComplete(true);
-        // Find start of HDLC frame.
-        for (pos = reply.position(); pos < reply.size(); ++pos) {
-            ch = reply.getUInt8();
-            if (ch == GXCommon.HDLC_FRAME_START_END) {
-                packetStartID = pos;
-                break;
+        short frame;
+        int eopPos;
+        // Garbage, echo and frames that are not for us are skipped in a loop.
+        // Each round starts from the position where the previous one ended
+        // so already handled bytes are not scanned again.
+        while (true) {
+            // If whole frame is not received yet.
+            if (reply.size() - reply.position() < 9) {
+                data.setComplete(false);
+                return 0;
+            }
+            data.setComplete(true);
+            // Find start of HDLC frame.
+            packetStartID = reply.size();
+            frameLen = -1;
+            for (pos = reply.position(); pos < reply.size(); ++pos) {
+                frameLen = GXHdlcFrameScanner.getFrameLength(reply.getData(),
+                        pos, reply.size());
+                if (frameLen != -1) {
+                    packetStartID = pos;
+                    break;
+                }
             }
-        }
-        // Not a HDLC frame.
-        // Sometimes meters can send some strange data between DLMS frames.
-        if (reply.position() == reply.size()) {
-            data.setComplete(false);
-            // Not enough data to parse;
-            return 0;
-        }
-        short frame = reply.getUInt8();
-        if ((frame & 0xF0) != 0xA0) {
-            reply.position(reply.position() - 1);
-            return getHdlcData(server, settings, reply, data);
-        }
-        // Check frame length.
-        if ((frame & 0x7) != 0) {
-            frameLen = ((frame & 0x7) << 8);
-        }
-        ch = reply.getUInt8();
-        // If not enough data.
-        frameLen += ch;
-        if (reply.size() - reply.position() + 1 < frameLen) {
-            data.setComplete(false);
             reply.position(packetStartID);
-            // Not enough data to parse;
-            return 0;
-        }
-        int eopPos = frameLen + packetStartID + 1;
-        ch = reply.getUInt8(eopPos);
-        if (ch != GXCommon.HDLC_FRAME_START_END) {
-            reply.position(reply.position() - 2);
-            return getHdlcData(server, settings, reply, data);
-        }
-
-        // Check addresses.
-        boolean ret;
-        try {
-            ret = checkHdlcAddress(server, settings, reply, eopPos);
-        } catch (Exception ex) {
-            ret = false;
-        }
-        if (!ret) {
-            // If not notify.
-            if (!(reply.position() < reply.size()
-                    && reply.getUInt8(reply.position()) == 0x13)) {
-                // If echo.
-                reply.position(1 + eopPos);
-                return getHdlcData(server, settings, reply, data);
+            // Not a HDLC frame.
+            // Sometimes meters can send some strange data between DLMS frames.
+            // Not enough data to parse if frame is not received completely.
+            if (frameLen < 1) {
+                data.setComplete(false);
+                return 0;
+            }
+            frame = reply.getUInt8(packetStartID + 1);
+            reply.position(packetStartID + 3);
+            eopPos = frameLen + packetStartID + 1;
+
+            // Check addresses.
+            boolean ret;
+            try {
+                ret = checkHdlcAddress(server, settings, reply, eopPos);
+            } catch (Exception ex) {
+                ret = false;
+            }
+            if (!ret) {
+                // If not notify.
+                if (!(reply.position() < reply.size()
+                        && reply.getUInt8(reply.position()) == 0x13)) {
+                    // If echo.
+                    reply.position(1 + eopPos);
+                    continue;
+                }
             }
-        }
 
-        // Is there more data available.
-        if ((frame & 0x8) != 0) {
-            data.setMoreData(RequestTypes.forValue(data.getMoreData().getValue()
-                    | RequestTypes.FRAME.getValue()));
-        } else {
-            data.setMoreData(RequestTypes.forValue(data.getMoreData().getValue()
-                    & ~RequestTypes.FRAME.getValue()));
-        }
-        // Get frame type.
-        frame = reply.getUInt8();
-        if (data.getXml() == null && !settings.checkFrame(frame)) {
-            reply.position(eopPos + 1);
-            return getHdlcData(server, settings, reply, data);
-        }
-        // Check that header CRC is correct.
-        crc = GXFCS16.countFCS16(reply.getData(), packetStartID + 1,
-                reply.position() - packetStartID - 1);
-        crcRead = reply.getUInt16();
-        if (crc != crcRead) {
-            if (reply.size() - reply.position() > 8) {
-                return getHdlcData(server, settings, reply, data);
+            // Is there more data available.
+            if ((frame & 0x8) != 0) {
+                data.setMoreData(
+                        RequestTypes.forValue(data.getMoreData().getValue()
+                                | RequestTypes.FRAME.getValue()));
+            } else {
+                data.setMoreData(
+                        RequestTypes.forValue(data.getMoreData().getValue()
+                                & ~RequestTypes.FRAME.getValue()));
+            }
+            // Get frame type.
+            frame = reply.getUInt8();
+            if (data.getXml() == null && !settings.checkFrame(frame)) {
+                reply.position(eopPos + 1);
+                continue;
+            }
+            // Check that header CRC is correct.
+            crc = GXFCS16.countFCS16(reply.getData(), packetStartID + 1,
+                    reply.position() - packetStartID - 1);
+            crcRead = reply.getUInt16();
+            if (crc != crcRead) {
+                if (reply.size() - reply.position() > 8) {
+                    continue;
+                }
+                throw new GXDLMSException("Wrong CRC.");
             }
-            throw new GXDLMSException("Wrong CRC.");
+            break;
         }
         // Check that packet CRC match only if there is a data part.
         if (reply.position() != packetStartID + frameLen + 1) {
@@ -3176,7 +3200,7 @@ abstract class GXDLMS {
                         || cmd == Command.METHOD_RESPONSE
                         || cmd == Command.DATA_NOTIFICATION)
                 && (data.getMoreData() == RequestTypes.NONE
-                        || data.getPeek())) {
+                        || data.getPeek() || data.getRowListener() != null)) {
             getValueFromData(settings, data);
         }
     }
@@ -3235,6 +3259,7 @@ abstract class GXDLMS {
         if ((data.getMoreData().getValue()
                 & RequestTypes.FRAME.getValue()) == 0) {
             data.getData().position(data.getData().position() - 1);
+            selectKeys(settings, settings.getSourceSystemTitle());
             AesGcmParameter p;
             if (settings.getCipher().getDedicatedKey() != null
                     && (settings.getConnected() & ConnectionState.DLMS) != 0) {
@@ -3259,6 +3284,63 @@ abstract class GXDLMS {
         return cmd2;
     }
 
+    /**
+     * Select keys of the client from the key registry.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param systemTitle
+     *            Client system title.
+     */
+    static void selectKeys(final GXDLMSSettings settings,
+            final byte[] systemTitle) {
+        if (settings.isServer()
+                && settings.getCipher() instanceof GXCiphering) {
+            ((GXCiphering) settings.getCipher()).selectKeys(systemTitle,
+                    settings.getClientAddress());
+        }
+    }
+
+    /**
+     * @param settings
+     *            DLMS settings.
+     * @return Are keys of the client selected from the key registry.
+     */
+    private static boolean hasKeyRegistry(final GXDLMSSettings settings) {
+        return settings.isServer()
+                && settings.getCipher() instanceof GXCiphering
+                && ((GXCiphering) settings.getCipher())
+                        .getKeyRegistry() != null;
+    }
+
+    /**
+     * Get originator system title from general ciphering APDU. Position of
+     * the buffer is not changed.
+     * 
+     * @param bb
+     *            Ciphered APDU.
+     * @param transactionId
+     *            Is APDU starting with transaction ID.
+     * @return System title.
+     */
+    private static byte[] getSystemTitle(final GXByteBuffer bb,
+            final boolean transactionId) {
+        int pos = bb.position();
+        try {
+            // Skip command.
+            bb.getUInt8();
+            if (transactionId) {
+                int len = GXCommon.getObjectCount(bb);
+                bb.position(bb.position() + len);
+            }
+            byte[] title = new byte[GXCommon.getObjectCount(bb)];
+            bb.get(title);
+            return title;
+        } finally {
+            bb.position(pos);
+        }
+    }
+
     private static void handleGloDedResponse(final GXDLMSSettings settings,
             final GXReplyData data, final int index) {
         if (settings.getCipher() == null) {
@@ -3267,11 +3349,15 @@ abstract class GXDLMS {
         // If all frames are read.
         if ((data.getMoreData().getValue()
                 & RequestTypes.FRAME.getValue()) == 0) {
-            data.getData().position(data.getData().position() - 1);
-            GXByteBuffer bb = new GXByteBuffer(data.getData());
-            data.getData().position(index);
-            data.getData().size(index);
-
+            GXByteBuffer bb = data.getData();
+            bb.position(bb.position() - 1);
+            if (hasKeyRegistry(settings)) {
+                int cmd = bb.getUInt8(bb.position());
+                if (cmd == Command.GENERAL_GLO_CIPHERING
+                        || cmd == Command.GENERAL_DED_CIPHERING) {
+                    selectKeys(settings, getSystemTitle(bb, false));
+                }
+            }
             AesGcmParameter p;
             if (settings.getCipher().getDedicatedKey() != null
                     && settings.getConnected() == ConnectionState.DLMS) {
@@ -3283,8 +3369,11 @@ abstract class GXDLMS {
                         settings.getCipher().getBlockCipherKey(),
                         settings.getCipher().getAuthenticationKey());
             }
-            data.getData()
-                    .set(GXCiphering.decrypt(settings.getCipher(), p, bb));
+            // Data is decrypted in place and moved over the ciphered header.
+            int len = GXCiphering.decryptInPlace(settings.getCipher(), p, bb);
+            bb.move(bb.position(), index, len);
+            bb.size(index + len);
+            bb.position(index);
             data.setCommand(Command.NONE);
             getPdu(settings, data);
             data.setCipherIndex(data.getData().size());
@@ -3300,7 +3389,9 @@ abstract class GXDLMS {
         if ((data.getMoreData().getValue()
                 & RequestTypes.FRAME.getValue()) == 0) {
             data.getData().position(data.getData().position() - 1);
-
+            if (hasKeyRegistry(settings)) {
+                selectKeys(settings, getSystemTitle(data.getData(), true));
+            }
             AesGcmParameter p =
                     new AesGcmParameter(settings.getSourceSystemTitle(),
                             settings.getCipher().getBlockCipherKey(),
@@ -3362,13 +3453,16 @@ abstract class GXDLMS {
             final GXReplyData reply) {
         GXByteBuffer data = reply.getData();
         GXDataInfo info = new GXDataInfo();
-        if (reply.getValue() instanceof Object[]) {
+        boolean streaming = reply.getRowListener() != null;
+        if (reply.isArrayValue()
+                || (streaming && reply.getTotalCount() != 0)) {
             info.setType(DataType.ARRAY);
             info.setCount(reply.getTotalCount());
-            info.setIndex(reply.getCount());
+            info.setIndex(reply.getCount() + reply.getStreamedRows());
         }
         int index = data.position();
         data.position(reply.getReadPosition());
+        boolean release = false;
         try {
             Object value = GXCommon.getData(data, info);
             if (value != null) { // If new data.
@@ -3379,15 +3473,25 @@ abstract class GXDLMS {
                     reply.setReadPosition(data.position());
                 } else {
                     if (((Object[]) value).length != 0) {
-                        if (reply.getValue() == null) {
+                        if (streaming) {
+                            // Rows are passed to the listener and handled
+                            // bytes are released.
+                            reply.notifyRows((Object[]) value);
+                            release = true;
+                        } else if (!reply.isArrayValue()) {
                             reply.setValue(value);
                         } else {
-                            // Add items to collection.
-                            List<Object> list = new ArrayList<Object>();
-                            GXCommon.addAll(list, (Object[]) reply.getValue());
-                            GXCommon.addAll(list, (Object[]) value);
-                            reply.setValue(list.toArray());
+                            // Add items to collection. Value array is created
+                            // only once when it's asked.
+                            reply.appendValues((Object[]) value);
                         }
+                    } else if (streaming && reply.getTotalCount() == 0
+                            && !info.isComplete()) {
+                        // Array header is read, but the first row is not
+                        // complete. Next rows are read after the header.
+                        data.position(reply.getReadPosition());
+                        data.getUInt8();
+                        GXCommon.getObjectCount(data);
                     }
                     reply.setReadPosition(data.position());
                     // Element count.
@@ -3399,6 +3503,14 @@ abstract class GXDLMS {
                 reply.setReadPosition(data.position());
             }
         } finally {
+            if (release) {
+                // Remove streamed rows from the received data.
+                int count = reply.getReadPosition();
+                data.position(count);
+                data.trim();
+                reply.setReadPosition(0);
+                index = Math.max(0, index - count);
+            }
             data.position(index);
         }
 
@@ -3466,7 +3578,6 @@ abstract class GXDLMS {
         int offset = data.size();
         int cnt = info.getPacketLength() - reply.position();
         if (cnt != 0) {
-            data.capacity(offset + cnt);
             data.set(reply.getData(), reply.position(), cnt);
             reply.position(reply.position() + cnt);
         }
@@ -72,6 +72,7 @@ import gurux.dlms.objects.GXDLMSObject;
 import gurux.dlms.objects.GXDLMSObjectCollection;
 import gurux.dlms.objects.GXDLMSProfileGeneric;
 import gurux.dlms.objects.IGXDLMSBase;
+import gurux.dlms.secure.GXCryptoCache;
 import gurux.dlms.secure.GXSecure;
 
 /**
@@ -757,7 +758,8 @@ public class GXDLMSClient {
         if (value != null) {
             if (settings.getAuthentication() == Authentication.HIGH_ECDSA) {
                 try {
-                    Signature ver = Signature.getInstance("SHA256withECDSA");
+                    Signature ver =
+                            GXCryptoCache.getSignature("SHA256withECDSA");
                     ver.initVerify(settings.getCipher().getCertificates().get(0)
                             .getPublicKey());
                     GXByteBuffer bb = new GXByteBuffer();
@@ -1459,8 +1461,7 @@ public class GXDLMSClient {
             for (GXWriteItem it : list) {
                 // CI.
                 bb.setUInt16(it.getTarget().getObjectType().getValue());
-                bb.set(GXCommon
-                        .logicalNameToBytes(it.getTarget().getLogicalName()));
+                bb.set(it.getTarget().getLogicalNameBytes());
                 // Attribute ID.
                 bb.setUInt8(it.getIndex());
                 // Attribute selector is not used.
@@ -1918,7 +1919,7 @@ public class GXDLMSClient {
                 sort.getObjectType().getValue());
         // LN
         GXCommon.setData(buff, DataType.OCTET_STRING,
-                GXCommon.logicalNameToBytes(sort.getLogicalName()));
+                sort.getLogicalNameBytes());
         // Add attribute index.
         GXCommon.setData(buff, DataType.INT8, 2);
         // Add version
@@ -1954,8 +1955,8 @@ public class GXDLMSClient {
                 GXCommon.setData(buff, DataType.UINT16,
                         it.getKey().getObjectType().getValue());
                 // LN
-                GXCommon.setData(buff, DataType.OCTET_STRING, GXCommon
-                        .logicalNameToBytes(it.getKey().getLogicalName()));
+                GXCommon.setData(buff, DataType.OCTET_STRING,
+                        it.getKey().getLogicalNameBytes());
                 // Add attribute index.
                 GXCommon.setData(buff, DataType.INT8,
                         it.getValue().getAttributeIndex());
@@ -231,8 +231,7 @@ final class GXDLMSLNCommandHandler {
             parameters = GXCommon.getData(data, info);
         }
         ObjectType ot = ObjectType.forValue(ci);
-        GXDLMSObject obj =
-                settings.getObjects().findByLN(ot, GXCommon.toLogicalName(ln));
+        GXDLMSObject obj = settings.getObjects().findByLN(ot, ln);
         if (obj == null) {
             obj = server.notifyFindObject(ot, 0, GXCommon.toLogicalName(ln));
         }
@@ -444,8 +443,7 @@ final class GXDLMSLNCommandHandler {
                 xml.appendEndTag(
                         TranslatorTags.ATTRIBUTE_DESCRIPTOR_WITH_SELECTION);
             } else {
-                GXDLMSObject obj = settings.getObjects().findByLN(ci,
-                        GXCommon.toLogicalName(ln));
+                GXDLMSObject obj = settings.getObjects().findByLN(ci, ln);
                 if (obj == null) {
                     obj = server.notifyFindObject(ci, 0,
                             GXCommon.toLogicalName(ln));
@@ -574,8 +572,7 @@ final class GXDLMSLNCommandHandler {
             value = GXCommon.getData(data, reply);
         }
 
-        GXDLMSObject obj =
-                settings.getObjects().findByLN(ot, GXCommon.toLogicalName(ln));
+        GXDLMSObject obj = settings.getObjects().findByLN(ot, ln);
         if (obj == null) {
             obj = server.notifyFindObject(ot, 0, GXCommon.toLogicalName(ln));
         }
@@ -735,8 +732,7 @@ final class GXDLMSLNCommandHandler {
                     xml.appendEndTag(
                             TranslatorTags.ATTRIBUTE_DESCRIPTOR_WITH_SELECTION);
                 } else {
-                    GXDLMSObject obj = settings.getObjects().findByLN(ci,
-                            GXCommon.toLogicalName(ln));
+                    GXDLMSObject obj = settings.getObjects().findByLN(ci, ln);
                     if (obj == null) {
                         obj = server.notifyFindObject(ci, 0,
                                 GXCommon.toLogicalName(ln));
@@ -813,6 +809,7 @@ final class GXDLMSLNCommandHandler {
             throws Exception {
         ErrorCode error = ErrorCode.OK;
         GXByteBuffer bb = new GXByteBuffer();
+        boolean associated = false;
         // Get type.
         short type = data.getUInt8();
         // Get invoke ID and priority.
@@ -856,8 +853,7 @@ final class GXDLMSLNCommandHandler {
             GXDataInfo info = new GXDataInfo();
             parameters = GXCommon.getData(data, info);
         }
-        GXDLMSObject obj =
-                settings.getObjects().findByLN(ot, GXCommon.toLogicalName(ln));
+        GXDLMSObject obj = settings.getObjects().findByLN(ot, ln);
         if (!settings.acceptConnection()
                 && (ci != ObjectType.ASSOCIATION_LOGICAL_NAME.getValue()
                         || id != 1)) {
@@ -879,6 +875,7 @@ final class GXDLMSLNCommandHandler {
             if (server.notifyGetMethodAccess(e) == MethodAccessMode.NO_ACCESS) {
                 error = ErrorCode.READ_WRITE_DENIED;
             } else {
+                server.getSession().setHlsVerified(false);
                 server.notifyAction(new ValueEventArgs[] { e });
                 byte[] actionReply;
                 if (e.getHandled()) {
@@ -887,6 +884,10 @@ final class GXDLMSLNCommandHandler {
                     actionReply = obj.invoke(settings, e);
                 }
                 server.notifyPostAction(new ValueEventArgs[] { e });
+                // Reply to HLS authentication is accepted only if the
+                // association object verified it in this request.
+                associated = server.getSession().isHlsVerified()
+                        && actionReply != null && e.getError() == ErrorCode.OK;
                 // Set default action reply if not given.
                 if (actionReply != null && e.getError() == ErrorCode.OK) {
                     // Add return parameters
@@ -914,12 +915,13 @@ final class GXDLMSLNCommandHandler {
         GXDLMS.getLNPdu(p, replyData);
         // If High level authentication fails.
         if (obj instanceof GXDLMSAssociationLogicalName && id == 1) {
-            if (((GXDLMSAssociationLogicalName) obj)
-                    .getAssociationStatus() == AssociationStatus.ASSOCIATED) {
+            if (associated) {
+                server.updateAssociation(AssociationStatus.ASSOCIATED);
                 server.notifyConnected(connectionInfo);
                 settings.setConnected(
                         settings.getConnected() | ConnectionState.DLMS);
             } else {
+                server.updateAssociation(AssociationStatus.NON_ASSOCIATED);
                 server.notifyInvalidConnection(connectionInfo);
                 settings.setConnected(
                         settings.getConnected() & ~ConnectionState.DLMS);
@@ -1090,8 +1092,8 @@ final class GXDLMSLNCommandHandler {
             reply.getXml().appendEndTag(TranslatorTags.ATTRIBUTE_VALUE);
             reply.getXml().appendEndTag(Command.EVENT_NOTIFICATION);
         } else {
-            GXDLMSObject obj = settings.getObjects().findByLN(
-                    ObjectType.forValue(ci), GXCommon.toLogicalName(ln));
+            GXDLMSObject obj =
+                    settings.getObjects().findByLN(ObjectType.forValue(ci), ln);
             if (obj != null) {
                 ValueEventArgs v = new ValueEventArgs(obj, index, 0, null);
                 v.setValue(value);
@@ -248,7 +248,7 @@ public class GXDLMSNotify {
         if (dt == DataType.NONE && value != null) {
             dt = GXDLMSConverter.getDLMSDataType(value);
         }
-        GXCommon.setData(buff, dt, value);
+        new GXDataWriter(buff).write(dt, value);
     }
 
     /**
@@ -333,8 +333,7 @@ public class GXDLMSNotify {
             throw new IllegalArgumentException("objects");
         }
         GXByteBuffer buff = new GXByteBuffer();
-        buff.setUInt8((byte) DataType.STRUCTURE.getValue());
-        GXCommon.setObjectCount(objects.size(), buff);
+        new GXDataWriter(buff).beginStructure(objects.size());
         for (Entry<GXDLMSObject, Integer> it : objects) {
             addData(it.getKey(), it.getValue(), buff);
         }
@@ -356,8 +355,7 @@ public class GXDLMSNotify {
             throw new IllegalArgumentException("push");
         }
         GXByteBuffer buff = new GXByteBuffer();
-        buff.setUInt8((byte) DataType.STRUCTURE.getValue());
-        GXCommon.setObjectCount(push.getPushObjectList().size(), buff);
+        new GXDataWriter(buff).beginStructure(push.getPushObjectList().size());
         for (Entry<GXDLMSObject, GXDLMSCaptureObject> it : push
                 .getPushObjectList()) {
             addData(it.getKey(), it.getValue().getAttributeIndex(), buff);
@@ -389,7 +387,7 @@ public class GXDLMSNotify {
                 if (classID > 0) {
                     GXDLMSObject comp;
                     comp = getObjects().findByLN(ObjectType.forValue(classID),
-                            GXCommon.toLogicalName((byte[]) tmp[1]));
+                            (byte[]) tmp[1]);
                     if (comp == null) {
                         comp = GXDLMSClient.createDLMSObject(classID, 0, 0,
                                 tmp[1], null);
@@ -494,8 +492,7 @@ public class GXDLMSNotify {
         if (getUseLogicalNameReferencing()) {
             for (Entry<GXDLMSObject, Integer> it : list) {
                 buff.setUInt16(it.getKey().getObjectType().getValue());
-                buff.set(GXCommon
-                        .logicalNameToBytes(it.getKey().getLogicalName()));
+                buff.set(it.getKey().getLogicalNameBytes());
                 buff.setUInt8(it.getValue());
                 addData(it.getKey(), it.getValue(), buff);
             }
@@ -49,7 +49,6 @@ import gurux.dlms.enums.ObjectType;
 import gurux.dlms.enums.Priority;
 import gurux.dlms.enums.ServiceClass;
 import gurux.dlms.enums.SourceDiagnostic;
-import gurux.dlms.internal.GXCommon;
 import gurux.dlms.objects.GXDLMSAssociationLogicalName;
 import gurux.dlms.objects.GXDLMSAssociationShortName;
 import gurux.dlms.objects.GXDLMSCaptureObject;
@@ -441,6 +440,66 @@ public abstract class GXDLMSServer2 {
         return sr.getReply();
     }
 
+    /**
+     * Handles client request of the session. Requests of different sessions
+     * can be handled at the same time from different threads. Object list
+     * and callbacks are shared between sessions and they must be thread
+     * safe.
+     * 
+     * @param buff
+     *            Received data from the client.
+     * @param connectionInfo
+     *            Connection info.
+     * @param session
+     *            Session of the connection.
+     * @return Response to the request. Response is null if request packet is
+     *         not complete.
+     */
+    public final byte[] handleRequest(final byte[] buff,
+            final GXDLMSConnectionEventArgs connectionInfo,
+            final GXDLMSServerSession session) {
+        GXServerReply sr = new GXServerReply(buff);
+        sr.setConnectionInfo(connectionInfo);
+        sr.setSession(session);
+        base.handleRequest(sr);
+        return sr.getReply();
+    }
+
+    /**
+     * Create new session. Session holds framing, association, block
+     * transfer and ciphering state of one connection. Server settings are
+     * copied to the session, so they must be set before sessions are
+     * created.
+     * 
+     * @return New session.
+     */
+    public final GXDLMSServerSession createSession() {
+        return base.createSession();
+    }
+
+    /**
+     * Get session of the connection. Session is created if it doesn't
+     * exist.
+     * 
+     * @param key
+     *            Connection. Example socket or address of the client.
+     * @return Session of the connection.
+     */
+    public final GXDLMSServerSession getSession(final Object key) {
+        return base.getSession(key);
+    }
+
+    /**
+     * Remove session when connection is closed.
+     * 
+     * @param key
+     *            Connection.
+     * @return Removed session or null if session is not found.
+     */
+    public final GXDLMSServerSession removeSession(final Object key) {
+        return base.removeSession(key);
+    }
+
     /**
      * Handles client request.
      * 
@@ -658,7 +717,7 @@ public abstract class GXDLMSServer2 {
         if (dt == DataType.NONE && value != null) {
             dt = GXDLMSConverter.getDLMSDataType(value);
         }
-        GXCommon.setData(buff, dt, value);
+        new GXDataWriter(buff).write(dt, value);
     }
 
     /**
@@ -711,8 +770,7 @@ public abstract class GXDLMSServer2 {
             throw new IllegalArgumentException("push");
         }
         GXByteBuffer buff = new GXByteBuffer();
-        buff.setUInt8((byte) DataType.STRUCTURE.getValue());
-        GXCommon.setObjectCount(push.getPushObjectList().size(), buff);
+        new GXDataWriter(buff).beginStructure(push.getPushObjectList().size());
         for (Entry<GXDLMSObject, GXDLMSCaptureObject> it : push
                 .getPushObjectList()) {
             addData(it.getKey(), it.getValue().getAttributeIndex(), buff);
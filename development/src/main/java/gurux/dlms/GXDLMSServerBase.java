@@ -1,6 +1,8 @@
 package gurux.dlms;
 
 import java.util.Calendar;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -29,6 +31,7 @@ import gurux.dlms.objects.GXDLMSObjectCollection;
 import gurux.dlms.objects.IGXDLMSBase;
 import gurux.dlms.objects.enums.ApplicationContextName;
 import gurux.dlms.objects.enums.AssociationStatus;
+import gurux.dlms.secure.GXCiphering;
 import gurux.dlms.secure.GXSecure;
 
 public class GXDLMSServerBase {
@@ -36,42 +39,35 @@ public class GXDLMSServerBase {
             Logger.getLogger(GXDLMSServer.class.getName());
 
     private final Object owner;
-    private GXReplyData info = new GXReplyData();
-    /*
-     * Received data.
-     */
-    private GXByteBuffer receivedData = new GXByteBuffer();
 
     /*
-     * Reply data.
+     * Session that is used when session is not given.
      */
-    private GXByteBuffer replyData = new GXByteBuffer();
+    private final GXDLMSServerSession defaultSession =
+            new GXDLMSServerSession(new GXDLMSSettings(true));
 
     /*
-     * Long get or read transaction information.
+     * Session that is handled by the current thread.
      */
-    private GXDLMSLongTransaction transaction;
+    private final ThreadLocal<GXDLMSServerSession> currentSession =
+            new ThreadLocal<GXDLMSServerSession>();
 
     /*
-     * Server settings.
+     * Sessions by connection.
      */
-    private final GXDLMSSettings settings = new GXDLMSSettings(true);
+    private final ConcurrentMap<Object, GXDLMSServerSession> sessions =
+            new ConcurrentHashMap<Object, GXDLMSServerSession>();
 
     /*
      * Is server initialized.
      */
     private boolean initialized = false;
 
-    /**
-     * When data was received last time.
-     */
-    private long dataReceived = 0;
-
     /*
      * @param value Cipher interface that is used to cipher PDU.
      */
     protected final void setCipher(final GXICipher value) {
-        settings.setCipher(value);
+        defaultSession.getSettings().setCipher(value);
     }
 
     /*
@@ -79,7 +75,7 @@ public class GXDLMSServerBase {
      * @param value Transaction.
      */
     final void setTransaction(final GXDLMSLongTransaction value) {
-        transaction = value;
+        getSession().setTransaction(value);
     }
 
     /*
@@ -87,28 +83,28 @@ public class GXDLMSServerBase {
      * @return Transaction.
      */
     final GXDLMSLongTransaction getTransaction() {
-        return transaction;
+        return getSession().getTransaction();
     }
 
     /*
      * @return Client to Server challenge.
      */
     public final byte[] getCtoSChallenge() {
-        return settings.getCtoSChallenge();
+        return getSettings().getCtoSChallenge();
     }
 
     /*
      * @return Server to Client challenge.
      */
     public final byte[] getStoCChallenge() {
-        return settings.getStoCChallenge();
+        return getSettings().getStoCChallenge();
     }
 
     /*
      * @return Interface type.
      */
     public final InterfaceType getInterfaceType() {
-        return settings.getInterfaceType();
+        return getSettings().getInterfaceType();
     }
 
     /*
@@ -117,8 +113,8 @@ public class GXDLMSServerBase {
      * @param value Server to Client challenge.
      */
     public final void setStoCChallenge(final byte[] value) {
-        settings.setUseCustomChallenge(value != null);
-        settings.setStoCChallenge(value);
+        getSettings().setUseCustomChallenge(value != null);
+        getSettings().setStoCChallenge(value);
     }
 
     /*
@@ -127,49 +123,49 @@ public class GXDLMSServerBase {
      * @param value Zero based starting index.
      */
     public final void setStartingPacketIndex(final int value) {
-        settings.setBlockIndex(value);
+        getSettings().setBlockIndex(value);
     }
 
     /*
      * @return Invoke ID.
      */
     public final int getInvokeID() {
-        return settings.getInvokeID();
+        return getSettings().getInvokeID();
     }
 
     /*
      * @param value Invoke ID.
      */
     public final void setInvokeID(final int value) {
-        settings.setInvokeID(value);
+        getSettings().setInvokeID(value);
     }
 
     /*
      * @return Used service class.
      */
     public final ServiceClass getServiceClass() {
-        return settings.getServiceClass();
+        return getSettings().getServiceClass();
     }
 
     /*
      * @param value Used service class.
      */
     public final void setServiceClass(final ServiceClass value) {
-        settings.setServiceClass(value);
+        getSettings().setServiceClass(value);
     }
 
     /*
      * @return Used priority.
      */
     public final Priority getPriority() {
-        return settings.getPriority();
+        return getSettings().getPriority();
     }
 
     /*
      * @param value Used priority.
      */
     public final void setPriority(final Priority value) {
-        settings.setPriority(value);
+        getSettings().setPriority(value);
     }
 
     /*
@@ -181,6 +177,7 @@ public class GXDLMSServerBase {
     public GXDLMSServerBase(final Object forOwner,
             final boolean logicalNameReferencing, final InterfaceType type) {
         owner = forOwner;
+        GXDLMSSettings settings = defaultSession.getSettings();
         settings.setUseLogicalNameReferencing(logicalNameReferencing);
         settings.setInterfaceType(type);
         reset();
@@ -190,14 +187,14 @@ public class GXDLMSServerBase {
      * @return List of objects that meter supports.
      */
     public final GXDLMSObjectCollection getItems() {
-        return settings.getObjects();
+        return defaultSession.getSettings().getObjects();
     }
 
     /*
      * @return Information from the connection size that server can handle.
      */
     public final GXDLMSLimits getLimits() {
-        return settings.getLimits();
+        return getSettings().getLimits();
     }
 
     /*
@@ -207,14 +204,14 @@ public class GXDLMSServerBase {
      * @return Maximum size of received PDU.
      */
     public final int getMaxReceivePDUSize() {
-        return settings.getMaxServerPDUSize();
+        return getSettings().getMaxServerPDUSize();
     }
 
     /*
      * @param value Maximum size of received PDU.
      */
     public final void setMaxReceivePDUSize(final int value) {
-        settings.setMaxServerPDUSize(value);
+        getSettings().setMaxServerPDUSize(value);
     }
 
     /*
@@ -227,21 +224,76 @@ public class GXDLMSServerBase {
      * @return Is logical name referencing used.
      */
     public final boolean getUseLogicalNameReferencing() {
-        return settings.getUseLogicalNameReferencing();
+        return getSettings().getUseLogicalNameReferencing();
     }
 
     /*
      * @param value Is Logical Name referencing used.
      */
     public final void setUseLogicalNameReferencing(final boolean value) {
-        settings.setUseLogicalNameReferencing(value);
+        getSettings().setUseLogicalNameReferencing(value);
     }
 
     /*
      * @return Get settings.
      */
     public final GXDLMSSettings getSettings() {
-        return settings;
+        return getSession().getSettings();
+    }
+
+    /**
+     * @return Session that is handled by the current thread. Default session
+     *         is returned if request is not handled.
+     */
+    public final GXDLMSServerSession getSession() {
+        GXDLMSServerSession session = currentSession.get();
+        if (session == null) {
+            return defaultSession;
+        }
+        return session;
+    }
+
+    /*
+     * Create new session. Settings of the server are copied to the session.
+     * Change server settings before sessions are created.
+     * @return New session.
+     */
+    public final GXDLMSServerSession createSession() {
+        GXDLMSSettings source = defaultSession.getSettings();
+        GXDLMSSettings settings = new GXDLMSSettings(source);
+        if (source.getCipher() instanceof GXCiphering) {
+            settings.setCipher(
+                    new GXCiphering((GXCiphering) source.getCipher()));
+        } else {
+            settings.setCipher(source.getCipher());
+        }
+        return new GXDLMSServerSession(settings);
+    }
+
+    /*
+     * Get session of the connection. Session is created if it doesn't exist.
+     * @param key Connection. Example socket or address of the client.
+     * @return Session of the connection.
+     */
+    public final GXDLMSServerSession getSession(final Object key) {
+        GXDLMSServerSession session = sessions.get(key);
+        if (session == null) {
+            session = createSession();
+            GXDLMSServerSession tmp = sessions.putIfAbsent(key, session);
+            if (tmp != null) {
+                session = tmp;
+            }
+        }
+        return session;
+    }
+
+    /*
+     * Remove session of the connection when connection is closed.
+     * @param key Connection.
+     * @return Removed session or null if session is not found.
+     */
+    public final GXDLMSServerSession removeSession(final Object key) {
+        return sessions.remove(key);
     }
 
     /**
@@ -251,7 +303,7 @@ public class GXDLMSServerBase {
      *             Occurred exception.
      */
     public void close() throws Exception {
-        for (GXDLMSObject it : settings.getObjects()) {
+        for (GXDLMSObject it : getItems()) {
             it.stop(this);
         }
     }
@@ -260,6 +312,7 @@ public class GXDLMSServerBase {
      * Initialize server. This must call after server objects are set.
      */
     public final void initialize() {
+        GXDLMSSettings settings = getSettings();
         GXDLMSObject associationObject = null;
         initialized = true;
         for (int pos = 0; pos != settings.getObjects().size(); ++pos) {
@@ -329,7 +382,7 @@ public class GXDLMSServerBase {
         int sn = 0xA0;
         int[] offset = new int[1];
         int[] count = new int[1];
-        for (GXDLMSObject it : settings.getObjects()) {
+        for (GXDLMSObject it : getItems()) {
             if (!(it instanceof GXDLMSAssociationShortName
                     || it instanceof GXDLMSAssociationLogicalName)) {
                 // Generate Short Name if not given.
@@ -357,6 +410,8 @@ public class GXDLMSServerBase {
      */
     private void handleAarqRequest(final GXByteBuffer data,
             final GXDLMSConnectionEventArgs connectionInfo) throws Exception {
+        GXDLMSSettings settings = getSettings();
+        GXByteBuffer replyData = getSession().getReplyData();
         AssociationResult result = AssociationResult.ACCEPTED;
         GXByteBuffer error = null;
         settings.setCtoSChallenge(null);
@@ -367,6 +422,7 @@ public class GXDLMSServerBase {
         if (settings.getInterfaceType() == InterfaceType.WRAPPER) {
             reset(true);
         }
+        getSession().setAssociationStatus(AssociationStatus.NON_ASSOCIATED);
         SourceDiagnostic diagnostic = SourceDiagnostic.NO_REASON_GIVEN;
         try {
             diagnostic =
@@ -420,51 +476,9 @@ public class GXDLMSServerBase {
                         .getValue() > Authentication.LOW.getValue()) {
                     result = AssociationResult.ACCEPTED;
                     diagnostic = SourceDiagnostic.AUTHENTICATION_REQUIRED;
-                    if (getUseLogicalNameReferencing()) {
-                        GXDLMSAssociationLogicalName ln =
-                                (GXDLMSAssociationLogicalName) getItems()
-                                        .findByLN(
-                                                ObjectType.ASSOCIATION_LOGICAL_NAME,
-                                                "0.0.40.0.0.255");
-                        if (ln != null) {
-                            if (settings.getCipher() == null
-                                    || settings.getCipher()
-                                            .getSecurity() == Security.NONE) {
-                                ln.getApplicationContextName().setContextId(
-                                        ApplicationContextName.LOGICAL_NAME);
-                            } else {
-                                ln.getApplicationContextName().setContextId(
-                                        ApplicationContextName.LOGICAL_NAME_WITH_CIPHERING);
-                            }
-                            ln.getAuthenticationMechanismName().setMechanismId(
-                                    settings.getAuthentication());
-                            ln.setAssociationStatus(
-                                    AssociationStatus.ASSOCIATION_PENDING);
-                        }
-                    }
+                    updateAssociation(AssociationStatus.ASSOCIATION_PENDING);
                 } else {
-                    if (getUseLogicalNameReferencing()) {
-                        GXDLMSAssociationLogicalName ln =
-                                (GXDLMSAssociationLogicalName) getItems()
-                                        .findByLN(
-                                                ObjectType.ASSOCIATION_LOGICAL_NAME,
-                                                "0.0.40.0.0.255");
-                        if (ln != null) {
-                            if (settings.getCipher() == null
-                                    || settings.getCipher()
-                                            .getSecurity() == Security.NONE) {
-                                ln.getApplicationContextName().setContextId(
-                                        ApplicationContextName.LOGICAL_NAME);
-                            } else {
-                                ln.getApplicationContextName().setContextId(
-                                        ApplicationContextName.LOGICAL_NAME_WITH_CIPHERING);
-                            }
-                            ln.getAuthenticationMechanismName().setMechanismId(
-                                    settings.getAuthentication());
-                            ln.setAssociationStatus(
-                                    AssociationStatus.ASSOCIATED);
-                        }
-                    }
+                    updateAssociation(AssociationStatus.ASSOCIATED);
                     settings.setConnected(
                             settings.getConnected() | ConnectionState.DLMS);
                 }
@@ -496,6 +510,38 @@ public class GXDLMSServerBase {
                 settings.getCipher(), error, null);
     }
 
+    /*
+     * Update association status and negotiated context of the current
+     * session. Association object is shared between the sessions and it's
+     * updated only when default session is used.
+     * @param status Association status.
+     */
+    final void updateAssociation(final AssociationStatus status) {
+        GXDLMSServerSession session = getSession();
+        GXDLMSSettings settings = session.getSettings();
+        ApplicationContextName name;
+        if (settings.getCipher() == null
+                || settings.getCipher().getSecurity() == Security.NONE) {
+            name = ApplicationContextName.LOGICAL_NAME;
+        } else {
+            name = ApplicationContextName.LOGICAL_NAME_WITH_CIPHERING;
+        }
+        session.setApplicationContextName(name);
+        session.setAssociationStatus(status);
+        if (session == defaultSession && getUseLogicalNameReferencing()) {
+            GXDLMSAssociationLogicalName ln =
+                    (GXDLMSAssociationLogicalName) getItems().findByLN(
+                            ObjectType.ASSOCIATION_LOGICAL_NAME,
+                            "0.0.40.0.0.255");
+            if (ln != null) {
+                ln.getApplicationContextName().setContextId(name);
+                ln.getAuthenticationMechanismName()
+                        .setMechanismId(settings.getAuthentication());
+                ln.setAssociationStatus(status);
+            }
+        }
+    }
+
     /**
      * Handles release request.
      * 
@@ -506,6 +552,8 @@ public class GXDLMSServerBase {
      */
     private void handleReleaseRequest(final GXByteBuffer data,
             final GXDLMSConnectionEventArgs connectionInfo) {
+        GXDLMSSettings settings = getSettings();
+        GXByteBuffer replyData = getSession().getReplyData();
         if (getSettings().getInterfaceType() == InterfaceType.HDLC) {
             replyData.set(0, GXCommon.LLC_REPLY_BYTES);
         }
@@ -529,6 +577,8 @@ public class GXDLMSServerBase {
      * @return Returns returned UA packet.
      */
     private void handleSnrmRequest(final GXByteBuffer data) {
+        GXDLMSSettings settings = getSettings();
+        GXByteBuffer replyData = getSession().getReplyData();
         GXDLMS.parseSnrmUaResponse(data, settings.getLimits());
         reset(true);
         replyData.setUInt8(0x81); // FromatID
@@ -582,6 +632,7 @@ public class GXDLMSServerBase {
      * @return Disconnect request.
      */
     private void generateDisconnectRequest() {
+        GXByteBuffer replyData = getSession().getReplyData();
         replyData.setUInt8(0x81); // FromatID
         replyData.setUInt8(0x80); // GroupID
         replyData.setUInt8(0); // Length
@@ -611,21 +662,24 @@ public class GXDLMSServerBase {
      * @param connect Is new connection.
      */
     final void reset(final boolean connect) {
+        GXDLMSServerSession session = getSession();
+        GXDLMSSettings settings = session.getSettings();
         if (!connect) {
-            info.clear();
+            session.getInfo().clear();
             settings.setServerAddress(0);
             settings.setClientAddress(0);
         }
         settings.setProtocolVersion(null);
         settings.setCtoSChallenge(null);
         settings.setStoCChallenge(null);
-        receivedData.clear();
-        transaction = null;
+        session.getReceivedData().clear();
+        session.setTransaction(null);
         settings.setCount(0);
         settings.setIndex(0);
         settings.setConnected(ConnectionState.NONE);
-        replyData.clear();
+        session.getReplyData().clear();
         settings.setAuthentication(Authentication.NONE);
+        session.setAssociationStatus(AssociationStatus.NON_ASSOCIATED);
         if (settings.getCipher() != null) {
             settings.getCipher().reset();
         }
@@ -645,22 +699,59 @@ public class GXDLMSServerBase {
      *            Server reply.
      */
     public final void handleRequest(GXServerReply sr) {
-        if (!sr.isStreaming()
-                && (sr.getData() == null || sr.getData().length == 0)) {
+        if (!sr.isStreaming() && !sr.hasData()) {
             return;
         }
         if (!initialized) {
             throw new RuntimeException("Server not Initialized.");
         }
+        GXDLMSServerSession session = sr.getSession();
+        if (session == null) {
+            session = defaultSession;
+        }
+        GXDLMSServerSession previous = currentSession.get();
+        session.getLock().lock();
+        try {
+            currentSession.set(session);
+            handleRequest(sr, session);
+        } finally {
+            if (previous == null) {
+                currentSession.remove();
+            } else {
+                currentSession.set(previous);
+            }
+            session.getLock().unlock();
+        }
+    }
+
+    /**
+     * Handles client request of the session.
+     * 
+     * @param sr
+     *            Server reply.
+     * @param session
+     *            Server session.
+     */
+    private void handleRequest(final GXServerReply sr,
+            final GXDLMSServerSession session) {
+        GXDLMSSettings settings = session.getSettings();
+        GXReplyData info = session.getInfo();
+        GXByteBuffer receivedData = session.getReceivedData();
+        GXByteBuffer replyData = session.getReplyData();
         try {
             if (!sr.isStreaming()) {
-                receivedData.set(sr.getData());
+                if (sr.getBuffer() != null) {
+                    receivedData.set(sr.getBuffer());
+                } else {
+                    receivedData.set(sr.getData());
+                }
                 boolean first = settings.getServerAddress() == 0
                         && settings.getClientAddress() == 0;
                 try {
                     GXDLMS.getData(settings, receivedData, info);
                 } catch (Exception ex) {
-                    dataReceived = Calendar.getInstance().getTimeInMillis();
+                    session.setDataReceived(
+                            Calendar.getInstance().getTimeInMillis());
                     receivedData.size(0);
                     sr.setReply(GXDLMS.getHdlcFrame(settings,
                             Command.UNACCEPTABLE_FRAME, replyData));
@@ -705,15 +796,16 @@ public class GXDLMSServerBase {
                 if ((info.getMoreData().getValue()
                         & RequestTypes.FRAME.getValue()) == RequestTypes.FRAME
                                 .getValue()) {
-                    dataReceived = Calendar.getInstance().getTimeInMillis();
+                    session.setDataReceived(
+                            Calendar.getInstance().getTimeInMillis());
                     sr.setReply(GXDLMS.getHdlcFrame(settings,
                             settings.getReceiverReady(), replyData));
                     return;
                 }
                 // Update command if transaction and next frame is asked.
                 if (info.getCommand() == Command.NONE) {
-                    if (transaction != null) {
-                        info.setCommand(transaction.getCommand());
+                    if (session.getTransaction() != null) {
+                        info.setCommand(session.getTransaction().getCommand());
                     } else if (replyData.size() == 0) {
                         sr.setReply(GXDLMS.getHdlcFrame(settings,
                                 settings.getReceiverReady(), replyData));
@@ -726,12 +818,12 @@ public class GXDLMSServerBase {
                     if (info.getCommand() != Command.SNRM) {
                         int elapsed =
                                 (int) (Calendar.getInstance().getTimeInMillis()
-                                        - dataReceived) / 1000;
+                                        - session.getDataReceived()) / 1000;
                         // If inactivity time out is elapsed.
                         if (elapsed >= settings.getHdlc()
                                 .getInactivityTimeout()) {
                             reset();
-                            dataReceived = 0;
+                            session.setDataReceived(0);
                             return;
                         }
                     }
@@ -740,12 +832,12 @@ public class GXDLMSServerBase {
                     if (info.getCommand() != Command.AARQ) {
                         int elapsed =
                                 (int) (Calendar.getInstance().getTimeInMillis()
-                                        - dataReceived) / 1000;
+                                        - session.getDataReceived()) / 1000;
                         // If inactivity time out is elapsed.
                         if (elapsed >= settings.getWrapper()
                                 .getInactivityTimeout()) {
                             reset();
-                            dataReceived = 0;
+                            session.setDataReceived(0);
                             return;
                         }
                     }
@@ -761,14 +853,14 @@ public class GXDLMSServerBase {
                 sr.setReply(GXDLMS.getHdlcFrame(settings,
                         Command.UNACCEPTABLE_FRAME, replyData));
             }
-            dataReceived = Calendar.getInstance().getTimeInMillis();
+            session.setDataReceived(Calendar.getInstance().getTimeInMillis());
             info.clear();
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, e.toString());
             if (e instanceof GXDLMSConfirmedServiceError) {
                 sr.setReply(reportConfirmedServiceError(
                         (GXDLMSConfirmedServiceError) e));
-                transaction = null;
+                session.setTransaction(null);
                 settings.setCount(0);
                 settings.setIndex(0);
                 info.clear();
@@ -778,7 +870,7 @@ public class GXDLMSServerBase {
             if (info.getCommand() != Command.NONE) {
                 sr.setReply(reportError(info.getCommand(),
                         ErrorCode.HARDWARE_FAULT));
-                transaction = null;
+                session.setTransaction(null);
                 settings.setCount(0);
                 settings.setIndex(0);
                 info.clear();
@@ -808,6 +900,8 @@ public class GXDLMSServerBase {
     // GXDLMSConfirmedServiceError
     private byte[]
             reportConfirmedServiceError(final GXDLMSConfirmedServiceError e) {
+        GXDLMSSettings settings = getSettings();
+        GXByteBuffer replyData = getSession().getReplyData();
         replyData.clear();
         if (getSettings().getInterfaceType() == InterfaceType.HDLC) {
             GXDLMS.addLLCBytes(getSettings(), replyData);
@@ -824,6 +918,8 @@ public class GXDLMSServerBase {
     }
 
     private byte[] reportError(final int command, final ErrorCode error) {
+        GXDLMSSettings settings = getSettings();
+        GXByteBuffer replyData = getSession().getReplyData();
         short cmd;
         switch (command) {
         case Command.READ_REQUEST:
@@ -873,6 +969,8 @@ public class GXDLMSServerBase {
      */
     private byte[] handleCommand(final int cmd, final GXByteBuffer data,
             final GXServerReply sr) throws Exception {
+        GXDLMSSettings settings = getSettings();
+        GXByteBuffer replyData = getSession().getReplyData();
         byte frame = 0;
         if (replyData.size() != 0) {
             // Get next frame.
@@ -968,6 +1066,10 @@ public class GXDLMSServerBase {
 
     private boolean handleGeneralBlockTransfer(final GXByteBuffer data,
             final GXServerReply sr) throws Exception {
+        GXDLMSServerSession session = getSession();
+        GXDLMSSettings settings = session.getSettings();
+        GXByteBuffer replyData = session.getReplyData();
+        GXDLMSLongTransaction transaction = session.getTransaction();
         if (transaction != null) {
             if (transaction.getCommand() == Command.GET_REQUEST) {
                 // Get request for next data block
@@ -981,7 +1083,7 @@ public class GXDLMSServerBase {
                 if (sr.getCount() != 0) {
                     sr.setCount(sr.getCount() - 1);
                 }
-                if (this.transaction == null) {
+                if (session.getTransaction() == null) {
                     sr.setCount(0);
                 }
             } else {
@@ -1008,7 +1110,7 @@ public class GXDLMSServerBase {
                     if ((bc & 0x80) != 0) {
                         handleCommand(transaction.getCommand(),
                                 transaction.getData(), sr);
-                        transaction = null;
+                        session.setTransaction(null);
                         igonoreAck = false;
                         windowSize = 1;
                     }
@@ -1036,8 +1138,8 @@ public class GXDLMSServerBase {
                         ConfirmedServiceError.INITIATE_ERROR,
                         ServiceError.SERVICE, Service.UNSUPPORTED.getValue()));
             } else {
-                transaction =
-                        new GXDLMSLongTransaction(null, data.getUInt8(), data);
+                session.setTransaction(
+                        new GXDLMSLongTransaction(null, data.getUInt8(), data));
                 replyData.setUInt8(Command.GENERAL_BLOCK_TRANSFER);
                 replyData.setUInt8((0x80 | settings.getWindowSize()));
                 replyData.setUInt16(blockNumber);
@@ -1128,7 +1230,7 @@ public class GXDLMSServerBase {
      */
     final void notifyConnected(final GXDLMSConnectionEventArgs connectionInfo)
             throws Exception {
-        if ((settings.getConnected() & ConnectionState.DLMS) != 0) {
+        if ((getSettings().getConnected() & ConnectionState.DLMS) != 0) {
             if (owner instanceof GXDLMSServer) {
                 ((GXDLMSServer) owner).connected(connectionInfo);
             } else {
@@ -1222,7 +1324,7 @@ public class GXDLMSServerBase {
      * @return HDLC settings.
      */
     public GXDLMSHdlcSetup getHdlc() {
-        return settings.getHdlc();
+        return getSettings().getHdlc();
     }
 
     /**
@@ -1230,6 +1332,6 @@ public class GXDLMSServerBase {
      *            HDLC settings.
      */
     public void setHdlc(final GXDLMSHdlcSetup value) {
-        settings.setHdlc(value);
+        getSettings().setHdlc(value);
     }
 }
@@ -0,0 +1,233 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import gurux.dlms.objects.enums.ApplicationContextName;
+import gurux.dlms.objects.enums.AssociationStatus;
+
+/**
+ * Connection state of the server. Session holds framing, association, block
+ * transfer and ciphering state of one connection. Object list and callbacks
+ * of the server are shared between sessions, so association status and
+ * negotiated context are kept here and not in the shared association
+ * object.
+ * <p>
+ * Requests of one session are handled one at the time. Requests of different
+ * sessions can be handled at the same time from different threads.
+ * </p>
+ */
+public class GXDLMSServerSession {
+    /**
+     * Session settings.
+     */
+    private final GXDLMSSettings settings;
+
+    /**
+     * Received reply data.
+     */
+    private final GXReplyData info = new GXReplyData();
+
+    /**
+     * Received data.
+     */
+    private final GXByteBuffer receivedData = new GXByteBuffer();
+
+    /**
+     * Reply data.
+     */
+    private final GXByteBuffer replyData = new GXByteBuffer();
+
+    /**
+     * Long get or read transaction information.
+     */
+    private GXDLMSLongTransaction transaction;
+
+    /**
+     * When data was received last time.
+     */
+    private long dataReceived = 0;
+
+    /**
+     * Association status of the connection.
+     */
+    private AssociationStatus associationStatus =
+            AssociationStatus.NON_ASSOCIATED;
+
+    /**
+     * Negotiated application context name.
+     */
+    private ApplicationContextName applicationContextName =
+            ApplicationContextName.LOGICAL_NAME;
+
+    /**
+     * Is reply to HLS authentication verified by the association object.
+     */
+    private boolean hlsVerified;
+
+    /**
+     * Lock that is held while request is handled. Lock is used instead of
+     * synchronized block, so virtual threads are not pinned to the carrier
+     * thread when callbacks block.
+     */
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * Constructor.
+     * 
+     * @param value
+     *            Session settings.
+     */
+    GXDLMSServerSession(final GXDLMSSettings value) {
+        settings = value;
+    }
+
+    /**
+     * @return Lock that is held while request is handled.
+     */
+    final Lock getLock() {
+        return lock;
+    }
+
+    /**
+     * @return Session settings.
+     */
+    public final GXDLMSSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @return Received reply data.
+     */
+    final GXReplyData getInfo() {
+        return info;
+    }
+
+    /**
+     * @return Received data.
+     */
+    final GXByteBuffer getReceivedData() {
+        return receivedData;
+    }
+
+    /**
+     * @return Reply data.
+     */
+    final GXByteBuffer getReplyData() {
+        return replyData;
+    }
+
+    /**
+     * @return Long get or read transaction information.
+     */
+    final GXDLMSLongTransaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * @param value
+     *            Long get or read transaction information.
+     */
+    final void setTransaction(final GXDLMSLongTransaction value) {
+        transaction = value;
+    }
+
+    /**
+     * @return Association status of the connection.
+     */
+    public final AssociationStatus getAssociationStatus() {
+        return associationStatus;
+    }
+
+    /**
+     * @param value
+     *            Association status of the connection.
+     */
+    final void setAssociationStatus(final AssociationStatus value) {
+        associationStatus = value;
+    }
+
+    /**
+     * @return Is reply to HLS authentication verified by the association
+     *         object.
+     */
+    public final boolean isHlsVerified() {
+        return hlsVerified;
+    }
+
+    /**
+     * Association object sets this when it has checked the reply to HLS
+     * authentication. Server accepts the association only if this is set.
+     * 
+     * @param value
+     *            Is reply to HLS authentication verified.
+     */
+    public final void setHlsVerified(final boolean value) {
+        hlsVerified = value;
+    }
+
+    /**
+     * @return Negotiated application context name.
+     */
+    public final ApplicationContextName getApplicationContextName() {
+        return applicationContextName;
+    }
+
+    /**
+     * @param value
+     *            Negotiated application context name.
+     */
+    final void setApplicationContextName(final ApplicationContextName value) {
+        applicationContextName = value;
+    }
+
+    /**
+     * @return When data was received last time in milliseconds. Zero if
+     *         nothing is received.
+     */
+    public final long getDataReceived() {
+        return dataReceived;
+    }
+
+    /**
+     * @param value
+     *            When data was received last time in milliseconds.
+     */
+    final void setDataReceived(final long value) {
+        dataReceived = value;
+    }
+}
@@ -304,6 +304,51 @@ public class GXDLMSSettings {
         standard = Standard.DLMS;
     }
 
+    /**
+     * Constructor for server session. Object list, HDLC and wrapper settings
+     * and gateway are shared with the source settings. Other settings are
+     * copied and connection state is reset.
+     * 
+     * @param source
+     *            Settings where session settings are copied.
+     */
+    GXDLMSSettings(final GXDLMSSettings source) {
+        server = source.server;
+        objects = source.objects;
+        hdlc = source.hdlc;
+        wrapper = source.wrapper;
+        gateway = source.gateway;
+        limits = new GXDLMSLimits();
+        limits.setMaxInfoTX(source.limits.getMaxInfoTX());
+        limits.setMaxInfoRX(source.limits.getMaxInfoRX());
+        limits.setWindowSizeTX(source.limits.getWindowSizeTX());
+        limits.setWindowSizeRX(source.limits.getWindowSizeRX());
+        skipFrameCheck = source.skipFrameCheck;
+        customChallenges = source.customChallenges;
+        if (customChallenges) {
+            stoCChallenge = source.stoCChallenge;
+        }
+        priority = source.priority;
+        serviceClass = source.serviceClass;
+        serverAddressSize = source.serverAddressSize;
+        useLogicalNameReferencing = source.useLogicalNameReferencing;
+        interfaceType = source.interfaceType;
+        password = source.password;
+        kek = source.kek;
+        dlmsVersionNumber = source.dlmsVersionNumber;
+        allowAnonymousAccess = source.allowAnonymousAccess;
+        maxPduSize = source.maxPduSize;
+        maxServerPDUSize = source.maxServerPDUSize;
+        proposedConformance.addAll(source.proposedConformance);
+        startingPacketIndex = source.startingPacketIndex;
+        blockIndex = source.blockIndex;
+        windowSize = source.windowSize;
+        userId = -1;
+        useUtc2NormalTime = source.useUtc2NormalTime;
+        standard = source.standard;
+        resetFrameSequence();
+    }
+
     /**
      * @param value
      *            Cipher interface that is used to cipher PDU.
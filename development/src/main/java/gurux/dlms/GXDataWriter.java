@@ -0,0 +1,407 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import gurux.dlms.enums.DataType;
+import gurux.dlms.internal.GXCommon;
+
+/**
+ * Writes DLMS data straight to the byte buffer without boxing the values.
+ * 
+ * @see IGXDataVisitor
+ */
+public class GXDataWriter {
+    /**
+     * Milliseconds in one day.
+     */
+    private static final long DAY = 86400000L;
+
+    /**
+     * Deviation value when deviation is not used.
+     */
+    private static final int DEVIATION_NOT_USED = 0x8000;
+
+    /**
+     * Target buffer.
+     */
+    private final GXByteBuffer buffer;
+
+    /**
+     * Constructor.
+     */
+    public GXDataWriter() {
+        this(new GXByteBuffer());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param target
+     *            Byte buffer where data is written.
+     */
+    public GXDataWriter(final GXByteBuffer target) {
+        if (target == null) {
+            throw new IllegalArgumentException("target");
+        }
+        buffer = target;
+    }
+
+    /**
+     * @return Byte buffer where data is written.
+     */
+    public final GXByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Write null data.
+     */
+    public final void writeNull() {
+        buffer.setUInt8(DataType.NONE.getValue());
+    }
+
+    /**
+     * @param value
+     *            Boolean value.
+     */
+    public final void writeBoolean(final boolean value) {
+        buffer.setUInt8(DataType.BOOLEAN.getValue());
+        if (value) {
+            buffer.setUInt8(1);
+        } else {
+            buffer.setUInt8(0);
+        }
+    }
+
+    /**
+     * @param value
+     *            Int8 value.
+     */
+    public final void writeInt8(final int value) {
+        buffer.setUInt8(DataType.INT8.getValue());
+        buffer.setUInt8(value);
+    }
+
+    /**
+     * @param value
+     *            Int16 value.
+     */
+    public final void writeInt16(final int value) {
+        buffer.setUInt8(DataType.INT16.getValue());
+        buffer.setUInt16(value);
+    }
+
+    /**
+     * @param value
+     *            Int32 value.
+     */
+    public final void writeInt32(final int value) {
+        buffer.setUInt8(DataType.INT32.getValue());
+        buffer.setUInt32(value);
+    }
+
+    /**
+     * @param value
+     *            Int64 value.
+     */
+    public final void writeInt64(final long value) {
+        buffer.setUInt8(DataType.INT64.getValue());
+        buffer.setUInt64(value);
+    }
+
+    /**
+     * @param value
+     *            UInt8 value.
+     */
+    public final void writeUInt8(final int value) {
+        buffer.setUInt8(DataType.UINT8.getValue());
+        buffer.setUInt8(value);
+    }
+
+    /**
+     * @param value
+     *            UInt16 value.
+     */
+    public final void writeUInt16(final int value) {
+        buffer.setUInt8(DataType.UINT16.getValue());
+        buffer.setUInt16(value);
+    }
+
+    /**
+     * @param value
+     *            UInt32 value.
+     */
+    public final void writeUInt32(final long value) {
+        buffer.setUInt8(DataType.UINT32.getValue());
+        buffer.setUInt32(value);
+    }
+
+    /**
+     * @param value
+     *            UInt64 value. Values bigger than Long.MAX_VALUE are
+     *            negative.
+     */
+    public final void writeUInt64(final long value) {
+        buffer.setUInt8(DataType.UINT64.getValue());
+        buffer.setUInt64(value);
+    }
+
+    /**
+     * @param value
+     *            Enumeration value.
+     */
+    public final void writeEnum(final int value) {
+        buffer.setUInt8(DataType.ENUM.getValue());
+        buffer.setUInt8(value);
+    }
+
+    /**
+     * @param value
+     *            Float32 value.
+     */
+    public final void writeFloat32(final float value) {
+        buffer.setUInt8(DataType.FLOAT32.getValue());
+        buffer.setFloat(value);
+    }
+
+    /**
+     * @param value
+     *            Float64 value.
+     */
+    public final void writeFloat64(final double value) {
+        buffer.setUInt8(DataType.FLOAT64.getValue());
+        buffer.setDouble(value);
+    }
+
+    /**
+     * @param value
+     *            Octet string value.
+     */
+    public final void writeOctetString(final byte[] value) {
+        if (value == null) {
+            writeOctetString(null, 0, 0);
+        } else {
+            writeOctetString(value, 0, value.length);
+        }
+    }
+
+    /**
+     * @param value
+     *            Octet string value.
+     * @param offset
+     *            Offset of the first byte.
+     * @param length
+     *            Length in bytes.
+     */
+    public final void writeOctetString(final byte[] value, final int offset,
+            final int length) {
+        buffer.setUInt8(DataType.OCTET_STRING.getValue());
+        GXCommon.setObjectCount(length, buffer);
+        if (length != 0) {
+            buffer.set(value, offset, length);
+        }
+    }
+
+    /**
+     * Write date-time as octet string.
+     * 
+     * @param epochMillis
+     *            UTC time in milliseconds from 1970-01-01.
+     * @param deviation
+     *            Deviation is time from current time zone to UTC time in
+     *            minutes. 0x8000 if deviation is not used.
+     */
+    public final void writeDateTime(final long epochMillis,
+            final int deviation) {
+        writeDateTime(epochMillis, deviation, 0);
+    }
+
+    /**
+     * Write date-time as octet string.
+     * 
+     * @param epochMillis
+     *            UTC time in milliseconds from 1970-01-01.
+     * @param deviation
+     *            Deviation is time from current time zone to UTC time in
+     *            minutes. 0x8000 if deviation is not used.
+     * @param status
+     *            Clock status.
+     */
+    public final void writeDateTime(final long epochMillis,
+            final int deviation, final int status) {
+        long local = epochMillis;
+        boolean useDeviation =
+                deviation != DEVIATION_NOT_USED && deviation != -32768;
+        if (useDeviation) {
+            local -= deviation * 60000L;
+        }
+        long days = local / DAY;
+        long ms = local % DAY;
+        if (ms < 0) {
+            --days;
+            ms += DAY;
+        }
+        // Days to civil date. Era is 400 years.
+        long z = days + 719468;
+        long era;
+        if (z >= 0) {
+            era = z / 146097;
+        } else {
+            era = (z - 146096) / 146097;
+        }
+        int doe = (int) (z - era * 146097);
+        int yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+        int doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        int mp = (5 * doy + 2) / 153;
+        int day = doy - (153 * mp + 2) / 5 + 1;
+        int month;
+        if (mp < 10) {
+            month = mp + 3;
+        } else {
+            month = mp - 9;
+        }
+        long year = yoe + era * 400;
+        if (month < 3) {
+            ++year;
+        }
+        // 1970-01-01 was Thursday. Monday is one.
+        int dayOfWeek = (int) ((days % 7 + 10) % 7) + 1;
+        int time = (int) ms;
+        buffer.setUInt8(DataType.OCTET_STRING.getValue());
+        buffer.setUInt8(12);
+        buffer.setUInt16((int) year);
+        buffer.setUInt8(month);
+        buffer.setUInt8(day);
+        buffer.setUInt8(dayOfWeek);
+        buffer.setUInt8(time / 3600000);
+        buffer.setUInt8((time / 60000) % 60);
+        buffer.setUInt8((time / 1000) % 60);
+        buffer.setUInt8((time % 1000) / 10);
+        if (useDeviation) {
+            buffer.setUInt16(deviation);
+        } else {
+            buffer.setUInt16(DEVIATION_NOT_USED);
+        }
+        buffer.setUInt8(status);
+    }
+
+    /**
+     * Begin array. Items are written after this.
+     * 
+     * @param count
+     *            Amount of array items.
+     */
+    public final void beginArray(final int count) {
+        buffer.setUInt8(DataType.ARRAY.getValue());
+        GXCommon.setObjectCount(count, buffer);
+    }
+
+    /**
+     * Begin structure. Items are written after this.
+     * 
+     * @param count
+     *            Amount of structure items.
+     */
+    public final void beginStructure(final int count) {
+        buffer.setUInt8(DataType.STRUCTURE.getValue());
+        GXCommon.setObjectCount(count, buffer);
+    }
+
+    /**
+     * Write value. Numbers, booleans and byte arrays are written without
+     * conversions. Other values are written using GXCommon.setData.
+     * 
+     * @param type
+     *            Data type.
+     * @param value
+     *            Added value.
+     */
+    public final void write(final DataType type, final Object value) {
+        if (value instanceof Number) {
+            Number n = (Number) value;
+            switch (type) {
+            case INT8:
+                writeInt8(n.byteValue());
+                return;
+            case UINT8:
+                writeUInt8(n.byteValue());
+                return;
+            case ENUM:
+                writeEnum(n.byteValue());
+                return;
+            case INT16:
+                writeInt16(n.shortValue());
+                return;
+            case UINT16:
+                writeUInt16(n.shortValue());
+                return;
+            case INT32:
+                writeInt32(n.intValue());
+                return;
+            case UINT32:
+                writeUInt32(n.intValue());
+                return;
+            case INT64:
+                writeInt64(n.longValue());
+                return;
+            case UINT64:
+                writeUInt64(n.longValue());
+                return;
+            case FLOAT32:
+                writeFloat32(n.floatValue());
+                return;
+            case FLOAT64:
+                writeFloat64(n.doubleValue());
+                return;
+            default:
+                break;
+            }
+        } else if (value instanceof byte[]) {
+            if (type == DataType.OCTET_STRING) {
+                writeOctetString((byte[]) value);
+                return;
+            }
+        } else if (value instanceof Boolean) {
+            if (type == DataType.BOOLEAN) {
+                writeBoolean(((Boolean) value).booleanValue());
+                return;
+            }
+        } else if (value == null && type == DataType.NONE) {
+            writeNull();
+            return;
+        }
+        GXCommon.setData(buffer, type, value);
+    }
+}
@@ -0,0 +1,204 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+/**
+ * HDLC frame found by GXHdlcFrameScanner. Frame is a view to the scanned
+ * buffer and payload is not copied. View is valid until scanned buffer is
+ * modified.
+ * 
+ * @author Gurux Ltd.
+ */
+public final class GXHdlcFrame {
+    /**
+     * Buffer where frame is.
+     */
+    private final GXByteBuffer buffer;
+    /**
+     * Position of the start flag.
+     */
+    private final int offset;
+    /**
+     * Frame length including start and end flags.
+     */
+    private final int length;
+    /**
+     * Target address.
+     */
+    private final int targetAddress;
+    /**
+     * Source address.
+     */
+    private final int sourceAddress;
+    /**
+     * HDLC control field.
+     */
+    private final short control;
+    /**
+     * Is segmentation bit set.
+     */
+    private final boolean segmented;
+    /**
+     * Position where payload starts.
+     */
+    private final int payloadOffset;
+    /**
+     * Payload length.
+     */
+    private final int payloadLength;
+
+    /**
+     * Constructor.
+     * 
+     * @param forBuffer
+     *            Buffer where frame is.
+     * @param forOffset
+     *            Position of the start flag.
+     * @param forLength
+     *            Frame length including start and end flags.
+     * @param target
+     *            Target address.
+     * @param source
+     *            Source address.
+     * @param forControl
+     *            HDLC control field.
+     * @param forSegmented
+     *            Is segmentation bit set.
+     * @param forPayloadOffset
+     *            Position where payload starts.
+     * @param forPayloadLength
+     *            Payload length.
+     */
+    GXHdlcFrame(final GXByteBuffer forBuffer, final int forOffset,
+            final int forLength, final int target, final int source,
+            final short forControl, final boolean forSegmented,
+            final int forPayloadOffset, final int forPayloadLength) {
+        buffer = forBuffer;
+        offset = forOffset;
+        length = forLength;
+        targetAddress = target;
+        sourceAddress = source;
+        control = forControl;
+        segmented = forSegmented;
+        payloadOffset = forPayloadOffset;
+        payloadLength = forPayloadLength;
+    }
+
+    /**
+     * @return Buffer where frame is.
+     */
+    public GXByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return Position of the start flag.
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return Frame length including start and end flags.
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * @return Target address.
+     */
+    public int getTargetAddress() {
+        return targetAddress;
+    }
+
+    /**
+     * @return Source address.
+     */
+    public int getSourceAddress() {
+        return sourceAddress;
+    }
+
+    /**
+     * @return HDLC control field.
+     */
+    public short getControl() {
+        return control;
+    }
+
+    /**
+     * @return Is segmentation bit set. If set, more frames are coming.
+     */
+    public boolean isSegmented() {
+        return segmented;
+    }
+
+    /**
+     * @return Position where payload starts. LLC bytes are part of the
+     *         payload.
+     */
+    public int getPayloadOffset() {
+        return payloadOffset;
+    }
+
+    /**
+     * @return Payload length.
+     */
+    public int getPayloadLength() {
+        return payloadLength;
+    }
+
+    /**
+     * @return Is frame I-frame.
+     */
+    public boolean isInformation() {
+        return (control & 0x1) == 0;
+    }
+
+    /**
+     * Append payload to the given buffer.
+     * 
+     * @param target
+     *            Buffer where payload is appended.
+     */
+    public void copyPayload(final GXByteBuffer target) {
+        target.set(buffer.getData(), payloadOffset, payloadLength);
+    }
+
+    @Override
+    public String toString() {
+        return buffer.toHex(true, offset, length);
+    }
+}
@@ -0,0 +1,284 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gurux.dlms.internal.GXCommon;
+
+/**
+ * HDLC frame scanner finds all complete HDLC frames from the received data in
+ * one pass. Frames are returned as views to the received buffer and payload is
+ * not copied.
+ * <p>
+ * Scanner checks frame format, start and end flags and CRCs. Addresses are not
+ * checked. Caller can filter frames using target and source address.
+ * </p>
+ * 
+ * @author Gurux Ltd.
+ */
+public final class GXHdlcFrameScanner {
+
+    /**
+     * Minimum frame length without start and end flags. Format, target and
+     * source addresses, control and HCS.
+     */
+    private static final int MIN_FRAME_LENGTH = 7;
+
+    /**
+     * Constructor.
+     */
+    private GXHdlcFrameScanner() {
+
+    }
+
+    /**
+     * Find all complete HDLC frames from the buffer.
+     * 
+     * @param buff
+     *            Received data.
+     * @return Found frames.
+     * @see #scan(GXByteBuffer, List)
+     */
+    public static List<GXHdlcFrame> scan(final GXByteBuffer buff) {
+        List<GXHdlcFrame> frames = new ArrayList<GXHdlcFrame>();
+        scan(buff, frames);
+        return frames;
+    }
+
+    /**
+     * Find all complete HDLC frames from the buffer. Scanning starts from
+     * buffer position. After scan buffer position is moved to the start of the
+     * first incomplete frame or to the end of the data. Garbage and invalid
+     * frames are skipped.
+     * 
+     * @param buff
+     *            Received data.
+     * @param frames
+     *            Found frames are added to this list.
+     * @return Amount of found frames.
+     */
+    public static int scan(final GXByteBuffer buff,
+            final List<GXHdlcFrame> frames) {
+        final byte[] data = buff.getData();
+        final int size = buff.size();
+        int pos = buff.position();
+        int count = 0;
+        // Start of the first frame that is not received completely.
+        int pending = -1;
+        while (pos < size) {
+            int frameLen = getFrameLength(data, pos, size);
+            if (frameLen == -1) {
+                ++pos;
+                continue;
+            }
+            // If whole frame is not received yet. Scanning continues because
+            // this might be garbage before the next frame.
+            if (frameLen == 0) {
+                if (pending == -1) {
+                    pending = pos;
+                }
+                ++pos;
+                continue;
+            }
+            int eopPos = pos + frameLen + 1;
+            GXHdlcFrame frame = getFrame(buff, pos, frameLen, eopPos);
+            if (frame == null) {
+                ++pos;
+                continue;
+            }
+            frames.add(frame);
+            ++count;
+            pos = eopPos + 1;
+            pending = -1;
+        }
+        if (pending != -1) {
+            pos = pending;
+        }
+        buff.position(pos);
+        return count;
+    }
+
+    /**
+     * Check start flag, frame format, frame length and end flag of the frame
+     * that starts from the given position. Addresses and CRCs are not checked.
+     * 
+     * @param data
+     *            Received data.
+     * @param pos
+     *            Position of the start flag.
+     * @param size
+     *            Size of the received data.
+     * @return Frame length without start and end flags, zero if the frame is
+     *         not received completely or -1 if there is no frame in the
+     *         position.
+     */
+    static int getFrameLength(final byte[] data, final int pos,
+            final int size) {
+        if ((data[pos] & 0xFF) != GXCommon.HDLC_FRAME_START_END) {
+            return -1;
+        }
+        // If whole header is not received yet.
+        if (size - pos < MIN_FRAME_LENGTH + 2) {
+            return 0;
+        }
+        int format = data[pos + 1] & 0xFF;
+        if ((format & 0xF0) != 0xA0) {
+            return -1;
+        }
+        int frameLen = ((format & 0x7) << 8) | (data[pos + 2] & 0xFF);
+        if (frameLen < MIN_FRAME_LENGTH) {
+            return -1;
+        }
+        int eopPos = pos + frameLen + 1;
+        if (eopPos >= size) {
+            return 0;
+        }
+        if ((data[eopPos] & 0xFF) != GXCommon.HDLC_FRAME_START_END) {
+            return -1;
+        }
+        return frameLen;
+    }
+
+    /**
+     * Parse frame header and check CRCs.
+     * 
+     * @param buff
+     *            Received data.
+     * @param pos
+     *            Position of the start flag.
+     * @param frameLen
+     *            Frame length without start and end flags.
+     * @param eopPos
+     *            Position of the end flag.
+     * @return Found frame or null if frame is not valid.
+     */
+    private static GXHdlcFrame getFrame(final GXByteBuffer buff,
+            final int pos, final int frameLen, final int eopPos) {
+        final byte[] data = buff.getData();
+        int index = pos + 3;
+        int targetSize = getAddressSize(data, index, eopPos);
+        if (targetSize == 0) {
+            return null;
+        }
+        int target = getAddress(data, index, targetSize);
+        index += targetSize;
+        int sourceSize = getAddressSize(data, index, eopPos);
+        if (sourceSize == 0) {
+            return null;
+        }
+        int source = getAddress(data, index, sourceSize);
+        index += sourceSize;
+        // Control field and HCS must fit before the end flag.
+        if (index + 3 > eopPos) {
+            return null;
+        }
+        short control = (short) (data[index] & 0xFF);
+        ++index;
+        int crc = GXFCS16.countFCS16(data, pos + 1, index - pos - 1);
+        if (crc != (((data[index] & 0xFF) << 8) | (data[index + 1] & 0xFF))) {
+            return null;
+        }
+        index += 2;
+        int payloadLength = 0;
+        // Check that packet CRC match only if there is a data part.
+        if (index != eopPos) {
+            payloadLength = eopPos - 2 - index;
+            if (payloadLength < 0) {
+                return null;
+            }
+            crc = GXFCS16.countFCS16(data, pos + 1, frameLen - 2);
+            if (crc != (((data[eopPos - 2] & 0xFF) << 8)
+                    | (data[eopPos - 1] & 0xFF))) {
+                return null;
+            }
+        }
+        return new GXHdlcFrame(buff, pos, frameLen + 2, target, source,
+                control, (data[pos + 1] & 0x8) != 0, index, payloadLength);
+    }
+
+    /**
+     * Get HDLC address size. Last byte of the address has the lowest bit set.
+     * 
+     * @param data
+     *            Received data.
+     * @param index
+     *            Address position.
+     * @param end
+     *            End of the frame.
+     * @return Address size in bytes or zero if address is not valid.
+     */
+    private static int getAddressSize(final byte[] data, final int index,
+            final int end) {
+        for (int pos = index; pos < end && pos - index < 4; ++pos) {
+            if ((data[pos] & 0x1) == 1) {
+                int size = pos - index + 1;
+                if (size == 3) {
+                    return 0;
+                }
+                return size;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Get HDLC address.
+     * 
+     * @param data
+     *            Received data.
+     * @param index
+     *            Address position.
+     * @param size
+     *            Address size in bytes.
+     * @return HDLC address.
+     */
+    private static int getAddress(final byte[] data, final int index,
+            final int size) {
+        if (size == 1) {
+            return (data[index] & 0xFE) >>> 1;
+        } else if (size == 2) {
+            int value = ((data[index] & 0xFF) << 8) | (data[index + 1] & 0xFF);
+            return ((value & 0xFE) >>> 1) | ((value & 0xFE00) >>> 2);
+        }
+        long value = ((long) (data[index] & 0xFF) << 24)
+                | ((data[index + 1] & 0xFF) << 16)
+                | ((data[index + 2] & 0xFF) << 8) | (data[index + 3] & 0xFF);
+        value = ((value & 0xFE) >> 1) | ((value & 0xFE00) >> 2)
+                | ((value & 0xFE0000) >> 3) | ((value & 0xFE000000L) >> 4);
+        return (int) value;
+    }
+}
@@ -34,9 +34,19 @@
 
 package gurux.dlms;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Map.Entry;
+
 import gurux.dlms.enums.Command;
 import gurux.dlms.enums.DataType;
 import gurux.dlms.enums.RequestTypes;
+import gurux.dlms.objects.GXDLMSCaptureObject;
+import gurux.dlms.objects.GXDLMSObject;
+import gurux.dlms.objects.GXDLMSProfileGeneric;
+import gurux.dlms.objects.IGXRowListener;
 
 public class GXReplyData {
 
@@ -85,6 +95,18 @@ public class GXReplyData {
      */
     private Object dataValue = null;
 
+    /**
+     * Array items read from the data blocks. Items are collected here and value
+     * array is created only when value is asked.
+     */
+    private ArrayList<Object> items;
+
+    /**
+     * Value array that is created from the items. Array is created again only
+     * when items are changed.
+     */
+    private Object[] itemsValue;
+
     /**
      * Expected count of element in the array.
      */
@@ -147,6 +169,31 @@ public class GXReplyData {
      */
     private byte windowSize;
 
+    /**
+     * Profile generic where rows are streamed.
+     */
+    private GXDLMSProfileGeneric rowTarget;
+
+    /**
+     * Read columns of the streamed rows.
+     */
+    private List<Entry<GXDLMSObject, GXDLMSCaptureObject>> rowColumns;
+
+    /**
+     * Row listener.
+     */
+    private IGXRowListener rowListener;
+
+    /**
+     * Capture time of the last streamed row.
+     */
+    private Calendar rowTime;
+
+    /**
+     * Amount of streamed rows.
+     */
+    private int streamedRows;
+
     /**
      * Constructor.
      * 
@@ -188,11 +235,44 @@ public class GXReplyData {
     }
 
     public final Object getValue() {
+        if (items != null) {
+            if (itemsValue == null) {
+                itemsValue = items.toArray();
+            }
+            return itemsValue;
+        }
         return dataValue;
     }
 
     public final void setValue(final Object value) {
         dataValue = value;
+        items = null;
+        itemsValue = null;
+    }
+
+    /**
+     * Append array items that are read from the data block.
+     * 
+     * @param value
+     *            Read items.
+     */
+    final void appendValues(final Object[] value) {
+        if (items == null) {
+            items = new ArrayList<Object>();
+            if (dataValue instanceof Object[]) {
+                items.addAll(Arrays.asList((Object[]) dataValue));
+            }
+            dataValue = null;
+        }
+        items.addAll(Arrays.asList(value));
+        itemsValue = null;
+    }
+
+    /**
+     * @return Is read value an array.
+     */
+    final boolean isArrayValue() {
+        return items != null || dataValue instanceof Object[];
     }
 
     public final int getReadPosition() {
@@ -269,6 +349,10 @@ public class GXReplyData {
         error = 0;
         totalCount = 0;
         dataValue = null;
+        items = null;
+        itemsValue = null;
+        streamedRows = 0;
+        rowTime = null;
         readPosition = 0;
         packetLength = 0;
         dataType = DataType.NONE;
@@ -365,6 +449,9 @@ public class GXReplyData {
      * @see #getTotalCount
      */
     public final int getCount() {
+        if (items != null) {
+            return items.size();
+        }
         if (dataValue instanceof Object[]) {
             return ((Object[]) dataValue).length;
         }
@@ -550,4 +637,71 @@ public class GXReplyData {
                 + 1 > getBlockNumber();
     }
 
+    /**
+     * Read profile generic rows in streaming mode. Each row is passed to the
+     * listener as soon as it is received and the handled bytes are released.
+     * Rows are not added to the value or the buffer of the profile generic.
+     * Listener is not removed when reply data is cleared.
+     * 
+     * @param target
+     *            Profile generic where rows are read.
+     * @param listener
+     *            Row listener. Streaming mode is not used if null.
+     */
+    public final void setRowListener(final GXDLMSProfileGeneric target,
+            final IGXRowListener listener) {
+        setRowListener(target, null, listener);
+    }
+
+    /**
+     * Read profile generic rows in streaming mode. Each row is passed to the
+     * listener as soon as it is received and the handled bytes are released.
+     * Rows are not added to the value or the buffer of the profile generic.
+     * Listener is not removed when reply data is cleared.
+     * 
+     * @param target
+     *            Profile generic where rows are read.
+     * @param columns
+     *            Read columns. If null, all capture objects are read.
+     * @param listener
+     *            Row listener. Streaming mode is not used if null.
+     */
+    public final void setRowListener(final GXDLMSProfileGeneric target,
+            final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns,
+            final IGXRowListener listener) {
+        if (listener != null && target == null) {
+            throw new IllegalArgumentException("target");
+        }
+        rowTarget = target;
+        rowColumns = columns;
+        rowListener = listener;
+    }
+
+    /**
+     * @return Row listener.
+     */
+    public final IGXRowListener getRowListener() {
+        return rowListener;
+    }
+
+    /**
+     * @return Amount of rows that are passed to the row listener.
+     */
+    public final int getStreamedRows() {
+        return streamedRows;
+    }
+
+    /**
+     * Pass received rows to the row listener.
+     * 
+     * @param rows
+     *            Received rows.
+     */
+    final void notifyRows(final Object[] rows) {
+        if (rowTime == null) {
+            rowTime = Calendar.getInstance();
+        }
+        rowTarget.notifyRows(rowColumns, rows, rowTime, rowListener);
+        streamedRows += rows.length;
+    }
 }
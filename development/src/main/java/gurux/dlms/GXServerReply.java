@@ -34,6 +34,8 @@
 
 package gurux.dlms;
 
+import java.nio.ByteBuffer;
+
 public class GXServerReply {
 
     /**
@@ -41,11 +43,21 @@ public class GXServerReply {
      */
     private GXDLMSConnectionEventArgs connectionInfo;
 
+    /**
+     * Server session.
+     */
+    private GXDLMSServerSession session;
+
     /**
      * Server received data.
      */
     private byte[] data;
 
+    /**
+     * Server received data as a byte buffer.
+     */
+    private ByteBuffer buffer;
+
     /**
      * Server reply message.
      */
@@ -66,6 +78,17 @@ public class GXServerReply {
         data = value;
     }
 
+    /**
+     * Constructor. Data is read from the buffer when request is handled, so
+     * buffer can be reused after that.
+     * 
+     * @param value
+     *            Received data from the position to the limit.
+     */
+    public GXServerReply(final ByteBuffer value) {
+        buffer = value;
+    }
+
     /**
      * @return the data
      */
@@ -81,6 +104,31 @@ public class GXServerReply {
         data = value;
     }
 
+    /**
+     * @return Received data as a byte buffer.
+     */
+    public final ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @param value
+     *            Received data from the position to the limit.
+     */
+    public final void setBuffer(final ByteBuffer value) {
+        buffer = value;
+    }
+
+    /**
+     * @return Is there received data to handle.
+     */
+    final boolean hasData() {
+        if (buffer != null) {
+            return buffer.hasRemaining();
+        }
+        return data != null && data.length != 0;
+    }
+
     /**
      * @return The reply message.
      */
@@ -111,6 +159,22 @@ public class GXServerReply {
         connectionInfo = value;
     }
 
+    /**
+     * @return Server session. Default session of the server is used if
+     *         session is not set.
+     */
+    public final GXDLMSServerSession getSession() {
+        return session;
+    }
+
+    /**
+     * @param value
+     *            Server session.
+     */
+    public final void setSession(final GXDLMSServerSession value) {
+        session = value;
+    }
+
     /**
      * @return Is GBT streaming in progress.
      */
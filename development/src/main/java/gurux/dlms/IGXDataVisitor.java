@@ -0,0 +1,245 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms;
+
+/**
+ * Typed callbacks for decoding DLMS data without creating intermediate
+ * objects.
+ * <p>
+ * Values are reported in the order they appear in the byte stream. String
+ * values are reported as a range of the source buffer and they are valid only
+ * until the callback returns.
+ * </p>
+ * 
+ * @see gurux.dlms.internal.GXCommon#visitData(GXByteBuffer, IGXDataVisitor)
+ */
+public interface IGXDataVisitor {
+
+    /**
+     * Null data is read.
+     */
+    void onNull();
+
+    /**
+     * @param value
+     *            Boolean value.
+     */
+    void onBoolean(boolean value);
+
+    /**
+     * @param value
+     *            Int8 value.
+     */
+    void onInt8(byte value);
+
+    /**
+     * @param value
+     *            Int16 value.
+     */
+    void onInt16(short value);
+
+    /**
+     * @param value
+     *            Int32 value.
+     */
+    void onInt32(int value);
+
+    /**
+     * @param value
+     *            Int64 value.
+     */
+    void onInt64(long value);
+
+    /**
+     * @param value
+     *            UInt8 value.
+     */
+    void onUInt8(short value);
+
+    /**
+     * @param value
+     *            UInt16 value.
+     */
+    void onUInt16(int value);
+
+    /**
+     * @param value
+     *            UInt32 value.
+     */
+    void onUInt32(long value);
+
+    /**
+     * @param value
+     *            UInt64 value. Values bigger than Long.MAX_VALUE are
+     *            negative.
+     */
+    void onUInt64(long value);
+
+    /**
+     * @param value
+     *            Enumeration value.
+     */
+    void onEnum(short value);
+
+    /**
+     * @param value
+     *            BCD value.
+     */
+    void onBcd(short value);
+
+    /**
+     * @param value
+     *            Float32 value.
+     */
+    void onFloat32(float value);
+
+    /**
+     * @param value
+     *            Float64 value.
+     */
+    void onFloat64(double value);
+
+    /**
+     * Octet string is read.
+     * 
+     * @param buff
+     *            Source buffer.
+     * @param offset
+     *            Offset of the first byte.
+     * @param length
+     *            Length in bytes.
+     */
+    void onOctetString(byte[] buff, int offset, int length);
+
+    /**
+     * Visible string is read.
+     * 
+     * @param buff
+     *            Source buffer.
+     * @param offset
+     *            Offset of the first byte.
+     * @param length
+     *            Length in bytes.
+     */
+    void onString(byte[] buff, int offset, int length);
+
+    /**
+     * UTF-8 string is read.
+     * 
+     * @param buff
+     *            Source buffer.
+     * @param offset
+     *            Offset of the first byte.
+     * @param length
+     *            Length in bytes.
+     */
+    void onUtf8String(byte[] buff, int offset, int length);
+
+    /**
+     * Bit string is read. Bits are stored most significant bit first.
+     * 
+     * @param buff
+     *            Source buffer.
+     * @param offset
+     *            Offset of the first byte.
+     * @param bitCount
+     *            Amount of bits.
+     */
+    void onBitString(byte[] buff, int offset, int bitCount);
+
+    /**
+     * Date-time is read. Value is in DLMS date-time format (12 bytes).
+     * 
+     * @param buff
+     *            Source buffer.
+     * @param offset
+     *            Offset of the first byte.
+     */
+    void onDateTime(byte[] buff, int offset);
+
+    /**
+     * Date is read. Value is in DLMS date format (5 bytes).
+     * 
+     * @param buff
+     *            Source buffer.
+     * @param offset
+     *            Offset of the first byte.
+     */
+    void onDate(byte[] buff, int offset);
+
+    /**
+     * Time is read. Value is in DLMS time format (4 bytes).
+     * 
+     * @param buff
+     *            Source buffer.
+     * @param offset
+     *            Offset of the first byte.
+     */
+    void onTime(byte[] buff, int offset);
+
+    /**
+     * Array is started.
+     * 
+     * @param count
+     *            Amount of array items.
+     */
+    void onArrayStart(int count);
+
+    /**
+     * Array is ended.
+     */
+    void onArrayEnd();
+
+    /**
+     * Structure is started.
+     * 
+     * @param count
+     *            Amount of structure items.
+     */
+    void onStructureStart(int count);
+
+    /**
+     * Structure is ended.
+     */
+    void onStructureEnd();
+
+    /**
+     * Compact array is read. Compact arrays are decoded to objects.
+     * 
+     * @param value
+     *            Compact array content.
+     */
+    void onCompactArray(Object value);
+}
@@ -27,13 +27,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TimeZone;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.DOMException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.xml.sax.InputSource;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import gurux.dlms.GXByteBuffer;
 import gurux.dlms.GXSimpleEntry;
@@ -199,22 +196,27 @@ public final class GXAsn1Converter {
         return sb.toString();
     }
 
-    private static void getValue(final GXByteBuffer bb,
+    /**
+     * Convert current element of the reader to ASN.1 object.
+     * 
+     * @param reader
+     *            Reader that is positioned to the element.
+     * @param objects
+     *            Parsed objects.
+     * @param s
+     *            XML settings. Null if XML is not generated.
+     */
+    private static void getValue(final GXAsn1Reader reader,
             final List<Object> objects, final GXAsn1Settings s) {
-        int len;
-        short type;
+        GXByteBuffer bb = reader.getData();
+        int len = reader.getLength();
+        short type = (short) reader.getTag();
         List<Object> tmp = null;
         byte[] tmp2;
-        type = bb.getUInt8();
-        len = GXCommon.getObjectCount(bb);
-        if (len > bb.size() - bb.position()) {
-            throw new IllegalArgumentException("Not enought memory.");
-        }
         int connectPos = 0;
         if (s != null) {
             connectPos = s.getXmlLength();
         }
-        int start = bb.position();
         String tagString = null;
         if (s != null) {
             s.appendSpaces();
@@ -241,9 +243,11 @@ public final class GXAsn1Converter {
             tmp = new GXAsn1Context();
             ((GXAsn1Context) tmp).setIndex(type & 0xF);
             objects.add(tmp);
-            while (bb.position() < start + len) {
-                getValue(bb, tmp, s);
+            reader.enter();
+            while (reader.next()) {
+                getValue(reader, tmp, s);
             }
+            reader.exit();
             if (s != null) {
                 s.decrease();
             }
@@ -255,10 +259,12 @@ public final class GXAsn1Converter {
             tmp = new GXAsn1Sequence();
             objects.add(tmp);
             int cnt = 0;
-            while (bb.position() < start + len) {
+            reader.enter();
+            while (reader.next()) {
                 ++cnt;
-                getValue(bb, tmp, s);
+                getValue(reader, tmp, s);
             }
+            reader.exit();
             if (s != null) {
                 // Append comment.
                 s.appendComment(connectPos, String.valueOf(cnt) + " elements.");
@@ -270,7 +276,11 @@ public final class GXAsn1Converter {
                 s.increase();
             }
             tmp = new ArrayList<Object>();
-            getValue(bb, tmp, s);
+            reader.enter();
+            if (reader.next()) {
+                getValue(reader, tmp, s);
+            }
+            reader.exit();
             if (tmp.get(0) instanceof GXAsn1Sequence) {
                 tmp = (GXAsn1Sequence) tmp.get(0);
                 objects.add(new GXSimpleEntry<Object, Object>(tmp.get(0),
@@ -375,14 +385,19 @@ public final class GXAsn1Converter {
             }
             break;
         case BerType.OCTET_STRING:
-            int t = bb.getUInt8(bb.position());
+            int t = len == 0 ? 0 : bb.getUInt8(bb.position());
             switch (t) {
             case BerType.CONSTRUCTED | BerType.SEQUENCE:
             case BerType.BIT_STRING:
                 if (s != null) {
                     s.increase();
                 }
-                getValue(bb, objects, s);
+                // Octet string contains encapsulated element.
+                reader.enter();
+                if (reader.next()) {
+                    getValue(reader, objects, s);
+                }
+                reader.exit();
                 if (s != null) {
                     s.decrease();
                 }
@@ -465,10 +480,10 @@ public final class GXAsn1Converter {
      * @return Parsed objects.
      */
     public static Object fromByteArray(final byte[] data) {
-        GXByteBuffer bb = new GXByteBuffer(data);
+        GXAsn1Reader reader = new GXAsn1Reader(data);
         List<Object> objects = new ArrayList<Object>();
-        while (bb.position() != bb.size()) {
-            getValue(bb, objects, null);
+        while (reader.next()) {
+            getValue(reader, objects, null);
         }
         return objects.get(0);
     }
@@ -717,58 +732,81 @@ public final class GXAsn1Converter {
             final boolean comments) {
         GXAsn1Settings s = new GXAsn1Settings();
         s.setComments(comments);
+        GXAsn1Reader reader = new GXAsn1Reader(value);
         List<Object> objects = new ArrayList<Object>();
-        while (value.position() != value.size()) {
-            getValue(value, objects, s);
+        while (reader.next()) {
+            getValue(reader, objects, s);
         }
         return s.toString();
     }
 
+    /**
+     * Read child elements of the current element.
+     * 
+     * @param reader
+     *            XML reader positioned to the start element.
+     * @param s
+     *            ASN.1 settings.
+     * @param list
+     *            Read objects.
+     * @throws XMLStreamException
+     *             Invalid XML.
+     */
+    private static void readChildren(final XMLStreamReader reader,
+            final GXAsn1Settings s, final List<Object> list)
+            throws XMLStreamException {
+        while (reader.nextTag() == XMLStreamConstants.START_ELEMENT) {
+            readNode(reader, s, list);
+        }
+    }
+
+    /**
+     * Skip the current element and its children.
+     * 
+     * @param reader
+     *            XML reader positioned to the start element.
+     * @throws XMLStreamException
+     *             Invalid XML.
+     */
+    private static void skipElement(final XMLStreamReader reader)
+            throws XMLStreamException {
+        int level = 1;
+        while (level != 0) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                ++level;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                --level;
+            }
+        }
+    }
+
     @SuppressWarnings("rawtypes")
-    private static int readNode(final Node node, final GXAsn1Settings s,
-            final List<Object> list) {
+    private static void readNode(final XMLStreamReader reader,
+            final GXAsn1Settings s, final List<Object> list)
+            throws XMLStreamException {
         List<Object> tmp;
-        String str = node.getNodeName().toLowerCase();
+        String str = reader.getLocalName().toLowerCase();
         int tag = s.getTag(str);
         switch (tag) {
         case BerType.APPLICATION:
             tmp = new ArrayList<Object>();
-            for (int pos = 0; pos != node.getChildNodes().getLength(); ++pos) {
-                Node node2 = node.getChildNodes().item(pos);
-                if (node2.getNodeType() == Node.ELEMENT_NODE) {
-                    readNode(node2, s, tmp);
-                }
-            }
+            readChildren(reader, s, tmp);
             list.add(tmp);
             break;
         case BerType.CONSTRUCTED | BerType.CONTEXT:
             tmp = new GXAsn1Context();
-            for (int pos = 0; pos != node.getChildNodes().getLength(); ++pos) {
-                Node node2 = node.getChildNodes().item(pos);
-                if (node2.getNodeType() == Node.ELEMENT_NODE) {
-                    readNode(node2, s, tmp);
-                }
-            }
+            readChildren(reader, s, tmp);
             list.add(tmp);
             break;
         case BerType.CONSTRUCTED | BerType.SEQUENCE:
             tmp = new GXAsn1Sequence();
-            for (int pos = 0; pos != node.getChildNodes().getLength(); ++pos) {
-                Node node2 = node.getChildNodes().item(pos);
-                if (node2.getNodeType() == Node.ELEMENT_NODE) {
-                    readNode(node2, s, tmp);
-                }
-            }
+            readChildren(reader, s, tmp);
             list.add(tmp);
             break;
         case BerType.CONSTRUCTED | BerType.SET:
             tmp = new ArrayList<Object>();
-            for (int pos = 0; pos != node.getChildNodes().getLength(); ++pos) {
-                Node node2 = node.getChildNodes().item(pos);
-                if (node2.getNodeType() == Node.ELEMENT_NODE) {
-                    readNode(node2, s, tmp);
-                }
-            }
+            readChildren(reader, s, tmp);
             for (Object val : tmp) {
                 GXSimpleEntry<Object, Object> e;
                 if (val instanceof List) {
@@ -781,66 +819,56 @@ public final class GXAsn1Converter {
             }
             break;
         case BerType.OBJECT_IDENTIFIER:
-            list.add(new GXAsn1ObjectIdentifier(
-                    node.getChildNodes().item(0).getNodeValue()));
+            list.add(new GXAsn1ObjectIdentifier(reader.getElementText()));
             break;
         case BerType.PRINTABLE_STRING:
-            list.add(node.getChildNodes().item(0).getNodeValue());
+            list.add(reader.getElementText());
             break;
         case BerType.UTF8STRING:
-            list.add(new GXAsn1Utf8String(
-                    node.getChildNodes().item(0).getNodeValue()));
+            list.add(new GXAsn1Utf8String(reader.getElementText()));
             break;
         case BerType.IA5_STRING:
-            list.add(new GXAsn1Ia5String(
-                    node.getChildNodes().item(0).getNodeValue()));
+            list.add(new GXAsn1Ia5String(reader.getElementText()));
             break;
         case BerType.INTEGER:
-            list.add(new GXAsn1Integer(
-                    node.getChildNodes().item(0).getNodeValue()));
+            list.add(new GXAsn1Integer(reader.getElementText()));
             break;
         case BerType.NULL:
             list.add(null);
+            skipElement(reader);
             break;
         case BerType.BIT_STRING:
-            list.add(new GXAsn1BitString(
-                    node.getChildNodes().item(0).getNodeValue()));
+            list.add(new GXAsn1BitString(reader.getElementText()));
             break;
         case BerType.UTC_TIME:
             try {
                 DateFormat f = new SimpleDateFormat();
-                Date d = f.parse(node.getChildNodes().item(0).getNodeValue());
+                Date d = f.parse(reader.getElementText());
                 list.add(d);
-            } catch (DOMException | ParseException e) {
+            } catch (ParseException e) {
                 throw new RuntimeException(e.getMessage());
             }
-
             break;
         case BerType.GENERALIZED_TIME:
-            break;
         case BerType.OCTET_STRING:
+            skipElement(reader);
             break;
         case -1:
-            list.add(Byte
-                    .parseByte(node.getChildNodes().item(0).getNodeValue()));
+            list.add(Byte.parseByte(reader.getElementText()));
             break;
         case -2:
-            list.add(Short
-                    .parseShort(node.getChildNodes().item(0).getNodeValue()));
+            list.add(Short.parseShort(reader.getElementText()));
             break;
         case -4:
-            list.add(Integer
-                    .parseInt(node.getChildNodes().item(0).getNodeValue()));
+            list.add(Integer.parseInt(reader.getElementText()));
             break;
         case -8:
-            list.add(Long
-                    .parseLong(node.getChildNodes().item(0).getNodeValue()));
+            list.add(Long.parseLong(reader.getElementText()));
             break;
         default:
             throw new IllegalArgumentException(
-                    "Invalid node: " + node.getNodeName());
+                    "Invalid node: " + reader.getLocalName());
         }
-        return 0;
     }
 
     /**
@@ -851,19 +879,24 @@ public final class GXAsn1Converter {
      * @return ASN.1 PDU.
      */
     public static byte[] xmlToPdu(final String xml) {
-        DocumentBuilder docBuilder;
-        Document doc;
-        DocumentBuilderFactory docBuilderFactory =
-                DocumentBuilderFactory.newInstance();
+        List<Object> list = new ArrayList<Object>();
+        GXAsn1Settings s = new GXAsn1Settings();
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(
+                XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
         try {
-            docBuilder = docBuilderFactory.newDocumentBuilder();
-            doc = docBuilder.parse(new InputSource(new StringReader(xml)));
-        } catch (Exception e) {
+            XMLStreamReader reader =
+                    factory.createXMLStreamReader(new StringReader(xml));
+            try {
+                reader.nextTag();
+                readNode(reader, s, list);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
             throw new RuntimeException(e.getMessage());
         }
-        List<Object> list = new ArrayList<Object>();
-        GXAsn1Settings s = new GXAsn1Settings();
-        readNode(doc.getDocumentElement(), s, list);
         return toByteArray(list.get(0));
     }
 }
\ No newline at end of file
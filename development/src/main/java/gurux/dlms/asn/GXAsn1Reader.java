@@ -0,0 +1,318 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+package gurux.dlms.asn;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import gurux.dlms.GXByteBuffer;
+import gurux.dlms.enums.BerType;
+import gurux.dlms.internal.GXCommon;
+
+/**
+ * Pull reader for ASN.1 DER encoded data.
+ * <p>
+ * Reader walks tag, length and value of each element without creating
+ * objects. Values are read straight from the buffer or they are returned as
+ * read-only views to the buffer. Position of the buffer is the read position
+ * of the reader.
+ * </p>
+ *
+ * <pre>
+ * GXAsn1Reader r = new GXAsn1Reader(data);
+ * r.next();
+ * r.enter();
+ * while (r.next()) {
+ *     ...
+ * }
+ * r.exit();
+ * </pre>
+ */
+public class GXAsn1Reader {
+    /**
+     * Read data.
+     */
+    private final GXByteBuffer data;
+
+    /**
+     * End positions of entered elements.
+     */
+    private int[] ends = new int[8];
+
+    /**
+     * Amount of entered elements.
+     */
+    private int depth;
+
+    /**
+     * End of the read data.
+     */
+    private final int end;
+
+    /**
+     * Tag of the current element. -1 if there is no current element.
+     */
+    private int tag = -1;
+
+    /**
+     * Start position of the current element.
+     */
+    private int offset;
+
+    /**
+     * Start position of the value of the current element.
+     */
+    private int valueOffset;
+
+    /**
+     * Length of the value of the current element.
+     */
+    private int length;
+
+    /**
+     * Constructor. Byte array is not copied.
+     *
+     * @param value
+     *            DER encoded data.
+     */
+    public GXAsn1Reader(final byte[] value) {
+        this(wrap(value));
+    }
+
+    /**
+     * Constructor. Data is read from the current position to the end of the
+     * buffer.
+     *
+     * @param value
+     *            DER encoded data.
+     */
+    public GXAsn1Reader(final GXByteBuffer value) {
+        data = value;
+        end = value.size();
+    }
+
+    /**
+     * Attach byte array to the byte buffer without copying it.
+     *
+     * @param value
+     *            Byte array.
+     * @return Byte buffer.
+     */
+    private static GXByteBuffer wrap(final byte[] value) {
+        GXByteBuffer bb = new GXByteBuffer();
+        bb.setData(value);
+        bb.size(value.length);
+        return bb;
+    }
+
+    /**
+     * @return Read data.
+     */
+    public final GXByteBuffer getData() {
+        return data;
+    }
+
+    /**
+     * @return End position of the entered element.
+     */
+    private int getEnd() {
+        if (depth == 0) {
+            return end;
+        }
+        return ends[depth - 1];
+    }
+
+    /**
+     * Move to the next element. Value of the current element is skipped if
+     * it's not read.
+     *
+     * @return False, if there are no more elements in the entered element.
+     */
+    public final boolean next() {
+        if (tag != -1) {
+            data.position(valueOffset + length);
+        }
+        int last = getEnd();
+        if (data.position() >= last) {
+            tag = -1;
+            return false;
+        }
+        offset = data.position();
+        tag = data.getUInt8();
+        length = GXCommon.getObjectCount(data);
+        valueOffset = data.position();
+        if (length < 0 || length > last - valueOffset) {
+            tag = -1;
+            throw new IllegalArgumentException("Not enought memory.");
+        }
+        return true;
+    }
+
+    /**
+     * Start reading the elements of the current constructed element.
+     */
+    public final void enter() {
+        if (tag == -1) {
+            throw new IllegalStateException("No element.");
+        }
+        if (depth == ends.length) {
+            ends = Arrays.copyOf(ends, 2 * depth);
+        }
+        ends[depth] = valueOffset + length;
+        ++depth;
+        data.position(valueOffset);
+        tag = -1;
+    }
+
+    /**
+     * Stop reading the elements of the entered element. Unread elements are
+     * skipped.
+     */
+    public final void exit() {
+        if (depth == 0) {
+            throw new IllegalStateException("No entered element.");
+        }
+        --depth;
+        data.position(ends[depth]);
+        tag = -1;
+    }
+
+    /**
+     * @return Amount of entered elements.
+     */
+    public final int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return Tag of the current element. -1 if there is no current element.
+     */
+    public final int getTag() {
+        return tag;
+    }
+
+    /**
+     * @return Is current element constructed.
+     */
+    public final boolean isConstructed() {
+        return tag != -1 && (tag & BerType.CONSTRUCTED) != 0;
+    }
+
+    /**
+     * @return Length of the value of the current element.
+     */
+    public final int getLength() {
+        return length;
+    }
+
+    /**
+     * @return Start position of the current element in the buffer.
+     */
+    public final int getOffset() {
+        return offset;
+    }
+
+    /**
+     * @return Start position of the value of the current element in the
+     *         buffer.
+     */
+    public final int getValueOffset() {
+        return valueOffset;
+    }
+
+    /**
+     * @return Read-only view to the value of the current element.
+     */
+    public final ByteBuffer getValue() {
+        return ByteBuffer.wrap(data.getData(), valueOffset, length).slice()
+                .asReadOnlyBuffer();
+    }
+
+    /**
+     * @return Read-only view to the current element including tag and length.
+     */
+    public final ByteBuffer getElement() {
+        return ByteBuffer.wrap(data.getData(), offset,
+                valueOffset + length - offset).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return Copy of the value of the current element.
+     */
+    public final byte[] getBytes() {
+        return Arrays.copyOfRange(data.getData(), valueOffset,
+                valueOffset + length);
+    }
+
+    /**
+     * @return Copy of the current element including tag and length.
+     */
+    public final byte[] getEncoded() {
+        return Arrays.copyOfRange(data.getData(), offset,
+                valueOffset + length);
+    }
+
+    /**
+     * @return Value of the current element as a boolean.
+     */
+    public final boolean getBoolean() {
+        return length != 0 && data.getData()[valueOffset] != 0;
+    }
+
+    /**
+     * Get value of the current integer element. Value must fit to 8 bytes.
+     *
+     * @return Value of the current element.
+     */
+    public final long getLong() {
+        if (length == 0 || length > 8) {
+            throw new IllegalArgumentException("Invalid integer.");
+        }
+        byte[] buff = data.getData();
+        // Sign is taken from the first byte.
+        long value = buff[valueOffset];
+        for (int pos = 1; pos != length; ++pos) {
+            value = (value << 8) | (buff[valueOffset + pos] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * @return Value of the current integer element.
+     */
+    public final BigInteger getBigInteger() {
+        return new BigInteger(getBytes());
+    }
+
+    /**
+     * @return Value of the current element as a string.
+     */
+    public final String getString() {
+        Charset charset;
+        if (tag == BerType.UTF8STRING) {
+            charset = Charset.forName("UTF-8");
+        } else {
+            charset = Charset.forName("US-ASCII");
+        }
+        return new String(data.getData(), valueOffset, length, charset);
+    }
+
+    /**
+     * Find next element with given tag from the entered element.
+     *
+     * @param value
+     *            Searched tag.
+     * @return True, if element is found.
+     */
+    public final boolean find(final int value) {
+        while (next()) {
+            if (tag == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -5,6 +5,7 @@ package gurux.dlms.asn;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
@@ -16,9 +17,14 @@ import java.security.SecureRandom;
 import java.security.Signature;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import gurux.dlms.GXByteBuffer;
 import gurux.dlms.asn.enums.HashAlgorithm;
@@ -27,6 +33,7 @@ import gurux.dlms.asn.enums.X509Certificate;
 import gurux.dlms.enums.BerType;
 import gurux.dlms.internal.GXCommon;
 import gurux.dlms.objects.GXDLMSSecuritySetup;
+import gurux.dlms.secure.GXCryptoCache;
 
 /**
  * x509 Certificate.
@@ -110,6 +117,49 @@ public class GXx509Certificate {
      */
     private Set<KeyUsage> keyUsage = new HashSet<KeyUsage>();
 
+    /**
+     * Encoded certificate. Null if certificate is modified after it was
+     * parsed.
+     */
+    private byte[] encoded;
+
+    /**
+     * Is encoded certificate parsed.
+     */
+    private volatile boolean parsed = true;
+
+    /**
+     * Is certificate shared by {@link #fromByteArray(byte[])}. Shared
+     * certificate can't be modified.
+     */
+    private boolean shared;
+
+    /**
+     * Public keys of the issuers that have been verified to sign this
+     * certificate.
+     */
+    private final Set<PublicKey> verifiedIssuers =
+            Collections.newSetFromMap(new ConcurrentHashMap<PublicKey, Boolean>());
+
+    /**
+     * Maximum amount of cached certificates.
+     */
+    private static int cacheCapacity = 1024;
+
+    /**
+     * Certificates by SHA-256 of the encoded bytes.
+     */
+    private static final LinkedHashMap<ByteBuffer, GXx509Certificate> CACHE =
+            new LinkedHashMap<ByteBuffer, GXx509Certificate>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<ByteBuffer, GXx509Certificate> e) {
+                    return size() > cacheCapacity;
+                }
+            };
+
     /**
      * Constructor.
      */
@@ -126,7 +176,7 @@ public class GXx509Certificate {
     public GXx509Certificate(final String data) {
         String tmp = data.replace("-----BEGIN CERTIFICATE-----", "");
         tmp = tmp.replace("-----END CERTIFICATE-----", "");
-        init(GXCommon.fromBase64(tmp.trim()));
+        setEncoded(GXCommon.fromBase64(tmp.trim()));
     }
 
     static String getAlgorithm(final String algorithm) {
@@ -236,13 +286,186 @@ public class GXx509Certificate {
      *            Encoded bytes.
      */
     public GXx509Certificate(final byte[] data) {
-        init(data);
+        setEncoded(data.clone());
+    }
+
+    /**
+     * Save encoded certificate. Certificate is parsed when it's used first
+     * time.
+     * 
+     * @param data
+     *            Encoded bytes.
+     */
+    private void setEncoded(final byte[] data) {
+        if (data.length < 2 || data[0] != 0x30) {
+            throw new IllegalArgumentException("Invalid certificate.");
+        }
+        encoded = data;
+        parsed = false;
+    }
+
+    /**
+     * Parse encoded certificate if it's not parsed yet.
+     */
+    private void parse() {
+        if (!parsed) {
+            synchronized (this) {
+                if (!parsed) {
+                    init(encoded);
+                    parsed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Certificate is modified. Parse it first so modified value is not
+     * overwritten and discard encoded bytes and verified issuers.
+     */
+    private void modify() {
+        if (shared) {
+            throw new IllegalStateException(
+                    "Shared certificate can't be modified.");
+        }
+        parse();
+        encoded = null;
+        verifiedIssuers.clear();
+    }
+
+    /**
+     * Get certificate from the encoded bytes. Certificates are cached by
+     * SHA-256 of the encoded bytes, so same certificate is parsed only once.
+     * Returned certificate is shared and it can't be modified. Setters throw
+     * IllegalStateException and getters return copies of the mutable
+     * values. Use {@link #GXx509Certificate(byte[])} to create a certificate
+     * that can be modified.
+     * 
+     * @param data
+     *            Encoded bytes.
+     * @return Certificate.
+     */
+    public static GXx509Certificate fromByteArray(final byte[] data) {
+        ByteBuffer key;
+        try {
+            key = ByteBuffer.wrap(
+                    GXCryptoCache.getMessageDigest("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            return new GXx509Certificate(data);
+        }
+        GXx509Certificate cert;
+        synchronized (CACHE) {
+            cert = CACHE.get(key);
+        }
+        if (cert == null) {
+            cert = new GXx509Certificate(data);
+            synchronized (CACHE) {
+                GXx509Certificate old = CACHE.get(key);
+                if (old != null) {
+                    cert = old;
+                } else if (cacheCapacity != 0) {
+                    cert.shared = true;
+                    CACHE.put(key, cert);
+                }
+            }
+        }
+        return cert;
+    }
+
+    /**
+     * @return Maximum amount of certificates that are cached by
+     *         {@link #fromByteArray(byte[])}.
+     */
+    public static int getCacheCapacity() {
+        synchronized (CACHE) {
+            return cacheCapacity;
+        }
+    }
+
+    /**
+     * @param value
+     *            Maximum amount of certificates that are cached by
+     *            {@link #fromByteArray(byte[])}. Zero disables the cache.
+     */
+    public static void setCacheCapacity(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("capacity");
+        }
+        synchronized (CACHE) {
+            cacheCapacity = value;
+            Iterator<ByteBuffer> it = CACHE.keySet().iterator();
+            while (CACHE.size() > cacheCapacity) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Get to be signed part of the encoded certificate.
+     * 
+     * @return TBS certificate.
+     */
+    private ByteBuffer getTbsCertificate() {
+        byte[] data = encoded;
+        if (data == null) {
+            data = getEncoded();
+        }
+        GXAsn1Reader reader = new GXAsn1Reader(data);
+        if (!reader.next()) {
+            throw new IllegalArgumentException("Invalid certificate.");
+        }
+        reader.enter();
+        if (!reader.next()) {
+            throw new IllegalArgumentException("Invalid certificate.");
+        }
+        return reader.getElement();
+    }
+
+    /**
+     * Verify that certificate is signed by the issuer. Successful
+     * verification is remembered, so it's not repeated.
+     * 
+     * @param issuerKey
+     *            Public key of the issuer.
+     * @return Is certificate signed with the issuer key.
+     */
+    public final boolean verify(final PublicKey issuerKey) {
+        if (verifiedIssuers.contains(issuerKey)) {
+            return true;
+        }
+        parse();
+        try {
+            Signature instance = GXCryptoCache
+                    .getSignature(signatureAlgorithm.toString());
+            instance.initVerify(issuerKey);
+            instance.update(getTbsCertificate());
+            if (!instance.verify(signature)) {
+                return false;
+            }
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage());
+        }
+        verifiedIssuers.add(issuerKey);
+        return true;
+    }
+
+    /**
+     * Verify that certificate is signed by the issuer certificate.
+     * 
+     * @param issuer
+     *            Issuer certificate. Self signed certificate is its own
+     *            issuer.
+     * @return Is certificate signed by the issuer.
+     */
+    public final boolean verify(final GXx509Certificate issuer) {
+        return verify(issuer.getPublicKey());
     }
 
     /**
      * @return Subject.
      */
     public final String getSubject() {
+        parse();
         return subject;
     }
 
@@ -251,6 +474,7 @@ public class GXx509Certificate {
      *            Subject.
      */
     public final void setSubject(final String value) {
+        modify();
         subject = value;
     }
 
@@ -258,6 +482,7 @@ public class GXx509Certificate {
      * @return Issuer.
      */
     public final String getIssuer() {
+        parse();
         return issuer;
     }
 
@@ -266,6 +491,7 @@ public class GXx509Certificate {
      *            Issuer.
      */
     public final void setIssuer(final String value) {
+        modify();
         issuer = value;
     }
 
@@ -273,6 +499,7 @@ public class GXx509Certificate {
      * @return Serial number.
      */
     public final GXAsn1Integer getSerialNumber() {
+        parse();
         return serialNumber;
     }
 
@@ -281,6 +508,7 @@ public class GXx509Certificate {
      *            Serial number.
      */
     public final void setSerialNumber(final GXAsn1Integer value) {
+        modify();
         serialNumber = value;
     }
 
@@ -288,6 +516,7 @@ public class GXx509Certificate {
      * @return Version number.
      */
     public final CertificateVersion getVersion() {
+        parse();
         return version;
     }
 
@@ -296,6 +525,7 @@ public class GXx509Certificate {
      *            Version number.
      */
     public final void setVersion(final CertificateVersion value) {
+        modify();
         version = value;
     }
 
@@ -303,6 +533,10 @@ public class GXx509Certificate {
      * @return Validity from.
      */
     public final Date getValidFrom() {
+        parse();
+        if (shared && validFrom != null) {
+            return (Date) validFrom.clone();
+        }
         return validFrom;
     }
 
@@ -311,6 +545,7 @@ public class GXx509Certificate {
      *            Validity from.
      */
     public final void setValidFrom(final Date value) {
+        modify();
         validFrom = value;
     }
 
@@ -318,6 +553,10 @@ public class GXx509Certificate {
      * @return Validity to.
      */
     public final Date getValidTo() {
+        parse();
+        if (shared && validTo != null) {
+            return (Date) validTo.clone();
+        }
         return validTo;
     }
 
@@ -326,6 +565,7 @@ public class GXx509Certificate {
      *            Validity to.
      */
     public final void setValidTo(final Date value) {
+        modify();
         validTo = value;
     }
 
@@ -333,6 +573,7 @@ public class GXx509Certificate {
      * @return Algorithm
      */
     public final HashAlgorithm getAlgorithm() {
+        parse();
         return algorithm;
     }
 
@@ -341,6 +582,7 @@ public class GXx509Certificate {
      *            Algorithm.
      */
     public final void setAlgorithm(final HashAlgorithm value) {
+        modify();
         algorithm = value;
     }
 
@@ -348,6 +590,7 @@ public class GXx509Certificate {
      * @return Parameters.
      */
     public final Object getParameters() {
+        parse();
         return parameters;
     }
 
@@ -356,6 +599,7 @@ public class GXx509Certificate {
      *            Parameters.
      */
     public final void setParameters(final Object value) {
+        modify();
         parameters = value;
     }
 
@@ -363,6 +607,7 @@ public class GXx509Certificate {
      * @return Public key.
      */
     public final PublicKey getPublicKey() {
+        parse();
         return publicKey;
     }
 
@@ -371,6 +616,7 @@ public class GXx509Certificate {
      *            Public key.
      */
     public final void setPublicKey(final PublicKey value) {
+        modify();
         publicKey = value;
     }
 
@@ -378,6 +624,10 @@ public class GXx509Certificate {
      * @return Signature.
      */
     public final byte[] getSignature() {
+        parse();
+        if (shared && signature != null) {
+            return signature.clone();
+        }
         return signature;
     }
 
@@ -386,10 +636,12 @@ public class GXx509Certificate {
      *            Signature.
      */
     public final void setSignature(final byte[] value) {
+        modify();
         signature = value;
     }
 
     private Object[] getdata() {
+        parse();
         GXAsn1ObjectIdentifier a =
                 new GXAsn1ObjectIdentifier(algorithm.getValue());
         GXAsn1Context p = new GXAsn1Context();
@@ -471,6 +723,11 @@ public class GXx509Certificate {
     }
 
     public final byte[] getEncoded() {
+        byte[] data = encoded;
+        if (data != null) {
+            return data.clone();
+        }
+        parse();
         Object tmp = new Object[] {
                 new GXAsn1ObjectIdentifier(signatureAlgorithm.getValue()),
                 signatureParameters };
@@ -488,6 +745,7 @@ public class GXx509Certificate {
      *            Used signature algorithm.
      */
     public void sign(final KeyPair kp, final HashAlgorithm hashAlgorithm) {
+        modify();
         byte[] data = GXAsn1Converter.toByteArray(getdata());
         try {
             Signature instance =
@@ -503,6 +761,7 @@ public class GXx509Certificate {
 
     @Override
     public final String toString() {
+        parse();
         StringBuilder bb = new StringBuilder();
         bb.append("Version: ");
         bb.append(version.toString());
@@ -620,6 +879,10 @@ public class GXx509Certificate {
      * @return Key usage.
      */
     public Set<KeyUsage> getKeyUsage() {
+        parse();
+        if (shared) {
+            return Collections.unmodifiableSet(keyUsage);
+        }
         return keyUsage;
     }
 
@@ -628,6 +891,7 @@ public class GXx509Certificate {
      *            Key usage.
      */
     public void setKeyUsage(final Set<KeyUsage> value) {
+        modify();
         keyUsage = value;
     }
 
@@ -635,6 +899,10 @@ public class GXx509Certificate {
      * @return Identifies the public key being certified.
      */
     public byte[] getSubjectKeyIdentifier() {
+        parse();
+        if (shared && subjectKeyIdentifier != null) {
+            return subjectKeyIdentifier.clone();
+        }
         return subjectKeyIdentifier;
     }
 
@@ -643,6 +911,7 @@ public class GXx509Certificate {
      *            Identifies the public key being certified.
      */
     public void setSubjectKeyIdentifier(final byte[] value) {
+        modify();
         subjectKeyIdentifier = value;
     }
 
@@ -650,6 +919,10 @@ public class GXx509Certificate {
      * @return May be used either as a certificate or CRL extension.
      */
     public byte[] getAuthorityKeyIdentifier() {
+        parse();
+        if (shared && authorityKeyIdentifier != null) {
+            return authorityKeyIdentifier.clone();
+        }
         return authorityKeyIdentifier;
     }
 
@@ -658,6 +931,7 @@ public class GXx509Certificate {
      *            May be used either as a certificate or CRL extension.
      */
     public void setAuthorityKeyIdentifier(final byte[] value) {
+        modify();
         this.authorityKeyIdentifier = value;
     }
 
@@ -665,6 +939,7 @@ public class GXx509Certificate {
      * @return Indicates if the subject may act as a CA.
      */
     public boolean isBasicConstraints() {
+        parse();
         return basicConstraints;
     }
 
@@ -673,6 +948,7 @@ public class GXx509Certificate {
      *            Indicates if the subject may act as a CA.
      */
     public void setBasicConstraints(final boolean value) {
+        modify();
         basicConstraints = value;
     }
 
@@ -699,6 +975,7 @@ public class GXx509Certificate {
      *             IO exception.
      */
     public void save(final Path path) throws IOException {
+        parse();
         StringBuffer sb = new StringBuffer();
         if (publicKey != null) {
             sb.append("-----BEGIN CERTIFICATE-----" + System.lineSeparator());
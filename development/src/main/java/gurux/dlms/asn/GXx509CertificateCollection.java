@@ -0,0 +1,194 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+package gurux.dlms.asn;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import gurux.dlms.asn.enums.KeyUsage;
+import gurux.dlms.objects.GXDLMSSecuritySetup;
+
+/**
+ * List of x509 certificates. Certificates are indexed by subject, serial
+ * number and subject key identifier, so they can be found without going
+ * through the whole list. Indexes are built when the collection is searched
+ * first time after it's changed. Certificates must not be modified after
+ * they are added to the collection.
+ */
+public class GXx509CertificateCollection
+        extends ArrayList<GXx509Certificate> {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Certificates by lower case subject.
+     */
+    private transient Map<String, List<GXx509Certificate>> subjects;
+
+    /**
+     * Certificates by serial number.
+     */
+    private transient Map<ByteBuffer, List<GXx509Certificate>> serials;
+
+    /**
+     * Certificates by subject key identifier.
+     */
+    private transient Map<ByteBuffer, List<GXx509Certificate>> keyIdentifiers;
+
+    /**
+     * Modification count when indexes were built.
+     */
+    private transient int indexed = -1;
+
+    /**
+     * Constructor.
+     */
+    public GXx509CertificateCollection() {
+        super();
+    }
+
+    @Override
+    public final GXx509Certificate set(final int index,
+            final GXx509Certificate element) {
+        // Set doesn't change modification count.
+        ++modCount;
+        return super.set(index, element);
+    }
+
+    /**
+     * Add certificate to the index.
+     *
+     * @param map
+     *            Index.
+     * @param key
+     *            Key.
+     * @param value
+     *            Certificate.
+     */
+    private static <T> void add(final Map<T, List<GXx509Certificate>> map,
+            final T key, final GXx509Certificate value) {
+        List<GXx509Certificate> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<GXx509Certificate>(1);
+            map.put(key, list);
+        }
+        list.add(value);
+    }
+
+    /**
+     * Build indexes if the collection is changed after they were built.
+     */
+    private void updateIndexes() {
+        if (indexed != modCount) {
+            subjects = new HashMap<String, List<GXx509Certificate>>(size());
+            serials = new HashMap<ByteBuffer, List<GXx509Certificate>>(size());
+            keyIdentifiers =
+                    new HashMap<ByteBuffer, List<GXx509Certificate>>(size());
+            for (GXx509Certificate it : this) {
+                if (it.getSubject() != null) {
+                    add(subjects, it.getSubject().toLowerCase(Locale.ROOT), it);
+                }
+                if (it.getSerialNumber() != null) {
+                    add(serials, ByteBuffer
+                            .wrap(it.getSerialNumber().getByteArray()), it);
+                }
+                if (it.getSubjectKeyIdentifier() != null) {
+                    add(keyIdentifiers,
+                            ByteBuffer.wrap(it.getSubjectKeyIdentifier()), it);
+                }
+            }
+            indexed = modCount;
+        }
+    }
+
+    /**
+     * Find certificate by subject.
+     *
+     * @param subject
+     *            Subject. Compare is case insensitive.
+     * @param usage
+     *            Key usage. Certificate must contain it.
+     * @return Found certificate or null if certificate is not found.
+     */
+    public final synchronized GXx509Certificate findBySubject(
+            final String subject, final KeyUsage usage) {
+        if (subject == null) {
+            return null;
+        }
+        updateIndexes();
+        List<GXx509Certificate> list =
+                subjects.get(subject.toLowerCase(Locale.ROOT));
+        if (list != null) {
+            for (GXx509Certificate it : list) {
+                if (it.getKeyUsage().contains(usage)) {
+                    return it;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find certificate by system title.
+     *
+     * @param systemTitle
+     *            System title.
+     * @param usage
+     *            Key usage. Certificate must contain it.
+     * @return Found certificate or null if certificate is not found.
+     */
+    public final GXx509Certificate findBySystemTitle(final byte[] systemTitle,
+            final KeyUsage usage) {
+        return findBySubject(
+                GXDLMSSecuritySetup.systemTitleToSubject(systemTitle), usage);
+    }
+
+    /**
+     * Find certificate by serial number.
+     *
+     * @param serialNumber
+     *            Serial number.
+     * @param issuer
+     *            Issuer. Compare is case insensitive.
+     * @return Found certificate or null if certificate is not found.
+     */
+    public final synchronized GXx509Certificate
+            findBySerial(final byte[] serialNumber, final String issuer) {
+        updateIndexes();
+        List<GXx509Certificate> list =
+                serials.get(ByteBuffer.wrap(serialNumber));
+        if (list != null) {
+            for (GXx509Certificate it : list) {
+                if (it.getIssuer().equalsIgnoreCase(issuer)) {
+                    return it;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find certificate by subject key identifier.
+     *
+     * @param value
+     *            Subject key identifier.
+     * @return Found certificate or null if certificate is not found.
+     */
+    public final synchronized GXx509Certificate
+            findBySubjectKeyIdentifier(final byte[] value) {
+        if (value == null) {
+            return null;
+        }
+        updateIndexes();
+        List<GXx509Certificate> list =
+                keyIdentifiers.get(ByteBuffer.wrap(value));
+        if (list != null) {
+            return list.get(0);
+        }
+        return null;
+    }
+}
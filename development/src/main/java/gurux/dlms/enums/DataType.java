@@ -159,20 +159,24 @@ public enum DataType {
     UINT8(0x11);
 
     private int intValue;
-    private static java.util.HashMap<Integer, DataType> mappings;
+    /**
+     * Data types by value. Array is used instead of map to avoid boxing.
+     */
+    private static final DataType[] VALUES;
 
-    private static java.util.HashMap<Integer, DataType> getMappings() {
-        synchronized (DataType.class) {
-            if (mappings == null) {
-                mappings = new java.util.HashMap<Integer, DataType>();
-            }
+    static {
+        int max = 0;
+        for (DataType it : values()) {
+            max = Math.max(max, it.intValue);
+        }
+        VALUES = new DataType[max + 1];
+        for (DataType it : values()) {
+            VALUES[it.intValue] = it;
         }
-        return mappings;
     }
 
     DataType(final int value) {
         intValue = value;
-        getMappings().put(new Integer(value), this);
     }
 
     /*
@@ -186,7 +190,10 @@ public enum DataType {
      * Convert integer for enum value.
      */
     public static DataType forValue(final int value) {
-        DataType type = getMappings().get(new Integer(value));
+        DataType type = null;
+        if (value >= 0 && value < VALUES.length) {
+            type = VALUES[value];
+        }
         if (type == null) {
             throw new IllegalArgumentException(
                     "Invalid data type: " + String.valueOf(value));
@@ -50,8 +50,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
 
-import javax.crypto.KeyAgreement;
-
 import gurux.dlms.GXBitString;
 import gurux.dlms.GXByteBuffer;
 import gurux.dlms.GXDLMSClient;
@@ -60,11 +58,13 @@ import gurux.dlms.GXDate;
 import gurux.dlms.GXDateTime;
 import gurux.dlms.GXICipher;
 import gurux.dlms.GXTime;
+import gurux.dlms.IGXDataVisitor;
 import gurux.dlms.TranslatorOutputType;
 import gurux.dlms.enums.ClockStatus;
 import gurux.dlms.enums.DataType;
 import gurux.dlms.enums.DateTimeSkips;
 import gurux.dlms.objects.enums.CertificateType;
+import gurux.dlms.secure.GXCryptoCache;
 
 /*
  * <b> This class is for internal use only and is subject to changes or removal
@@ -490,6 +490,37 @@ public final class GXCommon {
         }
     }
 
+    /**
+     * Set item count to the given index.
+     * 
+     * @param index
+     *            Byte index.
+     * @param count
+     *            Item count.
+     * @param buff
+     *            Byte buffer.
+     * @return Amount of bytes used.
+     */
+    public static byte setObjectCount(final int index, final int count,
+            final GXByteBuffer buff) {
+        if (count < 0x80) {
+            buff.setUInt8(index, count);
+            return 1;
+        } else if (count < 0x100) {
+            buff.setUInt8(index, 0x81);
+            buff.setUInt8(index + 1, count);
+            return 2;
+        } else if (count < 0x10000) {
+            buff.setUInt8(index, 0x82);
+            buff.setUInt16(index + 1, count);
+            return 3;
+        } else {
+            buff.setUInt8(index, 0x84);
+            buff.setUInt32(index + 1, count);
+            return 5;
+        }
+    }
+
     /*
      * Compares, whether two given arrays are similar.
      * @param arr1 First array to compare.
@@ -639,6 +670,215 @@ public final class GXCommon {
         return value;
     }
 
+    /**
+     * Get data from DLMS frame and report it to the visitor. Values are read
+     * straight from the buffer and no intermediate objects are created.
+     * 
+     * @param data
+     *            received data.
+     * @param visitor
+     *            Visitor where values are reported.
+     * @return True, if value is read. False, if data is incomplete. Buffer
+     *         position is restored and values already reported should be
+     *         ignored.
+     */
+    public static boolean visitData(final GXByteBuffer data,
+            final IGXDataVisitor visitor) {
+        final int startIndex = data.position();
+        // Items left and type for each open array or structure.
+        int[] left = new int[8];
+        boolean[] structures = new boolean[8];
+        int level = 0;
+        boolean first = true;
+        while (first || level != 0) {
+            first = false;
+            if (level != 0) {
+                if (left[level - 1] == 0) {
+                    --level;
+                    if (structures[level]) {
+                        visitor.onStructureEnd();
+                    } else {
+                        visitor.onArrayEnd();
+                    }
+                    continue;
+                }
+                --left[level - 1];
+            }
+            if (data.position() == data.size()) {
+                data.position(startIndex);
+                return false;
+            }
+            DataType type = DataType.forValue(data.getUInt8());
+            int len;
+            switch (type) {
+            case NONE:
+                visitor.onNull();
+                break;
+            case ARRAY:
+            case STRUCTURE:
+                if (!isObjectCountAvailable(data)) {
+                    data.position(startIndex);
+                    return false;
+                }
+                len = getObjectCount(data);
+                if (level == left.length) {
+                    left = Arrays.copyOf(left, 2 * level);
+                    structures = Arrays.copyOf(structures, 2 * level);
+                }
+                left[level] = len;
+                structures[level] = type == DataType.STRUCTURE;
+                ++level;
+                if (type == DataType.STRUCTURE) {
+                    visitor.onStructureStart(len);
+                } else {
+                    visitor.onArrayStart(len);
+                }
+                break;
+            case OCTET_STRING:
+            case STRING:
+            case STRING_UTF8:
+            case BITSTRING:
+                if (!isObjectCountAvailable(data)) {
+                    data.position(startIndex);
+                    return false;
+                }
+                len = getObjectCount(data);
+                int byteCnt = len;
+                if (type == DataType.BITSTRING) {
+                    byteCnt = (len + 7) / 8;
+                }
+                if (data.size() - data.position() < byteCnt) {
+                    data.position(startIndex);
+                    return false;
+                }
+                int pos = data.position();
+                if (type == DataType.OCTET_STRING) {
+                    visitor.onOctetString(data.getData(), pos, len);
+                } else if (type == DataType.STRING) {
+                    visitor.onString(data.getData(), pos, len);
+                } else if (type == DataType.STRING_UTF8) {
+                    visitor.onUtf8String(data.getData(), pos, len);
+                } else {
+                    visitor.onBitString(data.getData(), pos, len);
+                }
+                data.position(pos + byteCnt);
+                break;
+            case COMPACT_ARRAY:
+                GXDataInfo info = new GXDataInfo();
+                info.setType(type);
+                Object value = getData(data, info);
+                if (!info.isComplete()) {
+                    data.position(startIndex);
+                    return false;
+                }
+                visitor.onCompactArray(value);
+                break;
+            default:
+                len = getDataTypeSize(type);
+                if (data.size() - data.position() < len) {
+                    data.position(startIndex);
+                    return false;
+                }
+                visitPrimitive(data, type, visitor);
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check is there enough data available to read object count.
+     * 
+     * @param data
+     *            received data.
+     * @return True, if object count can be read.
+     */
+    private static boolean isObjectCountAvailable(final GXByteBuffer data) {
+        int available = data.size() - data.position();
+        if (available == 0) {
+            return false;
+        }
+        int cnt = data.getUInt8(data.position());
+        if (cnt == 0x81) {
+            return available > 1;
+        } else if (cnt == 0x82) {
+            return available > 2;
+        } else if (cnt == 0x84) {
+            return available > 4;
+        }
+        return true;
+    }
+
+    /**
+     * Report fixed size value to the visitor.
+     * 
+     * @param data
+     *            received data.
+     * @param type
+     *            Data type.
+     * @param visitor
+     *            Visitor where value is reported.
+     */
+    private static void visitPrimitive(final GXByteBuffer data,
+            final DataType type, final IGXDataVisitor visitor) {
+        int pos = data.position();
+        switch (type) {
+        case BOOLEAN:
+            visitor.onBoolean(data.getUInt8() != 0);
+            break;
+        case INT8:
+            visitor.onInt8(data.getInt8());
+            break;
+        case INT16:
+            visitor.onInt16(data.getInt16());
+            break;
+        case INT32:
+            visitor.onInt32(data.getInt32());
+            break;
+        case INT64:
+            visitor.onInt64(data.getInt64());
+            break;
+        case UINT8:
+            visitor.onUInt8(data.getUInt8());
+            break;
+        case UINT16:
+            visitor.onUInt16(data.getUInt16());
+            break;
+        case UINT32:
+            visitor.onUInt32(data.getUInt32());
+            break;
+        case UINT64:
+            visitor.onUInt64(data.getInt64());
+            break;
+        case ENUM:
+            visitor.onEnum(data.getUInt8());
+            break;
+        case BCD:
+            visitor.onBcd(data.getUInt8());
+            break;
+        case FLOAT32:
+            visitor.onFloat32(data.getFloat());
+            break;
+        case FLOAT64:
+            visitor.onFloat64(data.getDouble());
+            break;
+        case DATETIME:
+            visitor.onDateTime(data.getData(), pos);
+            data.position(pos + 12);
+            break;
+        case DATE:
+            visitor.onDate(data.getData(), pos);
+            data.position(pos + 5);
+            break;
+        case TIME:
+            visitor.onTime(data.getData(), pos);
+            data.position(pos + 4);
+            break;
+        default:
+            throw new RuntimeException("Invalid data type.");
+        }
+    }
+
     /*
      * Convert value to hex string.
      * @param value value to convert.
@@ -2468,10 +2708,7 @@ public final class GXCommon {
             if (pk == null) {
                 throw new IllegalArgumentException("Certificate not set.");
             }
-            KeyAgreement ka = KeyAgreement.getInstance("ECDH");
-            ka.init(p);
-            ka.doPhase(pk, true);
-            byte[] sharedSecret = ka.generateSecret();
+            byte[] sharedSecret = GXCryptoCache.getSharedSecret(p, pk);
             System.out.println("Shared secret:" + GXCommon.toHex(sharedSecret));
             return sharedSecret;
         } catch (Exception ex) {
@@ -2531,6 +2768,108 @@ public final class GXCommon {
         return buff;
     }
 
+    /**
+     * Convert logical name to integer. Each value of the logical name is one
+     * byte of the integer and the first value is the most significant byte.
+     * 
+     * @param value
+     *            Logical name.
+     * @return Logical name as integer or -1 if value is not a logical name
+     *         in the dotted decimal form without leading zeros.
+     */
+    public static long logicalNameToLong(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        long ret = 0;
+        int count = 0, v = 0, digits = 0;
+        for (int pos = 0; pos != value.length(); ++pos) {
+            char ch = value.charAt(pos);
+            if (ch == '.') {
+                if (digits == 0 || count == 5) {
+                    return -1;
+                }
+                ret = (ret << 8) | v;
+                ++count;
+                v = 0;
+                digits = 0;
+            } else if (ch >= '0' && ch <= '9') {
+                // Leading zeros are not allowed.
+                if (digits != 0 && v == 0) {
+                    return -1;
+                }
+                v = 10 * v + ch - '0';
+                if (v > 255) {
+                    return -1;
+                }
+                ++digits;
+            } else {
+                return -1;
+            }
+        }
+        if (digits == 0 || count != 5) {
+            return -1;
+        }
+        return (ret << 8) | v;
+    }
+
+    /**
+     * Convert logical name byte array to integer.
+     * 
+     * @param value
+     *            Logical name as a byte array.
+     * @return Logical name as integer or -1 if value is not 6 bytes long.
+     */
+    public static long logicalNameToLong(final byte[] value) {
+        if (value == null || value.length != 6) {
+            return -1;
+        }
+        long ret = 0;
+        for (byte it : value) {
+            ret = (ret << 8) | (it & 0xFF);
+        }
+        return ret;
+    }
+
+    /**
+     * Convert logical name integer to byte array.
+     * 
+     * @param value
+     *            Logical name as integer.
+     * @return Logical name as byte array.
+     */
+    public static byte[] logicalNameToBytes(final long value) {
+        if (value < 0 || value > 0xFFFFFFFFFFFFL) {
+            throw new IllegalArgumentException("Invalid Logical name.");
+        }
+        byte[] buff = new byte[6];
+        for (int pos = 0; pos != 6; ++pos) {
+            buff[pos] = (byte) (value >>> (40 - 8 * pos));
+        }
+        return buff;
+    }
+
+    /**
+     * Convert logical name integer to string.
+     * 
+     * @param value
+     *            Logical name as integer.
+     * @return Logical name as a string.
+     */
+    public static String toLogicalName(final long value) {
+        if (value < 0 || value > 0xFFFFFFFFFFFFL) {
+            throw new IllegalArgumentException("Invalid Logical name.");
+        }
+        StringBuilder sb = new StringBuilder(23);
+        for (int pos = 0; pos != 6; ++pos) {
+            if (pos != 0) {
+                sb.append('.');
+            }
+            sb.append((value >>> (40 - 8 * pos)) & 0xFF);
+        }
+        return sb.toString();
+    }
+
     /**
      * Convert integer list to array.
      * 
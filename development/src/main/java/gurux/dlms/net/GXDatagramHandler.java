@@ -0,0 +1,254 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.net;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Handles datagrams of one UDP port. Each remote address has own connection
+ * and server session. Idle connections are checked periodically in the
+ * event loop thread, so sessions of remote addresses that have stopped
+ * sending are released even if nothing is received.
+ */
+final class GXDatagramHandler {
+    private static final Logger LOGGER =
+            Logger.getLogger(GXDatagramHandler.class.getName());
+
+    /**
+     * Reactor.
+     */
+    private final GXNetReactor reactor;
+
+    /**
+     * Event loop where datagrams are handled.
+     */
+    private final GXEventLoop loop;
+
+    /**
+     * Datagram channel.
+     */
+    private final DatagramChannel channel;
+
+    /**
+     * Connections by remote address.
+     */
+    private final ConcurrentMap<SocketAddress, GXNetConnection> connections =
+            new ConcurrentHashMap<SocketAddress, GXNetConnection>();
+
+    /**
+     * Connections that are waiting until datagrams can be sent. Used only
+     * in the event loop thread.
+     */
+    private final Set<GXNetConnection> blocked =
+            new LinkedHashSet<GXNetConnection>();
+
+    /**
+     * Close idle connections. Executed by the event loop timer.
+     */
+    private final Runnable idleCheck = new Runnable() {
+        @Override
+        public void run() {
+            closeIdle(System.currentTimeMillis());
+        }
+    };
+
+    /**
+     * Constructor.
+     * 
+     * @param owner
+     *            Reactor.
+     * @param eventLoop
+     *            Event loop where datagrams are handled.
+     * @param value
+     *            Datagram channel.
+     */
+    GXDatagramHandler(final GXNetReactor owner, final GXEventLoop eventLoop,
+            final DatagramChannel value) {
+        reactor = owner;
+        loop = eventLoop;
+        channel = value;
+    }
+
+    /**
+     * @return Datagram channel.
+     */
+    DatagramChannel getChannel() {
+        return channel;
+    }
+
+    /**
+     * @return Task that closes idle connections.
+     */
+    Runnable getIdleCheck() {
+        return idleCheck;
+    }
+
+    /**
+     * Get connection of the remote address. Connection is created if it
+     * doesn't exist.
+     * 
+     * @param address
+     *            Remote address.
+     * @return Connection or null if there are too many connections.
+     */
+    GXNetConnection getConnection(final SocketAddress address) {
+        GXNetConnection c = connections.get(address);
+        if (c == null) {
+            int max = reactor.getMaxDatagramConnections();
+            if (max != 0 && connections.size() >= max) {
+                closeIdle(System.currentTimeMillis());
+                if (connections.size() >= max) {
+                    return null;
+                }
+            }
+            c = new GXNetConnection(reactor, loop, this, address,
+                    reactor.createSession());
+            GXNetConnection tmp = connections.putIfAbsent(address, c);
+            if (tmp != null) {
+                c = tmp;
+            } else {
+                reactor.added(c);
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Remove closed connection.
+     * 
+     * @param value
+     *            Connection.
+     */
+    void remove(final GXNetConnection value) {
+        connections.remove(value.getRemoteAddress(), value);
+    }
+
+    /**
+     * Close connections that are idle longer than the idle timeout.
+     * 
+     * @param now
+     *            Current time.
+     */
+    private void closeIdle(final long now) {
+        int timeout = reactor.getDatagramIdleTimeout();
+        if (timeout != 0) {
+            for (GXNetConnection it : connections.values()) {
+                if (now - it.getLastActivity() >= timeout) {
+                    it.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait until the datagram channel is writable. This is called from the
+     * event loop thread when the socket buffer is full.
+     * 
+     * @param value
+     *            Connection that has data to send.
+     */
+    void waitWrite(final GXNetConnection value) {
+        blocked.add(value);
+        SelectionKey key = channel.keyFor(loop.getSelector());
+        if (key != null && key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    /**
+     * Send data of the connections that are waiting until the datagram
+     * channel is writable.
+     */
+    void writable() {
+        List<GXNetConnection> list = new ArrayList<GXNetConnection>(blocked);
+        blocked.clear();
+        for (GXNetConnection it : list) {
+            if (!it.isClosed()) {
+                try {
+                    it.flush();
+                } catch (IOException e) {
+                    LOGGER.log(Level.INFO, e.toString());
+                    it.close();
+                }
+            }
+        }
+        SelectionKey key = channel.keyFor(loop.getSelector());
+        if (blocked.isEmpty() && key != null && key.isValid()) {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Receive all waiting datagrams and handle them.
+     * 
+     * @param buffer
+     *            Read buffer.
+     */
+    void receive(final ByteBuffer buffer) {
+        try {
+            buffer.clear();
+            SocketAddress address;
+            while ((address = channel.receive(buffer)) != null) {
+                buffer.flip();
+                try {
+                    GXNetConnection c = getConnection(address);
+                    if (c == null) {
+                        LOGGER.log(Level.FINE, "Too many UDP connections. "
+                                + "Datagram from " + address + " is ignored.");
+                    } else {
+                        c.received(buffer);
+                    }
+                } catch (RuntimeException e) {
+                    LOGGER.log(Level.INFO, e.toString());
+                }
+                buffer.clear();
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, e.toString());
+        }
+    }
+}
@@ -0,0 +1,295 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Event loop. Loop waits events of the registered channels with the selector
+ * and handles them in own thread. Tasks of other threads are queued and
+ * executed in the loop thread. Timers are executed periodically in the loop
+ * thread even if nothing is received.
+ */
+final class GXEventLoop implements Runnable {
+    private static final Logger LOGGER =
+            Logger.getLogger(GXEventLoop.class.getName());
+
+    /**
+     * Size of the read buffer.
+     */
+    private static final int BUFFER_SIZE = 0x10000;
+
+    /**
+     * How often timers are executed in milliseconds.
+     */
+    private static final int TIMER_INTERVAL = 1000;
+
+    /**
+     * Selector.
+     */
+    private final Selector selector;
+
+    /**
+     * Read buffer. Received data is handled before the next read, so one
+     * buffer is shared by all channels of the loop.
+     */
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+    /**
+     * Tasks from other threads.
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    /**
+     * Periodic tasks. Used only in the loop thread.
+     */
+    private final List<Runnable> timers = new ArrayList<Runnable>();
+
+    /**
+     * Time when timers are executed next time.
+     */
+    private long nextTimer;
+
+    /**
+     * Loop thread.
+     */
+    private final Thread thread;
+
+    /**
+     * Is loop closing.
+     */
+    private volatile boolean closing;
+
+    /**
+     * Constructor.
+     * 
+     * @param name
+     *            Thread name.
+     * @throws IOException
+     *             Selector can't be opened.
+     */
+    GXEventLoop(final String name) throws IOException {
+        selector = Selector.open();
+        thread = new Thread(this, name);
+        thread.setDaemon(true);
+    }
+
+    /**
+     * @return Selector.
+     */
+    Selector getSelector() {
+        return selector;
+    }
+
+    /**
+     * Start loop thread.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * @return Is current thread the loop thread.
+     */
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Execute task in the loop thread.
+     * 
+     * @param task
+     *            Executed task.
+     */
+    void execute(final Runnable task) {
+        if (inEventLoop()) {
+            task.run();
+        } else {
+            tasks.add(task);
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Execute task periodically in the loop thread.
+     * 
+     * @param task
+     *            Executed task.
+     */
+    void addTimer(final Runnable task) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                timers.add(task);
+            }
+        });
+    }
+
+    /**
+     * Close the loop and all the channels of it.
+     */
+    void close() {
+        closing = true;
+        selector.wakeup();
+        if (!inEventLoop()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!closing) {
+            try {
+                if (timers.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.select(TIMER_INTERVAL);
+                }
+                runTasks();
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+                    handle(key);
+                }
+                runTimers();
+            } catch (Exception e) {
+                LOGGER.log(Level.SEVERE, e.toString());
+            }
+        }
+        // Tasks that were queued before the loop was closed are executed,
+        // so channels that were registered or closed meanwhile are handled.
+        runTasks();
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof GXNetConnection) {
+                ((GXNetConnection) key.attachment()).close();
+            }
+            // Connection might be already closed and its close task is not
+            // executed anymore, so the channel is closed here.
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, e.toString());
+            }
+        }
+        runTasks();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e.toString());
+        }
+    }
+
+    /**
+     * Execute queued tasks.
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, e.toString());
+            }
+        }
+    }
+
+    /**
+     * Execute timers if timer interval is elapsed.
+     */
+    private void runTimers() {
+        if (timers.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= nextTimer) {
+            nextTimer = now + TIMER_INTERVAL;
+            for (Runnable it : timers) {
+                it.run();
+            }
+        }
+    }
+
+    /**
+     * Handle selected key.
+     * 
+     * @param key
+     *            Selected key.
+     */
+    private void handle(final SelectionKey key) {
+        Object target = key.attachment();
+        if (target instanceof GXNetReactor) {
+            ((GXNetReactor) target).accept(key);
+        } else if (target instanceof GXDatagramHandler) {
+            GXDatagramHandler h = (GXDatagramHandler) target;
+            if (key.isReadable()) {
+                h.receive(buffer);
+            }
+            if (key.isValid() && key.isWritable()) {
+                h.writable();
+            }
+        } else {
+            GXNetConnection c = (GXNetConnection) target;
+            try {
+                if (key.isConnectable()) {
+                    c.finishConnect();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    c.read(buffer);
+                }
+                if (key.isValid() && key.isWritable()) {
+                    c.flush();
+                }
+            } catch (Exception e) {
+                LOGGER.log(Level.INFO, e.toString());
+                c.close();
+            }
+        }
+    }
+}
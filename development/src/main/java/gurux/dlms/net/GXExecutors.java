@@ -0,0 +1,101 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.net;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Executors for blocking server callbacks and meter readers.
+ * <p>
+ * Virtual threads are used when they are supported by the JVM. Virtual
+ * thread is created for each task, so blocking callbacks or meter
+ * conversations don't need sized thread pools. Older JVMs use cached thread
+ * pool.
+ * </p>
+ */
+public final class GXExecutors {
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor or null if virtual threads
+     * are not supported.
+     */
+    private static final Method VIRTUAL_THREAD_EXECUTOR =
+            getVirtualThreadExecutor();
+
+    /**
+     * Constructor.
+     */
+    private GXExecutors() {
+
+    }
+
+    /**
+     * @return Method that creates virtual thread executor or null if virtual
+     *         threads are not supported.
+     */
+    private static Method getVirtualThreadExecutor() {
+        try {
+            return Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Are virtual threads supported.
+     */
+    public static boolean isVirtualThreadSupported() {
+        return VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    /**
+     * Create executor that starts new virtual thread for each task. Cached
+     * thread pool is returned if virtual threads are not supported.
+     * 
+     * @return Executor.
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        if (VIRTUAL_THREAD_EXECUTOR != null) {
+            try {
+                return (ExecutorService) VIRTUAL_THREAD_EXECUTOR.invoke(null);
+            } catch (Exception e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+        return Executors.newCachedThreadPool();
+    }
+}
@@ -0,0 +1,502 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import gurux.dlms.GXDLMSConnectionEventArgs;
+import gurux.dlms.GXDLMSServerSession;
+
+/**
+ * Connection of the reactor. TCP connection has own socket channel. UDP
+ * connections of one port share the datagram channel and they are separated
+ * by the remote address.
+ * <p>
+ * Data can be sent from any thread. Sent data is queued and written to the
+ * channel in the event loop thread with gathering writes.
+ * </p>
+ * <p>
+ * Size of the write queue is limited. Reading of the TCP channel is paused
+ * while the queue is full and data can't be sent before the remote end has
+ * read the queued data.
+ * </p>
+ */
+public class GXNetConnection implements Closeable {
+    private static final Logger LOGGER =
+            Logger.getLogger(GXNetConnection.class.getName());
+
+    /**
+     * Reactor.
+     */
+    private final GXNetReactor reactor;
+
+    /**
+     * Event loop where connection is handled.
+     */
+    private final GXEventLoop loop;
+
+    /**
+     * TCP channel. Null for UDP connections.
+     */
+    private final SocketChannel channel;
+
+    /**
+     * UDP channel. Null for TCP connections.
+     */
+    private final DatagramChannel datagram;
+
+    /**
+     * Handler of the UDP port. Null for TCP connections.
+     */
+    private final GXDatagramHandler datagramHandler;
+
+    /**
+     * Remote address.
+     */
+    private final SocketAddress remoteAddress;
+
+    /**
+     * Server session of the connection.
+     */
+    private final GXDLMSServerSession session;
+
+    /**
+     * Connection info.
+     */
+    private final GXDLMSConnectionEventArgs connectionInfo =
+            new GXDLMSConnectionEventArgs();
+
+    /**
+     * Data that is waiting to be written.
+     */
+    private final ArrayDeque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+
+    /**
+     * Amount of bytes that are waiting to be written.
+     */
+    private long pendingBytes;
+
+    /**
+     * Write queued data in the event loop thread.
+     */
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (IOException e) {
+                LOGGER.log(Level.INFO, e.toString());
+                close();
+            }
+        }
+    };
+
+    /**
+     * Received data that is waiting to be handled by the executor.
+     */
+    private final ArrayDeque<byte[]> received = new ArrayDeque<byte[]>();
+
+    /**
+     * Handle received data in the executor.
+     */
+    private final Runnable handleTask = new Runnable() {
+        @Override
+        public void run() {
+            handleReceived();
+        }
+    };
+
+    /**
+     * Is received data handled by the executor.
+     */
+    private boolean handling;
+
+    /**
+     * Selection key of the TCP channel.
+     */
+    private SelectionKey key;
+
+    /**
+     * Is connection closed.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Time when data was last received or sent.
+     */
+    private volatile long lastActivity = System.currentTimeMillis();
+
+    /**
+     * Constructor for TCP connection.
+     * 
+     * @param owner
+     *            Reactor.
+     * @param eventLoop
+     *            Event loop where connection is handled.
+     * @param value
+     *            Socket channel.
+     * @param address
+     *            Remote address.
+     * @param serverSession
+     *            Server session. Null if server is not used.
+     */
+    GXNetConnection(final GXNetReactor owner, final GXEventLoop eventLoop,
+            final SocketChannel value, final SocketAddress address,
+            final GXDLMSServerSession serverSession) {
+        reactor = owner;
+        loop = eventLoop;
+        channel = value;
+        datagram = null;
+        datagramHandler = null;
+        remoteAddress = address;
+        session = serverSession;
+    }
+
+    /**
+     * Constructor for UDP connection.
+     * 
+     * @param owner
+     *            Reactor.
+     * @param eventLoop
+     *            Event loop where connection is handled.
+     * @param value
+     *            Handler of the UDP port.
+     * @param address
+     *            Remote address.
+     * @param serverSession
+     *            Server session. Null if server is not used.
+     */
+    GXNetConnection(final GXNetReactor owner, final GXEventLoop eventLoop,
+            final GXDatagramHandler value, final SocketAddress address,
+            final GXDLMSServerSession serverSession) {
+        reactor = owner;
+        loop = eventLoop;
+        channel = null;
+        datagram = value.getChannel();
+        datagramHandler = value;
+        remoteAddress = address;
+        session = serverSession;
+    }
+
+    /**
+     * @return Remote address.
+     */
+    public final SocketAddress getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    /**
+     * @return Server session of the connection. Null if server is not used.
+     */
+    public final GXDLMSServerSession getSession() {
+        return session;
+    }
+
+    /**
+     * @return Connection info that is given to the server.
+     */
+    public final GXDLMSConnectionEventArgs getConnectionInfo() {
+        return connectionInfo;
+    }
+
+    /**
+     * @return Is UDP used.
+     */
+    public final boolean isDatagram() {
+        return datagram != null;
+    }
+
+    /**
+     * @return Is connection closed.
+     */
+    public final boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return Time when data was last received or sent.
+     */
+    final long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * Register TCP channel to the event loop.
+     * 
+     * @param ops
+     *            Interest operations.
+     */
+    final void register(final int ops) {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    key = channel.register(loop.getSelector(), ops,
+                            GXNetConnection.this);
+                } catch (IOException e) {
+                    LOGGER.log(Level.INFO, e.toString());
+                    close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Complete connection that is made to the remote address.
+     * 
+     * @throws IOException
+     *             Connection failed.
+     */
+    final void finishConnect() throws IOException {
+        if (channel.finishConnect()) {
+            key.interestOps(SelectionKey.OP_READ);
+            flush();
+        }
+    }
+
+    /**
+     * Read data from the TCP channel and handle it.
+     * 
+     * @param buffer
+     *            Read buffer.
+     * @throws IOException
+     *             Read failed.
+     */
+    final void read(final ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        int count = channel.read(buffer);
+        if (count == -1) {
+            close();
+        } else if (count != 0) {
+            buffer.flip();
+            received(buffer);
+        }
+    }
+
+    /**
+     * Handle received data. If reactor has executor, data is copied and
+     * handled in the executor. Data of the connection is handled in the
+     * order it's received and only one task at the time handles it, so the
+     * session is never used from two threads at the same time.
+     * 
+     * @param data
+     *            Received data.
+     */
+    final void received(final ByteBuffer data) {
+        lastActivity = System.currentTimeMillis();
+        Executor executor = reactor.getExecutor();
+        if (executor == null) {
+            reactor.handleRequest(this, data);
+            return;
+        }
+        byte[] tmp = new byte[data.remaining()];
+        data.get(tmp);
+        synchronized (received) {
+            received.add(tmp);
+            if (handling) {
+                return;
+            }
+            handling = true;
+        }
+        executor.execute(handleTask);
+    }
+
+    /**
+     * Handle received data until there is no more data.
+     */
+    private void handleReceived() {
+        byte[] data;
+        while (true) {
+            synchronized (received) {
+                data = received.poll();
+                if (data == null || closed) {
+                    received.clear();
+                    handling = false;
+                    return;
+                }
+            }
+            try {
+                reactor.handleRequest(this, ByteBuffer.wrap(data));
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.INFO, e.toString());
+                close();
+            }
+        }
+    }
+
+    /**
+     * Add data to the write queue. Data is written when connection is
+     * flushed.
+     * 
+     * @param value
+     *            Data to write.
+     */
+    final void queue(final byte[] value) {
+        synchronized (pending) {
+            pending.add(ByteBuffer.wrap(value));
+            pendingBytes += value.length;
+        }
+    }
+
+    /**
+     * @return Is write queue full.
+     */
+    final boolean isWriteQueueFull() {
+        int max = reactor.getMaxWriteQueueSize();
+        synchronized (pending) {
+            return max != 0 && pendingBytes >= max;
+        }
+    }
+
+    /**
+     * Write queued data. This is called from the event loop thread.
+     * 
+     * @throws IOException
+     *             Write failed.
+     */
+    final void flush() throws IOException {
+        synchronized (pending) {
+            if (datagram != null) {
+                ByteBuffer it;
+                while ((it = pending.peek()) != null) {
+                    // Datagram is not sent if the socket buffer is full.
+                    int size = it.remaining();
+                    if (datagram.send(it, remoteAddress) == 0
+                            && it.hasRemaining()) {
+                        datagramHandler.waitWrite(this);
+                        return;
+                    }
+                    pending.poll();
+                    pendingBytes -= size;
+                }
+                return;
+            }
+            if (key == null || !channel.isConnected()) {
+                return;
+            }
+            while (!pending.isEmpty()) {
+                long count = channel.write(
+                        pending.toArray(new ByteBuffer[pending.size()]));
+                pendingBytes -= count;
+                while (!pending.isEmpty() && !pending.peek().hasRemaining()) {
+                    pending.poll();
+                }
+                if (count == 0) {
+                    break;
+                }
+            }
+            if (key.isValid()) {
+                int max = reactor.getMaxWriteQueueSize();
+                int ops = 0;
+                // New requests are not read while replies can't be written.
+                if (max == 0 || pendingBytes < max) {
+                    ops = SelectionKey.OP_READ;
+                }
+                if (!pending.isEmpty()) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+                key.interestOps(ops);
+            }
+        }
+    }
+
+    /**
+     * Send data to the remote address. This can be called from any thread.
+     * Example, messages generated by GXDLMSNotify can be pushed with this.
+     * 
+     * @param data
+     *            Sent messages.
+     * @throws IOException
+     *             Connection is closed or write queue is full.
+     */
+    public final void send(final byte[]... data) throws IOException {
+        if (closed) {
+            throw new IOException("Connection is closed.");
+        }
+        if (isWriteQueueFull()) {
+            throw new IOException("Write queue is full.");
+        }
+        lastActivity = System.currentTimeMillis();
+        for (byte[] it : data) {
+            queue(it);
+        }
+        write();
+    }
+
+    /**
+     * Write queued data in the event loop thread. Data is written right away
+     * if this is called from the event loop thread.
+     */
+    final void write() {
+        loop.execute(flushTask);
+    }
+
+    /**
+     * Close the connection. Session of the connection is released.
+     */
+    @Override
+    public final void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        reactor.removed(this);
+        if (channel != null) {
+            loop.execute(new Runnable() {
+                @Override
+                public void run() {
+                    if (key != null) {
+                        key.cancel();
+                    }
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, e.toString());
+                    }
+                }
+            });
+        }
+    }
+}
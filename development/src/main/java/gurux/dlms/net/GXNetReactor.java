@@ -0,0 +1,588 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.net;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import gurux.dlms.GXDLMSServer2;
+import gurux.dlms.GXDLMSServerSession;
+import gurux.dlms.GXServerReply;
+
+/**
+ * NIO reactor for DLMS/COSEM wrapper connections. Reactor accepts TCP
+ * connections and receives UDP datagrams with few event loop threads and
+ * handles the requests with the server. Each connection has own server
+ * session, so one reactor can hold large amount of idle connections.
+ * <p>
+ * Received data is read to the direct buffer of the event loop and appended
+ * to the session without temporary byte arrays. Replies are written with
+ * gathering writes.
+ * </p>
+ * <p>
+ * Server is called from the event loop threads. Callbacks of the server
+ * should not block, because other connections of the same loop are waiting
+ * meanwhile. Set executor if callbacks block.
+ * </p>
+ *
+ * <pre>
+ * GXNetReactor reactor = new GXNetReactor(server, 4);
+ * reactor.open();
+ * reactor.listen(new InetSocketAddress(GXNetReactor.DEFAULT_PORT));
+ * </pre>
+ */
+public class GXNetReactor implements Closeable {
+    private static final Logger LOGGER =
+            Logger.getLogger(GXNetReactor.class.getName());
+
+    /**
+     * Default port of the DLMS/COSEM wrapper.
+     */
+    public static final int DEFAULT_PORT = 4059;
+
+    /**
+     * Length of the queue of the incoming TCP connections. Large queue is
+     * needed when lots of meters connect at the same time.
+     */
+    private static final int BACKLOG = 1024;
+
+    /**
+     * Default idle timeout of UDP connections in milliseconds.
+     */
+    public static final int DEFAULT_DATAGRAM_IDLE_TIMEOUT = 120000;
+
+    /**
+     * Default maximum amount of UDP connections of one port.
+     */
+    public static final int DEFAULT_MAX_DATAGRAM_CONNECTIONS = 10000;
+
+    /**
+     * Default maximum size of the write queue of one connection in bytes.
+     */
+    public static final int DEFAULT_MAX_WRITE_QUEUE_SIZE = 0x100000;
+
+    /**
+     * Server. Null if reactor is used only to send data.
+     */
+    private final GXDLMSServer2 server;
+
+    /**
+     * Event loops.
+     */
+    private final GXEventLoop[] loops;
+
+    /**
+     * Index of the next event loop.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Open connections.
+     */
+    private final Set<GXNetConnection> connections = Collections
+            .newSetFromMap(new ConcurrentHashMap<GXNetConnection, Boolean>());
+
+    /**
+     * Datagram handlers.
+     */
+    private final List<GXDatagramHandler> datagrams =
+            new ArrayList<GXDatagramHandler>();
+
+    /**
+     * Is reactor open.
+     */
+    private volatile boolean open;
+
+    /**
+     * Executor where requests are handled. Null if requests are handled in
+     * the event loop threads.
+     */
+    private volatile Executor executor;
+
+    /**
+     * Idle timeout of UDP connections in milliseconds.
+     */
+    private volatile int datagramIdleTimeout = DEFAULT_DATAGRAM_IDLE_TIMEOUT;
+
+    /**
+     * Maximum amount of UDP connections of one port.
+     */
+    private volatile int maxDatagramConnections =
+            DEFAULT_MAX_DATAGRAM_CONNECTIONS;
+
+    /**
+     * Maximum size of the write queue of one connection in bytes.
+     */
+    private volatile int maxWriteQueueSize = DEFAULT_MAX_WRITE_QUEUE_SIZE;
+
+    /**
+     * Constructor. Event loop is created for each processor.
+     * 
+     * @param value
+     *            Server. Null if reactor is used only to send data.
+     */
+    public GXNetReactor(final GXDLMSServer2 value) {
+        this(value, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param value
+     *            Server. Null if reactor is used only to send data.
+     * @param threads
+     *            Amount of event loop threads.
+     */
+    public GXNetReactor(final GXDLMSServer2 value, final int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Invalid thread count.");
+        }
+        server = value;
+        loops = new GXEventLoop[threads];
+    }
+
+    /**
+     * @return Server. Null if reactor is used only to send data.
+     */
+    public final GXDLMSServer2 getServer() {
+        return server;
+    }
+
+    /**
+     * @return Executor where requests are handled. Null if requests are
+     *         handled in the event loop threads.
+     */
+    public final Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set executor where requests are handled. Use executor when server
+     * callbacks block, example on database or file access.
+     * {@link GXExecutors#newVirtualThreadExecutor()} handles each request
+     * in own virtual thread when JVM supports them. Requests of one
+     * connection are handled one at the time in the order they are received.
+     * 
+     * @param value
+     *            Executor. Null if requests are handled in the event loop
+     *            threads.
+     */
+    public final void setExecutor(final Executor value) {
+        executor = value;
+    }
+
+    /**
+     * @return Idle timeout of UDP connections in milliseconds. Zero if idle
+     *         connections are not closed.
+     */
+    public final int getDatagramIdleTimeout() {
+        return datagramIdleTimeout;
+    }
+
+    /**
+     * UDP connection is closed and its session is released when nothing is
+     * received or sent within the idle timeout.
+     * 
+     * @param value
+     *            Idle timeout of UDP connections in milliseconds. Zero if
+     *            idle connections are not closed.
+     */
+    public final void setDatagramIdleTimeout(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid idle timeout.");
+        }
+        datagramIdleTimeout = value;
+    }
+
+    /**
+     * @return Maximum amount of UDP connections of one port. Zero if amount
+     *         is not limited.
+     */
+    public final int getMaxDatagramConnections() {
+        return maxDatagramConnections;
+    }
+
+    /**
+     * Datagrams from new remote addresses are ignored when there are
+     * maximum amount of UDP connections and none of them is idle.
+     * 
+     * @param value
+     *            Maximum amount of UDP connections of one port. Zero if
+     *            amount is not limited.
+     */
+    public final void setMaxDatagramConnections(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid maximum connection count.");
+        }
+        maxDatagramConnections = value;
+    }
+
+    /**
+     * @return Maximum size of the write queue of one connection in bytes.
+     *         Zero if size is not limited.
+     */
+    public final int getMaxWriteQueueSize() {
+        return maxWriteQueueSize;
+    }
+
+    /**
+     * TCP connection is not read while its write queue is full and data
+     * can't be sent to the connection before queued data is written.
+     * 
+     * @param value
+     *            Maximum size of the write queue of one connection in bytes.
+     *            Zero if size is not limited.
+     */
+    public final void setMaxWriteQueueSize(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid write queue size.");
+        }
+        maxWriteQueueSize = value;
+    }
+
+    /**
+     * @return Open connections.
+     */
+    public final Collection<GXNetConnection> getConnections() {
+        return Collections.unmodifiableSet(connections);
+    }
+
+    /**
+     * @return Is reactor open.
+     */
+    public final boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Start event loops.
+     * 
+     * @throws IOException
+     *             Selector can't be opened.
+     */
+    public final synchronized void open() throws IOException {
+        if (open) {
+            return;
+        }
+        for (int pos = 0; pos != loops.length; ++pos) {
+            loops[pos] = new GXEventLoop("GXNetReactor-" + pos);
+        }
+        for (GXEventLoop it : loops) {
+            it.start();
+        }
+        open = true;
+    }
+
+    /**
+     * Check that reactor is open.
+     */
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException("Reactor is not open.");
+        }
+    }
+
+    /**
+     * @return Next event loop.
+     */
+    private GXEventLoop nextLoop() {
+        return loops[(next.getAndIncrement() & Integer.MAX_VALUE)
+                % loops.length];
+    }
+
+    /**
+     * Register channel to the event loop.
+     * 
+     * @param loop
+     *            Event loop.
+     * @param channel
+     *            Registered channel.
+     * @param ops
+     *            Interest operations.
+     * @param attachment
+     *            Attached object.
+     */
+    private static void register(final GXEventLoop loop,
+            final SelectableChannel channel, final int ops,
+            final Object attachment) {
+        loop.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    channel.register(loop.getSelector(), ops, attachment);
+                } catch (ClosedChannelException e) {
+                    LOGGER.log(Level.WARNING, e.toString());
+                }
+            }
+        });
+    }
+
+    /**
+     * Accept TCP connections from the given address.
+     * 
+     * @param address
+     *            Local address.
+     * @throws IOException
+     *             Address can't be bind.
+     */
+    public final void listen(final SocketAddress address) throws IOException {
+        checkOpen();
+        ServerSocketChannel ch = ServerSocketChannel.open();
+        try {
+            ch.configureBlocking(false);
+            ch.socket().setReuseAddress(true);
+            ch.socket().bind(address, BACKLOG);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        register(loops[0], ch, SelectionKey.OP_ACCEPT, this);
+    }
+
+    /**
+     * Receive UDP datagrams from the given address. Connection is created
+     * for each remote address. Connections are closed after the idle timeout
+     * and amount of them is limited by maximum amount of UDP connections.
+     * 
+     * @param address
+     *            Local address.
+     * @throws IOException
+     *             Address can't be bind.
+     */
+    public final void listenUdp(final SocketAddress address)
+            throws IOException {
+        checkOpen();
+        DatagramChannel ch = DatagramChannel.open();
+        try {
+            ch.configureBlocking(false);
+            ch.socket().setReuseAddress(true);
+            ch.socket().bind(address);
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        GXEventLoop loop = nextLoop();
+        GXDatagramHandler h = new GXDatagramHandler(this, loop, ch);
+        synchronized (datagrams) {
+            datagrams.add(h);
+        }
+        register(loop, ch, SelectionKey.OP_READ, h);
+        loop.addTimer(h.getIdleCheck());
+    }
+
+    /**
+     * Make TCP connection to the remote address. Data can be sent before
+     * connection is established.
+     * 
+     * @param address
+     *            Remote address.
+     * @return Connection.
+     * @throws IOException
+     *             Connection failed.
+     */
+    public final GXNetConnection connect(final SocketAddress address)
+            throws IOException {
+        checkOpen();
+        SocketChannel ch = SocketChannel.open();
+        GXNetConnection c;
+        try {
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            c = new GXNetConnection(this, nextLoop(), ch, address,
+                    createSession());
+            connections.add(c);
+            if (ch.connect(address)) {
+                c.register(SelectionKey.OP_READ);
+            } else {
+                c.register(SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException e) {
+            ch.close();
+            throw e;
+        }
+        return c;
+    }
+
+    /**
+     * Get UDP connection to the remote address. Datagrams are sent from the
+     * first UDP port that is listened.
+     * 
+     * @param address
+     *            Remote address.
+     * @return Connection.
+     */
+    public final GXNetConnection getDatagramConnection(
+            final SocketAddress address) {
+        checkOpen();
+        GXNetConnection c;
+        synchronized (datagrams) {
+            if (datagrams.isEmpty()) {
+                throw new IllegalStateException("UDP port is not listened.");
+            }
+            c = datagrams.get(0).getConnection(address);
+        }
+        if (c == null) {
+            throw new IllegalStateException("Too many UDP connections.");
+        }
+        return c;
+    }
+
+    /**
+     * Close all connections and stop event loops.
+     */
+    @Override
+    public final synchronized void close() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        for (GXNetConnection it : connections) {
+            it.close();
+        }
+        for (GXEventLoop it : loops) {
+            it.close();
+        }
+        synchronized (datagrams) {
+            datagrams.clear();
+        }
+    }
+
+    /**
+     * @return New server session or null if server is not used.
+     */
+    final GXDLMSServerSession createSession() {
+        if (server == null) {
+            return null;
+        }
+        return server.createSession();
+    }
+
+    /**
+     * Accept waiting TCP connections.
+     * 
+     * @param key
+     *            Selection key of the server socket channel.
+     */
+    final void accept(final SelectionKey key) {
+        ServerSocketChannel ch = (ServerSocketChannel) key.channel();
+        try {
+            SocketChannel s;
+            while ((s = ch.accept()) != null) {
+                s.configureBlocking(false);
+                s.socket().setTcpNoDelay(true);
+                GXNetConnection c = new GXNetConnection(this, nextLoop(), s,
+                        s.socket().getRemoteSocketAddress(), createSession());
+                connections.add(c);
+                c.register(SelectionKey.OP_READ);
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e.toString());
+        }
+    }
+
+    /**
+     * Connection is added.
+     * 
+     * @param value
+     *            Added connection.
+     */
+    final void added(final GXNetConnection value) {
+        connections.add(value);
+    }
+
+    /**
+     * Connection is closed.
+     * 
+     * @param value
+     *            Closed connection.
+     */
+    final void removed(final GXNetConnection value) {
+        connections.remove(value);
+        if (value.isDatagram()) {
+            synchronized (datagrams) {
+                for (GXDatagramHandler it : datagrams) {
+                    it.remove(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle received data with the server and write the replies.
+     * 
+     * @param connection
+     *            Connection where data is received.
+     * @param data
+     *            Received data.
+     */
+    final void handleRequest(final GXNetConnection connection,
+            final ByteBuffer data) {
+        if (server == null) {
+            return;
+        }
+        GXServerReply sr = new GXServerReply(data);
+        sr.setConnectionInfo(connection.getConnectionInfo());
+        sr.setSession(connection.getSession());
+        do {
+            server.handleRequest(sr);
+            sr.setBuffer(null);
+            // Reply is null if data is not sent to this server.
+            if (sr.getReply() != null) {
+                connection.queue(sr.getReply());
+                sr.setReply(null);
+            }
+        } while (sr.isStreaming());
+        connection.write();
+    }
+}
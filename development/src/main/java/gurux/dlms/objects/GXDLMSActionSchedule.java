@@ -240,7 +240,7 @@ public class GXDLMSActionSchedule extends GXDLMSObject implements IGXDLMSBase {
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         if (e.getIndex() == 2) {
             GXByteBuffer stream = new GXByteBuffer();
@@ -385,7 +385,7 @@ public class GXDLMSActivityCalendar extends GXDLMSObject
             final ValueEventArgs e) {
         switch (e.getIndex()) {
         case 1:
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         case 2:
             if (calendarNameActive == null) {
                 return null;
@@ -47,6 +47,7 @@ import javax.xml.stream.XMLStreamException;
 import gurux.dlms.GXByteBuffer;
 import gurux.dlms.GXDLMSClient;
 import gurux.dlms.GXDLMSServerBase;
+import gurux.dlms.GXDLMSServerSession;
 import gurux.dlms.GXDLMSSettings;
 import gurux.dlms.GXDLMSTranslator;
 import gurux.dlms.GXSimpleEntry;
@@ -61,6 +62,7 @@ import gurux.dlms.enums.ObjectType;
 import gurux.dlms.internal.GXCommon;
 import gurux.dlms.objects.enums.ApplicationContextName;
 import gurux.dlms.objects.enums.AssociationStatus;
+import gurux.dlms.secure.GXCryptoCache;
 import gurux.dlms.secure.GXSecure;
 
 /**
@@ -277,6 +279,28 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject
                 getSecuritySetupReference(), userList, currentUser };
     }
 
+    /**
+     * Association object is shared between the server sessions. Association
+     * status and negotiated context are read from the session of the
+     * connection.
+     * 
+     * @param e
+     *            Event arguments.
+     * @return Session or null if server is not used or connection is not
+     *         associated.
+     */
+    private static GXDLMSServerSession getSession(final ValueEventArgs e) {
+        if (e.getServer() == null) {
+            return null;
+        }
+        GXDLMSServerSession session = e.getServer().getSession();
+        if (session
+                .getAssociationStatus() == AssociationStatus.NON_ASSOCIATED) {
+            return null;
+        }
+        return session;
+    }
+
     @Override
     public final byte[] invoke(final GXDLMSSettings settings,
             final ValueEventArgs e) {
@@ -290,7 +314,8 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject
                 try {
                     GXByteBuffer signature =
                             new GXByteBuffer((byte[]) e.getParameters());
-                    Signature ver = Signature.getInstance("SHA256withECDSA");
+                    Signature ver =
+                            GXCryptoCache.getSignature("SHA256withECDSA");
                     ver.initVerify(settings.getCipher().getCertificates().get(0)
                             .getPublicKey());
                     GXByteBuffer bb = new GXByteBuffer();
@@ -331,13 +356,20 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject
                 }
                 byte[] tmp = GXSecure.secure(settings, settings.getCipher(), ic,
                         settings.getCtoSChallenge(), readSecret);
-                associationStatus = AssociationStatus.ASSOCIATED;
+                // Server keeps association status in the session.
+                if (e.getServer() == null) {
+                    associationStatus = AssociationStatus.ASSOCIATED;
+                } else {
+                    e.getServer().getSession().setHlsVerified(true);
+                }
                 return tmp;
             } else {
                 LOGGER.log(Level.INFO,
                         "Invalid CtoS:" + GXCommon.toHex(serverChallenge, false)
                                 + "-" + GXCommon.toHex(clientChallenge, false));
-                associationStatus = AssociationStatus.NON_ASSOCIATED;
+                if (e.getServer() == null) {
+                    associationStatus = AssociationStatus.NON_ASSOCIATED;
+                }
             }
         } else if (e.getIndex() == 2) {
             byte[] tmp = (byte[]) e.getParameters();
@@ -481,7 +513,7 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject
                     GXCommon.setData(data, DataType.UINT8, it.getVersion());
                     // LN
                     GXCommon.setData(data, DataType.OCTET_STRING,
-                            GXCommon.logicalNameToBytes(it.getLogicalName()));
+                            it.getLogicalNameBytes());
                     getAccessRights(it, e.getServer(), data); // Access rights.
                     settings.setIndex(settings.getIndex() + 1);
                     if (settings.isServer()) {
@@ -652,7 +684,7 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         if (e.getIndex() == 2) {
             return getObjects(settings, e);
@@ -685,8 +717,12 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject
                     applicationContextName.getDlmsUA());
             GXCommon.setData(data, DataType.UINT8,
                     applicationContextName.getApplicationContext());
-            GXCommon.setData(data, DataType.UINT8,
-                    applicationContextName.getContextId().getValue());
+            ApplicationContextName id = applicationContextName.getContextId();
+            GXDLMSServerSession session = getSession(e);
+            if (session != null) {
+                id = session.getApplicationContextName();
+            }
+            GXCommon.setData(data, DataType.UINT8, id.getValue());
             return data.array();
         }
         if (e.getIndex() == 5) {
@@ -726,14 +762,22 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject
                     authenticationMechanismName.getDlmsUA());
             GXCommon.setData(data, DataType.UINT8, authenticationMechanismName
                     .getAuthenticationMechanismName());
-            GXCommon.setData(data, DataType.UINT8,
-                    authenticationMechanismName.getMechanismId().getValue());
+            Authentication mechanism =
+                    authenticationMechanismName.getMechanismId();
+            if (getSession(e) != null) {
+                mechanism = settings.getAuthentication();
+            }
+            GXCommon.setData(data, DataType.UINT8, mechanism.getValue());
             return data.array();
         }
         if (e.getIndex() == 7) {
             return secret;
         }
         if (e.getIndex() == 8) {
+            GXDLMSServerSession session = getSession(e);
+            if (session != null) {
+                return session.getAssociationStatus().ordinal();
+            }
             return getAssociationStatus().ordinal();
         }
         if (e.getIndex() == 9) {
@@ -768,11 +812,11 @@ public class GXDLMSAssociationLogicalName extends GXDLMSObject
                 ObjectType type = ObjectType
                         .forValue(((Number) Array.get(item, 0)).intValue());
                 int version = ((Number) Array.get(item, 1)).intValue();
-                String ln = GXCommon.toLogicalName((byte[]) Array.get(item, 2));
+                byte[] ln = (byte[]) Array.get(item, 2);
                 GXDLMSObject obj = settings.getObjects().findByLN(type, ln);
                 if (obj == null) {
                     obj = gurux.dlms.GXDLMSClient.createObject(type);
-                    obj.setLogicalName(ln);
+                    obj.setLogicalName(GXCommon.toLogicalName(ln));
                     obj.setVersion(version);
                 }
                 // Add only known objects.
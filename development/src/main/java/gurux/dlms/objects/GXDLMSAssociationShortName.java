@@ -54,6 +54,7 @@ import gurux.dlms.enums.MethodAccessMode;
 import gurux.dlms.enums.ObjectType;
 import gurux.dlms.internal.GXCommon;
 import gurux.dlms.manufacturersettings.GXDLMSAttributeSettings;
+import gurux.dlms.secure.GXCryptoCache;
 import gurux.dlms.secure.GXSecure;
 
 /**
@@ -143,7 +144,8 @@ public class GXDLMSAssociationShortName extends GXDLMSObject
                 try {
                     GXByteBuffer signature =
                             new GXByteBuffer((byte[]) e.getParameters());
-                    Signature ver = Signature.getInstance("SHA256withECDSA");
+                    Signature ver =
+                            GXCryptoCache.getSignature("SHA256withECDSA");
                     ver.initVerify(settings.getCipher().getCertificates().get(0)
                             .getPublicKey());
                     GXByteBuffer bb = new GXByteBuffer();
@@ -318,7 +320,7 @@ public class GXDLMSAssociationShortName extends GXDLMSObject
                     GXCommon.setData(bb, DataType.UINT8, 0);
                     // LN
                     GXCommon.setData(bb, DataType.OCTET_STRING,
-                            GXCommon.logicalNameToBytes(it.getLogicalName()));
+                            it.getLogicalNameBytes());
                     settings.setIndex(settings.getIndex() + 1);
                     if (settings.isServer()) {
                         // If PDU is full.
@@ -341,7 +343,7 @@ public class GXDLMSAssociationShortName extends GXDLMSObject
             final ValueEventArgs e) {
         GXByteBuffer bb = new GXByteBuffer();
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         } else if (e.getIndex() == 2) {
             return getObjects(settings, e);
         } else if (e.getIndex() == 3) {
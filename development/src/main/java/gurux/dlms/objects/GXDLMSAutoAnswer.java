@@ -244,7 +244,7 @@ public class GXDLMSAutoAnswer extends GXDLMSObject implements IGXDLMSBase {
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         if (e.getIndex() == 2) {
             return new Integer(getMode().ordinal());
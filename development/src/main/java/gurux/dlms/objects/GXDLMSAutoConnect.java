@@ -248,7 +248,7 @@ public class GXDLMSAutoConnect extends GXDLMSObject implements IGXDLMSBase {
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         if (e.getIndex() == 2) {
             return new Byte((byte) mode.getValue());
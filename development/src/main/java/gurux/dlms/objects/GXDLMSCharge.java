@@ -565,8 +565,7 @@ public class GXDLMSCharge extends GXDLMSObject implements IGXDLMSBase {
             GXCommon.setData(bb, DataType.UINT16,
                     charge.getCommodity().getTarget().getObjectType());
             GXCommon.setData(bb, DataType.OCTET_STRING,
-                    GXCommon.logicalNameToBytes(charge.getCommodity()
-                            .getTarget().getLogicalName()));
+                    charge.getCommodity().getTarget().getLogicalNameBytes());
             GXCommon.setData(bb, DataType.INT8,
                     charge.getCommodity().getIndex());
         }
@@ -593,7 +592,7 @@ public class GXDLMSCharge extends GXDLMSObject implements IGXDLMSBase {
             final ValueEventArgs e) {
         switch (e.getIndex()) {
         case 1:
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         case 2:
             return totalAmountPaid;
         case 3:
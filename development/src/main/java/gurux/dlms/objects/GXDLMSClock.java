@@ -516,7 +516,7 @@ public class GXDLMSClock extends GXDLMSObject implements IGXDLMSBase {
             final ValueEventArgs e) {
         switch (e.getIndex()) {
         case 1:
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         case 2:
             return getTime();
         case 3:
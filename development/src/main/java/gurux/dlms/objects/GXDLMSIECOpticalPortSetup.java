@@ -271,7 +271,7 @@ public class GXDLMSIECOpticalPortSetup extends GXDLMSObject
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         if (e.getIndex() == 2) {
             return new Integer(this.getDefaultMode().getValue());
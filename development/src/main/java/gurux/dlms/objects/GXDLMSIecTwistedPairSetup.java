@@ -272,7 +272,7 @@ public class GXDLMSIecTwistedPairSetup extends GXDLMSObject
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         e.setError(ErrorCode.READ_WRITE_DENIED);
         return null;
@@ -405,7 +405,7 @@ public class GXDLMSLimiter extends GXDLMSObject implements IGXDLMSBase {
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         } else if (e.getIndex() == 2) {
             GXByteBuffer data = new GXByteBuffer();
             data.setUInt8(DataType.STRUCTURE.getValue());
@@ -418,8 +418,8 @@ public class GXDLMSLimiter extends GXDLMSObject implements IGXDLMSBase {
             } else {
                 GXCommon.setData(data, DataType.INT16,
                         new Integer(monitoredValue.getObjectType().getValue()));
-                GXCommon.setData(data, DataType.OCTET_STRING, GXCommon
-                        .logicalNameToBytes(monitoredValue.getLogicalName()));
+                GXCommon.setData(data, DataType.OCTET_STRING,
+                        monitoredValue.getLogicalNameBytes());
                 GXCommon.setData(data, DataType.UINT8, monitoredAttributeIndex);
             }
             return data.array();
@@ -34,6 +34,8 @@
 
 package gurux.dlms.objects;
 
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -63,6 +65,18 @@ public class GXDLMSObject {
     private GXAttributeCollection methodAttributes = null;
     private int shortName;
     private String logicalName;
+
+    /**
+     * Logical name as integer. -1 if logical name is not set or it's not
+     * valid.
+     */
+    private long packedLogicalName = -1;
+
+    /**
+     * Collections whose indexes contain this object. Collections are
+     * notified when logical name, short name or object type is changed.
+     */
+    private volatile List<WeakReference<GXDLMSObjectCollection>> owners;
     private String description;
 
     /**
@@ -86,8 +100,9 @@ public class GXDLMSObject {
             final int sn) {
         attributes = new GXAttributeCollection();
         methodAttributes = new GXAttributeCollection();
-        setObjectType(type);
-        this.setShortName(sn);
+        // New object is not in any collection, so indexes are not changed.
+        objectType = type;
+        shortName = sn;
         if (ln != null) {
             List<String> items = GXCommon.split(ln, '.');
             if (items.size() != 6) {
@@ -95,6 +110,21 @@ public class GXDLMSObject {
             }
         }
         logicalName = ln;
+        packedLogicalName = pack(ln);
+    }
+
+    /**
+     * Convert logical name to integer.
+     * 
+     * @param ln
+     *            Logical name.
+     * @return Logical name as integer or -1 if logical name is not valid.
+     */
+    private static long pack(final String ln) {
+        if (ln == null) {
+            return -1;
+        }
+        return GXCommon.logicalNameToLong(ln.trim());
     }
 
     protected static byte[] toByteArray(final List<Byte> list) {
@@ -180,7 +210,61 @@ public class GXDLMSObject {
      *            Interface type of the COSEM object.
      */
     public final void setObjectType(final ObjectType value) {
+        ObjectType old = objectType;
         objectType = value;
+        if (old != value) {
+            notifyOwners(old, packedLogicalName, shortName);
+        }
+    }
+
+    /**
+     * Add collection that is notified when logical name, short name or
+     * object type is changed.
+     * 
+     * @param value
+     *            Collection whose index contains this object.
+     */
+    final synchronized void addOwner(final GXDLMSObjectCollection value) {
+        List<WeakReference<GXDLMSObjectCollection>> list =
+                new ArrayList<WeakReference<GXDLMSObjectCollection>>();
+        if (owners != null) {
+            for (WeakReference<GXDLMSObjectCollection> it : owners) {
+                GXDLMSObjectCollection tmp = it.get();
+                if (tmp == value) {
+                    return;
+                }
+                // Collections that are not used are removed.
+                if (tmp != null) {
+                    list.add(it);
+                }
+            }
+        }
+        list.add(new WeakReference<GXDLMSObjectCollection>(value));
+        owners = list;
+    }
+
+    /**
+     * Notify collections that logical name, short name or object type is
+     * changed.
+     * 
+     * @param oldType
+     *            Object type before the change.
+     * @param oldLn
+     *            Logical name as integer before the change.
+     * @param oldSn
+     *            Short name before the change.
+     */
+    private void notifyOwners(final ObjectType oldType, final long oldLn,
+            final int oldSn) {
+        List<WeakReference<GXDLMSObjectCollection>> list = owners;
+        if (list != null) {
+            for (WeakReference<GXDLMSObjectCollection> it : list) {
+                GXDLMSObjectCollection tmp = it.get();
+                if (tmp != null) {
+                    tmp.objectChanged(this, oldType, oldLn, oldSn);
+                }
+            }
+        }
     }
 
     /**
@@ -218,7 +302,11 @@ public class GXDLMSObject {
      *            The base name of the object.
      */
     public final void setShortName(final int value) {
+        int old = shortName;
         shortName = value;
+        if (old != value) {
+            notifyOwners(objectType, packedLogicalName, old);
+        }
     }
 
     /**
@@ -237,7 +325,13 @@ public class GXDLMSObject {
      * @return Logical Name of COSEM object.
      */
     public final String getLogicalName() {
-        return logicalName;
+        String tmp = logicalName;
+        // String is created when it's needed first time.
+        if (tmp == null && packedLogicalName != -1) {
+            tmp = GXCommon.toLogicalName(packedLogicalName);
+            logicalName = tmp;
+        }
+        return tmp;
     }
 
     /**
@@ -245,7 +339,49 @@ public class GXDLMSObject {
      *            Logical Name of COSEM object.
      */
     public final void setLogicalName(final String value) {
+        long old = packedLogicalName;
         logicalName = value;
+        packedLogicalName = pack(value);
+        // Names that can't be packed are compared as strings.
+        if (old != packedLogicalName || old == -1) {
+            notifyOwners(objectType, old, shortName);
+        }
+    }
+
+    /**
+     * @return Logical Name of COSEM object as integer. Each value of the
+     *         logical name is one byte and the first value is the most
+     *         significant byte. -1 if logical name is not set or it's not
+     *         valid.
+     */
+    public final long getPackedLogicalName() {
+        return packedLogicalName;
+    }
+
+    /**
+     * @param value
+     *            Logical Name of COSEM object as integer.
+     */
+    public final void setPackedLogicalName(final long value) {
+        if (value < -1 || value > 0xFFFFFFFFFFFFL) {
+            throw new IllegalArgumentException("Invalid Logical Name.");
+        }
+        long old = packedLogicalName;
+        packedLogicalName = value;
+        logicalName = null;
+        if (old != value || old == -1) {
+            notifyOwners(objectType, old, shortName);
+        }
+    }
+
+    /**
+     * @return Logical Name of COSEM object as byte array.
+     */
+    public final byte[] getLogicalNameBytes() {
+        if (packedLogicalName != -1) {
+            return GXCommon.logicalNameToBytes(packedLogicalName);
+        }
+        return GXCommon.logicalNameToBytes(getLogicalName());
     }
 
     /**
@@ -40,11 +40,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.stream.XMLStreamException;
 
 import gurux.dlms.GXDLMSClient;
 import gurux.dlms.enums.ObjectType;
+import gurux.dlms.internal.GXCommon;
 
 /**
  * Collection of DLMS objects.
@@ -54,6 +62,230 @@ public class GXDLMSObjectCollection extends ArrayList<GXDLMSObject>
     private static final long serialVersionUID = 1L;
     private Object parent;
 
+    /**
+     * Lookup indexes. Indexes are updated when an object is added to the end
+     * of the collection or when logical name, short name or object type of
+     * an object is changed. Other changes build indexes again on next search.
+     * Like the collection itself, indexes can be searched from several
+     * threads if the collection and its objects are not changed meanwhile.
+     */
+    private transient volatile Index indexes;
+
+    /**
+     * Indexes of the objects. First object in the collection is indexed if
+     * there are several objects with the same key.
+     */
+    private static final class Index {
+        /**
+         * Modification count of the collection when index was updated.
+         */
+        private int modCount;
+
+        /**
+         * Objects by object type and logical name.
+         */
+        private final Map<Long, GXDLMSObject> types;
+
+        /**
+         * Objects by logical name.
+         */
+        private final Map<Long, GXDLMSObject> names;
+
+        /**
+         * Objects by short name.
+         */
+        private final Map<Integer, GXDLMSObject> shortNames;
+
+        /**
+         * Keys of the types map that are used by several objects.
+         */
+        private final Set<Long> typeDuplicates = new HashSet<Long>();
+
+        /**
+         * Keys of the names map that are used by several objects.
+         */
+        private final Set<Long> nameDuplicates = new HashSet<Long>();
+
+        /**
+         * Keys of the short names map that are used by several objects.
+         */
+        private final Set<Integer> shortNameDuplicates =
+                new HashSet<Integer>();
+
+        /**
+         * Objects whose logical name can't be converted to integer.
+         */
+        private final List<GXDLMSObject> others =
+                new ArrayList<GXDLMSObject>();
+
+        /**
+         * Indexed objects.
+         */
+        private final Set<GXDLMSObject> members;
+
+        /**
+         * Constructor.
+         * 
+         * @param items
+         *            Indexed objects.
+         * @param count
+         *            Modification count of the collection.
+         */
+        Index(final List<GXDLMSObject> items, final int count) {
+            modCount = count;
+            int capacity = 2 * items.size();
+            types = new HashMap<Long, GXDLMSObject>(capacity);
+            names = new HashMap<Long, GXDLMSObject>(capacity);
+            shortNames = new HashMap<Integer, GXDLMSObject>(capacity);
+            members = Collections.newSetFromMap(
+                    new IdentityHashMap<GXDLMSObject, Boolean>(capacity));
+            for (GXDLMSObject it : items) {
+                add(it);
+            }
+        }
+
+        /**
+         * Add object that is the last object of the collection.
+         * 
+         * @param item
+         *            Added object.
+         */
+        void add(final GXDLMSObject item) {
+            members.add(item);
+            long key = item.getPackedLogicalName();
+            if (key == -1) {
+                others.add(item);
+            } else {
+                append(names, nameDuplicates, key, item);
+                append(types, typeDuplicates,
+                        getKey(item.getObjectType(), key), item);
+            }
+            append(shortNames, shortNameDuplicates, item.getShortName(),
+                    item);
+        }
+
+        /**
+         * Update keys of the changed object.
+         * 
+         * @param item
+         *            Changed object.
+         * @param oldType
+         *            Object type before the change.
+         * @param oldLn
+         *            Logical name as integer before the change.
+         * @param oldSn
+         *            Short name before the change.
+         * @return False, if index must be built again.
+         */
+        boolean update(final GXDLMSObject item, final ObjectType oldType,
+                final long oldLn, final int oldSn) {
+            long ln = item.getPackedLogicalName();
+            ObjectType type = item.getObjectType();
+            if (ln == -1) {
+                // Order of the others is not known.
+                if (oldLn != -1) {
+                    return false;
+                }
+            } else if (oldLn == -1) {
+                for (int pos = 0; pos != others.size(); ++pos) {
+                    if (others.get(pos) == item) {
+                        others.remove(pos);
+                        break;
+                    }
+                }
+                if (!insert(names, ln, item)
+                        || !insert(types, getKey(type, ln), item)) {
+                    return false;
+                }
+            } else {
+                if (oldLn != ln && (!remove(names, nameDuplicates, oldLn, item)
+                        || !insert(names, ln, item))) {
+                    return false;
+                }
+                if ((oldLn != ln || oldType != type)
+                        && (!remove(types, typeDuplicates,
+                                getKey(oldType, oldLn), item)
+                                || !insert(types, getKey(type, ln), item))) {
+                    return false;
+                }
+            }
+            int sn = item.getShortName();
+            return oldSn == sn
+                    || (remove(shortNames, shortNameDuplicates, oldSn, item)
+                            && insert(shortNames, sn, item));
+        }
+
+        /**
+         * Add key of the last object of the collection.
+         * 
+         * @param map
+         *            Objects by key.
+         * @param duplicates
+         *            Keys that are used by several objects.
+         * @param key
+         *            Key.
+         * @param item
+         *            Object.
+         */
+        private static <K> void append(final Map<K, GXDLMSObject> map,
+                final Set<K> duplicates, final K key,
+                final GXDLMSObject item) {
+            if (map.containsKey(key)) {
+                duplicates.add(key);
+            } else {
+                map.put(key, item);
+            }
+        }
+
+        /**
+         * Remove old key of the changed object.
+         * 
+         * @param map
+         *            Objects by key.
+         * @param duplicates
+         *            Keys that are used by several objects.
+         * @param key
+         *            Old key.
+         * @param item
+         *            Object.
+         * @return False, if the next object with the same key is not known.
+         */
+        private static <K> boolean remove(final Map<K, GXDLMSObject> map,
+                final Set<K> duplicates, final K key,
+                final GXDLMSObject item) {
+            if (map.get(key) != item) {
+                return true;
+            }
+            if (duplicates.contains(key)) {
+                return false;
+            }
+            map.remove(key);
+            return true;
+        }
+
+        /**
+         * Add new key of the changed object.
+         * 
+         * @param map
+         *            Objects by key.
+         * @param key
+         *            New key.
+         * @param item
+         *            Object.
+         * @return False, if the key is used by another object and the order
+         *         of the objects is not known.
+         */
+        private static <K> boolean insert(final Map<K, GXDLMSObject> map,
+                final K key, final GXDLMSObject item) {
+            GXDLMSObject tmp = map.get(key);
+            if (tmp == null) {
+                map.put(key, item);
+                return true;
+            }
+            return tmp == item;
+        }
+    }
+
     /**
      * Constructor.
      */
@@ -101,23 +333,149 @@ public class GXDLMSObjectCollection extends ArrayList<GXDLMSObject>
         return items;
     }
 
-    public final GXDLMSObject findByLN(final ObjectType type, final String ln) {
-        for (GXDLMSObject it : this) {
-            if ((type == ObjectType.NONE || it.getObjectType() == type)
-                    && it.getLogicalName().trim().equals(ln)) {
-                return it;
+    @Override
+    public final boolean add(final GXDLMSObject item) {
+        Index tmp = indexes;
+        boolean current = tmp != null && tmp.modCount == modCount;
+        boolean ret = super.add(item);
+        // Object added to the end doesn't change order of the others.
+        if (current && item != null) {
+            tmp.add(item);
+            tmp.modCount = modCount;
+            item.addOwner(this);
+        }
+        return ret;
+    }
+
+    /**
+     * Update indexes when logical name, short name or object type of the
+     * object is changed.
+     * 
+     * @param item
+     *            Changed object.
+     * @param oldType
+     *            Object type before the change.
+     * @param oldLn
+     *            Logical name as integer before the change.
+     * @param oldSn
+     *            Short name before the change.
+     */
+    final void objectChanged(final GXDLMSObject item, final ObjectType oldType,
+            final long oldLn, final int oldSn) {
+        Index tmp = indexes;
+        // Index is built again if collection is changed.
+        if (tmp != null && tmp.modCount == modCount
+                && tmp.members.contains(item)
+                && !tmp.update(item, oldType, oldLn, oldSn)) {
+            indexes = null;
+        }
+    }
+
+    @Override
+    public final GXDLMSObject set(final int index, final GXDLMSObject element) {
+        // Set doesn't change modification count.
+        ++modCount;
+        return super.set(index, element);
+    }
+
+    /**
+     * Get index key of the object.
+     * 
+     * @param type
+     *            Object type.
+     * @param ln
+     *            Logical name as integer.
+     * @return Index key.
+     */
+    private static long getKey(final ObjectType type, final long ln) {
+        return ((long) (type.getValue() & 0xFFFF) << 48) | ln;
+    }
+
+    /**
+     * @return Indexes of the objects. Indexes are built if collection is
+     *         changed after they were built.
+     */
+    private Index getIndex() {
+        Index tmp = indexes;
+        if (tmp == null || tmp.modCount != modCount) {
+            tmp = new Index(this, modCount);
+            for (GXDLMSObject it : this) {
+                it.addOwner(this);
             }
+            indexes = tmp;
         }
-        return null;
+        return tmp;
     }
 
-    public final GXDLMSObject findBySN(final int sn) {
-        for (GXDLMSObject it : this) {
-            if (it.getShortName() == sn) {
-                return it;
+    /**
+     * Find object by logical name.
+     * 
+     * @param type
+     *            Object type. NONE if object type is not checked.
+     * @param ln
+     *            Logical name.
+     * @return Found object or null if object is not found.
+     */
+    public final GXDLMSObject findByLN(final ObjectType type, final String ln) {
+        long key = GXCommon.logicalNameToLong(ln);
+        if (key == -1) {
+            for (GXDLMSObject it : getIndex().others) {
+                if ((type == ObjectType.NONE || it.getObjectType() == type)
+                        && it.getLogicalName() != null
+                        && it.getLogicalName().trim().equals(ln)) {
+                    return it;
+                }
             }
+            return null;
+        }
+        return findByLN(type, key);
+    }
+
+    /**
+     * Find object by logical name.
+     * 
+     * @param type
+     *            Object type. NONE if object type is not checked.
+     * @param ln
+     *            Logical name as integer.
+     * @return Found object or null if object is not found.
+     */
+    public final GXDLMSObject findByLN(final ObjectType type, final long ln) {
+        if (ln == -1) {
+            return null;
+        }
+        Index tmp = getIndex();
+        if (type == ObjectType.NONE) {
+            return tmp.names.get(ln);
         }
-        return null;
+        return tmp.types.get(getKey(type, ln));
+    }
+
+    /**
+     * Find object by logical name.
+     * 
+     * @param type
+     *            Object type. NONE if object type is not checked.
+     * @param ln
+     *            Logical name as byte array.
+     * @return Found object or null if object is not found.
+     */
+    public final GXDLMSObject findByLN(final ObjectType type, final byte[] ln) {
+        if (ln != null && ln.length != 6) {
+            return findByLN(type, GXCommon.toLogicalName(ln));
+        }
+        return findByLN(type, GXCommon.logicalNameToLong(ln));
+    }
+
+    /**
+     * Find object by short name.
+     * 
+     * @param sn
+     *            Short name.
+     * @return Found object or null if object is not found.
+     */
+    public final GXDLMSObject findBySN(final int sn) {
+        return getIndex().shortNames.get(sn);
     }
 
     @Override
@@ -170,8 +170,8 @@ public class GXDLMSParameterMonitor extends GXDLMSObject
         bb.setUInt8(3);
         GXCommon.setData(bb, DataType.UINT16,
                 entry.getTarget().getObjectType().getValue());
-        GXCommon.setData(bb, DataType.OCTET_STRING, GXCommon
-                .logicalNameToBytes(entry.getTarget().getLogicalName()));
+        GXCommon.setData(bb, DataType.OCTET_STRING,
+                entry.getTarget().getLogicalNameBytes());
         GXCommon.setData(bb, DataType.INT8, entry.getAttributeIndex());
         return client.method(this, 1, bb.array(), DataType.ARRAY);
     }
@@ -192,8 +192,8 @@ public class GXDLMSParameterMonitor extends GXDLMSObject
         bb.setUInt8(3);
         GXCommon.setData(bb, DataType.UINT16,
                 entry.getTarget().getObjectType());
-        GXCommon.setData(bb, DataType.OCTET_STRING, GXCommon
-                .logicalNameToBytes(entry.getTarget().getLogicalName()));
+        GXCommon.setData(bb, DataType.OCTET_STRING,
+                entry.getTarget().getLogicalNameBytes());
         GXCommon.setData(bb, DataType.INT8, entry.getAttributeIndex());
         return client.method(this, 2, bb.array(), DataType.ARRAY);
     }
@@ -314,7 +314,7 @@ public class GXDLMSParameterMonitor extends GXDLMSObject
             final ValueEventArgs e) {
         switch (e.getIndex()) {
         case 1:
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         case 2: {
             GXByteBuffer data = new GXByteBuffer();
             data.setUInt8(DataType.STRUCTURE.getValue());
@@ -329,8 +329,7 @@ public class GXDLMSParameterMonitor extends GXDLMSObject
                 GXCommon.setData(data, DataType.UINT16, changedParameter
                         .getTarget().getObjectType().getValue());
                 GXCommon.setData(data, DataType.OCTET_STRING,
-                        GXCommon.logicalNameToBytes(
-                                changedParameter.getTarget().getLogicalName()));
+                        changedParameter.getTarget().getLogicalNameBytes());
                 GXCommon.setData(data, DataType.INT8,
                         changedParameter.getAttributeIndex());
                 GXCommon.setData(data,
@@ -355,8 +354,7 @@ public class GXDLMSParameterMonitor extends GXDLMSObject
                     GXCommon.setData(data, DataType.UINT16,
                             it.getTarget().getObjectType().getValue());
                     GXCommon.setData(data, DataType.OCTET_STRING,
-                            GXCommon.logicalNameToBytes(
-                                    it.getTarget().getLogicalName()));
+                            it.getTarget().getLogicalNameBytes());
                     GXCommon.setData(data, DataType.INT8,
                             it.getAttributeIndex());
                 }
@@ -35,7 +35,6 @@
 package gurux.dlms.objects;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.Map.Entry;
 
@@ -47,6 +46,7 @@ import gurux.dlms.GXDLMSConverter;
 import gurux.dlms.GXDLMSException;
 import gurux.dlms.GXDLMSServerBase;
 import gurux.dlms.GXDLMSSettings;
+import gurux.dlms.GXDataWriter;
 import gurux.dlms.GXDateTime;
 import gurux.dlms.GXSimpleEntry;
 import gurux.dlms.ValueEventArgs;
@@ -64,7 +64,7 @@ import gurux.dlms.objects.enums.SortMethod;
 public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
     private GXProfileGenericUpdater updater = null;
 
-    private ArrayList<Object[]> buffer = new ArrayList<Object[]>();
+    private IGXProfileGenericBuffer buffer = new GXProfileGenericListBuffer();
     private List<Entry<GXDLMSObject, GXDLMSCaptureObject>> captureObjects;
     private int capturePeriod;
     private SortMethod sortMethod;
@@ -108,7 +108,8 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
     }
 
     /**
-     * @return Data of profile generic.
+     * @return Data of profile generic. Returned rows are a consistent copy
+     *         of the buffer even if capture is running.
      */
     public final Object[] getBuffer() {
         return buffer.toArray();
@@ -120,8 +121,33 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
      */
     public final void setBuffer(final Object[][] value) {
         buffer.clear();
-        buffer.addAll(Arrays.asList(value));
-        entriesInUse = buffer.size();
+        addBuffer(value);
+    }
+
+    /**
+     * @return Storage of profile generic rows. Rows can be read from the
+     *         storage without copying the buffer.
+     */
+    public final IGXProfileGenericBuffer getBufferStorage() {
+        return buffer;
+    }
+
+    /**
+     * @param value
+     *            Storage of profile generic rows. Existing rows are moved to
+     *            the new storage.
+     */
+    public final void setBufferStorage(final IGXProfileGenericBuffer value) {
+        if (value == null) {
+            throw new IllegalArgumentException("value");
+        }
+        synchronized (this) {
+            for (int pos = 0; pos != buffer.size(); ++pos) {
+                value.add(buffer.getRow(pos));
+            }
+            buffer = value;
+            entriesInUse = buffer.size();
+        }
     }
 
     /**
@@ -129,8 +155,10 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
      *            Add new row to Profile Generic data buffer.
      */
     public final void addRow(final Object[] value) {
-        buffer.add(value);
-        entriesInUse = buffer.size();
+        synchronized (this) {
+            buffer.add(value);
+            entriesInUse = buffer.size();
+        }
     }
 
     /**
@@ -138,7 +166,9 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
      *            Data of profile generic.
      */
     public final void addBuffer(final Object[][] value) {
-        buffer.addAll(Arrays.asList(value));
+        for (Object[] row : value) {
+            buffer.add(row);
+        }
         entriesInUse = buffer.size();
     }
 
@@ -147,7 +177,9 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
      *            Data of profile generic.
      */
     public final void addBuffer(final List<Object[]> value) {
-        buffer.addAll(value);
+        for (Object[] row : value) {
+            buffer.add(row);
+        }
         entriesInUse = buffer.size();
     }
 
@@ -420,7 +452,7 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
                     it.getKey().getObjectType().getValue());
             // LN
             GXCommon.setData(data, DataType.OCTET_STRING,
-                    GXCommon.logicalNameToBytes(it.getKey().getLogicalName()));
+                    it.getKey().getLogicalNameBytes());
             // Attribute Index
             GXCommon.setData(data, DataType.INT8,
                     it.getValue().getAttributeIndex());
@@ -431,18 +463,41 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
         return data.array();
     }
 
+    /**
+     * Get buffer rows as byte array.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param e
+     *            Event arguments.
+     * @param rows
+     *            Rows to read.
+     * @param selected
+     *            Indexes of the selected rows. If null, rows are read in
+     *            order from the start index.
+     * @param start
+     *            Index of the first row.
+     * @param count
+     *            Amount of rows.
+     * @param columns
+     *            Selected columns. If null, all columns are returned.
+     * @return Rows as byte array.
+     */
     private byte[] getData(final GXDLMSSettings settings,
-            final ValueEventArgs e, final Object[] table,
+            final ValueEventArgs e, final IGXProfileGenericBuffer rows,
+            final int[] selected, final int start, final int count,
             final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns) {
         GXByteBuffer data = new GXByteBuffer();
+        GXDataWriter writer = new GXDataWriter(data);
         if (settings.getIndex() == 0) {
-            data.setUInt8((byte) DataType.ARRAY.getValue());
             if (e.getRowEndIndex() != 0) {
-                GXCommon.setObjectCount(
-                        (int) (e.getRowEndIndex() - e.getRowBeginIndex()),
-                        data);
+                writer.beginArray(
+                        (int) (e.getRowEndIndex() - e.getRowBeginIndex()));
             } else {
-                GXCommon.setObjectCount(table.length, data);
+                writer.beginArray(count);
+                // All rows are serialized at once. Otherwise rows are
+                // serialized again for each data block.
+                settings.setCount(count);
             }
         }
 
@@ -454,31 +509,35 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
             ++pos;
         }
         DataType tp;
-        for (Object row : table) {
-            Object[] items = (Object[]) row;
-            data.setUInt8(DataType.STRUCTURE.getValue());
+        int columnCount = rows.getColumnCount();
+        int row;
+        for (int index = 0; index != count; ++index) {
+            if (selected == null) {
+                row = start + index;
+            } else {
+                row = selected[index];
+            }
             if (columns == null || columns.size() == 0) {
-                GXCommon.setObjectCount(items.length, data);
+                writer.beginStructure(columnCount);
             } else {
-                GXCommon.setObjectCount(columns.size(), data);
+                writer.beginStructure(columns.size());
             }
-            pos = 0;
-            for (Object value : items) {
+            for (pos = 0; pos != columnCount; ++pos) {
                 if (columns == null
                         || columns.contains(captureObjects.get(pos))) {
                     tp = types[pos];
                     if (tp == DataType.NONE) {
-                        tp = GXDLMSConverter.getDLMSDataType(value);
+                        tp = GXDLMSConverter
+                                .getDLMSDataType(rows.getValue(row, pos));
                         types[pos] = tp;
                     }
-                    GXCommon.setData(data, tp, value);
+                    rows.write(row, pos, tp, writer);
                 }
-                ++pos;
             }
             settings.setIndex(settings.getIndex() + 1);
         }
         if (e.getRowEndIndex() != 0) {
-            e.setRowBeginIndex(e.getRowBeginIndex() + table.length);
+            e.setRowBeginIndex(e.getRowBeginIndex() + count);
         }
         return data.array();
 
@@ -500,7 +559,7 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
                 Object[] tmp = (Object[]) it;
                 ObjectType ot =
                         ObjectType.forValue(((Number) tmp[0]).intValue());
-                String ln = GXCommon.toLogicalName((byte[]) tmp[1]);
+                long ln = GXCommon.logicalNameToLong((byte[]) tmp[1]);
                 byte attributeIndex = ((Number) tmp[2]).byteValue();
                 int dataIndex = ((Number) tmp[3]).intValue();
                 // Find columns and update only them.
@@ -511,7 +570,8 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
                             && c.getValue()
                                     .getAttributeIndex() == attributeIndex
                             && c.getValue().getDataIndex() == dataIndex
-                            && c.getKey().getLogicalName().compareTo(ln) == 0) {
+                            && ln != -1
+                            && c.getKey().getPackedLogicalName() == ln) {
                         columns.add(c);
                         break;
                     }
@@ -574,63 +634,148 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
 
     final byte[] getProfileGenericData(final GXDLMSSettings settings,
             final ValueEventArgs e) {
+        // Rows are read without locking, so capture can add and remove rows
+        // while rows are serialized. If rows are removed meanwhile, rows are
+        // serialized again.
+        IGXProfileGenericBuffer rows = buffer;
+        long index = settings.getIndex();
+        long rowBegin = e.getRowBeginIndex();
+        while (true) {
+            long version = rows.getVersion();
+            try {
+                byte[] ret = getProfileGenericData(settings, e, rows);
+                if (rows.validate(version)) {
+                    return ret;
+                }
+            } catch (RuntimeException ex) {
+                if (rows.validate(version)) {
+                    throw ex;
+                }
+            }
+            settings.setIndex(index);
+            e.setRowBeginIndex(rowBegin);
+        }
+    }
+
+    /**
+     * Serialize selected rows.
+     * 
+     * @param settings
+     *            DLMS settings.
+     * @param e
+     *            Event arguments.
+     * @param rows
+     *            Buffer where rows are read.
+     * @return Serialized rows.
+     */
+    private byte[] getProfileGenericData(final GXDLMSSettings settings,
+            final ValueEventArgs e, final IGXProfileGenericBuffer rows) {
         List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns = null;
         // If all data is read.
         if (e.getSelector() == 0 || e.getParameters() == null
                 || e.getRowEndIndex() != 0) {
-            return getData(settings, e, getBuffer(), columns);
+            return getData(settings, e, rows, null, 0, rows.size(), columns);
         }
         Object[] arr = (Object[]) e.getParameters();
         columns = getSelectedColumns(e.getSelector(), arr);
-        ArrayList<Object[]> table = new ArrayList<Object[]>();
+        int first, last;
         // Read by range
         if (e.getSelector() == 1) {
             GXDataInfo info = new GXDataInfo();
             info.setType(DataType.DATETIME);
-            java.util.Date start = ((GXDateTime) GXCommon
+            long start = ((GXDateTime) GXCommon
                     .getData(new GXByteBuffer((byte[]) arr[1]), info))
-                            .getMeterCalendar().getTime();
+                            .getMeterCalendar().getTimeInMillis();
             info.clear();
             info.setType(DataType.DATETIME);
-            java.util.Date end = ((GXDateTime) GXCommon
+            long end = ((GXDateTime) GXCommon
                     .getData(new GXByteBuffer((byte[]) arr[2]), info))
-                            .getMeterCalendar().getTime();
-            for (Object row : getBuffer()) {
-                java.util.Date tm;
-                Object tmp = ((Object[]) row)[0];
-                if (tmp instanceof GXDateTime) {
-                    tm = ((GXDateTime) tmp).getMeterCalendar().getTime();
-                } else {
-                    tm = (java.util.Date) tmp;
-                }
-                if (tm.compareTo(start) >= 0 && tm.compareTo(end) <= 0) {
-                    table.add((Object[]) row);
+                            .getMeterCalendar().getTimeInMillis();
+            if (rows.isTimeOrdered()) {
+                // Range is searched from the buffer and only the rows in
+                // the range are read.
+                first = findRow(rows, start, false);
+                last = Math.max(first, findRow(rows, end, true));
+            } else {
+                // Rows are not in time order. Check each row. Rows are not
+                // copied, only the indexes of the matching rows are saved.
+                int[] selected = new int[rows.size()];
+                int count = 0;
+                for (int pos = 0; pos != selected.length; ++pos) {
+                    long tm = rows.getTime(pos);
+                    if (tm >= start && tm <= end) {
+                        selected[count] = pos;
+                        ++count;
+                    }
                 }
+                return getData(settings, e, rows, selected, 0, count,
+                        columns);
             }
         } else if (e.getSelector() == 2) {
-            // Read by entry.
-            int start = ((Number) arr[0]).intValue();
-            if (start == 0) {
-                start = 1;
+            // Read by entry. Starting index is 1.
+            first = ((Number) arr[0]).intValue() - 1;
+            if (first < 0) {
+                first = 0;
+            } else if (first > rows.size()) {
+                first = rows.size();
             }
             int count = ((Number) arr[1]).intValue();
-            if (count == 0) {
-                count = getBuffer().length;
-            }
-            if (start + count > getBuffer().length + 1) {
-                count = getBuffer().length;
-            }
-            // Starting index is 1.
-            for (int pos = 0; pos < count; ++pos) {
-                if (pos + start - 1 == getBuffer().length) {
-                    break;
-                }
-                table.add((Object[]) getBuffer()[start + pos - 1]);
+            last = first + count;
+            if (count == 0 || last > rows.size()) {
+                last = rows.size();
             }
         } else {
             throw new IllegalArgumentException("Invalid selector.");
         }
-        return getData(settings, e, table.toArray(), columns);
+        return getData(settings, e, rows, null, first, last - first,
+                columns);
+    }
+
+    /**
+     * Find row by capture time using binary search. Rows must be in time
+     * order.
+     * 
+     * @param rows
+     *            Searched rows.
+     * @param time
+     *            Capture time in milliseconds.
+     * @param after
+     *            If true, the first row after the time is searched. Otherwise
+     *            the first row at or after the time.
+     * @return Row index. Size of the buffer if row is not found.
+     */
+    private static int findRow(final IGXProfileGenericBuffer rows,
+            final long time, final boolean after) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long tm = rows.getTime(mid);
+            if (tm < time || (after && tm == time)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Get capture time of the value.
+     * 
+     * @param value
+     *            Date-time value.
+     * @return Time in milliseconds from 1970-01-01. Long.MIN_VALUE if value
+     *         is not a date-time.
+     */
+    static long getTime(final Object value) {
+        if (value instanceof GXDateTime) {
+            return ((GXDateTime) value).getMeterCalendar().getTimeInMillis();
+        }
+        if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).getTime();
+        }
+        return Long.MIN_VALUE;
     }
 
     @Override
@@ -670,7 +815,7 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         if (e.getIndex() == 2) {
             return getProfileGenericData(settings, e);
@@ -702,8 +847,8 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
                 GXCommon.setData(data, DataType.UINT16,
                         sortObject.getObjectType().getValue());
                 // LN
-                GXCommon.setData(data, DataType.OCTET_STRING, GXCommon
-                        .logicalNameToBytes(sortObject.getLogicalName()));
+                GXCommon.setData(data, DataType.OCTET_STRING,
+                        sortObject.getLogicalNameBytes());
                 // Attribute Index
                 GXCommon.setData(data, DataType.INT8, sortObjectAttributeIndex);
                 // Data Index
@@ -743,14 +888,14 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
                     }
                     ObjectType type =
                             ObjectType.forValue(((Number) tmp[0]).intValue());
-                    String ln = GXCommon.toLogicalName((byte[]) tmp[1]);
+                    byte[] ln = (byte[]) tmp[1];
                     GXDLMSObject obj = null;
                     if (settings != null && settings.getObjects() != null) {
                         obj = settings.getObjects().findByLN(type, ln);
                     }
                     if (obj == null) {
                         obj = gurux.dlms.GXDLMSClient.createObject(type);
-                        obj.setLogicalName(ln);
+                        obj.setLogicalName(GXCommon.toLogicalName(ln));
                     }
                     addCaptureObject(obj, ((Number) tmp[2]).intValue(),
                             ((Number) tmp[3]).intValue());
@@ -803,13 +948,13 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
                 }
                 ObjectType type =
                         ObjectType.forValue(((Number) tmp[0]).intValue());
-                String ln = GXCommon.toLogicalName((byte[]) tmp[1]);
+                byte[] ln = (byte[]) tmp[1];
                 int attributeIndex = ((Number) tmp[2]).intValue();
                 int dataIndex = ((Number) tmp[3]).intValue();
                 sortObject = settings.getObjects().findByLN(type, ln);
                 if (sortObject == null) {
                     sortObject = gurux.dlms.GXDLMSClient.createObject(type);
-                    sortObject.setLogicalName(ln);
+                    sortObject.setLogicalName(GXCommon.toLogicalName(ln));
                 }
                 sortObjectAttributeIndex = attributeIndex;
                 sortObjectDataIndex = dataIndex;
@@ -857,87 +1002,135 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
             throw new RuntimeException("Read capture objects first.");
         }
         if (e.getValue() != null) {
-            java.util.Calendar lastDate = java.util.Calendar.getInstance();
-            DataType[] types = new DataType[cols.size()];
-            int colIndex = -1;
-            // CHECKSTYLE:OFF
-            for (Entry<GXDLMSObject, GXDLMSCaptureObject> it : cols) {
-                // CHECKSTYLE:ON
-                types[++colIndex] = it.getKey()
-                        .getUIDataType(it.getValue().getAttributeIndex());
+            updateRows(cols, (Object[]) e.getValue(),
+                    java.util.Calendar.getInstance(), null);
+            entriesInUse = buffer.size();
+        }
+    }
+
+    /**
+     * Convert received rows to the types of the capture objects and pass them
+     * to the row listener. Rows are not added to the buffer.
+     * 
+     * @param columns
+     *            Read columns. If null, all capture objects are read.
+     * @param rows
+     *            Received rows.
+     * @param lastDate
+     *            Capture time of the previous row. This is updated when rows
+     *            are handled.
+     * @param listener
+     *            Row listener.
+     */
+    public final void notifyRows(
+            final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> columns,
+            final Object[] rows, final java.util.Calendar lastDate,
+            final IGXRowListener listener) {
+        List<Entry<GXDLMSObject, GXDLMSCaptureObject>> cols = columns;
+        if (cols == null) {
+            cols = captureObjects;
+        }
+        if (cols == null || cols.size() == 0) {
+            throw new RuntimeException("Read capture objects first.");
+        }
+        updateRows(cols, rows, lastDate, listener);
+    }
+
+    /**
+     * Convert received rows to the types of the capture objects.
+     * 
+     * @param cols
+     *            Read columns.
+     * @param rows
+     *            Received rows.
+     * @param lastDate
+     *            Capture time of the previous row.
+     * @param listener
+     *            Row listener. If null, rows are added to the buffer.
+     */
+    private void updateRows(
+            final List<Entry<GXDLMSObject, GXDLMSCaptureObject>> cols,
+            final Object[] rows, final java.util.Calendar lastDate,
+            final IGXRowListener listener) {
+        DataType[] types = new DataType[cols.size()];
+        int colIndex = -1;
+        // CHECKSTYLE:OFF
+        for (Entry<GXDLMSObject, GXDLMSCaptureObject> it : cols) {
+            // CHECKSTYLE:ON
+            types[++colIndex] = it.getKey()
+                    .getUIDataType(it.getValue().getAttributeIndex());
+        }
+        for (Object it : rows) {
+            Object[] row = (Object[]) it;
+            if (row.length != cols.size()) {
+                throw new RuntimeException("Number of columns do not match.");
             }
-            for (Object it : (Object[]) e.getValue()) {
-                Object[] row = (Object[]) it;
-                if (row.length != cols.size()) {
-                    throw new RuntimeException(
-                            "Number of columns do not match.");
-                }
-                for (colIndex = 0; colIndex < row.length; ++colIndex) {
-                    Object data = row[colIndex];
-                    DataType type = types[colIndex];
-                    if (type != DataType.NONE && type != null
-                            && data instanceof byte[]) {
-                        data = GXDLMSClient.changeType((byte[]) data, type);
-                        if (data instanceof GXDateTime) {
-                            GXDateTime dt = (GXDateTime) data;
-                            lastDate.setTime(dt.getMeterCalendar().getTime());
-                        }
-                        row[colIndex] = data;
-                    } else if (type == DataType.DATETIME && data == null
-                            && capturePeriod != 0) {
-                        if (lastDate.getTimeInMillis() == 0
-                                && !buffer.isEmpty()) {
-                            lastDate.setTime(((GXDateTime) buffer
-                                    .get(buffer.size() - 1)[colIndex])
-                                            .getMeterCalendar().getTime());
-                        }
-                        if (lastDate.getTimeInMillis() != 0) {
-                            lastDate.add(java.util.Calendar.SECOND,
-                                    capturePeriod);
-                            row[colIndex] = new GXDateTime(lastDate.getTime());
-                        }
-                    } else if (type == DataType.DATETIME
-                            && row[colIndex] instanceof Number) {
-                        row[colIndex] = GXDateTime.fromUnixTime(
-                                ((Number) row[colIndex]).longValue());
+            for (colIndex = 0; colIndex < row.length; ++colIndex) {
+                Object data = row[colIndex];
+                DataType type = types[colIndex];
+                if (type != DataType.NONE && type != null
+                        && data instanceof byte[]) {
+                    data = GXDLMSClient.changeType((byte[]) data, type);
+                    if (data instanceof GXDateTime) {
+                        GXDateTime dt = (GXDateTime) data;
+                        lastDate.setTime(dt.getMeterCalendar().getTime());
+                    }
+                    row[colIndex] = data;
+                } else if (type == DataType.DATETIME && data == null
+                        && capturePeriod != 0) {
+                    if (lastDate.getTimeInMillis() == 0 && buffer.size() != 0) {
+                        lastDate.setTime(((GXDateTime) buffer
+                                .getValue(buffer.size() - 1, colIndex))
+                                        .getMeterCalendar().getTime());
+                    }
+                    if (lastDate.getTimeInMillis() != 0) {
+                        lastDate.add(java.util.Calendar.SECOND, capturePeriod);
+                        row[colIndex] = new GXDateTime(lastDate.getTime());
                     }
+                } else if (type == DataType.DATETIME
+                        && row[colIndex] instanceof Number) {
+                    row[colIndex] = GXDateTime.fromUnixTime(
+                            ((Number) row[colIndex]).longValue());
+                }
 
-                    Entry<GXDLMSObject, GXDLMSCaptureObject> item =
-                            cols.get(colIndex);
-                    if (item.getKey() instanceof GXDLMSRegister
-                            && item.getValue().getAttributeIndex() == 2) {
-                        double scaler =
-                                ((GXDLMSRegister) item.getKey()).getScaler();
-                        if (scaler != 1 && data != null) {
-                            try {
-                                data = ((Number) data).doubleValue() * scaler;
-                                row[colIndex] = data;
-                            } catch (Exception ex) {
-                                System.out.println("Scalar failed for: "
-                                        + item.getKey().getLogicalName());
-                                // Skip error
-                            }
+                Entry<GXDLMSObject, GXDLMSCaptureObject> item =
+                        cols.get(colIndex);
+                if (item.getKey() instanceof GXDLMSRegister
+                        && item.getValue().getAttributeIndex() == 2) {
+                    double scaler =
+                            ((GXDLMSRegister) item.getKey()).getScaler();
+                    if (scaler != 1 && data != null) {
+                        try {
+                            data = ((Number) data).doubleValue() * scaler;
+                            row[colIndex] = data;
+                        } catch (Exception ex) {
+                            System.out.println("Scalar failed for: "
+                                    + item.getKey().getLogicalName());
+                            // Skip error
                         }
-                    } else if (item.getKey() instanceof GXDLMSDemandRegister
-                            && (item.getValue().getAttributeIndex() == 2 || item
-                                    .getValue().getAttributeIndex() == 3)) {
-                        double scaler = ((GXDLMSDemandRegister) item.getKey())
-                                .getScaler();
-                        if (scaler != 1 && data != null) {
-                            try {
-                                data = ((Number) data).doubleValue() * scaler;
-                                row[colIndex] = data;
-                            } catch (Exception ex) {
-                                System.out.println("Scalar failed for: "
-                                        + item.getKey().getLogicalName());
-                                // Skip error
-                            }
+                    }
+                } else if (item.getKey() instanceof GXDLMSDemandRegister
+                        && (item.getValue().getAttributeIndex() == 2
+                                || item.getValue().getAttributeIndex() == 3)) {
+                    double scaler =
+                            ((GXDLMSDemandRegister) item.getKey()).getScaler();
+                    if (scaler != 1 && data != null) {
+                        try {
+                            data = ((Number) data).doubleValue() * scaler;
+                            row[colIndex] = data;
+                        } catch (Exception ex) {
+                            System.out.println("Scalar failed for: "
+                                    + item.getKey().getLogicalName());
+                            // Skip error
                         }
                     }
                 }
-                buffer.add((Object[]) row);
             }
-            entriesInUse = buffer.size();
+            if (listener == null) {
+                buffer.add(row);
+            } else {
+                listener.onRow(this, row);
+            }
         }
     }
 
@@ -972,14 +1165,13 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
                     ++pos;
                 }
                 synchronized (this) {
-                    // Remove first items if buffer is full.
-                    if (getProfileEntries() != 0
-                            && getProfileEntries() == getBuffer().length) {
-                        --entriesInUse;
-                        buffer.remove(0);
+                    // Remove oldest rows if buffer is full.
+                    while (getProfileEntries() != 0
+                            && getProfileEntries() <= buffer.size()) {
+                        buffer.removeFirst();
                     }
                     buffer.add(values);
-                    ++entriesInUse;
+                    entriesInUse = buffer.size();
                 }
             }
             srv.notifyPostGet(args);
@@ -1058,7 +1250,8 @@ public class GXDLMSProfileGeneric extends GXDLMSObject implements IGXDLMSBase {
     public final void save(final GXXmlWriter writer) throws XMLStreamException {
         if (buffer != null) {
             writer.writeStartElement("Buffer");
-            for (Object[] row : buffer) {
+            for (Object tmp : buffer.toArray()) {
+                Object[] row = (Object[]) tmp;
                 writer.writeStartElement("Row");
                 for (Object it : row) {
                     writer.writeElementObject("Cell", it);
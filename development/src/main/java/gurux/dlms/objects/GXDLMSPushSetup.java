@@ -310,7 +310,7 @@ public class GXDLMSPushSetup extends GXDLMSObject implements IGXDLMSBase {
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         GXByteBuffer buff = new GXByteBuffer();
         if (e.getIndex() == 2) {
@@ -321,8 +321,8 @@ public class GXDLMSPushSetup extends GXDLMSObject implements IGXDLMSBase {
                 buff.setUInt8(4);
                 GXCommon.setData(buff, DataType.UINT16,
                         new Integer(it.getKey().getObjectType().getValue()));
-                GXCommon.setData(buff, DataType.OCTET_STRING, GXCommon
-                        .logicalNameToBytes(it.getKey().getLogicalName()));
+                GXCommon.setData(buff, DataType.OCTET_STRING,
+                        it.getKey().getLogicalNameBytes());
                 GXCommon.setData(buff, DataType.INT8,
                         new Integer(it.getValue().getAttributeIndex()));
                 GXCommon.setData(buff, DataType.UINT16,
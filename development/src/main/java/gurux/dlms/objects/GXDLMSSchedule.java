@@ -165,7 +165,7 @@ public class GXDLMSSchedule extends GXDLMSObject implements IGXDLMSBase {
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         // TODO:
         e.setError(ErrorCode.READ_WRITE_DENIED);
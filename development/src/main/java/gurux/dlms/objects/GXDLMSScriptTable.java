@@ -151,7 +151,7 @@ public class GXDLMSScriptTable extends GXDLMSObject implements IGXDLMSBase {
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         if (e.getIndex() == 2) {
             int cnt = scripts.size();
@@ -187,8 +187,7 @@ public class GXDLMSScriptTable extends GXDLMSObject implements IGXDLMSBase {
                                 a.getTarget().getObjectType().getValue()));
                         // logical_name
                         GXCommon.setData(data, DataType.OCTET_STRING,
-                                GXCommon.logicalNameToBytes(
-                                        a.getTarget().getLogicalName()));
+                                a.getTarget().getLogicalNameBytes());
                     }
                     // index
                     GXCommon.setData(data, DataType.INT8,
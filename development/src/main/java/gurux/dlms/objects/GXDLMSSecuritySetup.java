@@ -40,7 +40,6 @@ import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
 import java.security.SignatureException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -59,6 +58,7 @@ import gurux.dlms.asn.GXAsn1Converter;
 import gurux.dlms.asn.GXAsn1Sequence;
 import gurux.dlms.asn.GXPkcs10;
 import gurux.dlms.asn.GXx509Certificate;
+import gurux.dlms.asn.GXx509CertificateCollection;
 import gurux.dlms.asn.enums.KeyUsage;
 import gurux.dlms.enums.DataType;
 import gurux.dlms.enums.ErrorCode;
@@ -72,6 +72,7 @@ import gurux.dlms.objects.enums.SecurityPolicy;
 import gurux.dlms.objects.enums.SecurityPolicy0;
 import gurux.dlms.objects.enums.SecuritySuite;
 import gurux.dlms.secure.GXASymmetric;
+import gurux.dlms.secure.GXCryptoCache;
 import gurux.dlms.secure.GXDLMSSecureClient;
 
 /**
@@ -647,16 +648,12 @@ public class GXDLMSSecuritySetup extends GXDLMSObject implements IGXDLMSBase {
                     GXByteBuffer sign = new GXByteBuffer();
                     sign.set(data, 64, 64);
                     PublicKey pk = null;
-                    String subject = systemTitleToSubject(
-                            settings.getSourceSystemTitle());
-                    for (GXx509Certificate it : settings.getCipher()
-                            .getCertificates()) {
-                        if (it.getKeyUsage()
-                                .contains(KeyUsage.DIGITAL_SIGNATURE)
-                                && it.getSubject().equals(subject)) {
-                            pk = it.getPublicKey();
-                            break;
-                        }
+                    GXx509Certificate cert = getCertificates(settings)
+                            .findBySystemTitle(
+                                    settings.getSourceSystemTitle(),
+                                    KeyUsage.DIGITAL_SIGNATURE);
+                    if (cert != null) {
+                        pk = cert.getPublicKey();
                     }
                     if (pk == null || !GXASymmetric
                             .validateEphemeralPublicKeySignature(data2.array(),
@@ -674,7 +671,8 @@ public class GXDLMSSecuritySetup extends GXDLMSObject implements IGXDLMSBase {
                             settings.getCipher().setEphemeralKeyPair(eKpS);
                         }
                         // Generate shared secret.
-                        KeyAgreement ka = KeyAgreement.getInstance("ECDH");
+                        KeyAgreement ka =
+                                GXCryptoCache.getKeyAgreement("ECDH");
                         ka.init(eKpS.getPrivate());
                         ka.doPhase(settings.getTargetEphemeralKey(), true);
                         byte[] sharedSecret = ka.generateSecret();
@@ -749,7 +747,7 @@ public class GXDLMSSecuritySetup extends GXDLMSObject implements IGXDLMSBase {
         } else if (e.getIndex() == 6) {
             // import_certificate
             GXx509Certificate cert =
-                    new GXx509Certificate((byte[]) e.getParameters());
+                    GXx509Certificate.fromByteArray((byte[]) e.getParameters());
             if (cert.getKeyUsage().isEmpty()) {
                 // At least one bit must be used.
                 e.setError(ErrorCode.READ_WRITE_DENIED);
@@ -847,15 +845,8 @@ public class GXDLMSSecuritySetup extends GXDLMSObject implements IGXDLMSBase {
     private static GXx509Certificate findCertificateByEntity(
             final GXDLMSSettings settings, final CertificateEntity entity,
             final CertificateType type, final byte[] systemtitle) {
-        String subject = systemTitleToSubject(systemtitle);
-        KeyUsage k = certificateTypeToKeyUsage(type);
-        for (GXx509Certificate it : settings.getCipher().getCertificates()) {
-            if (it.getKeyUsage().contains(k)
-                    && it.getSubject().equalsIgnoreCase(subject)) {
-                return it;
-            }
-        }
-        return null;
+        return getCertificates(settings).findBySystemTitle(systemtitle,
+                certificateTypeToKeyUsage(type));
     }
 
     /**
@@ -872,13 +863,26 @@ public class GXDLMSSecuritySetup extends GXDLMSObject implements IGXDLMSBase {
     private static GXx509Certificate findCertificateBySerial(
             final GXDLMSSettings settings, final byte[] serialNumber,
             final String issuer) {
-        for (GXx509Certificate it : settings.getCipher().getCertificates()) {
-            if (Arrays.equals(it.getSerialNumber().getByteArray(), serialNumber)
-                    && it.getIssuer().equalsIgnoreCase(issuer)) {
-                return it;
-            }
+        return getCertificates(settings).findBySerial(serialNumber, issuer);
+    }
+
+    /**
+     * Get certificates of the cipher as indexed collection.
+     * 
+     * @param settings
+     *            DLMS Settings.
+     * @return Certificates. Copy of the certificates is returned if cipher
+     *         doesn't index them.
+     */
+    private static GXx509CertificateCollection
+            getCertificates(final GXDLMSSettings settings) {
+        List<GXx509Certificate> list = settings.getCipher().getCertificates();
+        if (list instanceof GXx509CertificateCollection) {
+            return (GXx509CertificateCollection) list;
         }
-        return null;
+        GXx509CertificateCollection tmp = new GXx509CertificateCollection();
+        tmp.addAll(list);
+        return tmp;
     }
 
     @Override
@@ -998,7 +1002,7 @@ public class GXDLMSSecuritySetup extends GXDLMSObject implements IGXDLMSBase {
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         if (e.getIndex() == 2) {
             if (getVersion() == 0) {
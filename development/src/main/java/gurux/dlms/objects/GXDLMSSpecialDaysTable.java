@@ -215,7 +215,7 @@ public class GXDLMSSpecialDaysTable extends GXDLMSObject
     public final Object getValue(final GXDLMSSettings settings,
             final ValueEventArgs e) {
         if (e.getIndex() == 1) {
-            return GXCommon.logicalNameToBytes(getLogicalName());
+            return getLogicalNameBytes();
         }
         if (e.getIndex() == 2) {
             GXByteBuffer data = new GXByteBuffer();
@@ -0,0 +1,752 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.objects;
+
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import gurux.dlms.GXByteBuffer;
+import gurux.dlms.GXDLMSClient;
+import gurux.dlms.GXDataWriter;
+import gurux.dlms.GXDateTime;
+import gurux.dlms.enums.DataType;
+import gurux.dlms.internal.GXCommon;
+
+/**
+ * Profile generic buffer where values are stored by columns.
+ * <p>
+ * Column type is selected when the first row is added. Date-times are stored
+ * as epoch milliseconds and encoded bytes. Numbers are stored in primitive
+ * arrays using the data type of the capture object. If a value does not fit
+ * to the column, column is changed to store objects.
+ * </p>
+ * <p>
+ * Rows are kept in a circular buffer so the oldest row is removed in constant
+ * time. Adding and removing rows and toArray are synchronized on the buffer.
+ * Version is odd while rows are modified, so readers notice if they read
+ * rows at the same time.
+ * </p>
+ */
+public class GXProfileGenericColumnBuffer implements IGXProfileGenericBuffer {
+    /**
+     * Initial row capacity.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Profile generic where capture objects are read.
+     */
+    private final GXDLMSProfileGeneric target;
+
+    /**
+     * Columns. Null until the first row is added.
+     */
+    private Column[] columns;
+
+    /**
+     * Position of the oldest row in the columns.
+     */
+    private int head;
+
+    /**
+     * Amount of rows.
+     */
+    private int size;
+
+    /**
+     * Allocated row capacity.
+     */
+    private int capacity;
+
+    /**
+     * Capture time of the newest row.
+     */
+    private long lastTime;
+
+    /**
+     * Are rows added in time order.
+     */
+    private boolean timeOrdered = true;
+
+    /**
+     * Version of the rows. Incremented before and after rows are modified.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Constructor.
+     * 
+     * @param pg
+     *            Profile generic where capture objects are read.
+     */
+    public GXProfileGenericColumnBuffer(final GXDLMSProfileGeneric pg) {
+        if (pg == null) {
+            throw new IllegalArgumentException("pg");
+        }
+        target = pg;
+    }
+
+    @Override
+    public final int size() {
+        return size;
+    }
+
+    @Override
+    public final int getColumnCount() {
+        if (columns == null) {
+            return 0;
+        }
+        return columns.length;
+    }
+
+    /**
+     * Get position of the row in the columns.
+     * 
+     * @param row
+     *            Row index.
+     * @return Position in the columns.
+     */
+    private int getIndex(final int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + row + ", Size: " + size);
+        }
+        return (head + row) % capacity;
+    }
+
+    @Override
+    public final Object getValue(final int row, final int column) {
+        return columns[column].get(getIndex(row));
+    }
+
+    @Override
+    public final long getTime(final int row) {
+        int index = getIndex(row);
+        if (columns[0] instanceof DateTimeColumn) {
+            return ((DateTimeColumn) columns[0]).times[index];
+        }
+        return GXDLMSProfileGeneric.getTime(columns[0].get(index));
+    }
+
+    @Override
+    public final boolean isTimeOrdered() {
+        return timeOrdered;
+    }
+
+    @Override
+    public final Object[] getRow(final int row) {
+        int index = getIndex(row);
+        Object[] values = new Object[columns.length];
+        for (int pos = 0; pos != columns.length; ++pos) {
+            values[pos] = columns[pos].get(index);
+        }
+        return values;
+    }
+
+    @Override
+    public final synchronized Object[] toArray() {
+        Object[] rows = new Object[size];
+        for (int pos = 0; pos != size; ++pos) {
+            rows[pos] = getRow(pos);
+        }
+        return rows;
+    }
+
+    @Override
+    public final long getVersion() {
+        long value = version.get();
+        // Wait until rows are modified.
+        while ((value & 1) != 0) {
+            Thread.yield();
+            value = version.get();
+        }
+        return value;
+    }
+
+    @Override
+    public final boolean validate(final long value) {
+        // Compare and set orders the reads of the caller before the next
+        // modification.
+        return version.compareAndSet(value, value);
+    }
+
+    @Override
+    public final synchronized void add(final Object[] row) {
+        version.incrementAndGet();
+        try {
+            addRow(row);
+        } finally {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Add new row.
+     * 
+     * @param row
+     *            Row values.
+     */
+    private void addRow(final Object[] row) {
+        if (columns == null) {
+            columns = createColumns(row);
+        } else if (row.length != columns.length) {
+            throw new IllegalArgumentException(
+                    "Number of columns do not match.");
+        }
+        if (size == capacity) {
+            int cap = Math.max(INITIAL_CAPACITY, capacity + capacity / 2);
+            for (Column it : columns) {
+                it.resize(cap, head, size);
+            }
+            head = 0;
+            capacity = cap;
+        }
+        long time = Long.MIN_VALUE;
+        if (row.length != 0) {
+            time = GXDLMSProfileGeneric.getTime(row[0]);
+        }
+        if (time == Long.MIN_VALUE || (size != 0 && time < lastTime)) {
+            timeOrdered = false;
+        }
+        lastTime = time;
+        int index = (head + size) % capacity;
+        for (int pos = 0; pos != columns.length; ++pos) {
+            if (!columns[pos].accept(row[pos])) {
+                columns[pos] = toObjectColumn(columns[pos]);
+            }
+            columns[pos].set(index, row[pos]);
+        }
+        ++size;
+    }
+
+    @Override
+    public final synchronized void removeFirst() {
+        int index = getIndex(0);
+        version.incrementAndGet();
+        try {
+            for (Column it : columns) {
+                it.set(index, null);
+            }
+            head = (index + 1) % capacity;
+            --size;
+        } finally {
+            version.incrementAndGet();
+        }
+    }
+
+    @Override
+    public final synchronized void clear() {
+        version.incrementAndGet();
+        columns = null;
+        timeOrdered = true;
+        head = 0;
+        size = 0;
+        capacity = 0;
+        version.incrementAndGet();
+    }
+
+    @Override
+    public final void write(final int row, final int column,
+            final DataType type, final GXDataWriter writer) {
+        columns[column].write(getIndex(row), type, writer);
+    }
+
+    /**
+     * Create columns using the first row and the capture objects.
+     * 
+     * @param row
+     *            First row.
+     * @return Created columns.
+     */
+    private Column[] createColumns(final Object[] row) {
+        List<Entry<GXDLMSObject, GXDLMSCaptureObject>> objects =
+                target.getCaptureObjects();
+        Column[] list = new Column[row.length];
+        for (int pos = 0; pos != row.length; ++pos) {
+            DataType type = DataType.NONE;
+            if (pos < objects.size()) {
+                Entry<GXDLMSObject, GXDLMSCaptureObject> it = objects.get(pos);
+                type = it.getKey()
+                        .getDataType(it.getValue().getAttributeIndex());
+            }
+            list[pos] = createColumn(type, row[pos]);
+        }
+        return list;
+    }
+
+    /**
+     * Select column type.
+     * 
+     * @param type
+     *            Data type of the capture object.
+     * @param value
+     *            First value.
+     * @return Created column.
+     */
+    private static Column createColumn(final DataType type,
+            final Object value) {
+        if (value == null) {
+            return new ObjectColumn();
+        }
+        Class<?> c = value.getClass();
+        if (c == GXDateTime.class) {
+            return new DateTimeColumn();
+        }
+        if (c == Byte.class || c == Short.class || c == Integer.class) {
+            return new IntColumn(c);
+        }
+        if (c == Long.class) {
+            switch (type) {
+            case INT8:
+            case INT16:
+            case INT32:
+            case UINT8:
+            case UINT16:
+            case ENUM:
+                return new IntColumn(c);
+            default:
+                return new LongColumn();
+            }
+        }
+        if (c == Float.class) {
+            return new FloatColumn();
+        }
+        if (c == Double.class) {
+            return new DoubleColumn();
+        }
+        return new ObjectColumn();
+    }
+
+    /**
+     * Change column to store objects.
+     * 
+     * @param column
+     *            Column to change.
+     * @return Object column.
+     */
+    private Column toObjectColumn(final Column column) {
+        ObjectColumn tmp = new ObjectColumn();
+        tmp.resize(capacity, 0, 0);
+        for (int pos = 0; pos != size; ++pos) {
+            int index = (head + pos) % capacity;
+            tmp.set(index, column.get(index));
+        }
+        return tmp;
+    }
+
+    /**
+     * Copy rows from circular array to the beginning of the new array.
+     * 
+     * @param source
+     *            Source array.
+     * @param length
+     *            Capacity of the source array in rows.
+     * @param target
+     *            Target array.
+     * @param head
+     *            Position of the oldest row in the source array.
+     * @param count
+     *            Amount of rows.
+     * @param itemSize
+     *            Array items in one row.
+     */
+    private static void copy(final Object source, final int length,
+            final Object target, final int head, final int count,
+            final int itemSize) {
+        int cnt = Math.min(count, length - head);
+        System.arraycopy(source, head * itemSize, target, 0, cnt * itemSize);
+        System.arraycopy(source, 0, target, cnt * itemSize,
+                (count - cnt) * itemSize);
+    }
+
+    /**
+     * Write integer value using typed writer methods.
+     * 
+     * @param writer
+     *            Writer.
+     * @param type
+     *            Data type.
+     * @param value
+     *            Value.
+     * @param boxed
+     *            Column where boxed value is read if type is not integer
+     *            type.
+     * @param index
+     *            Row index.
+     */
+    private static void writeInteger(final GXDataWriter writer,
+            final DataType type, final long value, final Column boxed,
+            final int index) {
+        switch (type) {
+        case INT8:
+            writer.writeInt8((int) value);
+            break;
+        case INT16:
+            writer.writeInt16((int) value);
+            break;
+        case INT32:
+            writer.writeInt32((int) value);
+            break;
+        case INT64:
+            writer.writeInt64(value);
+            break;
+        case UINT8:
+            writer.writeUInt8((int) value);
+            break;
+        case UINT16:
+            writer.writeUInt16((int) value);
+            break;
+        case UINT32:
+            writer.writeUInt32(value);
+            break;
+        case UINT64:
+            writer.writeUInt64(value);
+            break;
+        case ENUM:
+            writer.writeEnum((int) value);
+            break;
+        default:
+            writer.write(type, boxed.get(index));
+            break;
+        }
+    }
+
+    /**
+     * Column of values.
+     */
+    private abstract static class Column {
+        /**
+         * @param value
+         *            Value to store.
+         * @return True, if value can be stored to this column.
+         */
+        abstract boolean accept(Object value);
+
+        /**
+         * Set value. Null values are ignored by primitive columns.
+         */
+        abstract void set(int index, Object value);
+
+        /**
+         * @return Boxed value.
+         */
+        abstract Object get(int index);
+
+        /**
+         * Write value without boxing if possible.
+         */
+        abstract void write(int index, DataType type, GXDataWriter writer);
+
+        /**
+         * Change capacity of the column. Rows are moved to the beginning of
+         * the column.
+         */
+        abstract void resize(int capacity, int head, int count);
+    }
+
+    /**
+     * Integer values that fit to 32 bits.
+     */
+    private static final class IntColumn extends Column {
+        private final Class<?> valueClass;
+        private int[] values = new int[0];
+
+        IntColumn(final Class<?> c) {
+            valueClass = c;
+        }
+
+        @Override
+        boolean accept(final Object value) {
+            if (value == null || value.getClass() != valueClass) {
+                return false;
+            }
+            long v = ((Number) value).longValue();
+            return v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE;
+        }
+
+        @Override
+        void set(final int index, final Object value) {
+            if (value != null) {
+                values[index] = ((Number) value).intValue();
+            }
+        }
+
+        @Override
+        Object get(final int index) {
+            int v = values[index];
+            if (valueClass == Byte.class) {
+                return Byte.valueOf((byte) v);
+            } else if (valueClass == Short.class) {
+                return Short.valueOf((short) v);
+            } else if (valueClass == Long.class) {
+                return Long.valueOf(v);
+            }
+            return Integer.valueOf(v);
+        }
+
+        @Override
+        void write(final int index, final DataType type,
+                final GXDataWriter writer) {
+            writeInteger(writer, type, values[index], this, index);
+        }
+
+        @Override
+        void resize(final int capacity, final int head, final int count) {
+            int[] tmp = new int[capacity];
+            copy(values, values.length, tmp, head, count, 1);
+            values = tmp;
+        }
+
+    }
+
+    /**
+     * 64 bit integer values.
+     */
+    private static final class LongColumn extends Column {
+        private long[] values = new long[0];
+
+        @Override
+        boolean accept(final Object value) {
+            return value != null && value.getClass() == Long.class;
+        }
+
+        @Override
+        void set(final int index, final Object value) {
+            if (value != null) {
+                values[index] = ((Long) value).longValue();
+            }
+        }
+
+        @Override
+        Object get(final int index) {
+            return Long.valueOf(values[index]);
+        }
+
+        @Override
+        void write(final int index, final DataType type,
+                final GXDataWriter writer) {
+            writeInteger(writer, type, values[index], this, index);
+        }
+
+        @Override
+        void resize(final int capacity, final int head, final int count) {
+            long[] tmp = new long[capacity];
+            copy(values, values.length, tmp, head, count, 1);
+            values = tmp;
+        }
+
+    }
+
+    /**
+     * Float32 values.
+     */
+    private static final class FloatColumn extends Column {
+        private float[] values = new float[0];
+
+        @Override
+        boolean accept(final Object value) {
+            return value != null && value.getClass() == Float.class;
+        }
+
+        @Override
+        void set(final int index, final Object value) {
+            if (value != null) {
+                values[index] = ((Float) value).floatValue();
+            }
+        }
+
+        @Override
+        Object get(final int index) {
+            return Float.valueOf(values[index]);
+        }
+
+        @Override
+        void write(final int index, final DataType type,
+                final GXDataWriter writer) {
+            if (type == DataType.FLOAT32) {
+                writer.writeFloat32(values[index]);
+            } else if (type == DataType.FLOAT64) {
+                writer.writeFloat64(values[index]);
+            } else {
+                writer.write(type, get(index));
+            }
+        }
+
+        @Override
+        void resize(final int capacity, final int head, final int count) {
+            float[] tmp = new float[capacity];
+            copy(values, values.length, tmp, head, count, 1);
+            values = tmp;
+        }
+
+    }
+
+    /**
+     * Float64 values.
+     */
+    private static final class DoubleColumn extends Column {
+        private double[] values = new double[0];
+
+        @Override
+        boolean accept(final Object value) {
+            return value != null && value.getClass() == Double.class;
+        }
+
+        @Override
+        void set(final int index, final Object value) {
+            if (value != null) {
+                values[index] = ((Double) value).doubleValue();
+            }
+        }
+
+        @Override
+        Object get(final int index) {
+            return Double.valueOf(values[index]);
+        }
+
+        @Override
+        void write(final int index, final DataType type,
+                final GXDataWriter writer) {
+            if (type == DataType.FLOAT64) {
+                writer.writeFloat64(values[index]);
+            } else {
+                writer.write(type, get(index));
+            }
+        }
+
+        @Override
+        void resize(final int capacity, final int head, final int count) {
+            double[] tmp = new double[capacity];
+            copy(values, values.length, tmp, head, count, 1);
+            values = tmp;
+        }
+
+    }
+
+    /**
+     * Date-time values. Both epoch time and encoded value are stored.
+     */
+    private static final class DateTimeColumn extends Column {
+        /**
+         * Size of encoded date-time.
+         */
+        private static final int SIZE = 12;
+        private long[] times = new long[0];
+        private byte[] values = new byte[0];
+        private final GXByteBuffer bb = new GXByteBuffer(SIZE + 2);
+
+        @Override
+        boolean accept(final Object value) {
+            return value != null && value.getClass() == GXDateTime.class;
+        }
+
+        @Override
+        void set(final int index, final Object value) {
+            if (value != null) {
+                GXDateTime dt = (GXDateTime) value;
+                times[index] = dt.getMeterCalendar().getTimeInMillis();
+                bb.clear();
+                GXCommon.setData(bb, DataType.OCTET_STRING, dt);
+                // Skip data type and length.
+                System.arraycopy(bb.getData(), 2, values, index * SIZE, SIZE);
+            }
+        }
+
+        @Override
+        Object get(final int index) {
+            byte[] tmp = new byte[SIZE];
+            System.arraycopy(values, index * SIZE, tmp, 0, SIZE);
+            return GXDLMSClient.changeType(tmp, DataType.DATETIME);
+        }
+
+        @Override
+        void write(final int index, final DataType type,
+                final GXDataWriter writer) {
+            if (type == DataType.OCTET_STRING) {
+                writer.writeOctetString(values, index * SIZE, SIZE);
+            } else {
+                writer.write(type, get(index));
+            }
+        }
+
+        @Override
+        void resize(final int capacity, final int head, final int count) {
+            long[] tmp = new long[capacity];
+            copy(times, times.length, tmp, head, count, 1);
+            times = tmp;
+            byte[] tmp2 = new byte[capacity * SIZE];
+            copy(values, values.length / SIZE, tmp2, head, count, SIZE);
+            values = tmp2;
+        }
+
+    }
+
+    /**
+     * Values that are stored as objects.
+     */
+    private static final class ObjectColumn extends Column {
+        private Object[] values = new Object[0];
+
+        @Override
+        boolean accept(final Object value) {
+            return true;
+        }
+
+        @Override
+        void set(final int index, final Object value) {
+            values[index] = value;
+        }
+
+        @Override
+        Object get(final int index) {
+            return values[index];
+        }
+
+        @Override
+        void write(final int index, final DataType type,
+                final GXDataWriter writer) {
+            writer.write(type, values[index]);
+        }
+
+        @Override
+        void resize(final int capacity, final int head, final int count) {
+            Object[] tmp = new Object[capacity];
+            copy(values, values.length, tmp, head, count, 1);
+            values = tmp;
+        }
+
+    }
+}
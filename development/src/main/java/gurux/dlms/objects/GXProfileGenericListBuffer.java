@@ -0,0 +1,249 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.objects;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import gurux.dlms.GXDataWriter;
+import gurux.dlms.enums.DataType;
+
+/**
+ * Profile generic buffer where rows are stored as object arrays.
+ * <p>
+ * Rows are kept in a circular buffer so the oldest row is removed in constant
+ * time. Each row has a sequence number. Rows are never modified while the
+ * sequence number of the oldest row stays the same, so rows can be read
+ * without locking. Version is changed when rows are removed and readers retry
+ * if rows were removed meanwhile.
+ * </p>
+ */
+public class GXProfileGenericListBuffer implements IGXProfileGenericBuffer {
+    /**
+     * Initial row capacity.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Rows. Row is stored to index sequence number % length.
+     */
+    private volatile AtomicReferenceArray<Object[]> rows;
+
+    /**
+     * Capture times of the rows. Stored to the same index as the row.
+     */
+    private long[] times;
+
+    /**
+     * Are rows added in time order.
+     */
+    private boolean timeOrdered = true;
+
+    /**
+     * Sequence number of the oldest row.
+     */
+    private volatile long first;
+
+    /**
+     * Sequence number of the next added row.
+     */
+    private volatile long end;
+
+    /**
+     * Version of the rows. Incremented before rows are removed. Added rows
+     * don't change existing rows, so version is not changed when rows are
+     * added.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * Constructor.
+     */
+    public GXProfileGenericListBuffer() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param capacity
+     *            Initial row capacity.
+     */
+    public GXProfileGenericListBuffer(final int capacity) {
+        rows = new AtomicReferenceArray<Object[]>(Math.max(1, capacity));
+        times = new long[rows.length()];
+    }
+
+    @Override
+    public final int size() {
+        return (int) (end - first);
+    }
+
+    @Override
+    public final int getColumnCount() {
+        if (end == first) {
+            return 0;
+        }
+        return getRow(0).length;
+    }
+
+    @Override
+    public final Object getValue(final int row, final int column) {
+        return getRow(row)[column];
+    }
+
+    @Override
+    public final long getTime(final int row) {
+        long seq = first + row;
+        if (row < 0 || seq >= end) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + row + ", Size: " + size());
+        }
+        long[] tmp = times;
+        return tmp[(int) (seq % tmp.length)];
+    }
+
+    @Override
+    public final boolean isTimeOrdered() {
+        return timeOrdered;
+    }
+
+    @Override
+    public final Object[] getRow(final int row) {
+        long seq = first + row;
+        if (row < 0 || seq >= end) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + row + ", Size: " + size());
+        }
+        AtomicReferenceArray<Object[]> tmp = rows;
+        return tmp.get((int) (seq % tmp.length()));
+    }
+
+    @Override
+    public final synchronized void add(final Object[] row) {
+        AtomicReferenceArray<Object[]> tmp = rows;
+        int cnt = size();
+        if (cnt == tmp.length()) {
+            // Copy rows to the bigger array before it is published.
+            AtomicReferenceArray<Object[]> arr =
+                    new AtomicReferenceArray<Object[]>(cnt + cnt / 2 + 1);
+            long[] tms = new long[arr.length()];
+            for (long seq = first; seq != end; ++seq) {
+                arr.set((int) (seq % arr.length()),
+                        tmp.get((int) (seq % tmp.length())));
+                tms[(int) (seq % tms.length)] =
+                        times[(int) (seq % times.length)];
+            }
+            times = tms;
+            rows = arr;
+            tmp = arr;
+        }
+        long time = Long.MIN_VALUE;
+        if (row.length != 0) {
+            time = GXDLMSProfileGeneric.getTime(row[0]);
+        }
+        if (time == Long.MIN_VALUE || (cnt != 0
+                && time < times[(int) ((end - 1) % times.length)])) {
+            timeOrdered = false;
+        }
+        times[(int) (end % times.length)] = time;
+        tmp.set((int) (end % tmp.length()), row);
+        ++end;
+    }
+
+    @Override
+    public final synchronized void removeFirst() {
+        if (end == first) {
+            throw new IndexOutOfBoundsException("Index: 0, Size: 0");
+        }
+        long seq = first;
+        version.incrementAndGet();
+        // Sequence number is updated first so readers notice the change.
+        first = seq + 1;
+        AtomicReferenceArray<Object[]> tmp = rows;
+        tmp.set((int) (seq % tmp.length()), null);
+    }
+
+    @Override
+    public final synchronized void clear() {
+        long seq = first;
+        long last = end;
+        version.incrementAndGet();
+        first = last;
+        AtomicReferenceArray<Object[]> tmp = rows;
+        for (; seq != last; ++seq) {
+            tmp.set((int) (seq % tmp.length()), null);
+        }
+        timeOrdered = true;
+    }
+
+    @Override
+    public final Object[] toArray() {
+        while (true) {
+            long last = end;
+            long seq = first;
+            AtomicReferenceArray<Object[]> tmp = rows;
+            if (last < seq) {
+                continue;
+            }
+            Object[] list = new Object[(int) (last - seq)];
+            for (int pos = 0; pos != list.length; ++pos) {
+                list[pos] = tmp.get((int) ((seq + pos) % tmp.length()));
+            }
+            // If the oldest row is not changed, no row was modified.
+            if (first == seq) {
+                return list;
+            }
+        }
+    }
+
+    @Override
+    public final long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public final boolean validate(final long value) {
+        // Compare and set orders the reads of the caller before the next
+        // removal.
+        return version.compareAndSet(value, value);
+    }
+
+    @Override
+    public final void write(final int row, final int column,
+            final DataType type, final GXDataWriter writer) {
+        writer.write(type, getRow(row)[column]);
+    }
+}
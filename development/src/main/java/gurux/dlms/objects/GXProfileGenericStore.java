@@ -0,0 +1,550 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.objects;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Map.Entry;
+
+import gurux.dlms.GXByteBuffer;
+import gurux.dlms.GXDLMSClient;
+import gurux.dlms.GXDateTime;
+import gurux.dlms.ValueEventArgs;
+import gurux.dlms.enums.DataType;
+import gurux.dlms.internal.GXCommon;
+import gurux.dlms.internal.GXDataInfo;
+
+/**
+ * Persistent profile generic store where rows are saved to a memory-mapped
+ * file.
+ * <p>
+ * Rows are saved as fixed size records to a circular buffer. File header
+ * holds the amount of rows and the position of the oldest row, so a row is
+ * found by entry in constant time and by capture time with binary search.
+ * Rows must be added in capture time order and the first column must be a
+ * date-time.
+ * </p>
+ * <p>
+ * Size of the file is fixed by the maximum amount of rows given in the
+ * constructor. When the store is full, the oldest row is removed when a new
+ * row is added. Use the profile entries of the profile generic as the
+ * maximum amount of rows if old rows must be kept.
+ * </p>
+ * <p>
+ * Methods are synchronized. If several servers use the same file, they must
+ * share the same store instance.
+ * </p>
+ * <p>
+ * Only fixed size data types are supported. Octet string columns are saved as
+ * date-times and other octet strings are not accepted.
+ * </p>
+ * 
+ * @see #handleRead(ValueEventArgs)
+ */
+public class GXProfileGenericStore implements Closeable {
+    /**
+     * File identifier.
+     */
+    private static final int MAGIC = 0x47585047;
+
+    /**
+     * File version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Header size without column types.
+     */
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * Position of the row count in the header.
+     */
+    private static final int COUNT_POSITION = 12;
+
+    /**
+     * Position of the oldest row in the header.
+     */
+    private static final int HEAD_POSITION = 16;
+
+    /**
+     * Size of the encoded date-time.
+     */
+    private static final int DATE_TIME_SIZE = 12;
+
+    /**
+     * Column types.
+     */
+    private final DataType[] types;
+
+    /**
+     * Column offsets in the record.
+     */
+    private final int[] offsets;
+
+    /**
+     * Record size. Record starts with capture time in milliseconds.
+     */
+    private final int recordSize;
+
+    /**
+     * Maximum amount of rows.
+     */
+    private final int capacity;
+
+    /**
+     * Offset of the first record.
+     */
+    private final int dataOffset;
+
+    /**
+     * Opened file.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Mapped file.
+     */
+    private final MappedByteBuffer data;
+
+    /**
+     * Amount of rows.
+     */
+    private int count;
+
+    /**
+     * Index of the oldest record.
+     */
+    private int head;
+
+    /**
+     * Buffer used to encode values.
+     */
+    private final GXByteBuffer bb = new GXByteBuffer();
+
+    /**
+     * Constructor. Column types are read from the capture objects.
+     * 
+     * @param path
+     *            File path.
+     * @param pg
+     *            Profile generic.
+     * @param maxRows
+     *            Maximum amount of rows. Oldest row is removed when a row is
+     *            added to the full store.
+     * @throws IOException
+     *             File open fails.
+     */
+    public GXProfileGenericStore(final String path,
+            final GXDLMSProfileGeneric pg, final int maxRows)
+            throws IOException {
+        this(path, getTypes(pg), maxRows);
+    }
+
+    /**
+     * Constructor. Existing file is opened if column types and capacity
+     * match. Otherwise new file is created.
+     * 
+     * @param path
+     *            File path.
+     * @param columnTypes
+     *            Column types.
+     * @param maxRows
+     *            Maximum amount of rows. Oldest row is removed when a row is
+     *            added to the full store.
+     * @throws IOException
+     *             File open fails.
+     */
+    public GXProfileGenericStore(final String path,
+            final DataType[] columnTypes, final int maxRows)
+            throws IOException {
+        if (columnTypes == null || columnTypes.length == 0) {
+            throw new IllegalArgumentException("columnTypes");
+        }
+        if (maxRows < 1) {
+            throw new IllegalArgumentException("maxRows");
+        }
+        types = columnTypes.clone();
+        offsets = new int[types.length];
+        // Capture time is saved first.
+        int size = 8;
+        for (int pos = 0; pos != types.length; ++pos) {
+            offsets[pos] = size;
+            size += getSize(types[pos]);
+        }
+        recordSize = size;
+        capacity = maxRows;
+        dataOffset = (HEADER_SIZE + types.length + 7) & ~7;
+        long length = dataOffset + (long) recordSize * capacity;
+        File f = new File(path);
+        boolean exists = f.exists() && f.length() == length;
+        file = new RandomAccessFile(f, "rw");
+        try {
+            file.setLength(length);
+            data = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    length);
+            if (exists && isValid()) {
+                count = data.getInt(COUNT_POSITION);
+                head = data.getInt(HEAD_POSITION);
+            } else {
+                data.putInt(0, MAGIC);
+                data.putShort(4, (short) VERSION);
+                data.putShort(6, (short) types.length);
+                data.putInt(8, recordSize);
+                data.putInt(20, capacity);
+                for (int pos = 0; pos != types.length; ++pos) {
+                    data.put(HEADER_SIZE + pos, (byte) types[pos].getValue());
+                }
+                writeHeader();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Get column types from the capture objects.
+     * 
+     * @param pg
+     *            Profile generic.
+     * @return Column types.
+     */
+    private static DataType[] getTypes(final GXDLMSProfileGeneric pg) {
+        List<Entry<GXDLMSObject, GXDLMSCaptureObject>> list =
+                pg.getCaptureObjects();
+        DataType[] types = new DataType[list.size()];
+        int pos = 0;
+        for (Entry<GXDLMSObject, GXDLMSCaptureObject> it : list) {
+            types[pos] =
+                    it.getKey().getDataType(it.getValue().getAttributeIndex());
+            ++pos;
+        }
+        return types;
+    }
+
+    /**
+     * Get saved size of the data type.
+     * 
+     * @param type
+     *            Data type.
+     * @return Size in bytes.
+     */
+    private static int getSize(final DataType type) {
+        if (type == DataType.OCTET_STRING) {
+            return DATE_TIME_SIZE;
+        }
+        int size = GXCommon.getDataTypeSize(type);
+        if (size < 1) {
+            throw new IllegalArgumentException(
+                    "Data type is not supported: " + type);
+        }
+        return size;
+    }
+
+    /**
+     * @return Is existing file using the same layout.
+     */
+    private boolean isValid() {
+        if (data.getInt(0) != MAGIC || data.getShort(4) != VERSION
+                || data.getShort(6) != types.length
+                || data.getInt(8) != recordSize
+                || data.getInt(20) != capacity) {
+            return false;
+        }
+        for (int pos = 0; pos != types.length; ++pos) {
+            if (data.get(HEADER_SIZE + pos) != (byte) types[pos].getValue()) {
+                return false;
+            }
+        }
+        int cnt = data.getInt(COUNT_POSITION);
+        int first = data.getInt(HEAD_POSITION);
+        return cnt >= 0 && cnt <= capacity && first >= 0 && first < capacity;
+    }
+
+    /**
+     * Save row count and position of the oldest row.
+     */
+    private void writeHeader() {
+        data.putInt(COUNT_POSITION, count);
+        data.putInt(HEAD_POSITION, head);
+    }
+
+    /**
+     * @return Maximum amount of rows.
+     */
+    public final int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Amount of rows.
+     */
+    public final synchronized int getEntriesInUse() {
+        return count;
+    }
+
+    /**
+     * Get position of the record.
+     * 
+     * @param index
+     *            Row index. Oldest row is zero.
+     * @return Position in the file.
+     */
+    private int getPosition(final int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException(
+                    "Index: " + index + ", Size: " + count);
+        }
+        return dataOffset + ((head + index) % capacity) * recordSize;
+    }
+
+    /**
+     * Add new row. If store is full, oldest row is removed.
+     * 
+     * @param row
+     *            Row values. Capture time of the row can't be older than
+     *            capture time of the newest row.
+     * @throws IllegalArgumentException
+     *             Row is invalid. Row is not added.
+     */
+    public final synchronized void add(final Object[] row) {
+        if (row.length != types.length) {
+            throw new IllegalArgumentException(
+                    "Number of columns do not match.");
+        }
+        long time = GXDLMSProfileGeneric.getTime(row[0]);
+        if (time == Long.MIN_VALUE) {
+            throw new IllegalArgumentException(
+                    "First column must be a date-time.");
+        }
+        // Rows are searched by capture time with binary search.
+        if (count != 0 && time < data.getLong(getPosition(count - 1))) {
+            throw new IllegalArgumentException(
+                    "Rows must be added in capture time order.");
+        }
+        // Columns are serialized before the store is modified, so an
+        // invalid row doesn't overwrite the oldest row.
+        byte[] record = new byte[recordSize];
+        for (int pos = 0; pos != types.length; ++pos) {
+            bb.clear();
+            int size = getSize(types[pos]);
+            if (row[pos] == null) {
+                bb.set(new byte[size + 1]);
+            } else {
+                GXCommon.setData(bb, types[pos], row[pos]);
+                // Octet string must have data type, length and date-time.
+                if (types[pos] == DataType.OCTET_STRING
+                        && bb.size() != size + 2) {
+                    throw new IllegalArgumentException("Column " + pos
+                            + " must be a date-time.");
+                }
+            }
+            // Skip data type and octet string length.
+            System.arraycopy(bb.getData(), bb.size() - size, record,
+                    offsets[pos], size);
+        }
+        int index;
+        if (count == capacity) {
+            index = head;
+            head = (head + 1) % capacity;
+        } else {
+            index = (head + count) % capacity;
+            ++count;
+        }
+        int position = dataOffset + index * recordSize;
+        data.putLong(position, time);
+        for (int i = 8; i != recordSize; ++i) {
+            data.put(position + i, record[i]);
+        }
+        writeHeader();
+    }
+
+    /**
+     * Remove all rows.
+     */
+    public final synchronized void clear() {
+        count = 0;
+        head = 0;
+        writeHeader();
+    }
+
+    /**
+     * Get capture time of the row.
+     * 
+     * @param index
+     *            Row index. Oldest row is zero.
+     * @return Capture time in milliseconds from 1970-01-01.
+     */
+    public final synchronized long getTime(final int index) {
+        return data.getLong(getPosition(index));
+    }
+
+    /**
+     * Get row values.
+     * 
+     * @param index
+     *            Row index. Oldest row is zero.
+     * @return Row values.
+     */
+    public final synchronized Object[] getRow(final int index) {
+        int position = getPosition(index);
+        Object[] row = new Object[types.length];
+        GXDataInfo info = new GXDataInfo();
+        for (int pos = 0; pos != types.length; ++pos) {
+            int size = getSize(types[pos]);
+            byte[] tmp = new byte[size];
+            for (int i = 0; i != size; ++i) {
+                tmp[i] = data.get(position + offsets[pos] + i);
+            }
+            if (types[pos] == DataType.OCTET_STRING) {
+                row[pos] = GXDLMSClient.changeType(tmp, DataType.DATETIME);
+            } else {
+                info.clear();
+                info.setType(types[pos]);
+                row[pos] = GXCommon.getData(new GXByteBuffer(tmp), info);
+            }
+        }
+        return row;
+    }
+
+    /**
+     * Find row by capture time using binary search.
+     * 
+     * @param time
+     *            Capture time in milliseconds.
+     * @param after
+     *            If true, the first row after the time is searched. Otherwise
+     *            the first row at or after the time.
+     * @return Row index. Amount of rows if row is not found.
+     */
+    public final synchronized int indexOf(final long time,
+            final boolean after) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            long tm = data.getLong(getPosition(mid));
+            if (tm < time || (after && tm == time)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Handle profile generic read in onPreRead. Entries in use are updated
+     * when attribute #7 is read. When buffer is read, selected rows are
+     * searched from the store and rows that fit to one PDU are added to the
+     * buffer of the profile generic.
+     * 
+     * @param e
+     *            Event arguments.
+     * @return True, if read was handled.
+     */
+    public final synchronized boolean handleRead(final ValueEventArgs e) {
+        if (!(e.getTarget() instanceof GXDLMSProfileGeneric)) {
+            return false;
+        }
+        GXDLMSProfileGeneric p = (GXDLMSProfileGeneric) e.getTarget();
+        if (e.getIndex() == 7) {
+            p.setEntriesInUse(count);
+            return true;
+        }
+        if (e.getIndex() != 2) {
+            return false;
+        }
+        // If reading first time.
+        if (e.getRowEndIndex() == 0) {
+            Object[] arr = (Object[]) e.getParameters();
+            int begin = 0;
+            int end = count;
+            if (e.getSelector() == 1 && arr != null) {
+                // Read by range.
+                long start = ((GXDateTime) GXDLMSClient
+                        .changeType((byte[]) arr[1], DataType.DATETIME))
+                                .getMeterCalendar().getTimeInMillis();
+                long last = ((GXDateTime) GXDLMSClient
+                        .changeType((byte[]) arr[2], DataType.DATETIME))
+                                .getMeterCalendar().getTimeInMillis();
+                begin = indexOf(start, false);
+                end = Math.max(begin, indexOf(last, true));
+            } else if (e.getSelector() == 2 && arr != null) {
+                // Read by entry. Starting index is 1.
+                begin = Math.min(count,
+                        Math.max(0, ((Number) arr[0]).intValue() - 1));
+                int cnt = ((Number) arr[1]).intValue();
+                if (cnt != 0 && begin + cnt < count) {
+                    end = begin + cnt;
+                }
+            }
+            e.setRowBeginIndex(begin);
+            e.setRowEndIndex(end);
+        }
+        long cnt = e.getRowEndIndex() - e.getRowBeginIndex();
+        // Read only rows that can fit to one PDU.
+        if (cnt > e.getRowToPdu()) {
+            cnt = e.getRowToPdu();
+        }
+        p.clearBuffer();
+        for (int pos = 0; pos != cnt; ++pos) {
+            p.addRow(getRow((int) e.getRowBeginIndex() + pos));
+        }
+        return true;
+    }
+
+    /**
+     * Flush changes to the disk.
+     */
+    public final synchronized void flush() {
+        data.force();
+    }
+
+    @Override
+    public final synchronized void close() throws IOException {
+        data.force();
+        file.close();
+    }
+}
@@ -0,0 +1,155 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.objects;
+
+import gurux.dlms.GXDataWriter;
+import gurux.dlms.enums.DataType;
+
+/**
+ * Storage of profile generic buffer rows.
+ * <p>
+ * Rows are accessed by index where the oldest row is zero. Rows are added and
+ * removed by one thread at the time. toArray can be called from other threads
+ * at the same time. Other read methods don't lock, so reader gets the version
+ * before rows are read and validates it after rows are read. If version is
+ * not valid, rows were modified meanwhile and they are read again.
+ * </p>
+ * 
+ * @see GXDLMSProfileGeneric#setBufferStorage(IGXProfileGenericBuffer)
+ */
+public interface IGXProfileGenericBuffer {
+
+    /**
+     * @return Amount of rows.
+     */
+    int size();
+
+    /**
+     * @return Amount of columns in the row.
+     */
+    int getColumnCount();
+
+    /**
+     * Get cell value without copying the row.
+     * 
+     * @param row
+     *            Row index.
+     * @param column
+     *            Column index.
+     * @return Cell value.
+     */
+    Object getValue(int row, int column);
+
+    /**
+     * Get capture time of the row.
+     * 
+     * @param row
+     *            Row index.
+     * @return Time of the first column in milliseconds from 1970-01-01.
+     *         Long.MIN_VALUE if the first column is not a date-time.
+     */
+    long getTime(int row);
+
+    /**
+     * @return True, if rows are added in capture time order. Ordered rows
+     *         can be searched by time.
+     */
+    boolean isTimeOrdered();
+
+    /**
+     * Get row values.
+     * 
+     * @param row
+     *            Row index.
+     * @return Row values.
+     */
+    Object[] getRow(int row);
+
+    /**
+     * Get consistent copy of the rows. This can be called while rows are
+     * added or removed.
+     * 
+     * @return Rows.
+     */
+    Object[] toArray();
+
+    /**
+     * Get version of the rows before rows are read.
+     * 
+     * @return Version of the rows.
+     */
+    long getVersion();
+
+    /**
+     * Check that rows are not modified after the version was read.
+     * 
+     * @param version
+     *            Version that was read before rows were read.
+     * @return True, if values that were read are valid.
+     */
+    boolean validate(long version);
+
+    /**
+     * Add new row.
+     * 
+     * @param row
+     *            Row values.
+     */
+    void add(Object[] row);
+
+    /**
+     * Remove oldest row. This is done in constant time.
+     */
+    void removeFirst();
+
+    /**
+     * Remove all rows.
+     */
+    void clear();
+
+    /**
+     * Write cell value.
+     * 
+     * @param row
+     *            Row index.
+     * @param column
+     *            Column index.
+     * @param type
+     *            Data type.
+     * @param writer
+     *            Writer where value is written.
+     */
+    void write(int row, int column, DataType type, GXDataWriter writer);
+}
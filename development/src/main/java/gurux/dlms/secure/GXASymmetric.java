@@ -48,6 +48,30 @@ public final class GXASymmetric {
             final byte[] partyUInfo, final byte[] partyVInfo,
             final byte[] suppPubInfo, final byte[] suppPrivInfo,
             final SecuritySuite securitySuite) {
+        return generateKDF(hashAlg, z, keyDataLen, algorithmID, partyUInfo,
+                partyVInfo, suppPubInfo, suppPrivInfo, securitySuite, true);
+    }
+
+    /*
+     * Generate KDF.
+     * @param hashAlg Hash Algorithm. (SHA-256 or SHA-384 )
+     * @param z Shared Secret.
+     * @param keyDataLen Key data length in bits.
+     * @param algorithmID Algorithm ID.
+     * @param partyUInfo Sender system title.
+     * @param partyVInfo Receiver system title.
+     * @param suppPubInfo Not used in DLMS.
+     * @param suppPrivInfo Not used in DLMS.
+     * @param securitySuite Used security suite.
+     * @param cache Is KDF output cached. False, if party info contains
+     * transaction ID, because the output is used only once.
+     * @return Generated KDF.
+     */
+    public static byte[] generateKDF(final String hashAlg, final byte[] z,
+            final int keyDataLen, final byte[] algorithmID,
+            final byte[] partyUInfo, final byte[] partyVInfo,
+            final byte[] suppPubInfo, final byte[] suppPrivInfo,
+            final SecuritySuite securitySuite, final boolean cache) {
         GXByteBuffer bb = new GXByteBuffer();
         bb.set(algorithmID);
         bb.set(partyUInfo);
@@ -58,7 +82,8 @@ public final class GXASymmetric {
         if (suppPrivInfo != null) {
             bb.set(suppPrivInfo);
         }
-        return generateKDF(hashAlg, z, keyDataLen, bb.array(), securitySuite);
+        return generateKDF(hashAlg, z, keyDataLen, bb.array(), securitySuite,
+                cache);
     }
 
     /*
@@ -73,9 +98,34 @@ public final class GXASymmetric {
     public static byte[] generateKDF(final String hashAlg, final byte[] z,
             final int keyDataLen, final byte[] otherInfo,
             final SecuritySuite securitySuite) {
-        byte[] key = new byte[keyDataLen / 8];
+        return generateKDF(hashAlg, z, keyDataLen, otherInfo, securitySuite,
+                true);
+    }
+
+    /*
+     * Generate KDF.
+     * @param hashAlg Hash Algorithm. (SHA-256 or SHA-384 )
+     * @param z Shared Secret.
+     * @param keyDataLen Key data length in bits.
+     * @param otherInfo OtherInfo
+     * @param securitySuite Used security suite.
+     * @param cache Is KDF output cached.
+     * @return Generated KDF.
+     */
+    private static byte[] generateKDF(final String hashAlg, final byte[] z,
+            final int keyDataLen, final byte[] otherInfo,
+            final SecuritySuite securitySuite, final boolean cache) {
+        byte[] key = null;
+        if (cache) {
+            key = GXCryptoCache.getKdf(hashAlg, z, keyDataLen, otherInfo,
+                    securitySuite);
+            if (key != null) {
+                return key;
+            }
+        }
+        key = new byte[keyDataLen / 8];
         try {
-            MessageDigest md = MessageDigest.getInstance(hashAlg);
+            MessageDigest md = GXCryptoCache.getMessageDigest(hashAlg);
             int hashLen = md.getDigestLength();
             int cnt = key.length / hashLen;
             byte[] v = new byte[4];
@@ -101,7 +151,11 @@ public final class GXASymmetric {
             if (securitySuite == SecuritySuite.ECDH_ECDSA_AES_GCM_128_SHA_256) {
                 byte[] tmp = new byte[key.length / 2];
                 System.arraycopy(key, 0, tmp, 0, tmp.length);
-                return tmp;
+                key = tmp;
+            }
+            if (cache) {
+                GXCryptoCache.putKdf(hashAlg, z, keyDataLen, otherInfo,
+                        securitySuite, key);
             }
             return key;
         } catch (Exception e) {
@@ -141,7 +195,7 @@ public final class GXASymmetric {
         // First byte is 4 in Java and that is not used. We can override it.
         epk.getData()[0] = (byte) keyId;
         // Add ephemeral public key signature.
-        Signature instance = Signature.getInstance("SHA256withECDSA");
+        Signature instance = GXCryptoCache.getSignature("SHA256withECDSA");
         instance.initSign(signKey);
         instance.update(epk.array());
         byte[] sign = instance.sign();
@@ -175,7 +229,7 @@ public final class GXASymmetric {
         s.add(a);
         s.add(b);
         byte[] tmp = GXAsn1Converter.toByteArray(s);
-        Signature instance = Signature.getInstance("SHA256withECDSA");
+        Signature instance = GXCryptoCache.getSignature("SHA256withECDSA");
         instance.initVerify(publicSigningKey);
         instance.update(data);
         boolean v = instance.verify(tmp);
@@ -0,0 +1,66 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.dlms.secure;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Fork-join pool that is shared by the batch operations when the caller
+ * doesn't give own pool.
+ */
+final class GXBatchPool {
+    /**
+     * Shared pool.
+     */
+    private static ForkJoinPool sharedPool;
+
+    /**
+     * Constructor.
+     */
+    private GXBatchPool() {
+
+    }
+
+    /**
+     * @return Shared pool. Parallelism is the amount of available processors.
+     */
+    static synchronized ForkJoinPool getShared() {
+        if (sharedPool == null) {
+            sharedPool = new ForkJoinPool();
+        }
+        return sharedPool;
+    }
+}
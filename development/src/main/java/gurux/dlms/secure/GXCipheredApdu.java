@@ -0,0 +1,141 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import gurux.dlms.GXICipher;
+
+/**
+ * Ciphered APDU that is decrypted with {@link GXDLMSBatchDecryptor}.
+ */
+public class GXCipheredApdu {
+    /**
+     * Cipher settings.
+     */
+    private final GXICipher cipher;
+
+    /**
+     * System title of the sender. Used if APDU doesn't contain it.
+     */
+    private final byte[] systemTitle;
+
+    /**
+     * Ciphered APDU.
+     */
+    private final byte[] data;
+
+    /**
+     * Decrypted APDU.
+     */
+    private byte[] plainText;
+
+    /**
+     * Occurred error.
+     */
+    private RuntimeException error;
+
+    /**
+     * Constructor.
+     * 
+     * @param forCipher
+     *            Cipher settings.
+     * @param forSystemTitle
+     *            System title of the sender. Used if APDU doesn't contain it.
+     * @param forData
+     *            Ciphered APDU starting from the ciphering command.
+     */
+    public GXCipheredApdu(final GXICipher forCipher,
+            final byte[] forSystemTitle, final byte[] forData) {
+        if (forCipher == null) {
+            throw new IllegalArgumentException("cipher");
+        }
+        if (forData == null) {
+            throw new IllegalArgumentException("data");
+        }
+        cipher = forCipher;
+        systemTitle = forSystemTitle;
+        data = forData;
+    }
+
+    /**
+     * @return Cipher settings.
+     */
+    public final GXICipher getCipher() {
+        return cipher;
+    }
+
+    /**
+     * @return System title of the sender. Used if APDU doesn't contain it.
+     */
+    public final byte[] getSystemTitle() {
+        return systemTitle;
+    }
+
+    /**
+     * @return Ciphered APDU.
+     */
+    public final byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return Decrypted APDU. Null if decrypt failed.
+     */
+    public final byte[] getPlainText() {
+        return plainText;
+    }
+
+    /**
+     * @param value
+     *            Decrypted APDU.
+     */
+    final void setPlainText(final byte[] value) {
+        plainText = value;
+    }
+
+    /**
+     * @return Error that occurred while decrypting. Null if decrypt succeeded.
+     */
+    public final RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * @param value
+     *            Error that occurred while decrypting.
+     */
+    final void setError(final RuntimeException value) {
+        error = value;
+    }
+}
@@ -36,13 +36,14 @@ package gurux.dlms.secure;
 
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import gurux.dlms.GXByteBuffer;
 import gurux.dlms.GXICipher;
-import gurux.dlms.asn.GXx509Certificate;
+import gurux.dlms.asn.GXx509CertificateCollection;
 import gurux.dlms.enums.Security;
 import gurux.dlms.objects.enums.CertificateType;
 import gurux.dlms.objects.enums.SecuritySuite;
@@ -61,7 +62,7 @@ public class GXCiphering implements GXICipher {
     /**
      * Certificates.
      */
-    private List<GXx509Certificate> certificates;
+    private GXx509CertificateCollection certificates;
 
     /**
      * Ephemeral key pair.
@@ -87,6 +88,21 @@ public class GXCiphering implements GXICipher {
      */
     private long invocationCounter = 0;
 
+    /**
+     * Persistent invocation counter store.
+     */
+    private GXInvocationCounterStore invocationCounterStore;
+
+    /**
+     * Keys of the clients.
+     */
+    private GXDLMSKeyRegistry keyRegistry;
+
+    /**
+     * Keys of the connected client. Null if configured keys are used.
+     */
+    private GXDLMSKeySet clientKeys;
+
     /**
      * Used security suite.
      */
@@ -103,7 +119,8 @@ public class GXCiphering implements GXICipher {
     private KeyPair keyAgreementKeyPair;
 
     /**
-     * Target (Server or client) Public key.
+     * Target (Server or client) Public key. Cached shared secrets of the
+     * removed or replaced keys are invalidated.
      */
     private List<Map.Entry<CertificateType, PublicKey>> publicKeys;
 
@@ -119,8 +136,8 @@ public class GXCiphering implements GXICipher {
      *            Used system title.
      */
     public GXCiphering(final byte[] title) {
-        publicKeys = new ArrayList<Map.Entry<CertificateType, PublicKey>>();
-        certificates = new ArrayList<GXx509Certificate>();
+        publicKeys = new PublicKeyList();
+        certificates = new GXx509CertificateCollection();
         setSecurity(Security.NONE);
         setSystemTitle(title);
         setBlockCipherKey(new byte[] { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06,
@@ -131,6 +148,66 @@ public class GXCiphering implements GXICipher {
                 (byte) 0xDD, (byte) 0xDE, (byte) 0xDF });
     }
 
+    /**
+     * Copy constructor for server sessions. Keys, certificates, key pairs,
+     * invocation counter store and key registry are shared with the source.
+     * Connection related values, like dedicated key and shared secret, are
+     * not copied. Use invocation counter store if several sessions use the
+     * same keys, so invocation counter is shared between them.
+     * 
+     * @param source
+     *            Ciphering settings where values are copied.
+     */
+    public GXCiphering(final GXCiphering source) {
+        security = source.security;
+        authenticationKey = source.authenticationKey;
+        blockCipherKey = source.blockCipherKey;
+        systemTitle = source.systemTitle;
+        certificates = source.certificates;
+        publicKeys = source.publicKeys;
+        invocationCounter = source.invocationCounter;
+        invocationCounterStore = source.invocationCounterStore;
+        keyRegistry = source.keyRegistry;
+        securitySuite = source.securitySuite;
+        signingKeyPair = source.signingKeyPair;
+        keyAgreementKeyPair = source.keyAgreementKeyPair;
+    }
+
+    /**
+     * @return AES-GCM engine used to cipher and decipher APDUs.
+     */
+    public static GXIAesGcmEngine getAesGcmEngine() {
+        return GXDLMSChippering.getEngine();
+    }
+
+    /**
+     * Set AES-GCM engine. As a default JCE is used if it supports AES-GCM.
+     * 
+     * @param value
+     *            AES-GCM engine used to cipher and decipher APDUs.
+     */
+    public static void setAesGcmEngine(final GXIAesGcmEngine value) {
+        GXDLMSChippering.setEngine(value);
+    }
+
+    /**
+     * @return Amount of block cipher keys which AES round keys and GHASH
+     *         tables are cached by the stream AES-GCM engine.
+     */
+    public static int getKeyCacheCapacity() {
+        return GXGcmKeyCache.getCapacity();
+    }
+
+    /**
+     * @param value
+     *            Amount of block cipher keys which AES round keys and GHASH
+     *            tables are cached by the stream AES-GCM engine. Zero
+     *            disables the cache.
+     */
+    public static void setKeyCacheCapacity(final int value) {
+        GXGcmKeyCache.setCapacity(value);
+    }
+
     public static byte[] decrypt(final GXICipher c, final AesGcmParameter p,
             final GXByteBuffer data) {
         byte[] tmp;
@@ -158,10 +235,75 @@ public class GXCiphering implements GXICipher {
         return data;
     }
 
+    /**
+     * Decrypt PDU in place. Plain text starts from the buffer position after
+     * the security header and buffer size is set to the end of the plain
+     * text.
+     * 
+     * @param c
+     *            Cipher settings.
+     * @param p
+     *            Aes GCM Parameter.
+     * @param data
+     *            Secured data from the position to the end of the buffer.
+     * @return Plain text size in bytes.
+     */
+    public static int decryptInPlace(final GXICipher c,
+            final AesGcmParameter p, final GXByteBuffer data) {
+        p.setSharedSecret(c.getSharedSecret());
+        int ret = GXDLMSChippering.decryptAesGcmInPlace(c, p, data);
+        c.setSharedSecret(p.getSharedSecret());
+        return ret;
+    }
+
+    /**
+     * Get size of the security header that {@link #encrypt(AesGcmParameter,
+     * GXByteBuffer, int, int)} writes in front of the data. Reserve this
+     * much headroom to avoid moving the data.
+     * 
+     * @param p
+     *            Aes GCM Parameter.
+     * @param count
+     *            Plain text size in bytes.
+     * @return Header size in bytes.
+     */
+    public static int getHeaderSize(final AesGcmParameter p,
+            final int count) {
+        if (p.getSecurity() == Security.NONE) {
+            return 0;
+        }
+        return GXDLMSChippering.getHeaderSize(p, count);
+    }
+
+    /**
+     * Cipher PDU in place. Plain text is replaced with cipher text, tag is
+     * appended and security header is written in front of the data.
+     * 
+     * @param p
+     *            Aes GCM Parameter.
+     * @param data
+     *            Buffer where data is ciphered.
+     * @param offset
+     *            Plain text offset.
+     * @param count
+     *            Plain text size in bytes.
+     * @return Position where secured data starts.
+     */
+    public static int encrypt(final AesGcmParameter p, final GXByteBuffer data,
+            final int offset, final int count) {
+        if (p.getSecurity() != Security.NONE) {
+            int ret = GXDLMSChippering.encryptAesGcm(p, data, offset, count);
+            p.setInvocationCounter(p.getInvocationCounter() + 1);
+            return ret;
+        }
+        return offset;
+    }
+
     @Override
     public final void reset() {
         setSecurity(Security.NONE);
         setInvocationCounter(0);
+        clientKeys = null;
     }
 
     @Override
@@ -171,19 +313,136 @@ public class GXCiphering implements GXICipher {
 
     /**
      * @param value
-     *            Invocation Counter.
+     *            Invocation Counter. If invocation counter store is used,
+     *            smaller value than the current one is ignored.
      */
     public final void setInvocationCounter(final long value) {
-        invocationCounter = value;
+        if (invocationCounterStore != null && systemTitle != null) {
+            invocationCounterStore.set(systemTitle, value);
+        } else {
+            invocationCounter = value;
+        }
     }
 
     /**
      * @return .
      */
     public final long getInvocationCounter() {
+        if (invocationCounterStore != null && systemTitle != null) {
+            return invocationCounterStore.get(systemTitle);
+        }
         return invocationCounter;
     }
 
+    /**
+     * Get invocation counter for the next ciphered message. Counter is
+     * increased, so the same initialization vector is never used twice with
+     * the same key.
+     * 
+     * @return Invocation counter.
+     */
+    public final long nextInvocationCounter() {
+        if (invocationCounterStore != null && systemTitle != null) {
+            return invocationCounterStore.next(systemTitle);
+        }
+        return invocationCounter++;
+    }
+
+    /**
+     * Remove cached shared secrets of the old public key when it's removed
+     * from the public keys or replaced with another key.
+     * 
+     * @param list
+     *            Public keys after the change.
+     * @param oldValue
+     *            Removed public key.
+     */
+    private static void invalidate(
+            final List<Map.Entry<CertificateType, PublicKey>> list,
+            final Map.Entry<CertificateType, PublicKey> oldValue) {
+        if (oldValue == null || oldValue.getValue() == null) {
+            return;
+        }
+        // Same key might be used with another certificate type.
+        for (Map.Entry<CertificateType, PublicKey> it : list) {
+            if (it != null && it.getValue() == oldValue.getValue()) {
+                return;
+            }
+        }
+        GXCryptoCache.invalidate(oldValue.getValue());
+    }
+
+    /**
+     * Remove cached shared secrets of the old key pair when it's changed.
+     * 
+     * @param oldValue
+     *            Old key pair.
+     * @param newValue
+     *            New key pair.
+     */
+    private static void invalidate(final KeyPair oldValue,
+            final KeyPair newValue) {
+        if (oldValue != null && oldValue != newValue) {
+            GXCryptoCache.invalidate(oldValue.getPrivate());
+        }
+    }
+
+    /**
+     * @return Persistent invocation counter store.
+     */
+    public final GXInvocationCounterStore getInvocationCounterStore() {
+        return invocationCounterStore;
+    }
+
+    /**
+     * Set persistent invocation counter store. Counter of the system title
+     * is kept in the store and it's increased for each ciphered message.
+     * Store can be shared between ciphering settings of different system
+     * titles.
+     * 
+     * @param value
+     *            Persistent invocation counter store.
+     */
+    public final void
+            setInvocationCounterStore(final GXInvocationCounterStore value) {
+        invocationCounterStore = value;
+    }
+
+    /**
+     * @return Keys of the clients.
+     */
+    public final GXDLMSKeyRegistry getKeyRegistry() {
+        return keyRegistry;
+    }
+
+    /**
+     * Set keys of the clients. When a client connects, its keys are used
+     * instead of the block cipher and authentication key of the ciphering.
+     * Registry can be shared between servers.
+     * 
+     * @param value
+     *            Keys of the clients.
+     */
+    public final void setKeyRegistry(final GXDLMSKeyRegistry value) {
+        keyRegistry = value;
+        clientKeys = null;
+    }
+
+    /**
+     * Select keys of the connected client from the key registry.
+     * 
+     * @param clientSystemTitle
+     *            Client system title. Can be null.
+     * @param clientAddress
+     *            Client address.
+     */
+    public final void selectKeys(final byte[] clientSystemTitle,
+            final int clientAddress) {
+        if (keyRegistry != null) {
+            clientKeys = keyRegistry.find(clientSystemTitle, clientAddress);
+        }
+    }
+
     /**
      * @return Used security.
      */
@@ -248,34 +507,87 @@ public class GXCiphering implements GXICipher {
      * @return Block cipher key.
      */
     public final byte[] getBlockCipherKey() {
+        GXDLMSKeySet keys = clientKeys;
+        if (keys != null) {
+            return keys.getBlockCipherKey();
+        }
         return blockCipherKey;
     }
 
+    /**
+     * Set block cipher key. If keys of the connected client are used, key is
+     * changed to the key registry.
+     * 
+     * @param value
+     *            Block cipher key.
+     */
     public final void setBlockCipherKey(final byte[] value) {
         if (value != null && value.length != 16) {
             throw new IllegalArgumentException("Invalid Block Cipher Key.");
         }
-        blockCipherKey = value;
+        GXDLMSKeySet keys = clientKeys;
+        if (keys != null) {
+            updateClientKeys(keys,
+                    new GXDLMSKeySet(value, keys.getAuthenticationKey()));
+        } else {
+            blockCipherKey = value;
+        }
     }
 
     /**
      * @return Authentication Key is 16 bytes value.
      */
     public final byte[] getAuthenticationKey() {
+        GXDLMSKeySet keys = clientKeys;
+        if (keys != null) {
+            return keys.getAuthenticationKey();
+        }
         return authenticationKey;
     }
 
+    /**
+     * Set authentication key. If keys of the connected client are used, key
+     * is changed to the key registry.
+     * 
+     * @param value
+     *            Authentication key.
+     */
     public final void setAuthenticationKey(final byte[] value) {
         if (value != null && value.length != 16) {
             throw new IllegalArgumentException("Invalid Authentication Key.");
         }
-        authenticationKey = value;
+        GXDLMSKeySet keys = clientKeys;
+        if (keys != null) {
+            updateClientKeys(keys,
+                    new GXDLMSKeySet(keys.getBlockCipherKey(), value));
+        } else {
+            authenticationKey = value;
+        }
     }
 
     /**
-     * @return Available certificates.
+     * Replace keys of the connected client. New keys are used also when the
+     * client connects next time.
+     * 
+     * @param oldKeys
+     *            Current keys of the client.
+     * @param newKeys
+     *            New keys of the client.
+     */
+    private void updateClientKeys(final GXDLMSKeySet oldKeys,
+            final GXDLMSKeySet newKeys) {
+        GXDLMSKeyRegistry registry = keyRegistry;
+        if (registry != null) {
+            registry.replace(oldKeys, newKeys);
+        }
+        clientKeys = newKeys;
+    }
+
+    /**
+     * @return Available certificates. Certificates are indexed by subject
+     *         and serial number.
      */
-    public final List<GXx509Certificate> getCertificates() {
+    public final GXx509CertificateCollection getCertificates() {
         return certificates;
     }
 
@@ -291,6 +603,7 @@ public class GXCiphering implements GXICipher {
      *            Ephemeral key pair.
      */
     public void setEphemeralKeyPair(final KeyPair value) {
+        invalidate(ephemeralKeyPair, value);
         ephemeralKeyPair = value;
     }
 
@@ -306,6 +619,7 @@ public class GXCiphering implements GXICipher {
      *            Signing key pair.
      */
     public final void setSigningKeyPair(final KeyPair value) {
+        invalidate(signingKeyPair, value);
         signingKeyPair = value;
     }
 
@@ -321,6 +635,7 @@ public class GXCiphering implements GXICipher {
      *            Client's key agreement key pair.
      */
     public final void setKeyAgreementKeyPair(final KeyPair value) {
+        invalidate(keyAgreementKeyPair, value);
         keyAgreementKeyPair = value;
     }
 
@@ -389,4 +704,49 @@ public class GXCiphering implements GXICipher {
     public void setDedicatedKey(final byte[] value) {
         dedicatedKey = value;
     }
-}
\ No newline at end of file
+
+    /**
+     * Public keys of the other party. Cached shared secrets of the key are
+     * invalidated when the key is removed or replaced.
+     */
+    private static final class PublicKeyList
+            extends AbstractList<Map.Entry<CertificateType, PublicKey>> {
+        private final List<Map.Entry<CertificateType, PublicKey>> items =
+                new ArrayList<Map.Entry<CertificateType, PublicKey>>();
+
+        @Override
+        public Map.Entry<CertificateType, PublicKey> get(final int index) {
+            return items.get(index);
+        }
+
+        @Override
+        public int size() {
+            return items.size();
+        }
+
+        @Override
+        public void add(final int index,
+                final Map.Entry<CertificateType, PublicKey> element) {
+            items.add(index, element);
+            ++modCount;
+        }
+
+        @Override
+        public Map.Entry<CertificateType, PublicKey> set(final int index,
+                final Map.Entry<CertificateType, PublicKey> element) {
+            Map.Entry<CertificateType, PublicKey> old =
+                    items.set(index, element);
+            invalidate(items, old);
+            return old;
+        }
+
+        @Override
+        public Map.Entry<CertificateType, PublicKey>
+                remove(final int index) {
+            Map.Entry<CertificateType, PublicKey> old = items.remove(index);
+            ++modCount;
+            invalidate(items, old);
+            return old;
+        }
+    }
+}
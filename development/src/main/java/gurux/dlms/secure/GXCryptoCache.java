@@ -0,0 +1,535 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyAgreement;
+import javax.crypto.NoSuchPaddingException;
+
+import gurux.dlms.objects.enums.SecuritySuite;
+
+/**
+ * Cache for JCA objects, ECDH shared secrets and KDF outputs used by
+ * security suites 1 and 2.
+ * <p>
+ * JCA objects are kept per thread, so they are not shared between threads.
+ * Shared secrets are cached by the identity of the private and public key, so
+ * ECDH is counted only once for each peer. When key pair is changed, shared
+ * secrets of the old private key are removed. Shared secrets and KDF outputs
+ * are kept in separate caches, so KDF outputs never remove shared secrets.
+ * Least recently used value is removed when the cache is full.
+ * </p>
+ */
+public final class GXCryptoCache {
+    /**
+     * Default amount of cached values.
+     */
+    private static final int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Maximum amount of cached shared secrets and maximum amount of cached
+     * KDF outputs.
+     */
+    private static int capacity = DEFAULT_CAPACITY;
+
+    /**
+     * Message digests of the thread.
+     */
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS =
+            new ThreadLocal<Map<String, MessageDigest>>();
+
+    /**
+     * Signatures of the thread.
+     */
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES =
+            new ThreadLocal<Map<String, Signature>>();
+
+    /**
+     * Key agreements of the thread.
+     */
+    private static final ThreadLocal<Map<String, KeyAgreement>> AGREEMENTS =
+            new ThreadLocal<Map<String, KeyAgreement>>();
+
+    /**
+     * Ciphers of the thread.
+     */
+    private static final ThreadLocal<Map<String, Cipher>> CIPHERS =
+            new ThreadLocal<Map<String, Cipher>>();
+
+    /**
+     * Lock of the cached values.
+     */
+    private static final Object LOCK = new Object();
+
+    /**
+     * Cached shared secrets in access order.
+     */
+    private static final Values SECRETS = new Values();
+
+    /**
+     * Cached KDF outputs in access order.
+     */
+    private static final Values KDFS = new Values();
+
+    /**
+     * Constructor.
+     */
+    private GXCryptoCache() {
+
+    }
+
+    /**
+     * @return Maximum amount of cached shared secrets and KDF outputs.
+     */
+    public static int getCapacity() {
+        synchronized (LOCK) {
+            return capacity;
+        }
+    }
+
+    /**
+     * @param value
+     *            Maximum amount of cached shared secrets and maximum amount
+     *            of cached KDF outputs. Zero disables the cache.
+     */
+    public static void setCapacity(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("capacity");
+        }
+        synchronized (LOCK) {
+            capacity = value;
+            SECRETS.trim();
+            KDFS.trim();
+        }
+    }
+
+    /**
+     * Remove all cached shared secrets and KDF outputs.
+     */
+    public static void clear() {
+        synchronized (LOCK) {
+            SECRETS.wipeAll();
+            KDFS.wipeAll();
+        }
+    }
+
+    /**
+     * Remove shared secrets that are counted with the given key.
+     * 
+     * @param key
+     *            Private or public key.
+     */
+    public static void invalidate(final Key key) {
+        if (key == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            Iterator<Map.Entry<Object, byte[]>> it =
+                    SECRETS.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Object, byte[]> e = it.next();
+                if (e.getKey() instanceof SecretKey
+                        && ((SecretKey) e.getKey()).uses(key)) {
+                    wipe(e.getKey(), e.getValue());
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Zero removed secrets.
+     * 
+     * @param key
+     *            Cache key.
+     * @param value
+     *            Cached value.
+     */
+    private static void wipe(final Object key, final byte[] value) {
+        Arrays.fill(value, (byte) 0);
+        if (key instanceof KdfKey) {
+            Arrays.fill(((KdfKey) key).z, (byte) 0);
+        }
+    }
+
+    /**
+     * Get message digest of the current thread.
+     * 
+     * @param algorithm
+     *            Hash algorithm.
+     * @return Message digest in initial state.
+     * @throws NoSuchAlgorithmException
+     *             Algorithm is not supported.
+     */
+    public static MessageDigest getMessageDigest(final String algorithm)
+            throws NoSuchAlgorithmException {
+        Map<String, MessageDigest> map = DIGESTS.get();
+        if (map == null) {
+            map = new HashMap<String, MessageDigest>();
+            DIGESTS.set(map);
+        }
+        MessageDigest md = map.get(algorithm);
+        if (md == null) {
+            md = MessageDigest.getInstance(algorithm);
+            map.put(algorithm, md);
+        } else {
+            md.reset();
+        }
+        return md;
+    }
+
+    /**
+     * Get signature of the current thread. Signature must be initialized
+     * before use.
+     * 
+     * @param algorithm
+     *            Signature algorithm.
+     * @return Signature.
+     * @throws NoSuchAlgorithmException
+     *             Algorithm is not supported.
+     */
+    public static Signature getSignature(final String algorithm)
+            throws NoSuchAlgorithmException {
+        Map<String, Signature> map = SIGNATURES.get();
+        if (map == null) {
+            map = new HashMap<String, Signature>();
+            SIGNATURES.set(map);
+        }
+        Signature s = map.get(algorithm);
+        if (s == null) {
+            s = Signature.getInstance(algorithm);
+            map.put(algorithm, s);
+        }
+        return s;
+    }
+
+    /**
+     * Get key agreement of the current thread. Key agreement must be
+     * initialized before use.
+     * 
+     * @param algorithm
+     *            Key agreement algorithm.
+     * @return Key agreement.
+     * @throws NoSuchAlgorithmException
+     *             Algorithm is not supported.
+     */
+    public static KeyAgreement getKeyAgreement(final String algorithm)
+            throws NoSuchAlgorithmException {
+        Map<String, KeyAgreement> map = AGREEMENTS.get();
+        if (map == null) {
+            map = new HashMap<String, KeyAgreement>();
+            AGREEMENTS.set(map);
+        }
+        KeyAgreement ka = map.get(algorithm);
+        if (ka == null) {
+            ka = KeyAgreement.getInstance(algorithm);
+            map.put(algorithm, ka);
+        }
+        return ka;
+    }
+
+    /**
+     * Get cipher of the current thread. Cipher must be initialized before
+     * use.
+     * 
+     * @param transformation
+     *            Cipher transformation.
+     * @return Cipher.
+     * @throws NoSuchAlgorithmException
+     *             Transformation is not supported.
+     * @throws NoSuchPaddingException
+     *             Padding is not supported.
+     */
+    public static Cipher getCipher(final String transformation)
+            throws NoSuchAlgorithmException, NoSuchPaddingException {
+        Map<String, Cipher> map = CIPHERS.get();
+        if (map == null) {
+            map = new HashMap<String, Cipher>();
+            CIPHERS.set(map);
+        }
+        Cipher c = map.get(transformation);
+        if (c == null) {
+            c = Cipher.getInstance(transformation);
+            map.put(transformation, c);
+        }
+        return c;
+    }
+
+    /**
+     * Get cached value.
+     * 
+     * @param values
+     *            Cached values.
+     * @param key
+     *            Cache key.
+     * @return Copy of the cached value or null.
+     */
+    private static byte[] get(final Values values, final Object key) {
+        synchronized (LOCK) {
+            byte[] value = values.get(key);
+            if (value == null) {
+                return null;
+            }
+            return value.clone();
+        }
+    }
+
+    /**
+     * Add value to the cache.
+     * 
+     * @param values
+     *            Cached values.
+     * @param key
+     *            Cache key.
+     * @param value
+     *            Value. Copy is cached.
+     */
+    private static void put(final Values values, final Object key,
+            final byte[] value) {
+        synchronized (LOCK) {
+            if (capacity != 0) {
+                values.put(key, value.clone());
+            }
+        }
+    }
+
+    /**
+     * Get ECDH shared secret. Shared secret is counted only once for the same
+     * key objects.
+     * 
+     * @param privateKey
+     *            Own private key.
+     * @param publicKey
+     *            Public key of the other party.
+     * @return Shared secret.
+     * @throws GeneralSecurityException
+     *             Key agreement fails.
+     */
+    public static byte[] getSharedSecret(final PrivateKey privateKey,
+            final PublicKey publicKey) throws GeneralSecurityException {
+        SecretKey key = new SecretKey(privateKey, publicKey);
+        byte[] value = get(SECRETS, key);
+        if (value == null) {
+            KeyAgreement ka = getKeyAgreement("ECDH");
+            ka.init(privateKey);
+            ka.doPhase(publicKey, true);
+            value = ka.generateSecret();
+            put(SECRETS, key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Get cached KDF output.
+     * 
+     * @param hashAlg
+     *            Hash algorithm.
+     * @param z
+     *            Shared secret.
+     * @param keyDataLen
+     *            Key data length in bits.
+     * @param otherInfo
+     *            Other info.
+     * @param securitySuite
+     *            Used security suite.
+     * @return KDF output or null if it's not cached.
+     */
+    static byte[] getKdf(final String hashAlg, final byte[] z,
+            final int keyDataLen, final byte[] otherInfo,
+            final SecuritySuite securitySuite) {
+        return get(KDFS, new KdfKey(hashAlg, z, keyDataLen, otherInfo,
+                securitySuite));
+    }
+
+    /**
+     * Add KDF output to the cache.
+     * 
+     * @param hashAlg
+     *            Hash algorithm.
+     * @param z
+     *            Shared secret.
+     * @param keyDataLen
+     *            Key data length in bits.
+     * @param otherInfo
+     *            Other info.
+     * @param securitySuite
+     *            Used security suite.
+     * @param value
+     *            KDF output.
+     */
+    static void putKdf(final String hashAlg, final byte[] z,
+            final int keyDataLen, final byte[] otherInfo,
+            final SecuritySuite securitySuite, final byte[] value) {
+        put(KDFS, new KdfKey(hashAlg, z.clone(), keyDataLen,
+                otherInfo.clone(), securitySuite), value);
+    }
+
+    /**
+     * Cached values in access order. Least recently used value is removed
+     * when the capacity is exceeded.
+     */
+    private static final class Values extends LinkedHashMap<Object, byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        Values() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean
+                removeEldestEntry(final Map.Entry<Object, byte[]> e) {
+            if (size() > capacity) {
+                wipe(e.getKey(), e.getValue());
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Remove least recently used values until capacity is not exceeded.
+         */
+        void trim() {
+            Iterator<Map.Entry<Object, byte[]>> it = entrySet().iterator();
+            while (size() > capacity) {
+                Map.Entry<Object, byte[]> e = it.next();
+                wipe(e.getKey(), e.getValue());
+                it.remove();
+            }
+        }
+
+        /**
+         * Zero and remove all values.
+         */
+        void wipeAll() {
+            for (Map.Entry<Object, byte[]> it : entrySet()) {
+                wipe(it.getKey(), it.getValue());
+            }
+            clear();
+        }
+    }
+
+    /**
+     * Shared secret is identified by the key objects.
+     */
+    private static final class SecretKey {
+        private final PrivateKey privateKey;
+        private final PublicKey publicKey;
+
+        SecretKey(final PrivateKey forPrivateKey,
+                final PublicKey forPublicKey) {
+            privateKey = forPrivateKey;
+            publicKey = forPublicKey;
+        }
+
+        boolean uses(final Key key) {
+            return privateKey == key || publicKey == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(privateKey) * 31
+                    + System.identityHashCode(publicKey);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof SecretKey)) {
+                return false;
+            }
+            SecretKey o = (SecretKey) obj;
+            return privateKey == o.privateKey && publicKey == o.publicKey;
+        }
+    }
+
+    /**
+     * KDF output is identified by the input values.
+     */
+    private static final class KdfKey {
+        private final String hashAlg;
+        private final byte[] z;
+        private final int keyDataLen;
+        private final byte[] otherInfo;
+        private final SecuritySuite securitySuite;
+        private final int hash;
+
+        KdfKey(final String forHashAlg, final byte[] forZ,
+                final int forKeyDataLen, final byte[] forOtherInfo,
+                final SecuritySuite forSecuritySuite) {
+            hashAlg = forHashAlg;
+            z = forZ;
+            keyDataLen = forKeyDataLen;
+            otherInfo = forOtherInfo;
+            securitySuite = forSecuritySuite;
+            int h = hashAlg.hashCode();
+            h = 31 * h + Arrays.hashCode(z);
+            h = 31 * h + keyDataLen;
+            h = 31 * h + Arrays.hashCode(otherInfo);
+            if (securitySuite != null) {
+                h = 31 * h + securitySuite.hashCode();
+            }
+            hash = h;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof KdfKey)) {
+                return false;
+            }
+            KdfKey o = (KdfKey) obj;
+            return hash == o.hash && keyDataLen == o.keyDataLen
+                    && securitySuite == o.securitySuite
+                    && hashAlg.equals(o.hashAlg) && Arrays.equals(z, o.z)
+                    && Arrays.equals(otherInfo, o.otherInfo);
+        }
+    }
+}
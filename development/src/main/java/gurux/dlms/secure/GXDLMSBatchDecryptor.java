@@ -0,0 +1,207 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import gurux.dlms.GXByteBuffer;
+import gurux.dlms.GXICipher;
+import gurux.dlms.enums.Command;
+
+/**
+ * Decrypts ciphered APDUs in parallel.
+ * <p>
+ * Pushes and replies from different meters are independent, so they can be
+ * decrypted on all cores instead of the receiving thread. APDUs are split
+ * between the workers of a fork-join pool and results are returned in the
+ * same order as the APDUs were given.
+ * </p>
+ * Cipher settings are only read unless security suite 1 or 2 is used. Then
+ * shared secret is updated and same settings should not be used from other
+ * threads at the same time.
+ */
+public class GXDLMSBatchDecryptor {
+    /**
+     * Amount of APDUs that are decrypted in one task.
+     */
+    private static final int THRESHOLD = 8;
+
+    /**
+     * Used pool.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor. Shared pool is used.
+     */
+    public GXDLMSBatchDecryptor() {
+        this(GXBatchPool.getShared());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param forPool
+     *            Fork-join pool where APDUs are decrypted.
+     */
+    public GXDLMSBatchDecryptor(final ForkJoinPool forPool) {
+        if (forPool == null) {
+            throw new IllegalArgumentException("pool");
+        }
+        pool = forPool;
+    }
+
+    /**
+     * @return Fork-join pool where APDUs are decrypted.
+     */
+    public final ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Decrypt APDUs.
+     * <p>
+     * Decrypted APDU or occurred error is also saved to each item. Decrypting
+     * continues even if some of the APDUs are invalid.
+     * </p>
+     * 
+     * @param items
+     *            Ciphered APDUs.
+     * @return Decrypted APDUs in the same order. Null if decrypt failed.
+     */
+    public final byte[][] decrypt(final List<GXCipheredApdu> items) {
+        GXCipheredApdu[] tmp =
+                items.toArray(new GXCipheredApdu[items.size()]);
+        if (tmp.length != 0) {
+            pool.invoke(new DecryptTask(tmp, 0, tmp.length));
+        }
+        byte[][] ret = new byte[tmp.length][];
+        for (int pos = 0; pos != tmp.length; ++pos) {
+            ret[pos] = tmp[pos].getPlainText();
+        }
+        return ret;
+    }
+
+    /**
+     * Decrypt one APDU.
+     * 
+     * @param item
+     *            Ciphered APDU.
+     */
+    static void decrypt(final GXCipheredApdu item) {
+        try {
+            GXICipher c = item.getCipher();
+            byte[] data = item.getData();
+            int cmd = data.length == 0 ? 0 : data[0] & 0xFF;
+            byte[] key;
+            if (c.getDedicatedKey() != null && isDedicated(cmd)) {
+                key = c.getDedicatedKey();
+            } else {
+                key = c.getBlockCipherKey();
+            }
+            AesGcmParameter p = new AesGcmParameter(item.getSystemTitle(),
+                    key, c.getAuthenticationKey());
+            item.setPlainText(
+                    GXCiphering.decrypt(c, p, new GXByteBuffer(data)));
+            item.setError(null);
+        } catch (RuntimeException e) {
+            item.setPlainText(null);
+            item.setError(e);
+        }
+    }
+
+    /**
+     * @param cmd
+     *            Ciphering command.
+     * @return Is dedicated key used.
+     */
+    private static boolean isDedicated(final int cmd) {
+        switch (cmd) {
+        case Command.GENERAL_DED_CIPHERING:
+        case Command.DED_GET_REQUEST:
+        case Command.DED_GET_RESPONSE:
+        case Command.DED_SET_REQUEST:
+        case Command.DED_SET_RESPONSE:
+        case Command.DED_METHOD_REQUEST:
+        case Command.DED_METHOD_RESPONSE:
+        case Command.DED_EVENT_NOTIFICATION:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Decrypts range of APDUs and splits bigger ranges.
+     */
+    private static final class DecryptTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Ciphered APDUs.
+         */
+        private final GXCipheredApdu[] items;
+        /**
+         * First index.
+         */
+        private final int start;
+        /**
+         * Last index (exclusive).
+         */
+        private final int end;
+
+        DecryptTask(final GXCipheredApdu[] forItems, final int forStart,
+                final int forEnd) {
+            items = forItems;
+            start = forStart;
+            end = forEnd;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= THRESHOLD) {
+                for (int pos = start; pos != end; ++pos) {
+                    decrypt(items[pos]);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new DecryptTask(items, start, middle),
+                        new DecryptTask(items, middle, end));
+            }
+        }
+    }
+}
@@ -0,0 +1,382 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Wraps and unwraps keys (RFC 3394) in parallel.
+ * <p>
+ * When keys are rotated, thousands of keys are wrapped with the Key
+ * Encrypting Keys of the meters. Keys are split between the workers of a
+ * fork-join pool and results are returned in the same order as the keys were
+ * given. JCE AESWrap is used if it's available. Otherwise keys are wrapped
+ * with {@link GXDLMSChipperingStream}.
+ * </p>
+ */
+public class GXDLMSBatchKeyWrapper {
+    /**
+     * Amount of keys that are handled in one task.
+     */
+    private static final int THRESHOLD = 32;
+
+    /**
+     * JCE key wrap transformation.
+     */
+    private static final String TRANSFORMATION = "AESWrap";
+
+    /**
+     * Is JCE AESWrap available.
+     */
+    private static final boolean JCE_AVAILABLE = isJceAvailable();
+
+    /**
+     * Used pool.
+     */
+    private final ForkJoinPool pool;
+
+    /**
+     * Constructor. Shared pool is used.
+     */
+    public GXDLMSBatchKeyWrapper() {
+        this(GXBatchPool.getShared());
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param forPool
+     *            Fork-join pool where keys are wrapped.
+     */
+    public GXDLMSBatchKeyWrapper(final ForkJoinPool forPool) {
+        if (forPool == null) {
+            throw new IllegalArgumentException("pool");
+        }
+        pool = forPool;
+    }
+
+    /**
+     * @return Fork-join pool where keys are wrapped.
+     */
+    public final ForkJoinPool getPool() {
+        return pool;
+    }
+
+    /**
+     * @return Is JCE AESWrap available.
+     */
+    private static boolean isJceAvailable() {
+        try {
+            Cipher.getInstance(TRANSFORMATION);
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Check Key Encrypting Key.
+     * 
+     * @param kek
+     *            Key Encrypting Key.
+     */
+    private static void validateKek(final byte[] kek) {
+        if (kek == null) {
+            throw new NullPointerException("Key Encrypting Key");
+        }
+        if (kek.length < 16 || kek.length % 8 != 0) {
+            throw new IllegalArgumentException("Key Encrypting Key");
+        }
+    }
+
+    /**
+     * @param length
+     *            Length of the key.
+     * @return Can key be handled with JCE AESWrap.
+     */
+    private static boolean isAesKey(final int length) {
+        return length == 16 || length == 24 || length == 32;
+    }
+
+    /**
+     * Wrap key using Key Encrypting Key.
+     * 
+     * @param kek
+     *            Key Encrypting Key, also known as Master key.
+     * @param key
+     *            Wrapped key.
+     * @return Wrapped key.
+     */
+    public static byte[] wrap(final byte[] kek, final byte[] key) {
+        validateKek(kek);
+        if (key == null) {
+            throw new NullPointerException("data");
+        }
+        if (JCE_AVAILABLE && isAesKey(kek.length) && isAesKey(key.length)) {
+            try {
+                Cipher c = GXCryptoCache.getCipher(TRANSFORMATION);
+                c.init(Cipher.WRAP_MODE, new SecretKeySpec(kek, "AES"));
+                return c.wrap(new SecretKeySpec(key, "AES"));
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e.getMessage());
+            }
+        }
+        GXDLMSChipperingStream gcm = new GXDLMSChipperingStream(true, kek);
+        return gcm.encryptAes(key);
+    }
+
+    /**
+     * Unwrap key using Key Encrypting Key.
+     * 
+     * @param kek
+     *            Key Encrypting Key, also known as Master key.
+     * @param data
+     *            Wrapped key.
+     * @return Unwrapped key.
+     */
+    public static byte[] unwrap(final byte[] kek, final byte[] data) {
+        validateKek(kek);
+        if (data == null) {
+            throw new NullPointerException("data");
+        }
+        if (data.length < 16 || data.length % 8 != 0) {
+            throw new IllegalArgumentException("data");
+        }
+        if (JCE_AVAILABLE && isAesKey(kek.length)
+                && isAesKey(data.length - 8)) {
+            Cipher c;
+            try {
+                c = GXCryptoCache.getCipher(TRANSFORMATION);
+                c.init(Cipher.UNWRAP_MODE, new SecretKeySpec(kek, "AES"));
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e.getMessage());
+            }
+            Key key;
+            try {
+                key = c.unwrap(data, "AES", Cipher.SECRET_KEY);
+            } catch (InvalidKeyException e) {
+                throw new ArithmeticException("Invalid CRC");
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e.getMessage());
+            }
+            return key.getEncoded();
+        }
+        GXDLMSChipperingStream gcm = new GXDLMSChipperingStream(false, kek);
+        return gcm.decryptAes(data);
+    }
+
+    /**
+     * Wrap keys using one Key Encrypting Key.
+     * 
+     * @param kek
+     *            Key Encrypting Key.
+     * @param keys
+     *            Wrapped keys.
+     * @return Wrapped keys in the same order.
+     */
+    public final byte[][] wrap(final byte[] kek, final List<byte[]> keys) {
+        validateKek(kek);
+        final byte[][] items = keys.toArray(new byte[keys.size()][]);
+        final byte[][] ret = new byte[items.length][];
+        invoke(items.length, new Operation() {
+            @Override
+            void compute(final int index) {
+                ret[index] = wrap(kek, items[index]);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Wrap keys using own Key Encrypting Key for each key.
+     * 
+     * @param keks
+     *            Key Encrypting Keys.
+     * @param keys
+     *            Wrapped keys.
+     * @return Wrapped keys in the same order.
+     */
+    public final byte[][] wrap(final List<byte[]> keks,
+            final List<byte[]> keys) {
+        if (keks.size() != keys.size()) {
+            throw new IllegalArgumentException(
+                    "Amount of Key Encrypting Keys and keys differ.");
+        }
+        final byte[][] k = keks.toArray(new byte[keks.size()][]);
+        final byte[][] items = keys.toArray(new byte[keys.size()][]);
+        final byte[][] ret = new byte[items.length][];
+        invoke(items.length, new Operation() {
+            @Override
+            void compute(final int index) {
+                ret[index] = wrap(k[index], items[index]);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Unwrap keys using one Key Encrypting Key.
+     * 
+     * @param kek
+     *            Key Encrypting Key.
+     * @param data
+     *            Wrapped keys.
+     * @return Unwrapped keys in the same order.
+     */
+    public final byte[][] unwrap(final byte[] kek, final List<byte[]> data) {
+        validateKek(kek);
+        final byte[][] items = data.toArray(new byte[data.size()][]);
+        final byte[][] ret = new byte[items.length][];
+        invoke(items.length, new Operation() {
+            @Override
+            void compute(final int index) {
+                ret[index] = unwrap(kek, items[index]);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Generate global key transfer messages for the meters.
+     * <p>
+     * Generated messages or occurred error is saved to each item. Generating
+     * continues even if some of the items are invalid.
+     * </p>
+     * 
+     * @param items
+     *            Global key transfers of the meters.
+     * @return Generated messages in the same order. Null if generating
+     *         failed.
+     */
+    public final byte[][][]
+            globalKeyTransfer(final List<GXGlobalKeyTransfer> items) {
+        final GXGlobalKeyTransfer[] tmp =
+                items.toArray(new GXGlobalKeyTransfer[items.size()]);
+        invoke(tmp.length, new Operation() {
+            @Override
+            void compute(final int index) {
+                GXGlobalKeyTransfer it = tmp[index];
+                try {
+                    it.setMessages(it.getSecuritySetup().globalKeyTransfer(
+                            it.getClient(), it.getKek(), it.getKeys()));
+                    it.setError(null);
+                } catch (RuntimeException e) {
+                    it.setMessages(null);
+                    it.setError(e);
+                }
+            }
+        });
+        byte[][][] ret = new byte[tmp.length][][];
+        for (int pos = 0; pos != tmp.length; ++pos) {
+            ret[pos] = tmp[pos].getMessages();
+        }
+        return ret;
+    }
+
+    /**
+     * Handle items in the pool.
+     * 
+     * @param count
+     *            Amount of items.
+     * @param op
+     *            Operation that handles one item.
+     */
+    private void invoke(final int count, final Operation op) {
+        if (count != 0) {
+            pool.invoke(new RangeTask(op, 0, count));
+        }
+    }
+
+    /**
+     * Operation that handles one item.
+     */
+    private abstract static class Operation {
+        /**
+         * Handle one item.
+         * 
+         * @param index
+         *            Item index.
+         */
+        abstract void compute(int index);
+    }
+
+    /**
+     * Handles range of items and splits bigger ranges.
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Operation that handles one item.
+         */
+        private final transient Operation op;
+        /**
+         * First index.
+         */
+        private final int start;
+        /**
+         * Last index (exclusive).
+         */
+        private final int end;
+
+        RangeTask(final Operation forOp, final int forStart,
+                final int forEnd) {
+            op = forOp;
+            start = forStart;
+            end = forEnd;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= THRESHOLD) {
+                for (int pos = start; pos != end; ++pos) {
+                    op.compute(pos);
+                }
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new RangeTask(op, start, middle),
+                        new RangeTask(op, middle, end));
+            }
+        }
+    }
+}
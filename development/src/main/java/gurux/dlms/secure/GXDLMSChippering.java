@@ -49,6 +49,19 @@ final class GXDLMSChippering {
     private static final Logger LOGGER =
             Logger.getLogger(GXDLMSChippering.class.getName());
 
+    /**
+     * Used AES-GCM engine.
+     */
+    private static volatile GXIAesGcmEngine engine;
+
+    static {
+        if (GXJceAesGcmEngine.isSupported()) {
+            engine = new GXJceAesGcmEngine();
+        } else {
+            engine = new GXStreamAesGcmEngine();
+        }
+    }
+
     /*
      * Constructor.
      */
@@ -56,6 +69,24 @@ final class GXDLMSChippering {
 
     }
 
+    /**
+     * @return Used AES-GCM engine.
+     */
+    static GXIAesGcmEngine getEngine() {
+        return engine;
+    }
+
+    /**
+     * @param value
+     *            Used AES-GCM engine.
+     */
+    static void setEngine(final GXIAesGcmEngine value) {
+        if (value == null) {
+            throw new IllegalArgumentException("engine");
+        }
+        engine = value;
+    }
+
     /*
      * Get nonse from frame counter and system title.
      * @param invocationCounter Invocation counter.
@@ -92,13 +123,9 @@ final class GXDLMSChippering {
         tmp[3] = (byte) (invocationCounter & 0xFF);
         byte[] aad = getAuthenticatedData(p, plainText);
         byte[] iv = getNonse(invocationCounter, p.getSystemTitle());
-        GXDLMSChipperingStream gcm = new GXDLMSChipperingStream(p.getSecurity(),
-                true, p.getBlockCipherKey(), aad, iv, null);
-        // Encrypt the secret message
-        if (p.getSecurity() != Security.AUTHENTICATION) {
-            gcm.write(plainText);
-        }
-        byte[] ciphertext = gcm.flushFinalBlock();
+        byte[] countTag = new byte[12];
+        byte[] ciphertext = engine.encrypt(p.getSecurity(),
+                p.getBlockCipherKey(), iv, aad, plainText, countTag);
         if (p.getSecurity() == Security.AUTHENTICATION) {
             if (p.getType() == CountType.PACKET) {
                 data.set(tmp);
@@ -107,7 +134,7 @@ final class GXDLMSChippering {
                 data.set(plainText);
             }
             if ((p.getType() & CountType.TAG) != 0) {
-                p.setCountTag(gcm.getTag());
+                p.setCountTag(countTag);
                 data.set(p.getCountTag());
             }
         } else if (p.getSecurity() == Security.ENCRYPTION) {
@@ -123,7 +150,7 @@ final class GXDLMSChippering {
                 data.set(ciphertext);
             }
             if ((p.getType() & CountType.TAG) != 0) {
-                p.setCountTag(gcm.getTag());
+                p.setCountTag(countTag);
                 data.set(p.getCountTag());
             }
         } else {
@@ -141,6 +168,94 @@ final class GXDLMSChippering {
         return crypted;
     }
 
+    /**
+     * Get size of the security header that is written in front of the data
+     * when data is ciphered in place.
+     * 
+     * @param p
+     *            GMAC Parameter.
+     * @param count
+     *            Plain text size in bytes.
+     * @return Header size in bytes.
+     */
+    static int getHeaderSize(final AesGcmParameter p, final int count) {
+        if (p.getType() != CountType.PACKET) {
+            return 0;
+        }
+        // Security control and invocation counter.
+        int len = 5 + count;
+        if (p.getSecurity() != Security.ENCRYPTION) {
+            len += 12;
+        }
+        return 1 + GXCommon.getObjectCountSizeInBytes(len) + 5;
+    }
+
+    /**
+     * Encrypt data in place.
+     * 
+     * Plain text is replaced with cipher text, tag is appended after it and
+     * security header is written to the headroom in front of the data. If
+     * the headroom is smaller than the header, data is moved. Bytes after the
+     * data range are overwritten.
+     * 
+     * @param p
+     *            GMAC Parameter. Count type must include data.
+     * @param data
+     *            Buffer where data is ciphered.
+     * @param offset
+     *            Plain text offset.
+     * @param count
+     *            Plain text size in bytes.
+     * @return Position where ciphered data starts.
+     */
+    static int encryptAesGcm(final AesGcmParameter p, final GXByteBuffer data,
+            final int offset, final int count) {
+        if ((p.getType() & CountType.DATA) == 0) {
+            throw new IllegalArgumentException("type");
+        }
+        Security security = p.getSecurity();
+        if (security != Security.AUTHENTICATION
+                && security != Security.ENCRYPTION
+                && security != Security.AUTHENTICATION_ENCRYPTION) {
+            throw new IllegalArgumentException("security");
+        }
+        p.setCountTag(null);
+        int header = getHeaderSize(p, count);
+        int start = offset - header;
+        int pos = offset;
+        if (start < 0) {
+            start = 0;
+            pos = header;
+        }
+        // Engine writes the tag after the data.
+        if (data.capacity() < pos + count + 12) {
+            data.capacity(pos + count + 12);
+        }
+        if (pos != offset) {
+            data.move(offset, pos, count);
+        }
+        long invocationCounter = 0;
+        if (p.getSecuritySuite() == SecuritySuite.AES_GCM_128) {
+            invocationCounter = p.getInvocationCounter();
+        }
+        engine.encrypt(security, p.getBlockCipherKey(),
+                getNonse(invocationCounter, p.getSystemTitle()),
+                getAuthenticatedData(p, null), data.getData(), pos, count);
+        int end = pos + count;
+        if (security != Security.ENCRYPTION
+                && (p.getType() & CountType.TAG) != 0) {
+            end += 12;
+        }
+        data.size(end);
+        if (p.getType() == CountType.PACKET) {
+            data.setUInt8(start, p.getTag());
+            GXCommon.setObjectCount(start + 1, end - pos + 5, data);
+            data.setUInt8(pos - 5, security.getValue());
+            data.setUInt32(pos - 4, invocationCounter);
+        }
+        return start;
+    }
+
     private static byte[] getAuthenticatedData(final AesGcmParameter p,
             final byte[] plainText) {
         GXByteBuffer data = new GXByteBuffer();
@@ -150,7 +265,10 @@ final class GXDLMSChippering {
         case AUTHENTICATION:
             data.setUInt8(sc);
             data.set(p.getAuthenticationKey());
-            data.set(plainText);
+            // In place ciphering authenticates the data range separately.
+            if (plainText != null) {
+                data.set(plainText);
+            }
             break;
         case AUTHENTICATION_ENCRYPTION:
             data.setUInt8(sc);
@@ -184,15 +302,17 @@ final class GXDLMSChippering {
     }
 
     /**
-     * Decrypt data.
+     * Read security header.
      * 
      * @param c
      *            Cipher settings.
      * @param p
      *            GMAC Parameter.
-     * @return Encrypted data.
+     * @param data
+     *            Ciphered data.
+     * @return Transaction ID.
      */
-    static byte[] decryptAesGcm(final GXICipher c, final AesGcmParameter p,
+    private static long getHeader(final GXICipher c, final AesGcmParameter p,
             final GXByteBuffer data) {
         if (data == null || data.size() - data.position() < 2) {
             throw new IllegalArgumentException("cryptedData");
@@ -318,13 +438,31 @@ final class GXDLMSChippering {
                         new GXByteBuffer(GXASymmetric.generateKDF("SHA-256",
                                 p.getSharedSecret(), 256, algID,
                                 p.getSystemTitle(), tmp2.array(), null, null,
-                                SecuritySuite.ECDH_ECDSA_AES_GCM_128_SHA_256));
+                                SecuritySuite.ECDH_ECDSA_AES_GCM_128_SHA_256,
+                                false));
                 p.setBlockCipherKey(kdf.subArray(0, 16));
             }
         }
         p.setSecurity(security);
         long invocationCounter = data.getUInt32();
         p.setInvocationCounter(invocationCounter);
+        return transactionId;
+    }
+
+    /**
+     * Decrypt data.
+     * 
+     * @param c
+     *            Cipher settings.
+     * @param p
+     *            GMAC Parameter.
+     * @return Encrypted data.
+     */
+    static byte[] decryptAesGcm(final GXICipher c, final AesGcmParameter p,
+            final GXByteBuffer data) {
+        long transactionId = getHeader(c, p, data);
+        Security security = p.getSecurity();
+        long invocationCounter = p.getInvocationCounter();
         // LOGGER.log(Level.INFO, "Decrypt settings: " + p.toString());
         // LOGGER.log(Level.INFO, "Encrypted: " + GXCommon.toHex(data.getData(),
         // false, data.position(), data.size() - data.position()));
@@ -363,12 +501,75 @@ final class GXDLMSChippering {
         }
         byte[] aad = getAuthenticatedData(p, ciphertext),
                 iv = getNonse(invocationCounter, p.getSystemTitle());
-        GXDLMSChipperingStream gcm = new GXDLMSChipperingStream(security, true,
-                p.getBlockCipherKey(), aad, iv, tag);
-        gcm.write(ciphertext);
         if (transactionId != 0) {
             p.setInvocationCounter(transactionId);
         }
-        return gcm.flushFinalBlock();
+        if (security == Security.ENCRYPTION) {
+            tag = null;
+        }
+        try {
+            return engine.decrypt(security, p.getBlockCipherKey(), iv, aad,
+                    ciphertext, tag);
+        } catch (GXDLMSException e) {
+            if (p.getXml() == null) {
+                throw e;
+            }
+            p.getXml().appendComment("Decrypt failed. Invalid tag.");
+            return engine.decrypt(security, p.getBlockCipherKey(), iv, aad,
+                    ciphertext, null);
+        }
+    }
+
+    /**
+     * Decrypt data in place.
+     * 
+     * Cipher text is replaced with plain text that starts from the buffer
+     * position after the security header. Buffer size is set to the end of
+     * the plain text.
+     * 
+     * @param c
+     *            Cipher settings.
+     * @param p
+     *            GMAC Parameter.
+     * @param data
+     *            Ciphered data from the position to the end of the buffer.
+     * @return Plain text size in bytes.
+     */
+    static int decryptAesGcmInPlace(final GXICipher c,
+            final AesGcmParameter p, final GXByteBuffer data) {
+        long transactionId = getHeader(c, p, data);
+        Security security = p.getSecurity();
+        int pos = data.position();
+        int length = data.size() - pos;
+        if (security != Security.ENCRYPTION) {
+            length -= 12;
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("cryptedData");
+        }
+        byte[] aad = getAuthenticatedData(p, null),
+                iv = getNonse(p.getInvocationCounter(), p.getSystemTitle());
+        if (security != Security.AUTHENTICATION && transactionId != 0) {
+            p.setInvocationCounter(transactionId);
+        }
+        try {
+            engine.decrypt(security, p.getBlockCipherKey(), iv, aad,
+                    data.getData(), pos, length, true);
+        } catch (GXDLMSException e) {
+            if (security == Security.AUTHENTICATION && transactionId != 0) {
+                p.setInvocationCounter(transactionId);
+            }
+            if (p.getXml() == null) {
+                throw e;
+            }
+            p.getXml().appendComment("Decrypt failed. Invalid tag.");
+            if (security != Security.AUTHENTICATION) {
+                // Buffer is not modified if tag is invalid.
+                engine.decrypt(security, p.getBlockCipherKey(), iv, aad,
+                        data.getData(), pos, length, false);
+            }
+        }
+        data.size(pos + length);
+        return length;
     }
 }
@@ -66,7 +66,9 @@ class GXDLMSChipperingStream {
 
     private Security security;
     // Properties.
-    private final int[][][] mArray = new int[32][][];
+    private int[][][] mArray;
+    // Cached key material.
+    private GXGcmKeyCache.CachedKey cached;
     private long totalLength;
     private final byte[] zeroes = new byte[BLOCK_SIZE];
     private byte[] s;
@@ -145,7 +147,37 @@ class GXDLMSChipperingStream {
             throw new IllegalArgumentException("Invalid tag.");
         }
         encrypt = forEncrypt;
-        workingKey = generateKey(true, blockCipherKey);
+        cached = GXGcmKeyCache.acquire(blockCipherKey);
+        if (cached == null) {
+            workingKey = generateKey(true, blockCipherKey);
+            this.h = new byte[BLOCK_SIZE];
+            processBlock(h, 0, h, 0);
+            mArray = new int[32][][];
+            init(h);
+            cached = GXGcmKeyCache.add(blockCipherKey, workingKey, rounds,
+                    mArray);
+        } else {
+            workingKey = cached.getWorkingKey();
+            rounds = cached.getRounds();
+            mArray = cached.getTables();
+        }
+        try {
+            initBuffers(forAad, iv);
+        } catch (RuntimeException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Initialize buffers and counters.
+     * 
+     * @param forAad
+     *            Additional authenticated data.
+     * @param iv
+     *            Initialization vector.
+     */
+    private void initBuffers(final byte[] forAad, final byte[] iv) {
         int bufLength;
         if (encrypt) {
             bufLength = BLOCK_SIZE;
@@ -154,9 +186,6 @@ class GXDLMSChipperingStream {
         }
         this.bufBlock = new byte[bufLength];
         aad = forAad;
-        this.h = new byte[BLOCK_SIZE];
-        processBlock(h, 0, h, 0);
-        init(h);
         this.j0 = new byte[16];
         System.arraycopy(iv, 0, j0, 0, iv.length);
         this.j0[15] = 0x01;
@@ -978,11 +1007,34 @@ class GXDLMSChipperingStream {
     }
 
     /**
-     * Process encrypting/decrypting.
+     * Process encrypting/decrypting. Cached key material is released and
+     * stream can't be used after this.
      * 
      * @return
      */
     public final byte[] flushFinalBlock() {
+        try {
+            return flush();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Release cached key material. Stream can't be used after this. This is
+     * called by flushFinalBlock and it must be called if the stream is not
+     * flushed.
+     */
+    final void close() {
+        if (cached != null) {
+            GXGcmKeyCache.release(cached);
+            cached = null;
+            workingKey = null;
+            mArray = null;
+        }
+    }
+
+    private byte[] flush() {
         // Crypt/Uncrypt remaining bytes.
         if (bytesRemaining > 0) {
             byte[] tmp = new byte[BLOCK_SIZE];
@@ -0,0 +1,232 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keys of the clients by client system title or client address. Registry is
+ * shared between servers, so one server process can serve many clients that
+ * use different keys. Changes are made to a copy of the index, so finding
+ * keys never blocks.
+ */
+public class GXDLMSKeyRegistry {
+    /**
+     * Key sets by client system title.
+     */
+    private volatile Map<Long, GXDLMSKeySet> systemTitles =
+            Collections.emptyMap();
+
+    /**
+     * Key sets by client address.
+     */
+    private volatile Map<Integer, GXDLMSKeySet> clientAddresses =
+            Collections.emptyMap();
+
+    /**
+     * Add or replace keys of the client system title.
+     * 
+     * @param systemTitle
+     *            Client system title.
+     * @param keys
+     *            Client keys.
+     */
+    public final synchronized void put(final byte[] systemTitle,
+            final GXDLMSKeySet keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("keys");
+        }
+        Map<Long, GXDLMSKeySet> tmp =
+                new HashMap<Long, GXDLMSKeySet>(systemTitles);
+        tmp.put(GXInvocationCounterStore.toKey(systemTitle), keys);
+        systemTitles = tmp;
+    }
+
+    /**
+     * Add or replace keys of the client address.
+     * 
+     * @param clientAddress
+     *            Client address.
+     * @param keys
+     *            Client keys.
+     */
+    public final synchronized void put(final int clientAddress,
+            final GXDLMSKeySet keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("keys");
+        }
+        Map<Integer, GXDLMSKeySet> tmp =
+                new HashMap<Integer, GXDLMSKeySet>(clientAddresses);
+        tmp.put(clientAddress, keys);
+        clientAddresses = tmp;
+    }
+
+    /**
+     * Remove keys of the client system title.
+     * 
+     * @param systemTitle
+     *            Client system title.
+     * @return True, if keys were removed.
+     */
+    public final synchronized boolean remove(final byte[] systemTitle) {
+        Long key = GXInvocationCounterStore.toKey(systemTitle);
+        if (!systemTitles.containsKey(key)) {
+            return false;
+        }
+        Map<Long, GXDLMSKeySet> tmp =
+                new HashMap<Long, GXDLMSKeySet>(systemTitles);
+        tmp.remove(key);
+        systemTitles = tmp;
+        return true;
+    }
+
+    /**
+     * Remove keys of the client address.
+     * 
+     * @param clientAddress
+     *            Client address.
+     * @return True, if keys were removed.
+     */
+    public final synchronized boolean remove(final int clientAddress) {
+        if (!clientAddresses.containsKey(clientAddress)) {
+            return false;
+        }
+        Map<Integer, GXDLMSKeySet> tmp =
+                new HashMap<Integer, GXDLMSKeySet>(clientAddresses);
+        tmp.remove(clientAddress);
+        clientAddresses = tmp;
+        return true;
+    }
+
+    /**
+     * Replace key set with new keys. Keys are replaced for every system
+     * title and client address where the key set is used.
+     * 
+     * @param oldKeys
+     *            Replaced key set.
+     * @param newKeys
+     *            New key set.
+     * @return True, if key set was found.
+     */
+    public final synchronized boolean replace(final GXDLMSKeySet oldKeys,
+            final GXDLMSKeySet newKeys) {
+        if (newKeys == null) {
+            throw new IllegalArgumentException("newKeys");
+        }
+        boolean found = false;
+        if (systemTitles.containsValue(oldKeys)) {
+            Map<Long, GXDLMSKeySet> tmp =
+                    new HashMap<Long, GXDLMSKeySet>(systemTitles);
+            for (Map.Entry<Long, GXDLMSKeySet> it : tmp.entrySet()) {
+                if (it.getValue() == oldKeys) {
+                    it.setValue(newKeys);
+                }
+            }
+            systemTitles = tmp;
+            found = true;
+        }
+        if (clientAddresses.containsValue(oldKeys)) {
+            Map<Integer, GXDLMSKeySet> tmp =
+                    new HashMap<Integer, GXDLMSKeySet>(clientAddresses);
+            for (Map.Entry<Integer, GXDLMSKeySet> it : tmp.entrySet()) {
+                if (it.getValue() == oldKeys) {
+                    it.setValue(newKeys);
+                }
+            }
+            clientAddresses = tmp;
+            found = true;
+        }
+        return found;
+    }
+
+    /**
+     * Remove all keys.
+     */
+    public final synchronized void clear() {
+        systemTitles = Collections.emptyMap();
+        clientAddresses = Collections.emptyMap();
+    }
+
+    /**
+     * @param systemTitle
+     *            Client system title.
+     * @return Keys of the client system title or null if they are not
+     *         found.
+     */
+    public final GXDLMSKeySet get(final byte[] systemTitle) {
+        if (systemTitle == null || systemTitle.length == 0
+                || systemTitle.length > 8) {
+            return null;
+        }
+        return systemTitles.get(GXInvocationCounterStore.toKey(systemTitle));
+    }
+
+    /**
+     * @param clientAddress
+     *            Client address.
+     * @return Keys of the client address or null if they are not found.
+     */
+    public final GXDLMSKeySet get(final int clientAddress) {
+        return clientAddresses.get(clientAddress);
+    }
+
+    /**
+     * Find client keys. Keys are searched first by system title and then by
+     * client address.
+     * 
+     * @param systemTitle
+     *            Client system title. Can be null.
+     * @param clientAddress
+     *            Client address.
+     * @return Client keys or null if they are not found.
+     */
+    public final GXDLMSKeySet find(final byte[] systemTitle,
+            final int clientAddress) {
+        GXDLMSKeySet keys = get(systemTitle);
+        if (keys == null) {
+            keys = get(clientAddress);
+        }
+        return keys;
+    }
+
+    /**
+     * @return Amount of registered system titles and client addresses.
+     */
+    public final int size() {
+        return systemTitles.size() + clientAddresses.size();
+    }
+}
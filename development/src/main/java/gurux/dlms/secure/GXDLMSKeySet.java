@@ -0,0 +1,87 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+/**
+ * Block cipher and authentication key of one client. Key set is immutable
+ * and it's shared between connections, so returned keys must not be
+ * modified.
+ */
+public class GXDLMSKeySet {
+    /**
+     * Block cipher key.
+     */
+    private final byte[] blockCipherKey;
+
+    /**
+     * Authentication key.
+     */
+    private final byte[] authenticationKey;
+
+    /**
+     * Constructor.
+     * 
+     * @param forBlockCipherKey
+     *            Block cipher key.
+     * @param forAuthenticationKey
+     *            Authentication key.
+     */
+    public GXDLMSKeySet(final byte[] forBlockCipherKey,
+            final byte[] forAuthenticationKey) {
+        if (forBlockCipherKey == null || forBlockCipherKey.length != 16) {
+            throw new IllegalArgumentException("Invalid Block Cipher Key.");
+        }
+        if (forAuthenticationKey == null
+                || forAuthenticationKey.length != 16) {
+            throw new IllegalArgumentException("Invalid Authentication Key.");
+        }
+        blockCipherKey = forBlockCipherKey.clone();
+        authenticationKey = forAuthenticationKey.clone();
+    }
+
+    /**
+     * @return Block cipher key.
+     */
+    public final byte[] getBlockCipherKey() {
+        return blockCipherKey;
+    }
+
+    /**
+     * @return Authentication key.
+     */
+    public final byte[] getAuthenticationKey() {
+        return authenticationKey;
+    }
+}
@@ -130,8 +130,7 @@ public class GXDLMSSecureClient extends GXDLMSClient {
         if (kek.length % 8 != 0) {
             throw new IllegalArgumentException("Key Encrypting Key");
         }
-        GXDLMSChipperingStream gcm = new GXDLMSChipperingStream(true, kek);
-        return gcm.encryptAes(data);
+        return GXDLMSBatchKeyWrapper.wrap(kek, data);
     }
 
     /**
@@ -162,8 +161,7 @@ public class GXDLMSSecureClient extends GXDLMSClient {
         if (data.length % 8 != 0) {
             throw new IllegalArgumentException("data");
         }
-        GXDLMSChipperingStream gcm = new GXDLMSChipperingStream(false, kek);
-        return gcm.decryptAes(data);
+        return GXDLMSBatchKeyWrapper.unwrap(kek, data);
     }
 
     /**
@@ -259,7 +257,7 @@ public class GXDLMSSecureClient extends GXDLMSClient {
         // Get shared secret
         KeyAgreement ka;
         try {
-            ka = KeyAgreement.getInstance("ECDH");
+            ka = GXCryptoCache.getKeyAgreement("ECDH");
             ka.init(getCiphering().getEphemeralKeyPair().getPrivate());
             ka.doPhase(ePubKs, true);
             getSettings().getCipher().setSharedSecret(ka.generateSecret());
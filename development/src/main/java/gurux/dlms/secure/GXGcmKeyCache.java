@@ -0,0 +1,263 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache for AES round keys and GHASH multiplication tables.
+ * <p>
+ * Block cipher key is seldom changed, so key expansion and GHASH tables are
+ * counted only once for each key. Least recently used key is removed when
+ * the cache is full. Removed entries are zeroed when they are not used
+ * anymore.
+ * </p>
+ */
+final class GXGcmKeyCache {
+    /**
+     * Default amount of cached keys.
+     */
+    private static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * Maximum amount of cached keys.
+     */
+    private static int capacity = DEFAULT_CAPACITY;
+
+    /**
+     * Cached keys in access order.
+     */
+    private static final Map<ByteBuffer, CachedKey> ENTRIES =
+            new LinkedHashMap<ByteBuffer, CachedKey>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(
+                        final Map.Entry<ByteBuffer, CachedKey> eldest) {
+                    if (size() > capacity) {
+                        eldest.getValue().evict();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+
+    /**
+     * Cached key material.
+     */
+    static final class CachedKey {
+        /**
+         * Copy of the block cipher key.
+         */
+        private final byte[] key;
+        /**
+         * Expanded round keys.
+         */
+        private final int[][] workingKey;
+        /**
+         * Amount of rounds.
+         */
+        private final int rounds;
+        /**
+         * GHASH multiplication tables.
+         */
+        private final int[][][] tables;
+        /**
+         * Amount of streams using this entry.
+         */
+        private int users;
+        /**
+         * Is entry removed from the cache.
+         */
+        private boolean evicted;
+
+        CachedKey(final byte[] forKey, final int[][] forWorkingKey,
+                final int forRounds, final int[][][] forTables) {
+            key = forKey;
+            workingKey = forWorkingKey;
+            rounds = forRounds;
+            tables = forTables;
+        }
+
+        /**
+         * @return Expanded round keys.
+         */
+        int[][] getWorkingKey() {
+            return workingKey;
+        }
+
+        /**
+         * @return Amount of rounds.
+         */
+        int getRounds() {
+            return rounds;
+        }
+
+        /**
+         * @return GHASH multiplication tables.
+         */
+        int[][][] getTables() {
+            return tables;
+        }
+
+        private void evict() {
+            evicted = true;
+            if (users == 0) {
+                clear();
+            }
+        }
+
+        /**
+         * Zero key material.
+         */
+        private void clear() {
+            Arrays.fill(key, (byte) 0);
+            for (int[] it : workingKey) {
+                Arrays.fill(it, 0);
+            }
+            for (int[][] table : tables) {
+                for (int[] it : table) {
+                    Arrays.fill(it, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Constructor.
+     */
+    private GXGcmKeyCache() {
+
+    }
+
+    /**
+     * @return Maximum amount of cached keys.
+     */
+    static synchronized int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @param value
+     *            Maximum amount of cached keys. Zero disables the cache.
+     */
+    static synchronized void setCapacity(final int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("capacity");
+        }
+        capacity = value;
+        while (ENTRIES.size() > capacity) {
+            Map.Entry<ByteBuffer, CachedKey> it =
+                    ENTRIES.entrySet().iterator().next();
+            ENTRIES.remove(it.getKey());
+            it.getValue().evict();
+        }
+    }
+
+    /**
+     * Remove all cached keys.
+     */
+    static synchronized void clear() {
+        for (CachedKey it : ENTRIES.values()) {
+            it.evict();
+        }
+        ENTRIES.clear();
+    }
+
+    /**
+     * Get cached key material. Entry must be released when it's not used
+     * anymore.
+     * 
+     * @param key
+     *            Block cipher key.
+     * @return Cached key material or null if key is not cached.
+     */
+    static synchronized CachedKey acquire(final byte[] key) {
+        CachedKey e = ENTRIES.get(ByteBuffer.wrap(key));
+        if (e != null) {
+            ++e.users;
+        }
+        return e;
+    }
+
+    /**
+     * Add key material to the cache. Entry must be released when it's not
+     * used anymore.
+     * 
+     * @param key
+     *            Block cipher key.
+     * @param workingKey
+     *            Expanded round keys.
+     * @param rounds
+     *            Amount of rounds.
+     * @param tables
+     *            GHASH multiplication tables.
+     * @return Cached key material.
+     */
+    static synchronized CachedKey add(final byte[] key,
+            final int[][] workingKey, final int rounds,
+            final int[][][] tables) {
+        CachedKey e = new CachedKey(key.clone(), workingKey, rounds, tables);
+        e.users = 1;
+        if (capacity == 0) {
+            e.evicted = true;
+        } else {
+            // Map key is own copy, so zeroing the evicted entry doesn't
+            // change the keys of the map.
+            ByteBuffer id = ByteBuffer.wrap(key.clone());
+            CachedKey old = ENTRIES.remove(id);
+            if (old != null) {
+                old.evict();
+            }
+            ENTRIES.put(id, e);
+        }
+        return e;
+    }
+
+    /**
+     * Release acquired entry.
+     * 
+     * @param e
+     *            Cached key material.
+     */
+    static synchronized void release(final CachedKey e) {
+        if (--e.users == 0 && e.evicted) {
+            e.clear();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.util.List;
+
+import gurux.dlms.GXDLMSClient;
+import gurux.dlms.GXSimpleEntry;
+import gurux.dlms.objects.GXDLMSSecuritySetup;
+import gurux.dlms.objects.enums.GlobalKeyType;
+
+/**
+ * Global key transfer of one meter that is generated with
+ * {@link GXDLMSBatchKeyWrapper}.
+ */
+public class GXGlobalKeyTransfer {
+    /**
+     * DLMS client of the meter.
+     */
+    private final GXDLMSClient client;
+
+    /**
+     * Security setup of the meter.
+     */
+    private final GXDLMSSecuritySetup securitySetup;
+
+    /**
+     * Key Encrypting Key of the meter.
+     */
+    private final byte[] kek;
+
+    /**
+     * Transferred keys.
+     */
+    private final List<GXSimpleEntry<GlobalKeyType, byte[]>> keys;
+
+    /**
+     * Generated global key transfer messages.
+     */
+    private byte[][] messages;
+
+    /**
+     * Occurred error.
+     */
+    private RuntimeException error;
+
+    /**
+     * Constructor.
+     * 
+     * @param forClient
+     *            DLMS client of the meter. Each meter must have own client.
+     * @param forSecuritySetup
+     *            Security setup of the meter.
+     * @param forKek
+     *            Key Encrypting Key of the meter.
+     * @param forKeys
+     *            Transferred keys.
+     */
+    public GXGlobalKeyTransfer(final GXDLMSClient forClient,
+            final GXDLMSSecuritySetup forSecuritySetup, final byte[] forKek,
+            final List<GXSimpleEntry<GlobalKeyType, byte[]>> forKeys) {
+        if (forClient == null) {
+            throw new IllegalArgumentException("client");
+        }
+        if (forSecuritySetup == null) {
+            throw new IllegalArgumentException("securitySetup");
+        }
+        client = forClient;
+        securitySetup = forSecuritySetup;
+        kek = forKek;
+        keys = forKeys;
+    }
+
+    /**
+     * @return DLMS client of the meter.
+     */
+    public final GXDLMSClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return Security setup of the meter.
+     */
+    public final GXDLMSSecuritySetup getSecuritySetup() {
+        return securitySetup;
+    }
+
+    /**
+     * @return Key Encrypting Key of the meter.
+     */
+    public final byte[] getKek() {
+        return kek;
+    }
+
+    /**
+     * @return Transferred keys.
+     */
+    public final List<GXSimpleEntry<GlobalKeyType, byte[]>> getKeys() {
+        return keys;
+    }
+
+    /**
+     * @return Generated global key transfer messages. Null if generating
+     *         failed.
+     */
+    public final byte[][] getMessages() {
+        return messages;
+    }
+
+    /**
+     * @param value
+     *            Generated global key transfer messages.
+     */
+    final void setMessages(final byte[][] value) {
+        messages = value;
+    }
+
+    /**
+     * @return Error that occurred while generating messages. Null if
+     *         generating succeeded.
+     */
+    public final RuntimeException getError() {
+        return error;
+    }
+
+    /**
+     * @param value
+     *            Error that occurred while generating messages.
+     */
+    final void setError(final RuntimeException value) {
+        error = value;
+    }
+}
@@ -0,0 +1,140 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import gurux.dlms.enums.Security;
+
+/**
+ * AES-GCM engine used to cipher and decipher DLMS APDUs.
+ * 
+ * Tag is always 12 bytes. In authentication only (GMAC) mode data is only
+ * authenticated and in encryption only mode tag is not used.
+ */
+public interface GXIAesGcmEngine {
+
+    /**
+     * Encrypt data.
+     * 
+     * @param security
+     *            Used security level.
+     * @param key
+     *            Block cipher key.
+     * @param iv
+     *            Initialization vector (nonce). 12 bytes.
+     * @param aad
+     *            Additional authenticated data.
+     * @param data
+     *            Plain text. Not encrypted when authentication only is used.
+     * @param tag
+     *            Generated 12 bytes tag is copied here. Not used with
+     *            encryption only.
+     * @return Cipher text. Empty when authentication only is used.
+     */
+    byte[] encrypt(Security security, byte[] key, byte[] iv, byte[] aad,
+            byte[] data, byte[] tag);
+
+    /**
+     * Decrypt data.
+     * 
+     * @param security
+     *            Used security level.
+     * @param key
+     *            Block cipher key.
+     * @param iv
+     *            Initialization vector (nonce). 12 bytes.
+     * @param aad
+     *            Additional authenticated data.
+     * @param data
+     *            Cipher text.
+     * @param tag
+     *            Received 12 bytes tag. Tag is not checked if null.
+     * @return Plain text.
+     * @throws gurux.dlms.GXDLMSException
+     *             Tag is invalid.
+     */
+    byte[] decrypt(Security security, byte[] key, byte[] iv, byte[] aad,
+            byte[] data, byte[] tag);
+
+    /**
+     * Encrypt data in place.
+     * 
+     * @param security
+     *            Used security level.
+     * @param key
+     *            Block cipher key.
+     * @param iv
+     *            Initialization vector (nonce). 12 bytes.
+     * @param aad
+     *            Additional authenticated data. When authentication only is
+     *            used, data range is authenticated after it.
+     * @param buff
+     *            Buffer where plain text is replaced with cipher text. 12
+     *            bytes tag is written after the data if encryption only is
+     *            not used.
+     * @param offset
+     *            Data offset.
+     * @param count
+     *            Data size in bytes.
+     */
+    void encrypt(Security security, byte[] key, byte[] iv, byte[] aad,
+            byte[] buff, int offset, int count);
+
+    /**
+     * Decrypt data in place.
+     * 
+     * @param security
+     *            Used security level.
+     * @param key
+     *            Block cipher key.
+     * @param iv
+     *            Initialization vector (nonce). 12 bytes.
+     * @param aad
+     *            Additional authenticated data. When authentication only is
+     *            used, data range is authenticated after it.
+     * @param buff
+     *            Buffer where cipher text is replaced with plain text. 12
+     *            bytes tag follows the data if encryption only is not used.
+     * @param offset
+     *            Data offset.
+     * @param count
+     *            Data size in bytes without the tag.
+     * @param verify
+     *            Is tag checked.
+     * @throws gurux.dlms.GXDLMSException
+     *             Tag is invalid. Buffer is not modified.
+     */
+    void decrypt(Security security, byte[] key, byte[] iv, byte[] aad,
+            byte[] buff, int offset, int count, boolean verify);
+}
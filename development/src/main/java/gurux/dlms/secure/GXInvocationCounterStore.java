@@ -0,0 +1,401 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.dlms.secure;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent invocation counter store for many system titles.
+ * <p>
+ * Counters are increased in memory. Only the reserved limit is saved to a
+ * memory-mapped file: when a counter reaches its limit, counter + reserve is
+ * saved and forced to the disk before the counter is used. After restart,
+ * counters continue from the saved limit, so a counter never goes backward
+ * even if the application crashes. Up to reserve values are skipped after a
+ * crash.
+ * </p>
+ * <p>
+ * Limits that are reserved at the same time are forced to the disk together.
+ * </p>
+ */
+public class GXInvocationCounterStore implements Closeable {
+    /**
+     * File identifier.
+     */
+    private static final int MAGIC = 0x47584943;
+
+    /**
+     * File version.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Header size.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Position of the record count in the header.
+     */
+    private static final int COUNT_POSITION = 12;
+
+    /**
+     * Record size. System title and reserved limit.
+     */
+    private static final int RECORD_SIZE = 16;
+
+    /**
+     * Maximum invocation counter value.
+     */
+    private static final long MAX_VALUE = 0xFFFFFFFFL;
+
+    /**
+     * Maximum amount of system titles.
+     */
+    private final int capacity;
+
+    /**
+     * Amount of values that are reserved at once.
+     */
+    private final int reserve;
+
+    /**
+     * Opened file.
+     */
+    private final RandomAccessFile file;
+
+    /**
+     * Mapped file.
+     */
+    private final MappedByteBuffer data;
+
+    /**
+     * Counters by system title.
+     */
+    private final ConcurrentHashMap<Long, GXCounter> counters =
+            new ConcurrentHashMap<Long, GXCounter>();
+
+    /**
+     * Amount of records.
+     */
+    private int count;
+
+    /**
+     * Amount of reserved limits written to the file.
+     */
+    private long written;
+
+    /**
+     * Amount of reserved limits forced to the disk.
+     */
+    private long flushed;
+
+    /**
+     * Synchronizes disk writes.
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Constructor. Existing file is opened if capacity matches. Otherwise new
+     * file is created.
+     * 
+     * @param path
+     *            File path.
+     * @param maxTitles
+     *            Maximum amount of system titles.
+     * @param reserveCount
+     *            Amount of invocation counter values that are reserved at
+     *            once.
+     * @throws IOException
+     *             File open fails.
+     */
+    public GXInvocationCounterStore(final String path, final int maxTitles,
+            final int reserveCount) throws IOException {
+        if (maxTitles < 1) {
+            throw new IllegalArgumentException("maxTitles");
+        }
+        if (reserveCount < 1) {
+            throw new IllegalArgumentException("reserveCount");
+        }
+        capacity = maxTitles;
+        reserve = reserveCount;
+        long length = HEADER_SIZE + (long) RECORD_SIZE * capacity;
+        File f = new File(path);
+        boolean exists = f.exists() && f.length() == length;
+        file = new RandomAccessFile(f, "rw");
+        try {
+            file.setLength(length);
+            data = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0,
+                    length);
+            if (exists && isValid()) {
+                count = data.getInt(COUNT_POSITION);
+                for (int pos = 0; pos != count; ++pos) {
+                    int offset = HEADER_SIZE + pos * RECORD_SIZE;
+                    long limit = data.getLong(offset + 8);
+                    // Values below the saved limit might have been used.
+                    counters.put(data.getLong(offset),
+                            new GXCounter(pos, limit, limit));
+                }
+            } else {
+                data.putInt(0, MAGIC);
+                data.putShort(4, (short) VERSION);
+                data.putInt(8, capacity);
+                data.putInt(COUNT_POSITION, 0);
+                data.force();
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        } catch (RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Is existing file using the same layout.
+     */
+    private boolean isValid() {
+        int cnt = data.getInt(COUNT_POSITION);
+        return data.getInt(0) == MAGIC && data.getShort(4) == VERSION
+                && data.getInt(8) == capacity && cnt >= 0 && cnt <= capacity;
+    }
+
+    /**
+     * @return Maximum amount of system titles.
+     */
+    public final int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return Amount of invocation counter values that are reserved at once.
+     */
+    public final int getReserve() {
+        return reserve;
+    }
+
+    /**
+     * Convert system title to the key.
+     * 
+     * @param systemTitle
+     *            System title. Maximum length is 8 bytes.
+     * @return Key.
+     */
+    static long toKey(final byte[] systemTitle) {
+        if (systemTitle == null || systemTitle.length > 8) {
+            throw new IllegalArgumentException("systemTitle");
+        }
+        long key = 0;
+        for (byte it : systemTitle) {
+            key = (key << 8) | (it & 0xFF);
+        }
+        return key << (8 * (8 - systemTitle.length));
+    }
+
+    /**
+     * Get counter for the system title. New counter is added if it doesn't
+     * exist.
+     * 
+     * @param systemTitle
+     *            System title.
+     * @return Counter.
+     */
+    private GXCounter getCounter(final byte[] systemTitle) {
+        Long key = toKey(systemTitle);
+        GXCounter c = counters.get(key);
+        if (c == null) {
+            synchronized (this) {
+                c = counters.get(key);
+                if (c == null) {
+                    if (count == capacity) {
+                        throw new IllegalStateException(
+                                "Invocation counter store is full.");
+                    }
+                    int offset = HEADER_SIZE + count * RECORD_SIZE;
+                    data.putLong(offset, key);
+                    data.putLong(offset + 8, 0);
+                    c = new GXCounter(count, 0, 0);
+                    ++count;
+                    data.putInt(COUNT_POSITION, count);
+                    counters.put(key, c);
+                }
+            }
+        }
+        return c;
+    }
+
+    /**
+     * Save new limit and force it to the disk. Limits that are saved while
+     * disk is forced are forced together.
+     * 
+     * @param c
+     *            Counter.
+     * @param value
+     *            Counter value that must be below the saved limit.
+     */
+    private void reserve(final GXCounter c, final long value) {
+        synchronized (c) {
+            if (value < c.limit) {
+                return;
+            }
+            if (value > MAX_VALUE) {
+                throw new IllegalStateException(
+                        "Invocation counter overflow.");
+            }
+            long limit = Math.min(value + reserve, MAX_VALUE + 1);
+            long seq;
+            synchronized (this) {
+                data.putLong(HEADER_SIZE + c.index * RECORD_SIZE + 8, limit);
+                seq = ++written;
+            }
+            synchronized (flushLock) {
+                if (flushed < seq) {
+                    long target;
+                    synchronized (this) {
+                        target = written;
+                    }
+                    data.force();
+                    flushed = target;
+                }
+            }
+            c.limit = limit;
+        }
+    }
+
+    /**
+     * Get invocation counter for the next message and increase it.
+     * 
+     * @param systemTitle
+     *            System title.
+     * @return Invocation counter.
+     */
+    public final long next(final byte[] systemTitle) {
+        GXCounter c = getCounter(systemTitle);
+        long value = c.value.getAndIncrement();
+        if (value >= c.limit) {
+            reserve(c, value);
+        }
+        return value;
+    }
+
+    /**
+     * Get invocation counter that is used for the next message.
+     * 
+     * @param systemTitle
+     *            System title.
+     * @return Invocation counter.
+     */
+    public final long get(final byte[] systemTitle) {
+        return getCounter(systemTitle).value.get();
+    }
+
+    /**
+     * Set invocation counter. Counter never goes backward, so smaller value
+     * is ignored.
+     * 
+     * @param systemTitle
+     *            System title.
+     * @param value
+     *            Invocation counter.
+     */
+    public final void set(final byte[] systemTitle, final long value) {
+        GXCounter c = getCounter(systemTitle);
+        long current = c.value.get();
+        while (current < value) {
+            if (c.value.compareAndSet(current, value)) {
+                // Saved limit must be above all handed out values.
+                reserve(c, value - 1);
+                break;
+            }
+            current = c.value.get();
+        }
+    }
+
+    /**
+     * Force saved limits to the disk.
+     */
+    public final void flush() {
+        synchronized (flushLock) {
+            long target;
+            synchronized (this) {
+                target = written;
+            }
+            data.force();
+            flushed = target;
+        }
+    }
+
+    @Override
+    public final void close() throws IOException {
+        flush();
+        file.close();
+    }
+
+    /**
+     * Invocation counter of one system title.
+     */
+    private static final class GXCounter {
+        /**
+         * Record index.
+         */
+        private final int index;
+
+        /**
+         * Next value.
+         */
+        private final AtomicLong value;
+
+        /**
+         * Values below the limit are saved to the disk.
+         */
+        private volatile long limit;
+
+        GXCounter(final int forIndex, final long forValue,
+                final long forLimit) {
+            index = forIndex;
+            value = new AtomicLong(forValue);
+            limit = forLimit;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import gurux.dlms.GXDLMSException;
+import gurux.dlms.enums.Security;
+
+/**
+ * AES-GCM engine that uses JCE "AES/GCM/NoPadding" cipher. JCE providers
+ * use AES-NI and carry-less multiplication when CPU supports them.
+ * 
+ * Encryption only is counter mode starting from J0 + 1, so it is handled
+ * with "AES/CTR/NoPadding". If JCE doesn't support the algorithm or the key
+ * size, stream implementation is used. Other JCE errors are thrown.
+ */
+public class GXJceAesGcmEngine implements GXIAesGcmEngine {
+    /**
+     * Tag size in bits.
+     */
+    private static final int TAG_BITS = 96;
+
+    /**
+     * Cached GCM ciphers.
+     */
+    private static final ThreadLocal<Cipher> GCM = new ThreadLocal<Cipher>();
+
+    /**
+     * Cached GCM ciphers for GMAC challenges. Challenges use own ciphers, so
+     * they don't change the IV that JCE checks when data is encrypted.
+     */
+    private static final ThreadLocal<Cipher> GMAC = new ThreadLocal<Cipher>();
+
+    /**
+     * Cached CTR ciphers.
+     */
+    private static final ThreadLocal<Cipher> CTR = new ThreadLocal<Cipher>();
+
+    /**
+     * Engine that is used if JCE fails.
+     */
+    private final GXIAesGcmEngine fallback = new GXStreamAesGcmEngine();
+
+    /**
+     * @return Is AES-GCM supported by installed JCE providers.
+     */
+    public static boolean isSupported() {
+        try {
+            getCipher(GCM, "AES/GCM/NoPadding");
+            getCipher(CTR, "AES/CTR/NoPadding");
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private static Cipher getCipher(final ThreadLocal<Cipher> cache,
+            final String transformation) throws GeneralSecurityException {
+        Cipher c = cache.get();
+        if (c == null) {
+            c = Cipher.getInstance(transformation);
+            cache.set(c);
+        }
+        return c;
+    }
+
+    /**
+     * Is JCE not able to handle the algorithm or the key size, so stream
+     * implementation is used.
+     * 
+     * @param e
+     *            JCE error.
+     * @param key
+     *            Block cipher key.
+     * @return True, if stream implementation is used.
+     */
+    private static boolean isNotAvailable(final GeneralSecurityException e,
+            final byte[] key) {
+        if (e instanceof NoSuchAlgorithmException
+                || e instanceof NoSuchPaddingException) {
+            return true;
+        }
+        if (e instanceof InvalidKeyException) {
+            try {
+                return Cipher.getMaxAllowedKeyLength("AES") < 8 * key.length;
+            } catch (NoSuchAlgorithmException ex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Initialize GCM cipher.
+     * 
+     * @param cache
+     *            Cached ciphers.
+     * @param mode
+     *            Cipher mode.
+     * @param key
+     *            Block cipher key.
+     * @param iv
+     *            Initialization vector.
+     * @param reuse
+     *            Can the same key and IV be used again. Only GMAC tags are
+     *            counted again when they are verified.
+     * @return Initialized cipher.
+     */
+    private static Cipher initGcm(final ThreadLocal<Cipher> cache,
+            final int mode, final byte[] key, final byte[] iv,
+            final boolean reuse) throws GeneralSecurityException {
+        Cipher c = getCipher(cache, "AES/GCM/NoPadding");
+        SecretKeySpec k = new SecretKeySpec(key, "AES");
+        GCMParameterSpec spec = new GCMParameterSpec(TAG_BITS, iv);
+        try {
+            c.init(mode, k, spec);
+        } catch (InvalidAlgorithmParameterException e) {
+            // JCE refuses to encrypt twice with the same key and IV using
+            // the same instance. GMAC challenges are counted again when they
+            // are verified. Encryption with the same IV must fail.
+            if (!reuse) {
+                throw e;
+            }
+            c = Cipher.getInstance("AES/GCM/NoPadding");
+            cache.set(c);
+            c.init(mode, k, spec);
+        }
+        return c;
+    }
+
+    /**
+     * Cipher data in counter mode starting from J0 + 1.
+     */
+    private static byte[] counterMode(final byte[] key, final byte[] iv,
+            final byte[] data) throws GeneralSecurityException {
+        byte[] counter = new byte[16];
+        System.arraycopy(iv, 0, counter, 0, iv.length);
+        counter[15] = 2;
+        Cipher c = getCipher(CTR, "AES/CTR/NoPadding");
+        c.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"),
+                new IvParameterSpec(counter));
+        return c.doFinal(data);
+    }
+
+    /**
+     * Cipher data in place in counter mode starting from J0 + 1.
+     */
+    private static void counterMode(final byte[] key, final byte[] iv,
+            final byte[] buff, final int offset, final int count)
+            throws GeneralSecurityException {
+        byte[] counter = new byte[16];
+        System.arraycopy(iv, 0, counter, 0, iv.length);
+        counter[15] = 2;
+        Cipher c = getCipher(CTR, "AES/CTR/NoPadding");
+        c.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"),
+                new IvParameterSpec(counter));
+        c.doFinal(buff, offset, count, buff, offset);
+    }
+
+    @Override
+    public final byte[] encrypt(final Security security, final byte[] key,
+            final byte[] iv, final byte[] aad, final byte[] data,
+            final byte[] tag) {
+        try {
+            if (security == Security.ENCRYPTION) {
+                return counterMode(key, iv, data);
+            }
+            if (security == Security.AUTHENTICATION) {
+                Cipher c = initGcm(GMAC, Cipher.ENCRYPT_MODE, key, iv, true);
+                c.updateAAD(aad);
+                System.arraycopy(c.doFinal(), 0, tag, 0, 12);
+                return new byte[0];
+            }
+            Cipher c = initGcm(GCM, Cipher.ENCRYPT_MODE, key, iv, false);
+            c.updateAAD(aad);
+            byte[] tmp = c.doFinal(data);
+            int len = tmp.length - 12;
+            System.arraycopy(tmp, len, tag, 0, 12);
+            byte[] ret = new byte[len];
+            System.arraycopy(tmp, 0, ret, 0, len);
+            return ret;
+        } catch (GeneralSecurityException e) {
+            if (!isNotAvailable(e, key)) {
+                throw new RuntimeException(e.getMessage());
+            }
+            return fallback.encrypt(security, key, iv, aad, data, tag);
+        }
+    }
+
+    @Override
+    public final byte[] decrypt(final Security security, final byte[] key,
+            final byte[] iv, final byte[] aad, final byte[] data,
+            final byte[] tag) {
+        try {
+            if (security == Security.AUTHENTICATION) {
+                if (tag != null) {
+                    Cipher c = initGcm(GCM, Cipher.DECRYPT_MODE, key, iv, true);
+                    c.updateAAD(aad);
+                    c.doFinal(tag);
+                }
+                return data;
+            }
+            if (tag == null || security == Security.ENCRYPTION) {
+                return counterMode(key, iv, data);
+            }
+            Cipher c = initGcm(GCM, Cipher.DECRYPT_MODE, key, iv, true);
+            c.updateAAD(aad);
+            byte[] tmp = new byte[data.length + 12];
+            System.arraycopy(data, 0, tmp, 0, data.length);
+            System.arraycopy(tag, 0, tmp, data.length, 12);
+            return c.doFinal(tmp);
+        } catch (AEADBadTagException e) {
+            throw new GXDLMSException("Decrypt failed. Invalid tag.");
+        } catch (GeneralSecurityException e) {
+            if (!isNotAvailable(e, key)) {
+                throw new RuntimeException(e.getMessage());
+            }
+            return fallback.decrypt(security, key, iv, aad, data, tag);
+        }
+    }
+
+    @Override
+    public final void encrypt(final Security security, final byte[] key,
+            final byte[] iv, final byte[] aad, final byte[] buff,
+            final int offset, final int count) {
+        try {
+            if (security == Security.ENCRYPTION) {
+                counterMode(key, iv, buff, offset, count);
+                return;
+            }
+            Cipher c = initGcm(GCM, Cipher.ENCRYPT_MODE, key, iv, false);
+            c.updateAAD(aad);
+            if (security == Security.AUTHENTICATION) {
+                c.updateAAD(buff, offset, count);
+                c.doFinal(buff, offset + count);
+            } else {
+                // Tag is written right after the cipher text.
+                c.doFinal(buff, offset, count, buff, offset);
+            }
+        } catch (GeneralSecurityException e) {
+            if (!isNotAvailable(e, key)) {
+                throw new RuntimeException(e.getMessage());
+            }
+            fallback.encrypt(security, key, iv, aad, buff, offset, count);
+        }
+    }
+
+    @Override
+    public final void decrypt(final Security security, final byte[] key,
+            final byte[] iv, final byte[] aad, final byte[] buff,
+            final int offset, final int count, final boolean verify) {
+        try {
+            if (security == Security.AUTHENTICATION) {
+                if (verify) {
+                    Cipher c = initGcm(GCM, Cipher.DECRYPT_MODE, key, iv, true);
+                    c.updateAAD(aad);
+                    c.updateAAD(buff, offset, count);
+                    c.doFinal(buff, offset + count, 12, buff, offset + count);
+                }
+                return;
+            }
+            if (!verify || security == Security.ENCRYPTION) {
+                counterMode(key, iv, buff, offset, count);
+                return;
+            }
+            Cipher c = initGcm(GCM, Cipher.DECRYPT_MODE, key, iv, true);
+            c.updateAAD(aad);
+            c.doFinal(buff, offset, count + 12, buff, offset);
+        } catch (AEADBadTagException e) {
+            throw new GXDLMSException("Decrypt failed. Invalid tag.");
+        } catch (GeneralSecurityException e) {
+            if (!isNotAvailable(e, key)) {
+                throw new RuntimeException(e.getMessage());
+            }
+            fallback.decrypt(security, key, iv, aad, buff, offset, count,
+                    verify);
+        }
+    }
+}
@@ -107,15 +107,15 @@ public final class GXSecure {
             MessageDigest md;
             switch (settings.getAuthentication()) {
             case HIGH_MD5:
-                md = MessageDigest.getInstance("MD5");
+                md = GXCryptoCache.getMessageDigest("MD5");
                 d = md.digest(d);
                 break;
             case HIGH_SHA1:
-                md = MessageDigest.getInstance("SHA-1");
+                md = GXCryptoCache.getMessageDigest("SHA-1");
                 d = md.digest(d);
                 break;
             case HIGH_SHA256:
-                md = MessageDigest.getInstance("SHA-256");
+                md = GXCryptoCache.getMessageDigest("SHA-256");
                 d = md.digest(d);
                 break;
             case HIGH_GMAC:
@@ -132,7 +132,7 @@ public final class GXSecure {
                 d = challenge.array();
                 break;
             case HIGH_ECDSA:
-                Signature sig = Signature.getInstance("SHA256withECDSA");
+                Signature sig = GXCryptoCache.getSignature("SHA256withECDSA");
                 try {
                     sig.initSign(cipher.getKeyAgreementKeyPair().getPrivate());
                     GXByteBuffer bb = new GXByteBuffer();
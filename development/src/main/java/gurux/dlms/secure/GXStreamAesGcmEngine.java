@@ -0,0 +1,142 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+package gurux.dlms.secure;
+
+import gurux.dlms.GXDLMSException;
+import gurux.dlms.enums.Security;
+
+/**
+ * AES-GCM engine that uses Gurux own AES and GHASH implementation.
+ * 
+ * This is used when JCE doesn't support AES-GCM or used key.
+ */
+public class GXStreamAesGcmEngine implements GXIAesGcmEngine {
+
+    @Override
+    public final byte[] encrypt(final Security security, final byte[] key,
+            final byte[] iv, final byte[] aad, final byte[] data,
+            final byte[] tag) {
+        GXDLMSChipperingStream gcm =
+                new GXDLMSChipperingStream(security, true, key, aad, iv, null);
+        try {
+            if (security != Security.AUTHENTICATION) {
+                gcm.write(data);
+            }
+            byte[] ret = gcm.flushFinalBlock();
+            if (security != Security.ENCRYPTION) {
+                System.arraycopy(gcm.getTag(), 0, tag, 0, 12);
+            }
+            return ret;
+        } finally {
+            gcm.close();
+        }
+    }
+
+    @Override
+    public final byte[] decrypt(final Security security, final byte[] key,
+            final byte[] iv, final byte[] aad, final byte[] data,
+            final byte[] tag) {
+        byte[] ret;
+        if (security == Security.AUTHENTICATION) {
+            ret = data;
+        } else {
+            // Counter mode is same for both directions.
+            GXDLMSChipperingStream gcm = new GXDLMSChipperingStream(
+                    Security.ENCRYPTION, true, key, aad, iv, null);
+            try {
+                gcm.write(data);
+                ret = gcm.flushFinalBlock();
+            } finally {
+                gcm.close();
+            }
+        }
+        if (tag != null && security != Security.ENCRYPTION) {
+            // GHASH is counted from the cipher text.
+            byte[] expected = new byte[12];
+            encrypt(security, key, iv, aad, ret, expected);
+            if (!GXDLMSChipperingStream.tagsEquals(tag, expected)) {
+                throw new GXDLMSException("Decrypt failed. Invalid tag.");
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get additional authenticated data for the data range.
+     */
+    private static byte[] getAad(final Security security, final byte[] aad,
+            final byte[] data) {
+        if (security != Security.AUTHENTICATION) {
+            return aad;
+        }
+        byte[] ret = new byte[aad.length + data.length];
+        System.arraycopy(aad, 0, ret, 0, aad.length);
+        System.arraycopy(data, 0, ret, aad.length, data.length);
+        return ret;
+    }
+
+    @Override
+    public final void encrypt(final Security security, final byte[] key,
+            final byte[] iv, final byte[] aad, final byte[] buff,
+            final int offset, final int count) {
+        byte[] data = new byte[count];
+        System.arraycopy(buff, offset, data, 0, count);
+        byte[] tag = new byte[12];
+        byte[] ret = encrypt(security, key, iv, getAad(security, aad, data),
+                data, tag);
+        if (security != Security.AUTHENTICATION) {
+            System.arraycopy(ret, 0, buff, offset, count);
+        }
+        if (security != Security.ENCRYPTION) {
+            System.arraycopy(tag, 0, buff, offset + count, 12);
+        }
+    }
+
+    @Override
+    public final void decrypt(final Security security, final byte[] key,
+            final byte[] iv, final byte[] aad, final byte[] buff,
+            final int offset, final int count, final boolean verify) {
+        byte[] data = new byte[count];
+        System.arraycopy(buff, offset, data, 0, count);
+        byte[] tag = null;
+        if (verify && security != Security.ENCRYPTION) {
+            tag = new byte[12];
+            System.arraycopy(buff, offset + count, tag, 0, 12);
+        }
+        byte[] ret = decrypt(security, key, iv, getAad(security, aad, data),
+                data, tag);
+        System.arraycopy(ret, 0, buff, offset, count);
+    }
+}
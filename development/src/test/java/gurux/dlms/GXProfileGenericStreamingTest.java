@@ -0,0 +1,300 @@
+//
+// --------------------------------------------------------------------------
+//  Gurux Ltd
+// 
+//
+//
+// Filename:        $HeadURL$
+//
+// Version:         $Revision$,
+//                  $Date$
+//                  $Author$
+//
+// Copyright (c) Gurux Ltd
+//
+//---------------------------------------------------------------------------
+//
+//  DESCRIPTION
+//
+// This file is a part of Gurux Device Framework.
+//
+// Gurux Device Framework is Open Source software; you can redistribute it
+// and/or modify it under the terms of the GNU General Public License 
+// as published by the Free Software Foundation; version 2 of the License.
+// Gurux Device Framework is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of 
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. 
+// See the GNU General Public License for more details.
+//
+// More information of Gurux products: http://www.gurux.org
+//
+// This code is licensed under the GNU General Public License v2. 
+// Full text may be retrieved at http://www.gnu.org/licenses/gpl-2.0.txt
+//---------------------------------------------------------------------------
+
+
+package gurux.dlms;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import org.junit.Test;
+
+import gurux.dlms.enums.AccessMode;
+import gurux.dlms.enums.Authentication;
+import gurux.dlms.enums.MethodAccessMode;
+import gurux.dlms.enums.ObjectType;
+import gurux.dlms.enums.RequestTypes;
+import gurux.dlms.enums.SourceDiagnostic;
+import gurux.dlms.objects.GXDLMSAssociationLogicalName;
+import gurux.dlms.objects.GXDLMSClock;
+import gurux.dlms.objects.GXDLMSData;
+import gurux.dlms.objects.GXDLMSHdlcSetup;
+import gurux.dlms.objects.GXDLMSObject;
+import gurux.dlms.objects.GXDLMSObjectCollection;
+import gurux.dlms.objects.GXDLMSProfileGeneric;
+import gurux.dlms.objects.IGXRowListener;
+
+/**
+ * Profile generic rows are read from the server over HDLC in streaming mode.
+ */
+public class GXProfileGenericStreamingTest {
+    /**
+     * Amount of rows in the profile generic.
+     */
+    private static final int ROWS = 200;
+
+    /**
+     * Server that accepts all requests.
+     */
+    private static class GXServer extends GXDLMSServer2 {
+        GXServer(final GXDLMSHdlcSetup hdlc) {
+            super(new GXDLMSAssociationLogicalName(), hdlc);
+        }
+
+        @Override
+        protected boolean isTarget(final int serverAddress,
+                final int clientAddress) {
+            return true;
+        }
+
+        @Override
+        protected SourceDiagnostic onValidateAuthentication(
+                final Authentication authentication, final byte[] password) {
+            return SourceDiagnostic.NONE;
+        }
+
+        @Override
+        public void onPreGet(final ValueEventArgs[] args) {
+        }
+
+        @Override
+        public void onPostGet(final ValueEventArgs[] args) {
+        }
+
+        @Override
+        protected GXDLMSObject onFindObject(final ObjectType objectType,
+                final int sn, final String ln) {
+            return null;
+        }
+
+        @Override
+        public void onPreRead(final ValueEventArgs[] args) {
+        }
+
+        @Override
+        public void onPostRead(final ValueEventArgs[] args) {
+        }
+
+        @Override
+        protected void onPreWrite(final ValueEventArgs[] args) {
+        }
+
+        @Override
+        protected void onPostWrite(final ValueEventArgs[] args) {
+        }
+
+        @Override
+        protected void onConnected(
+                final GXDLMSConnectionEventArgs connectionInfo) {
+        }
+
+        @Override
+        protected void onInvalidConnection(
+                final GXDLMSConnectionEventArgs connectionInfo) {
+        }
+
+        @Override
+        protected void onDisconnected(
+                final GXDLMSConnectionEventArgs connectionInfo) {
+        }
+
+        @Override
+        protected AccessMode onGetAttributeAccess(final ValueEventArgs arg) {
+            return AccessMode.READ_WRITE;
+        }
+
+        @Override
+        protected MethodAccessMode onGetMethodAccess(final ValueEventArgs arg) {
+            return MethodAccessMode.ACCESS;
+        }
+
+        @Override
+        protected void onPreAction(final ValueEventArgs[] args) {
+        }
+
+        @Override
+        protected void onPostAction(final ValueEventArgs[] args) {
+        }
+    }
+
+    /**
+     * Add profile generic and its capture objects to the collection.
+     * 
+     * @param objects
+     *            Object collection.
+     * @return Profile generic.
+     */
+    private static GXDLMSProfileGeneric
+            addProfileGeneric(final GXDLMSObjectCollection objects) {
+        GXDLMSProfileGeneric pg = new GXDLMSProfileGeneric("1.0.99.1.0.255");
+        GXDLMSClock clock = new GXDLMSClock();
+        GXDLMSData counter = new GXDLMSData("0.0.1.0.0.255");
+        GXDLMSData text = new GXDLMSData("0.0.2.0.0.255");
+        objects.add(clock);
+        objects.add(counter);
+        objects.add(text);
+        objects.add(pg);
+        pg.addCaptureObject(clock, 2, 0);
+        pg.addCaptureObject(counter, 2, 0);
+        pg.addCaptureObject(text, 2, 0);
+        return pg;
+    }
+
+    /**
+     * Send request to the server and read all frames of the reply.
+     * 
+     * @param client
+     *            DLMS client.
+     * @param server
+     *            DLMS server.
+     * @param data
+     *            Sent data.
+     * @param reply
+     *            Reply data.
+     * @return Amount of requested data blocks.
+     */
+    private static int readDataBlock(final GXDLMSClient client,
+            final GXServer server, final byte[] data, final GXReplyData reply) {
+        int blocks = 0;
+        client.getData(server.handleRequest(data), reply);
+        while (reply.isMoreData()) {
+            if (reply.getMoreData() == RequestTypes.DATABLOCK) {
+                ++blocks;
+            }
+            client.getData(server.handleRequest(
+                    client.receiverReady(reply.getMoreData())), reply);
+        }
+        return blocks;
+    }
+
+    /**
+     * Read the buffer when HDLC frame is smaller than one row.
+     * 
+     * @param maxInfo
+     *            Maximum HDLC information field length.
+     * @param maxPdu
+     *            Maximum PDU size that client can receive.
+     * @return Amount of requested data blocks when rows are streamed.
+     */
+    private static int readBuffer(final int maxInfo, final int maxPdu)
+            throws Exception {
+        GXDLMSHdlcSetup hdlc = new GXDLMSHdlcSetup();
+        hdlc.setMaximumInfoLengthTransmit(maxInfo);
+        hdlc.setMaximumInfoLengthReceive(maxInfo);
+        GXServer server = new GXServer(hdlc);
+        GXDLMSProfileGeneric target = addProfileGeneric(server.getItems());
+        Calendar time = Calendar.getInstance();
+        time.set(2020, 0, 1, 0, 0, 0);
+        for (int pos = 0; pos != ROWS; ++pos) {
+            time.add(Calendar.MINUTE, 15);
+            target.addRow(new Object[] { new GXDateTime(time.getTime()),
+                    (long) pos, "Row " + pos + " is longer than a frame." });
+        }
+        target.setEntriesInUse(ROWS);
+        server.initialize();
+
+        GXDLMSClient client = new GXDLMSClient(true);
+        client.getLimits().setMaxInfoRX(maxInfo);
+        client.getLimits().setMaxInfoTX(maxInfo);
+        client.setMaxReceivePDUSize(maxPdu);
+        GXReplyData reply = new GXReplyData();
+        readDataBlock(client, server, client.snrmRequest(), reply);
+        client.parseUAResponse(reply.getData());
+        for (byte[] it : client.aarqRequest()) {
+            reply.clear();
+            readDataBlock(client, server, it, reply);
+        }
+        client.parseAareResponse(reply.getData());
+
+        GXDLMSProfileGeneric pg =
+                addProfileGeneric(new GXDLMSObjectCollection());
+        reply = new GXReplyData();
+        for (byte[] it : client.read(pg, 2)) {
+            readDataBlock(client, server, it, reply);
+        }
+        Object[] rows = (Object[]) client.updateValue(pg, 2, reply.getValue());
+        assertEquals(ROWS, rows.length);
+
+        final List<Object[]> streamed = new ArrayList<Object[]>();
+        reply = new GXReplyData();
+        reply.setRowListener(pg, new IGXRowListener() {
+            @Override
+            public void onRow(final GXDLMSProfileGeneric p,
+                    final Object[] row) {
+                streamed.add(row);
+            }
+        });
+        int blocks = 0;
+        for (byte[] it : client.read(pg, 2)) {
+            blocks += readDataBlock(client, server, it, reply);
+        }
+        assertEquals(ROWS, reply.getStreamedRows());
+        assertEquals(ROWS, streamed.size());
+        for (int pos = 0; pos != ROWS; ++pos) {
+            assertEquals(pos,
+                    ((Number) ((Object[]) rows[pos])[1]).longValue());
+            assertEquals("Row " + pos + " is longer than a frame.",
+                    ((Object[]) rows[pos])[2]);
+            assertEquals(((Object[]) rows[pos])[1], streamed.get(pos)[1]);
+            assertEquals(((Object[]) rows[pos])[2], streamed.get(pos)[2]);
+        }
+        return blocks;
+    }
+
+    /**
+     * Rows are streamed when HDLC frames are smaller than one row.
+     */
+    @Test
+    public final void testStreamingSmallFrames() throws Exception {
+        readBuffer(32, 0xFFFF);
+        readBuffer(40, 0xFFFF);
+        readBuffer(48, 0xFFFF);
+        readBuffer(128, 0xFFFF);
+    }
+
+    /**
+     * Rows are streamed when the buffer is split to several data blocks and
+     * rows continue from one block to the next one.
+     */
+    @Test
+    public final void testStreamingDataBlocks() throws Exception {
+        assertTrue(readBuffer(128, 256) > 1);
+        assertTrue(readBuffer(32, 100) > 1);
+        assertTrue(readBuffer(512, 128) > 1);
+    }
+}
@@ -70,6 +70,7 @@ import gurux.dlms.objects.GXDLMSObjectCollection;
 import gurux.dlms.objects.GXDLMSProfileGeneric;
 import gurux.dlms.objects.GXDLMSRegister;
 import gurux.dlms.objects.IGXDLMSBase;
+import gurux.dlms.objects.IGXRowListener;
 import gurux.io.BaudRate;
 import gurux.io.Parity;
 import gurux.io.StopBits;
@@ -546,6 +547,26 @@ public class GXDLMSReader {
         return (Object[]) dlms.updateValue(pg, 2, reply.getValue());
     }
 
+    /**
+     * Read Profile Generic's data by entry start and count in streaming mode.
+     * Each row is passed to the listener as soon as it is received.
+     * 
+     * @param pg
+     * @param index
+     * @param count
+     * @param listener
+     * @return Amount of read rows.
+     * @throws Exception
+     */
+    public int readRowsByEntry(GXDLMSProfileGeneric pg, int index, int count,
+            IGXRowListener listener) throws Exception {
+        byte[][] data = dlms.readRowsByEntry(pg, index, count);
+        GXReplyData reply = new GXReplyData();
+        reply.setRowListener(pg, listener);
+        readDataBlock(data, reply);
+        return reply.getStreamedRows();
+    }
+
     /**
      * Read Profile Generic's data by range (start and end time).
      * 
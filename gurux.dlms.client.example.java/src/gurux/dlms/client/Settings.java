@@ -49,4 +49,6 @@ public class Settings {
     // Objects to read.
     public List<Map.Entry<String, Integer>> readObjects =
             new ArrayList<Map.Entry<String, Integer>>();
+    // Meters to read. Meters are read at the same time if there are several.
+    public List<String> hosts = new ArrayList<String>();
 }
\ No newline at end of file
@@ -35,7 +35,10 @@ package gurux.dlms.client;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import gurux.common.GXCmdParameter;
 import gurux.common.GXCommon;
 import gurux.common.enums.TraceLevel;
@@ -43,6 +46,7 @@ import gurux.dlms.GXSimpleEntry;
 import gurux.dlms.enums.Authentication;
 import gurux.dlms.enums.InterfaceType;
 import gurux.dlms.enums.ObjectType;
+import gurux.dlms.net.GXExecutors;
 import gurux.io.BaudRate;
 import gurux.io.Parity;
 import gurux.io.StopBits;
@@ -70,6 +74,10 @@ public class sampleclient {
                 return;
             }
 
+            if (settings.hosts.size() > 1) {
+                readMeters(args, settings.hosts);
+                return;
+            }
             ////////////////////////////////////////
             // Initialize connection settings.
             if (settings.media instanceof GXSerial) {
@@ -93,19 +101,7 @@ public class sampleclient {
             reader = new GXDLMSReader(settings.client, settings.media,
                     settings.trace);
             settings.media.open();
-            if (settings.readObjects.size() != 0) {
-                reader.initializeConnection();
-                reader.getAssociationView();
-                for (Map.Entry<String, Integer> it : settings.readObjects) {
-                    Object val = reader.read(
-                            settings.client.getObjects()
-                                    .findByLN(ObjectType.NONE, it.getKey()),
-                            it.getValue());
-                    reader.showValue(it.getValue(), val);
-                }
-            } else {
-                reader.readAll();
-            }
+            read(reader, settings);
         } catch (Exception ex) {
             System.out.println(ex.getMessage());
             System.exit(1);
@@ -122,6 +118,79 @@ public class sampleclient {
         }
     }
 
+    /**
+     * Read selected objects or all objects from the meter.
+     * 
+     * @param reader
+     *            DLMS reader.
+     * @param settings
+     *            Settings of the meter.
+     * @throws Exception
+     *             Read failed.
+     */
+    static void read(GXDLMSReader reader, Settings settings)
+            throws Exception {
+        if (settings.readObjects.size() != 0) {
+            reader.initializeConnection();
+            reader.getAssociationView();
+            for (Map.Entry<String, Integer> it : settings.readObjects) {
+                Object val = reader.read(settings.client.getObjects()
+                        .findByLN(ObjectType.NONE, it.getKey()), it.getValue());
+                reader.showValue(it.getValue(), val);
+            }
+        } else {
+            reader.readAll();
+        }
+    }
+
+    /**
+     * Read meters at the same time. Each meter is read in own virtual thread
+     * when the JVM supports them, so large amount of meters can be read
+     * without sizing a thread pool. Each meter has own settings, media and
+     * reader, so they are used only by the thread that reads the meter.
+     * 
+     * @param args
+     *            Command line arguments.
+     * @param hosts
+     *            Host names or IP addresses of the meters.
+     * @throws InterruptedException
+     *             Reading is interrupted.
+     */
+    static void readMeters(final String[] args, List<String> hosts)
+            throws InterruptedException {
+        ExecutorService executor = GXExecutors.newVirtualThreadExecutor();
+        for (final String host : hosts) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    Settings settings = new Settings();
+                    getParameters(args, settings);
+                    ((GXNet) settings.media).setHostName(host);
+                    GXDLMSReader reader = null;
+                    try {
+                        reader = new GXDLMSReader(settings.client,
+                                settings.media, settings.trace);
+                        settings.media.open();
+                        read(reader, settings);
+                    } catch (Exception ex) {
+                        System.out.println(host + ": " + ex.getMessage());
+                    } finally {
+                        if (reader != null) {
+                            try {
+                                reader.close();
+                            } catch (Exception e) {
+                                System.out
+                                        .println(host + ": " + e.getMessage());
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
     /**
      * Show help.
      */
@@ -131,6 +200,8 @@ public class sampleclient {
         System.out.println(
                 "GuruxDlmsSample -h [Meter IP Address] -p [Meter Port No] -c 16 -s 1 -r SN");
         System.out.println(" -h \t host name or IP address.");
+        System.out.println(
+                " -h [host, host]\t Meters are read at the same time.");
         System.out.println(" -p \t port number or name (Example: 1000).");
         System.out.println(" -S \t serial port.");
         System.out.println(" -i IEC is a start protocol.");
@@ -183,7 +254,10 @@ public class sampleclient {
                     settings.media = new GXNet();
                 }
                 net = (GXNet) settings.media;
-                net.setHostName(it.getValue());
+                for (String host : it.getValue().split("[;,]")) {
+                    settings.hosts.add(host.trim());
+                }
+                net.setHostName(settings.hosts.get(0));
                 break;
             case 't':
                 // Trace.
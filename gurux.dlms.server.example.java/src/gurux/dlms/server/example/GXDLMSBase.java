@@ -34,17 +34,12 @@
 
 package gurux.dlms.server.example;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.file.Paths;
-import java.text.SimpleDateFormat;
 import java.util.AbstractMap;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.Map.Entry;
 
 import gurux.common.IGXMediaListener;
@@ -53,7 +48,6 @@ import gurux.common.PropertyChangedEventArgs;
 import gurux.common.ReceiveEventArgs;
 import gurux.common.TraceEventArgs;
 import gurux.common.enums.TraceLevel;
-import gurux.dlms.GXDLMSClient;
 import gurux.dlms.GXDLMSConnectionEventArgs;
 import gurux.dlms.GXDateTime;
 import gurux.dlms.GXServerReply;
@@ -98,6 +92,7 @@ import gurux.dlms.objects.GXDLMSScriptTable;
 import gurux.dlms.objects.GXDLMSSeasonProfile;
 import gurux.dlms.objects.GXDLMSTcpUdpSetup;
 import gurux.dlms.objects.GXDLMSWeekProfile;
+import gurux.dlms.objects.GXProfileGenericStore;
 import gurux.dlms.objects.enums.AutoAnswerMode;
 import gurux.dlms.objects.enums.AutoAnswerStatus;
 import gurux.dlms.objects.enums.AutoConnectMode;
@@ -119,7 +114,20 @@ public class GXDLMSBase extends GXDLMSSecureServer2
     TraceLevel Trace = TraceLevel.INFO;
     private GXNet media;
 
-    static final Object fileLock = new Object();
+    /**
+     * Profile generic rows are saved to memory-mapped file.
+     */
+    private GXProfileGenericStore profileStore;
+
+    /**
+     * All example servers use the same data file, so they share one store.
+     */
+    private static GXProfileGenericStore sharedStore;
+
+    /**
+     * Amount of servers that use the shared store.
+     */
+    private static int sharedStoreUsers;
 
     // Date file is saved to same directory where app is.
     static final String getDataFile() {
@@ -127,7 +135,7 @@ public class GXDLMSBase extends GXDLMSSecureServer2
                 .get(GXDLMSBase.class.getProtectionDomain().getCodeSource()
                         .getLocation().getPath().substring(1))
                 .getParent().toString();
-        return dir + "/data.csv";
+        return dir + "/data.bin";
     }
 
     /**
@@ -270,34 +278,50 @@ public class GXDLMSBase extends GXDLMSSecureServer2
         cal.set(Calendar.MINUTE, 0);
         cal.set(Calendar.SECOND, 0);
         cal.set(Calendar.MILLISECOND, 0);
-        StringBuilder sb = new StringBuilder();
-        SimpleDateFormat df = new SimpleDateFormat();
-        for (int pos = 0; pos != rowCount; ++pos) {
-            sb.append(df.format(cal.getTime()));
-            sb.append(';');
-            sb.append(String.valueOf(pos + 1));
-            sb.append(System.lineSeparator());
-            cal.add(Calendar.HOUR, 1);
-        }
-        synchronized (fileLock) {
-            FileWriter writer = null;
-            try {
-                writer = new FileWriter(getDataFile(), false);
-                writer.write(sb.toString());
-                writer.close();
-            } catch (IOException e) {
-                if (writer != null) {
-                    try {
-                        writer.close();
-                    } catch (IOException e1) {
-                    }
+        synchronized (GXDLMSBase.class) {
+            if (sharedStore == null) {
+                // Store keeps at most rowCount rows. Oldest row is removed
+                // when new row is captured to the full store.
+                try {
+                    sharedStore = new GXProfileGenericStore(getDataFile(),
+                            new DataType[] { DataType.OCTET_STRING,
+                                    DataType.UINT32 },
+                            rowCount);
+                } catch (IOException e) {
+                    throw new RuntimeException(e.getMessage());
+                }
+                sharedStore.clear();
+                for (int pos = 0; pos != rowCount; ++pos) {
+                    sharedStore.add(new Object[] {
+                            new GXDateTime(cal.getTime()), pos + 1 });
+                    cal.add(Calendar.HOUR, 1);
                 }
-                throw new RuntimeException(e.getMessage());
             }
+            ++sharedStoreUsers;
+            profileStore = sharedStore;
         }
         return pg;
     }
 
+    /**
+     * Close the shared store when the last server is closed.
+     * 
+     * @throws IOException
+     *             Close fails.
+     */
+    private void closeProfileStore() throws IOException {
+        synchronized (GXDLMSBase.class) {
+            if (profileStore != null) {
+                profileStore = null;
+                --sharedStoreUsers;
+                if (sharedStoreUsers == 0) {
+                    sharedStore.close();
+                    sharedStore = null;
+                }
+            }
+        }
+    }
+
     /*
      * Add Auto connect object.
      */
@@ -609,129 +633,7 @@ public class GXDLMSBase extends GXDLMSSecureServer2
     public void close() throws Exception {
         super.close();
         media.close();
-    }
-
-    /**
-     * Return data using start and end indexes.
-     * 
-     * @param p
-     *            ProfileGeneric
-     * @param index
-     * @param count
-     * @return Add data Rows
-     */
-    private void getProfileGenericDataByEntry(final GXDLMSProfileGeneric p,
-            long index, final long count) {
-        // Clear old data. It's already serialized.
-        p.clearBuffer();
-        BufferedReader reader = null;
-        SimpleDateFormat df = new SimpleDateFormat();
-        synchronized (fileLock) {
-            try {
-                reader = new BufferedReader(new FileReader(getDataFile()));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    // Skip row
-                    if (index > 0) {
-                        --index;
-                    } else if (line.length() != 0) {
-                        String[] values = line.split("[;]", -1);
-                        p.addRow(new Object[] { df.parse(values[0]),
-                                Integer.parseInt(values[1]) });
-                    }
-                    if (p.getBuffer().length == count) {
-                        break;
-                    }
-                }
-                reader.close();
-            } catch (Exception e) {
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (Exception e1) {
-                    }
-                }
-                throw new RuntimeException(e.getMessage());
-            }
-        }
-    }
-
-    /**
-     * Find start index and row count using start and end date time.
-     * 
-     * @param start
-     *            Start time.
-     * @param end
-     *            End time
-     * @param index
-     *            Start index.
-     * @param count
-     *            Item count.
-     */
-    private void getProfileGenericDataByRange(ValueEventArgs e) {
-        GXDateTime start = (GXDateTime) GXDLMSClient.changeType(
-                (byte[]) ((Object[]) e.getParameters())[1], DataType.DATETIME);
-        GXDateTime end = (GXDateTime) GXDLMSClient.changeType(
-                (byte[]) ((Object[]) e.getParameters())[2], DataType.DATETIME);
-
-        synchronized (fileLock) {
-            BufferedReader reader = null;
-            try {
-                reader = new BufferedReader(new FileReader(getDataFile()));
-                String line;
-                SimpleDateFormat df = new SimpleDateFormat();
-                while ((line = reader.readLine()) != null) {
-                    String[] values = line.split("[;]", -1);
-                    Date tm = df.parse(values[0]);
-                    if (tm.compareTo(end.getCalendar().getTime()) > 0) {
-                        // If all data is read.
-                        break;
-                    }
-                    if (tm.compareTo(start.getCalendar().getTime()) < 0) {
-                        // If we have not find first item.
-                        e.setRowBeginIndex(e.getRowBeginIndex() + 1);
-                    }
-                    e.setRowEndIndex(e.getRowEndIndex() + 1);
-                }
-                reader.close();
-            } catch (Exception ex) {
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (Exception e1) {
-                    }
-                }
-                throw new RuntimeException(ex.getMessage());
-            }
-        }
-    }
-
-    /**
-     * Get row count.
-     * 
-     * @return
-     */
-    private int getProfileGenericDataCount() {
-        int rows = 0;
-        BufferedReader reader = null;
-        synchronized (fileLock) {
-            try {
-                reader = new BufferedReader(new FileReader(getDataFile()));
-                while (reader.readLine() != null) {
-                    ++rows;
-                }
-                reader.close();
-            } catch (Exception e) {
-                if (reader != null) {
-                    try {
-                        reader.close();
-                    } catch (Exception e1) {
-                    }
-                }
-                throw new RuntimeException(e.getMessage());
-            }
-        }
-        return rows;
+        closeProfileStore();
     }
 
     @Override
@@ -749,51 +651,9 @@ public class GXDLMSBase extends GXDLMSSecureServer2
             }
             // Framework will handle profile generic automatically.
             if (e.getTarget() instanceof GXDLMSProfileGeneric) {
-                // If buffer is read and we want to save memory.
-                if (e.getIndex() == 7) {
-                    // If client wants to know EntriesInUse.
-                    GXDLMSProfileGeneric p =
-                            (GXDLMSProfileGeneric) e.getTarget();
-                    p.setEntriesInUse(getProfileGenericDataCount());
-                }
-                if (e.getIndex() == 2) {
-                    // Client reads buffer.
-                    GXDLMSProfileGeneric p =
-                            (GXDLMSProfileGeneric) e.getTarget();
-                    // Read rows from file.
-                    // If reading first time.
-                    if (e.getRowEndIndex() == 0) {
-                        if (e.getSelector() == 0) {
-                            e.setRowEndIndex(getProfileGenericDataCount());
-                        } else if (e.getSelector() == 1) {
-                            // Read by entry.
-                            getProfileGenericDataByRange(e);
-                        } else if (e.getSelector() == 2) {
-                            // Read by range.
-                            e.setRowBeginIndex(
-                                    ((long) ((Object[]) e.getParameters())[0]));
-                            e.setRowEndIndex(e.getRowBeginIndex()
-                                    + (long) ((Object[]) e.getParameters())[1]);
-                            // If client wants to read more data what we have.
-                            int cnt = getProfileGenericDataCount();
-                            if (e.getRowEndIndex() - e.getRowBeginIndex() > cnt
-                                    - e.getRowBeginIndex()) {
-                                e.setRowEndIndex(cnt - e.getRowBeginIndex());
-                                if (e.getRowEndIndex() < 0) {
-                                    e.setRowEndIndex(0);
-                                }
-                            }
-                        }
-                    }
-                    long count = e.getRowEndIndex() - e.getRowBeginIndex();
-                    // Read only rows that can fit to one PDU.
-                    if (e.getRowEndIndex() - e.getRowBeginIndex() > e
-                            .getRowToPdu()) {
-                        count = e.getRowToPdu();
-                    }
-                    getProfileGenericDataByEntry(p, e.getRowBeginIndex(),
-                            count);
-                }
+                // Entries in use and buffer are read from the file. Only rows
+                // that fit to one PDU are kept in memory.
+                profileStore.handleRead(e);
                 continue;
             }
 
@@ -863,60 +723,40 @@ public class GXDLMSBase extends GXDLMSSecureServer2
 
     }
 
-    private void capture(GXDLMSProfileGeneric pg) throws IOException {
+    private void capture(GXDLMSProfileGeneric pg) {
         // Profile generic Capture is called.
-        SimpleDateFormat df = new SimpleDateFormat();
-        synchronized (fileLock) {
-            FileWriter writer = new FileWriter(getDataFile(), true);
-            try {
-                StringBuilder sb = new StringBuilder();
-                for (Entry<GXDLMSObject, GXDLMSCaptureObject> it : pg
-                        .getCaptureObjects()) {
-                    if (sb.length() != 0) {
-                        sb.append(';');
-                    }
-                    // TODO: Read value here example from the meter if it's not
-                    // updated automatically.
-                    Object value = it.getKey()
-                            .getValues()[it.getValue().getAttributeIndex() - 1];
-                    if (value == null) {
-                        // Generate random value here.
-                        value = getProfileGenericDataCount() + 1;
-                    }
-                    if (value instanceof Date) {
-                        sb.append(df.format((Date) value));
-                    } else if (value instanceof GXDateTime) {
-                        sb.append(df.format(((GXDateTime) value)
-                                .getLocalCalendar().getTime()));
-                    } else {
-                        sb.append(value);
-                    }
-                }
-                sb.append(System.lineSeparator());
-                writer.write(sb.toString());
-            } finally {
-                writer.close();
+        Object[] row = new Object[pg.getCaptureObjects().size()];
+        int pos = 0;
+        for (Entry<GXDLMSObject, GXDLMSCaptureObject> it : pg
+                .getCaptureObjects()) {
+            // TODO: Read value here example from the meter if it's not
+            // updated automatically.
+            Object value;
+            if (it.getKey() instanceof GXDLMSClock
+                    && it.getValue().getAttributeIndex() == 2) {
+                // Rows are saved in capture time order.
+                value = ((GXDLMSClock) it.getKey()).now();
+            } else {
+                value = it.getKey()
+                        .getValues()[it.getValue().getAttributeIndex() - 1];
             }
+            if (value == null) {
+                // Generate random value here.
+                value = profileStore.getEntriesInUse() + 1;
+            }
+            row[pos] = value;
+            ++pos;
         }
+        profileStore.add(row);
     }
 
-    private void handleProfileGenericActions(ValueEventArgs it)
-            throws IOException {
+    private void handleProfileGenericActions(ValueEventArgs it) {
         GXDLMSProfileGeneric pg = (GXDLMSProfileGeneric) it.getTarget();
-        FileWriter writer = null;
-        synchronized (fileLock) {
-            try {
-                if (it.getIndex() == 1) {
-                    // Profile generic clear is called. Clear data.
-                    writer = new FileWriter(getDataFile(), false);
-                } else if (it.getIndex() == 2) {
-                    capture(pg);
-                }
-            } finally {
-                if (writer != null) {
-                    writer.close();
-                }
-            }
+        if (it.getIndex() == 1) {
+            // Profile generic clear is called. Clear data.
+            profileStore.clear();
+        } else if (it.getIndex() == 2) {
+            capture(pg);
         }
     }
 